@@ -13,6 +13,7 @@ import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
+import io.taucoin.communication.FriendCryptoContext;
 import io.taucoin.torrent.publishing.R;
 import io.taucoin.torrent.publishing.core.model.data.ChatMsgStatus;
 import io.taucoin.torrent.publishing.core.model.data.FriendStatus;
@@ -91,8 +92,8 @@ class MsgListenHandler extends MsgListener{
                             friendPkStr = senderPk;
                         }
                         // 原始数据解密
-                        byte[] cryptoKey = Utils.keyExchange(friendPkStr, user.seed);
-                        message.decrypt(cryptoKey);
+                        FriendCryptoContext cryptoContext = Utils.getCryptoContext(friendPkStr, user.seed);
+                        message.decrypt(cryptoContext);
 
                         // 保存消息数据
                         byte[] encryptedContent = message.getEncryptedContent();
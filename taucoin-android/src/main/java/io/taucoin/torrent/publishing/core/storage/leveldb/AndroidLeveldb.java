@@ -8,6 +8,8 @@ import com.github.hf.leveldb.LevelDB;
 import com.github.hf.leveldb.Iterator;
 import com.github.hf.leveldb.util.SimpleWriteBatch;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
@@ -70,6 +72,27 @@ public class AndroidLeveldb implements KeyValueDataBase {
         return db.get(key);
     }
 
+    /**
+     * Retrieves values by keys from the database in one call.
+     *
+     * @param keys
+     * @return values in the same order as keys, null if not found
+     * @throws Exception
+     */
+    public List<byte[]> multiGet(List<byte[]> keys) throws Exception {
+        if (db == null) {
+            throw notOpenException;
+        }
+
+        // leveldb没有批量读取接口，逐个读取
+        List<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key: keys) {
+            values.add(db.get(key));
+        }
+
+        return values;
+    }
+
     /**
      * Store the key and value into the database.
      *
@@ -28,13 +28,14 @@ import com.frostwire.jlibtorrent.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.FragmentActivity;
+import io.taucoin.communication.FriendCryptoContext;
+import io.taucoin.communication.FriendCryptoManager;
 import io.taucoin.param.ChainParam;
 import io.taucoin.torrent.publishing.MainApplication;
 import io.taucoin.torrent.publishing.R;
 import io.taucoin.torrent.publishing.core.Constants;
 import io.taucoin.torrent.publishing.receiver.BootReceiver;
 import io.taucoin.util.ByteUtil;
-import io.taucoin.util.CryptoUtil;
 
 import java.io.File;
 import java.nio.charset.Charset;
@@ -551,19 +552,24 @@ public class Utils {
         return ori == Configuration.ORIENTATION_LANDSCAPE;
     }
 
+    // 最近一次使用的Seed及其密钥对，避免每条消息都从Seed生成密钥对
+    private static volatile Pair<String, Pair<byte[], byte[]>> seedKeypair;
+
     /**
-     * 秘钥分发
+     * 获取与朋友的加解密上下文，每个朋友只做一次秘钥分发
      * @param publicKey 对方公钥
      * @param seed 我的Seed
-     * @return 加密用的秘钥
+     * @return 加解密上下文
      */
-    public static byte[] keyExchange(String publicKey, String seed) {
+    public static FriendCryptoContext getCryptoContext(String publicKey, String seed) {
         if (StringUtil.isNotEmpty(seed)) {
             try {
-                byte[] seedBytes = ByteUtil.toByte(seed);
-                Pair<byte[], byte[]> keypair = Ed25519.createKeypair(seedBytes);
-                byte[] secretKey = keypair.second;
-                return CryptoUtil.keyExchange(ByteUtil.toByte(publicKey), secretKey);
+                Pair<String, Pair<byte[], byte[]>> cached = seedKeypair;
+                if (null == cached || !StringUtil.isEquals(cached.first, seed)) {
+                    cached = new Pair<>(seed, Ed25519.createKeypair(ByteUtil.toByte(seed)));
+                    seedKeypair = cached;
+                }
+                return FriendCryptoManager.getInstance().getContext(ByteUtil.toByte(publicKey), cached.second);
             } catch (Exception ignore) { }
         }
         return null;
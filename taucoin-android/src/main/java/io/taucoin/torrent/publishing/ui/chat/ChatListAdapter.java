@@ -13,6 +13,7 @@ import androidx.databinding.ViewDataBinding;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
+import io.taucoin.communication.FriendCryptoContext;
 import io.taucoin.torrent.publishing.MainApplication;
 import io.taucoin.torrent.publishing.R;
 import io.taucoin.torrent.publishing.core.model.data.ChatMsgAndUser;
@@ -44,12 +45,12 @@ public class ChatListAdapter extends ListAdapter<ChatMsgAndUser, ChatListAdapter
     }
     private ClickListener listener;
     private User friend;
-    private byte[] cryptoKey;
+    private FriendCryptoContext cryptoContext;
 
     ChatListAdapter(ClickListener listener, String friendPk) {
         super(diffCallback);
         this.listener = listener;
-        this.cryptoKey = Utils.keyExchange(friendPk, MainApplication.getInstance().getSeed());
+        this.cryptoContext = Utils.getCryptoContext(friendPk, MainApplication.getInstance().getSeed());
     }
 
     public void setFriend(User friend) {
@@ -83,7 +84,7 @@ public class ChatListAdapter extends ListAdapter<ChatMsgAndUser, ChatListAdapter
                     parent,
                     false);
         }
-        return new ViewHolder(binding, listener, friend, cryptoKey);
+        return new ViewHolder(binding, listener, friend, cryptoContext);
     }
 
     @Override
@@ -138,14 +139,15 @@ public class ChatListAdapter extends ListAdapter<ChatMsgAndUser, ChatListAdapter
         private ViewDataBinding binding;
         private ClickListener listener;
         private User friend;
-        private byte[] cryptoKey;
+        private FriendCryptoContext cryptoContext;
 
-        ViewHolder(ViewDataBinding binding, ClickListener listener, User friend, byte[] cryptoKey) {
+        ViewHolder(ViewDataBinding binding, ClickListener listener, User friend,
+                   FriendCryptoContext cryptoContext) {
             super(binding.getRoot());
             this.binding = binding;
             this.listener = listener;
             this.friend = friend;
-            this.cryptoKey = cryptoKey;
+            this.cryptoContext = cryptoContext;
         }
 
         void bindTextRight(ItemTextRightBinding binding, ChatMsgAndUser msg, ChatMsgAndUser previousChat) {
@@ -259,7 +261,7 @@ public class ChatListAdapter extends ListAdapter<ChatMsgAndUser, ChatListAdapter
                 tvTime.setText(time);
             }
             tvTime.setVisibility(isShowTime ? View.VISIBLE : View.GONE);
-            tvImage.setImageHash(msg.hash, msg.senderPk, cryptoKey);
+            tvImage.setImageHash(msg.hash, msg.senderPk, cryptoContext);
         }
     }
 
@@ -26,6 +26,7 @@ import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
+import io.taucoin.communication.FriendCryptoContext;
 import io.taucoin.torrent.publishing.MainApplication;
 import io.taucoin.torrent.publishing.core.model.TauDaemon;
 import io.taucoin.torrent.publishing.core.model.data.ChatMsgAndUser;
@@ -50,7 +51,6 @@ import io.taucoin.torrent.publishing.ui.constant.Page;
 import io.taucoin.types.Message;
 import io.taucoin.types.MessageType;
 import io.taucoin.util.ByteUtil;
-import io.taucoin.util.CryptoUtil;
 
 /**
  * 聊天相关的ViewModel
@@ -241,7 +241,7 @@ public class ChatViewModel extends AndroidViewModel {
                 ChatMsg[] messages = new ChatMsg[contents.size()];
                 ChatMsgLog[] chatMsgLogs = new ChatMsgLog[contents.size()];
                 int contentSize = contents.size();
-                byte[] key = Utils.keyExchange(friendPkStr, user.seed);
+                FriendCryptoContext cryptoContext = Utils.getCryptoContext(friendPkStr, user.seed);
                 for (int nonce = 0; nonce < contentSize; nonce++) {
                     byte[] content = contents.get(nonce);
                     long millisTime = DateUtil.getMillisTime();
@@ -254,7 +254,7 @@ public class ChatViewModel extends AndroidViewModel {
                         message = Message.createPictureMessage(BigInteger.valueOf(timestamp), senderPk,
                                 friendPk, logicMsgHash, BigInteger.valueOf(nonce), content);
                     }
-                    message.encrypt(key);
+                    message.encrypt(cryptoContext);
                     String hash = ByteUtil.toHexString(message.getHash());
                     byte[] encryptedContent = message.getEncryptedContent();
                     logger.debug("sendMessageTask newMsgHash::{}, contentType::{}, " +
@@ -321,11 +321,12 @@ public class ChatViewModel extends AndroidViewModel {
                 logger.trace("loadMessagesData pos::{}, pageSize::{}, messages.size::{}",
                         pos, pageSize, messages.size());
                 logger.trace("loadMessagesData getMessagesTime::{}", getMessagesTime - startTime);
-                byte[] friendCryptoKey = Utils.keyExchange(friendPk, MainApplication.getInstance().getSeed());
+                FriendCryptoContext cryptoContext = Utils.getCryptoContext(friendPk,
+                        MainApplication.getInstance().getSeed());
                 for (ChatMsgAndUser msg : messages) {
                     byte[] encryptedContent = msg.content;
                     try {
-                        msg.rawContent = CryptoUtil.decrypt(encryptedContent, friendCryptoKey);
+                        msg.rawContent = cryptoContext.decrypt(encryptedContent);
                         msg.content = null;
                     } catch (Exception e) {
                         logger.error("loadMessagesData decrypt error::", e);
@@ -17,6 +17,7 @@ import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
+import io.taucoin.communication.FriendCryptoContext;
 import io.taucoin.torrent.publishing.R;
 import io.taucoin.torrent.publishing.core.storage.sqlite.RepositoryHelper;
 import io.taucoin.torrent.publishing.core.storage.sqlite.entity.ChatMsg;
@@ -24,7 +25,6 @@ import io.taucoin.torrent.publishing.core.storage.sqlite.repo.ChatRepository;
 import io.taucoin.torrent.publishing.core.utils.Formatter;
 import io.taucoin.torrent.publishing.core.utils.StringUtil;
 import io.taucoin.util.ByteUtil;
-import io.taucoin.util.CryptoUtil;
 
 /**
  * 根据图片信息的Hash，递归获取全部信息并显示
@@ -39,7 +39,7 @@ public class HashImageView extends RoundImageView {
     private ChatRepository chatRepo;
     private String imageHash;
     private byte[] senderPk;
-    private byte[] cryptoKey;
+    private FriendCryptoContext cryptoContext;
     private byte[] totalBytes;
     private Disposable disposable;
     private boolean reload = false;
@@ -80,13 +80,13 @@ public class HashImageView extends RoundImageView {
      * @param imageHash
      * @param senderPk
      */
-    public void setImageHash(String imageHash, String senderPk, byte[] cryptoKey) {
+    public void setImageHash(String imageHash, String senderPk, FriendCryptoContext cryptoContext) {
         // 如果是图片已加载，并且显示的图片不变，直接返回
         if (isLoadSuccess && totalBytes != null
                 && StringUtil.isEquals(imageHash, this.imageHash)) {
             return;
         }
-        this.cryptoKey = cryptoKey;
+        this.cryptoContext = cryptoContext;
         this.imageHash = imageHash;
         this.senderPk = ByteUtil.toByte(senderPk);
         setImageHash(ByteUtil.toByte(imageHash), senderPk);
@@ -142,7 +142,7 @@ public class HashImageView extends RoundImageView {
         ChatMsg chatMsg = chatRepo.queryChatMsg(senderPk, hash);
         if (chatMsg != null) {
             if (chatMsg.content != null) {
-                content = CryptoUtil.decrypt(chatMsg.content, cryptoKey);
+                content = cryptoContext.decrypt(chatMsg.content);
             }
         }
         if (!emitter.isCancelled()) {
@@ -195,7 +195,7 @@ public class HashImageView extends RoundImageView {
         // 加在View
         if (reload && StringUtil.isNotEmpty(imageHash)
                 && disposable != null && disposable.isDisposed()) {
-            setImageHash(imageHash, ByteUtil.toHexString(senderPk), cryptoKey);
+            setImageHash(imageHash, ByteUtil.toHexString(senderPk), cryptoContext);
         }
         reload = false;
     }
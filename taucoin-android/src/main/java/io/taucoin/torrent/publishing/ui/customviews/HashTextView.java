@@ -17,11 +17,11 @@ import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
+import io.taucoin.communication.FriendCryptoContext;
 import io.taucoin.torrent.publishing.MainApplication;
 import io.taucoin.torrent.publishing.core.utils.StringUtil;
 import io.taucoin.torrent.publishing.core.utils.Utils;
 import io.taucoin.util.ByteUtil;
-import io.taucoin.util.CryptoUtil;
 
 /**
  * 根据文本信息的Hash，递归获取全部信息并显示
@@ -82,15 +82,15 @@ public class HashTextView extends TextView {
         }
         disposable = Flowable.create((FlowableOnSubscribe<String>) emitter -> {
             try {
-                byte[] cryptoKey;
+                FriendCryptoContext cryptoContext;
                 long startTime = System.currentTimeMillis();
                 if (StringUtil.isEquals(senderPk, MainApplication.getInstance().getPublicKey())) {
-                    cryptoKey = Utils.keyExchange(receiverPk, MainApplication.getInstance().getSeed());
+                    cryptoContext = Utils.getCryptoContext(receiverPk, MainApplication.getInstance().getSeed());
                 } else {
-                    cryptoKey = Utils.keyExchange(senderPk, MainApplication.getInstance().getSeed());
+                    cryptoContext = Utils.getCryptoContext(senderPk, MainApplication.getInstance().getSeed());
                 }
                 long keyExchangeTime = System.currentTimeMillis() - startTime;
-                byte[] rawContentTemp = CryptoUtil.decrypt(content, cryptoKey);
+                byte[] rawContentTemp = cryptoContext.decrypt(content);
                 String rawContentStr = Utils.textBytesToString(rawContentTemp);
                 long decryptTime = System.currentTimeMillis() - startTime;
                 String rawContentLog = rawContentStr.length() > 50 ?
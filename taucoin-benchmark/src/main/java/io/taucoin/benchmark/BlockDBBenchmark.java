@@ -0,0 +1,138 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.taucoin.db.BlockStore;
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+
+/**
+ * 区块存储的同步追加、随机读取和分叉切换，store参数比较BlockDB和BlockLogStore。
+ * BlockLogStore中低于最佳区块WARNING_RANGE的主链区块在区块日志中，随机读取大部分落在日志上。
+ */
+public class BlockDBBenchmark {
+
+    /**
+     * 预先同步了一段主链
+     */
+    public abstract static class Chain extends StorageState {
+
+        @Param({"10000"})
+        public int blocks;
+
+        @Param({BLOCK_DB, BLOCK_LOG_STORE})
+        public String store;
+
+        BlockStore blockStore;
+
+        List<BlockContainer> mainChain;
+
+        void sync(Random random) throws Exception {
+            this.blockStore = newBlockStore("block", this.store);
+            this.mainChain = Workloads.makeChain(random, 0, this.blocks,
+                    Workloads.bytes(random, ChainParam.HashLength));
+            for (BlockContainer blockContainer: this.mainChain) {
+                this.blockStore.saveBlockContainer(Workloads.CHAIN_ID, blockContainer, true);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Append extends Chain {
+
+        private final Random random = new Random(2);
+
+        private BlockContainer tip;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            sync(this.random);
+            this.tip = this.mainChain.get(this.mainChain.size() - 1);
+            this.mainChain = null;
+            startMeasuring();
+        }
+
+        BlockContainer next() {
+            Block block = this.tip.getBlock();
+            this.tip = Workloads.makeBlockContainer(this.random, block.getBlockNum() + 1, block.getBlockHash());
+            return this.tip;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Lookup extends Chain {
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            sync(new Random(3));
+            startMeasuring();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Fork extends Chain {
+
+        // 分叉深度，不超过MUTABLE_RANGE
+        @Param({"16", "128"})
+        public int depth;
+
+        private List<BlockContainer> undo = new ArrayList<>();
+
+        private List<BlockContainer> connect = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            Random random = new Random(4);
+            sync(random);
+
+            // 在最佳区块之下depth处分叉，分叉链比主链长一个区块
+            BlockContainer parent = this.mainChain.get(this.blocks - 1 - this.depth);
+            List<BlockContainer> forkChain = Workloads.makeChain(random, parent.getBlock().getBlockNum() + 1,
+                    this.depth + 1, parent.getBlock().getBlockHash());
+            for (BlockContainer blockContainer: forkChain) {
+                this.blockStore.saveBlockContainer(Workloads.CHAIN_ID, blockContainer, false);
+            }
+
+            this.blockStore.getForkBlockContainersInfo(Workloads.CHAIN_ID, forkChain.get(this.depth),
+                    this.mainChain.get(this.blocks - 1), this.undo, this.connect);
+            startMeasuring();
+        }
+
+        /**
+         * 在两条链之间来回切换
+         */
+        void reBranch() throws Exception {
+            this.blockStore.reBranchBlocksWithContainers(Workloads.CHAIN_ID, this.undo, this.connect);
+            List<BlockContainer> list = this.undo;
+            this.undo = this.connect;
+            this.connect = list;
+        }
+    }
+
+    @Benchmark
+    public void syncAppend(Append state) throws Exception {
+        state.blockStore.saveBlockContainer(Workloads.CHAIN_ID, state.next(), true);
+    }
+
+    @Benchmark
+    public Block randomLookup(Lookup state) throws Exception {
+        return state.blockStore.getMainChainBlockByNumber(Workloads.CHAIN_ID,
+                ThreadLocalRandom.current().nextInt(state.blocks));
+    }
+
+    @Benchmark
+    public void forkSwitch(Fork state) throws Exception {
+        state.reBranch();
+    }
+}
@@ -0,0 +1,147 @@
+package io.taucoin.benchmark;
+
+import com.frostwire.jlibtorrent.Pair;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.account.AccountManager;
+import io.taucoin.chain.Chains;
+import io.taucoin.db.BlockDB;
+import io.taucoin.db.MemoryDatabase;
+import io.taucoin.db.PrefixKey;
+import io.taucoin.db.StateDBImpl;
+import io.taucoin.listener.TauListener;
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.BlockContainer;
+
+/**
+ * 重启时启动所有follow的链：没有链摘要时逐条链往回读取区块(walking)，
+ * 有摘要时逐条启动(summary)，以及有摘要时并行启动(parallel)。
+ * 数据库是内存数据库，每次点查询等待固定延迟模拟磁盘。
+ */
+public class ChainStartupBenchmark {
+
+    public static final String WALKING = "walking";
+
+    public static final String SUMMARY = "summary";
+
+    public static final String PARALLEL = "parallel";
+
+    @State(Scope.Benchmark)
+    public static class Startup {
+
+        @Param({WALKING, SUMMARY, PARALLEL})
+        public String mode;
+
+        @Param({"20"})
+        public int chains;
+
+        // 模拟磁盘点查询的延迟
+        @Param({"50000"})
+        public long readDelayNanos;
+
+        MemoryDatabase blockDatabase;
+
+        MemoryDatabase stateDatabase;
+
+        BlockDB blockDB;
+
+        StateDBImpl stateDB;
+
+        List<byte[]> chainIDs;
+
+        Chains started;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            Random random = new Random(1);
+            if (null == AccountManager.getInstance().getKeyPair()) {
+                AccountManager.getInstance().updateKey(new Pair<>(Workloads.bytes(random, ChainParam.PubkeyLength),
+                        Workloads.bytes(random, 64)));
+            }
+
+            this.blockDatabase = new MemoryDatabase();
+            this.stateDatabase = new MemoryDatabase();
+            this.blockDB = new BlockDB(this.blockDatabase);
+            this.stateDB = new StateDBImpl(this.stateDatabase);
+
+            this.chainIDs = new ArrayList<>(this.chains);
+            for (int c = 0; c < this.chains; c++) {
+                byte[] chainID = ("bench" + c + "#300#" + c).getBytes();
+                byte[] previousHash = Workloads.bytes(random, ChainParam.HashLength);
+                for (BlockContainer blockContainer: Workloads.makeChain(random, 0,
+                        ChainParam.MUTABLE_RANGE + 12, previousHash)) {
+                    this.blockDB.saveBlockContainer(chainID, blockContainer, true);
+                    this.stateDB.addPeer(chainID, blockContainer.getBlock().getMinerPubkey());
+                    previousHash = blockContainer.getBlock().getBlockHash();
+                }
+
+                this.stateDB.setBestBlockHash(chainID, previousHash);
+                this.stateDB.followChain(chainID);
+                this.chainIDs.add(chainID);
+            }
+
+            // 第一次启动写入链摘要
+            Chains chains = new Chains(this.blockDB, this.stateDB, newListener());
+            chains.startChains(this.chainIDs);
+            chains.stop();
+
+            this.blockDatabase.setReadDelay(this.readDelayNanos);
+            this.stateDatabase.setReadDelay(this.readDelayNanos);
+        }
+
+        /**
+         * walking每次删除链摘要，相当于升级前的数据库
+         */
+        @Setup(Level.Invocation)
+        public void prepare() throws Exception {
+            if (WALKING.equals(this.mode)) {
+                for (byte[] chainID: this.chainIDs) {
+                    this.stateDatabase.delete(PrefixKey.chainSummaryKey(chainID));
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void stop() {
+            if (null != this.started) {
+                this.started.stop();
+                this.started = null;
+            }
+        }
+    }
+
+    private static TauListener newListener() {
+        return (TauListener) Proxy.newProxyInstance(TauListener.class.getClassLoader(),
+                new Class<?>[] {TauListener.class}, (proxy, method, args) -> null);
+    }
+
+    @Benchmark
+    public int startAllChains(Startup state) throws Exception {
+        Chains chains = new Chains(state.blockDB, state.stateDB, newListener());
+        state.started = chains;
+
+        if (PARALLEL.equals(state.mode)) {
+            return chains.startChains(state.chainIDs);
+        }
+
+        int started = 0;
+        for (byte[] chainID: state.chainIDs) {
+            if (chains.startChain(chainID)) {
+                started++;
+            }
+        }
+        return started;
+    }
+}
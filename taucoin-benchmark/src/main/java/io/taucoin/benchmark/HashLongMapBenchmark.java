@@ -0,0 +1,119 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.HashLongMap;
+
+/**
+ * 以哈希或公钥为key、时间戳为value的映射：HashMap<ByteArrayWrapper, Long>与HashLongMap(堆内、堆外)
+ * 的查询和更新，结束时输出建表后的堆占用，相当于PeerManager和Communication中的朋友、item时间表。
+ */
+public class HashLongMapBenchmark {
+
+    public static final String HASH_MAP = "HashMap";
+
+    public static final String HASH_LONG_MAP = "HashLongMap";
+
+    public static final String OFF_HEAP = "HashLongMap-offheap";
+
+    @State(Scope.Benchmark)
+    public static class Table {
+
+        @Param({HASH_MAP, HASH_LONG_MAP, OFF_HEAP})
+        public String map;
+
+        @Param({"100000"})
+        public int keys;
+
+        // 20字节的item哈希，32字节的公钥
+        @Param({"20"})
+        public int keyLength;
+
+        Map<ByteArrayWrapper, Long> hashMap;
+
+        HashLongMap hashLongMap;
+
+        byte[][] keyArray;
+
+        private long heapBytes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(3);
+            this.keyArray = new byte[this.keys][];
+            for (int i = 0; i < this.keys; i++) {
+                this.keyArray[i] = Workloads.bytes(random, this.keyLength);
+            }
+
+            long base = usedHeap();
+            if (HASH_MAP.equals(this.map)) {
+                this.hashMap = new HashMap<>();
+                for (int i = 0; i < this.keys; i++) {
+                    // 模拟从网络收到的key，每次是新的数组
+                    this.hashMap.put(new ByteArrayWrapper(this.keyArray[i].clone()), (long) i);
+                }
+            } else {
+                this.hashLongMap = new HashLongMap(this.keyLength, this.keys, OFF_HEAP.equals(this.map));
+                for (int i = 0; i < this.keys; i++) {
+                    this.hashLongMap.put(this.keyArray[i], i);
+                }
+            }
+            this.heapBytes = usedHeap() - base;
+        }
+
+        @TearDown(Level.Trial)
+        public void report() {
+            StringBuilder report = new StringBuilder();
+            report.append(this.map).append(": ").append(this.keys).append(" keys, heap ").append(this.heapBytes);
+            if (null != this.hashLongMap) {
+                report.append(", table bytes ").append(this.hashLongMap.getMemoryBytes());
+            }
+            System.out.println(report);
+        }
+
+        byte[] randomKey() {
+            return this.keyArray[ThreadLocalRandom.current().nextInt(this.keys)];
+        }
+    }
+
+    static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public long get(Table state) {
+        byte[] key = state.randomKey();
+        if (null != state.hashMap) {
+            Long value = state.hashMap.get(new ByteArrayWrapper(key));
+            return null == value ? -1 : value;
+        }
+        return state.hashLongMap.get(key, -1);
+    }
+
+    @Benchmark
+    public void put(Table state) {
+        byte[] key = state.randomKey();
+        long value = ThreadLocalRandom.current().nextLong();
+        if (null != state.hashMap) {
+            state.hashMap.put(new ByteArrayWrapper(key.clone()), value);
+        } else {
+            state.hashLongMap.put(key, value);
+        }
+    }
+}
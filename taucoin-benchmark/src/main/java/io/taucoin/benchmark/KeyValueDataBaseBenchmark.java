@@ -0,0 +1,81 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.taucoin.db.CountingDatabase;
+
+/**
+ * KeyValueDataBase本身的点读、点写和批量写。
+ */
+public class KeyValueDataBaseBenchmark {
+
+    // 与账户key相近的大小
+    private static final int KEY_SIZE = 48;
+
+    private static final int VALUE_SIZE = 100;
+
+    private static final int BATCH_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class Database extends StorageState {
+
+        @Param({"100000"})
+        public int keys;
+
+        CountingDatabase db;
+
+        byte[][] keyList;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.db = newDatabase("kv");
+
+            Random random = new Random(1);
+            this.keyList = new byte[this.keys][];
+            Map<byte[], byte[]> rows = new HashMap<>();
+            for (int i = 0; i < this.keys; i++) {
+                this.keyList[i] = Workloads.bytes(random, KEY_SIZE);
+                rows.put(this.keyList[i], Workloads.bytes(random, VALUE_SIZE));
+                if (rows.size() >= 1000) {
+                    this.db.updateBatch(rows);
+                    rows.clear();
+                }
+            }
+            this.db.updateBatch(rows);
+            startMeasuring();
+        }
+
+        byte[] randomKey() {
+            return this.keyList[ThreadLocalRandom.current().nextInt(this.keyList.length)];
+        }
+    }
+
+    @Benchmark
+    public byte[] get(Database state) throws Exception {
+        return state.db.get(state.randomKey());
+    }
+
+    @Benchmark
+    public void put(Database state) throws Exception {
+        state.db.put(state.randomKey(), Workloads.bytes(ThreadLocalRandom.current(), VALUE_SIZE));
+    }
+
+    @Benchmark
+    public void updateBatch(Database state) throws Exception {
+        Map<byte[], byte[]> rows = new HashMap<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            rows.put(state.randomKey(), Workloads.bytes(ThreadLocalRandom.current(), VALUE_SIZE));
+        }
+        state.db.updateBatch(rows);
+    }
+}
@@ -0,0 +1,71 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.taucoin.core.ProofOfTransaction;
+import io.taucoin.param.ChainParam;
+
+/**
+ * 每个区块的POT检查(计算hit并验证)：原有BigInteger路径与long路径的吞吐量对比，
+ * 两者结果一致由ProofOfTransactionLongTest保证。
+ */
+public class ProofOfTransactionBenchmark {
+
+    public static final String BIG_INTEGER = "BigInteger";
+
+    public static final String LONG = "long";
+
+    @State(Scope.Benchmark)
+    public static class Pot {
+
+        @Param({BIG_INTEGER, LONG})
+        public String path;
+
+        @Param({"1024"})
+        public int signatures;
+
+        ProofOfTransaction pot;
+
+        BigInteger baseTarget;
+
+        BigInteger power;
+
+        byte[][] genSigs;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.pot = new ProofOfTransaction(Workloads.CHAIN_ID);
+            this.baseTarget = new BigInteger("21D0369D036978", 16);
+            this.power = BigInteger.valueOf(117);
+
+            Random random = new Random(37);
+            this.genSigs = new byte[this.signatures][];
+            for (int i = 0; i < this.signatures; i++) {
+                this.genSigs[i] = Workloads.bytes(random, ChainParam.HashLength);
+            }
+        }
+
+        byte[] randomGenSig() {
+            return this.genSigs[ThreadLocalRandom.current().nextInt(this.signatures)];
+        }
+    }
+
+    @Benchmark
+    public boolean verifyHit(Pot state) {
+        byte[] genSig = state.randomGenSig();
+        if (BIG_INTEGER.equals(state.path)) {
+            return state.pot.verifyHit(state.pot.calculateRandomHit(genSig),
+                    state.baseTarget, state.power, ChainParam.DEFAULT_BLOCK_TIME);
+        }
+        return state.pot.verifyHit(genSig, state.baseTarget, state.power, ChainParam.DEFAULT_BLOCK_TIME);
+    }
+}
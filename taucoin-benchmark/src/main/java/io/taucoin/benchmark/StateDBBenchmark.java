@@ -0,0 +1,191 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.taucoin.core.AccountState;
+import io.taucoin.db.AccountCache;
+import io.taucoin.db.BlockDB;
+import io.taucoin.db.DBException;
+import io.taucoin.db.PrefixKey;
+import io.taucoin.db.StateDBImpl;
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * StateDB的账户读改写、peer前缀扫描，以及停止follow时删除链的全部数据。
+ */
+public class StateDBBenchmark {
+
+    // 其他链的数量，前缀扫描和删除时需要跳过它们的数据
+    private static final int OTHER_CHAINS = 3;
+
+    private static byte[] otherChainID(int index) {
+        return ("other" + index + "#300#1").getBytes();
+    }
+
+    private static void addAccounts(StateDBImpl stateDB, byte[] chainID, byte[][] pubKeys) throws DBException {
+        Map<ByteArrayWrapper, AccountState> accounts = new HashMap<>();
+        for (byte[] pubKey: pubKeys) {
+            accounts.put(new ByteArrayWrapper(pubKey), new AccountState(BigInteger.valueOf(1000000), BigInteger.ZERO));
+            if (accounts.size() >= 1000) {
+                stateDB.updateAccounts(chainID, accounts);
+                accounts.clear();
+            }
+        }
+        stateDB.updateAccounts(chainID, accounts);
+    }
+
+    private static void addPeers(StateDBImpl stateDB, byte[] chainID, Random random, int peers) throws DBException {
+        Map<byte[], byte[]> rows = new HashMap<>();
+        for (int i = 0; i < peers; i++) {
+            rows.put(PrefixKey.peerKey(chainID, Workloads.bytes(random, ChainParam.PubkeyLength)), new byte[1]);
+        }
+        stateDB.updateBatch(rows);
+    }
+
+    private static byte[][] pubKeys(int count) {
+        byte[][] pubKeys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            pubKeys[i] = Workloads.pubKey(i);
+        }
+        return pubKeys;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Accounts extends StorageState {
+
+        @Param({"100000"})
+        public int accounts;
+
+        // 缓存远小于账户数，大部分读取落到数据库
+        @Param({"1024"})
+        public int cacheCapacity;
+
+        StateDBImpl stateDB;
+
+        byte[][] pubKeys;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.stateDB = new StateDBImpl(newDatabase("state"), new AccountCache(this.cacheCapacity));
+            this.pubKeys = pubKeys(this.accounts);
+            addAccounts(this.stateDB, Workloads.CHAIN_ID, this.pubKeys);
+            startMeasuring();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Peers extends StorageState {
+
+        @Param({"1000"})
+        public int peers;
+
+        StateDBImpl stateDB;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.stateDB = new StateDBImpl(newDatabase("state"));
+
+            Random random = new Random(5);
+            for (int i = 0; i < OTHER_CHAINS; i++) {
+                addPeers(this.stateDB, otherChainID(i), random, this.peers);
+            }
+            addPeers(this.stateDB, Workloads.CHAIN_ID, random, this.peers);
+            startMeasuring();
+        }
+    }
+
+    /**
+     * 每次调用前重新写入一条要删除的链
+     */
+    @State(Scope.Benchmark)
+    public static class Unfollow extends StorageState {
+
+        @Param({"1000"})
+        public int blocks;
+
+        @Param({"1000"})
+        public int accounts;
+
+        @Param({"100"})
+        public int peers;
+
+        private final Random random = new Random(6);
+
+        StateDBImpl stateDB;
+
+        BlockDB blockDB;
+
+        private byte[][] pubKeys;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.stateDB = new StateDBImpl(newDatabase("state"));
+            this.blockDB = new BlockDB(newDatabase("block"));
+            this.pubKeys = pubKeys(this.accounts);
+
+            for (int i = 0; i < OTHER_CHAINS; i++) {
+                addChain(otherChainID(i));
+            }
+        }
+
+        /**
+         * 重新写入的数据不计入写放大，只统计删除本身
+         */
+        @Setup(Level.Invocation)
+        public void follow() throws Exception {
+            stopMeasuring();
+            addChain(Workloads.CHAIN_ID);
+            startMeasuring();
+        }
+
+        private void addChain(byte[] chainID) throws Exception {
+            this.stateDB.followChain(chainID);
+            for (BlockContainer blockContainer: Workloads.makeChain(this.random, 0, this.blocks,
+                    Workloads.bytes(this.random, ChainParam.HashLength))) {
+                this.blockDB.saveBlockContainer(chainID, blockContainer, true);
+            }
+            addAccounts(this.stateDB, chainID, this.pubKeys);
+            addPeers(this.stateDB, chainID, this.random, this.peers);
+        }
+    }
+
+    @Benchmark
+    public AccountState accountReadModifyWrite(Accounts state) throws Exception {
+        byte[] pubKey = state.pubKeys[ThreadLocalRandom.current().nextInt(state.pubKeys.length)];
+        AccountState account = state.stateDB.getAccount(Workloads.CHAIN_ID, pubKey);
+        AccountState updated = new AccountState(account.getBalance().subtract(BigInteger.ONE),
+                account.getNonce().add(BigInteger.ONE));
+        state.stateDB.updateAccount(Workloads.CHAIN_ID, pubKey, updated);
+        return updated;
+    }
+
+    @Benchmark
+    public Set<byte[]> peerPrefixScan(Peers state) throws Exception {
+        return state.stateDB.getPeers(Workloads.CHAIN_ID);
+    }
+
+    /**
+     * 与Chains停止follow一条链时相同的删除
+     */
+    @Benchmark
+    public void unfollowDeletion(Unfollow state) throws Exception {
+        state.stateDB.unfollowChain(Workloads.CHAIN_ID);
+        state.blockDB.removeChainInfo(Workloads.CHAIN_ID);
+        state.stateDB.clearAllState(Workloads.CHAIN_ID);
+        state.stateDB.deleteAllPeers(Workloads.CHAIN_ID);
+    }
+}
@@ -0,0 +1,80 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储引擎基准测试入口：每个负载先测吞吐量(ops/s)，再采样延迟(p99)，最后汇总输出。
+ *
+ * 用法: StorageBenchmark [benchmark regexp]，例如"BlockDB"只运行BlockDBBenchmark。
+ * 写放大和磁盘占用在每个负载结束时由StorageState输出。
+ */
+public class StorageBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : StorageBenchmark.class.getPackage().getName() + ".*";
+
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include(include)
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .forks(1)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(5))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(5));
+
+        // 临时目录传给fork出来的JVM
+        String dir = System.getProperty(StorageState.DIR_PROPERTY);
+        if (null != dir) {
+            builder.jvmArgsAppend("-D" + StorageState.DIR_PROPERTY + "=" + dir);
+        }
+
+        report(new Runner(builder.build()).run());
+    }
+
+    private static void report(Collection<RunResult> results) {
+        // benchmark + params -> [ops/s, p99 us]
+        Map<String, double[]> rows = new TreeMap<>();
+        for (RunResult runResult: results) {
+            String name = runResult.getParams().getBenchmark();
+            name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+            List<String> params = new ArrayList<>();
+            for (String key: runResult.getParams().getParamsKeys()) {
+                params.add(key + "=" + runResult.getParams().getParam(key));
+            }
+            if (!params.isEmpty()) {
+                name += " " + params;
+            }
+
+            double[] row = rows.computeIfAbsent(name, k -> new double[] {Double.NaN, Double.NaN});
+            Result result = runResult.getPrimaryResult();
+            if (Mode.Throughput == runResult.getParams().getMode()) {
+                row[0] = result.getScore() * 1000000;
+            } else if (Mode.SampleTime == runResult.getParams().getMode()) {
+                row[1] = result.getStatistics().getPercentile(99);
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-70s %14s %12s", "Benchmark", "ops/s", "p99 us"));
+        for (Map.Entry<String, double[]> entry: rows.entrySet()) {
+            System.out.println(String.format("%-70s %14.1f %12.1f",
+                    entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+    }
+}
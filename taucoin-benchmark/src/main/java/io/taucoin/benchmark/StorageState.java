@@ -0,0 +1,274 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.CompressionType;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.taucoin.db.BlockDB;
+import io.taucoin.db.BlockLogStore;
+import io.taucoin.db.BlockStore;
+import io.taucoin.db.CountingDatabase;
+import io.taucoin.jtau.db.RocksDatabase;
+
+/**
+ * 基准测试的数据库状态：在临时目录中打开RocksDB，结束时报告写放大和磁盘占用，并删除临时目录。
+ * 写放大只统计startMeasuring和stopMeasuring之间的写入，准备数据的写入不计入。
+ *
+ * backend参数选择RocksDB的配置：rocksdb为默认配置(与taucoin-linux相同)，
+ * rocksdb-tuned加上布隆过滤器、64MB块缓存和LZ4压缩。
+ *
+ * 临时目录默认在java.io.tmpdir下，可以用-Dbenchmark.dir指定，写放大要求目录在块设备上(tmpfs没有磁盘写)。
+ */
+public abstract class StorageState {
+
+    public static final String DIR_PROPERTY = "benchmark.dir";
+
+    public static final String ROCKSDB = "rocksdb";
+
+    public static final String ROCKSDB_TUNED = "rocksdb-tuned";
+
+    public static final String BLOCK_DB = "BlockDB";
+
+    public static final String BLOCK_LOG_STORE = "BlockLogStore";
+
+    @Param({ROCKSDB, ROCKSDB_TUNED})
+    public String backend;
+
+    // rocksdb-tuned的打开选项，默认配置为null
+    private Options options;
+
+    private final List<CountingDatabase> databases = new ArrayList<>();
+
+    // 由BlockLogStore负责关闭的区块存储，它们的数据库不再单独关闭
+    private final List<BlockStore> blockStores = new ArrayList<>();
+
+    private final List<CountingDatabase> storeDatabases = new ArrayList<>();
+
+    private File dir;
+
+    private boolean measuring;
+
+    // 开始统计时本进程已写入磁盘的字节数
+    private long startWriteBytes;
+
+    // 已统计的逻辑写入字节数
+    private long measuredLogicalBytes;
+
+    // 已统计的磁盘写入字节数，-1表示无法读取
+    private long measuredWriteBytes;
+
+    // 已统计的按前缀删除次数，有则逻辑字节数偏小，不报告写放大
+    private long measuredPrefixDeletes;
+
+    // 写入不经过KeyValueDataBase的区块日志，逻辑字节数偏小，不报告写放大
+    private boolean hasBlockLog;
+
+    /**
+     * 在临时目录下打开一个新的数据库
+     * @param name 子目录名
+     * @return database
+     * @throws Exception database exception
+     */
+    protected CountingDatabase newDatabase(String name) throws Exception {
+        CountingDatabase db = createDatabase();
+        db.open(path(name));
+        this.databases.add(db);
+        return db;
+    }
+
+    /**
+     * 在临时目录下打开一个区块存储
+     * @param name 子目录名
+     * @param type BLOCK_DB或BLOCK_LOG_STORE
+     * @return block store
+     * @throws Exception database exception
+     */
+    protected BlockStore newBlockStore(String name, String type) throws Exception {
+        if (BLOCK_DB.equals(type)) {
+            return new BlockDB(newDatabase(name));
+        }
+        if (!BLOCK_LOG_STORE.equals(type)) {
+            throw new IllegalArgumentException("Unknown block store:" + type);
+        }
+
+        // BlockLogStore自己打开数据库，区块日志在同一临时目录下
+        CountingDatabase db = createDatabase();
+        BlockLogStore store = new BlockLogStore(db);
+        store.open(path(name));
+        this.storeDatabases.add(db);
+        this.blockStores.add(store);
+        this.hasBlockLog = true;
+        return store;
+    }
+
+    private CountingDatabase createDatabase() {
+        if (ROCKSDB_TUNED.equals(this.backend)) {
+            if (null == this.options) {
+                this.options = new Options()
+                        .setCreateIfMissing(true)
+                        .setCompressionType(CompressionType.LZ4_COMPRESSION)
+                        .setTableFormatConfig(new BlockBasedTableConfig()
+                                .setFilterPolicy(new BloomFilter(10, false))
+                                .setBlockCache(new LRUCache(64L << 20)));
+            }
+            return new CountingDatabase(new RocksDatabase(this.options));
+        }
+        if (!ROCKSDB.equals(this.backend)) {
+            throw new IllegalArgumentException("Unknown backend:" + this.backend);
+        }
+
+        return new CountingDatabase(new RocksDatabase());
+    }
+
+    private String path(String name) throws IOException {
+        if (null == this.dir) {
+            String parent = System.getProperty(DIR_PROPERTY, System.getProperty("java.io.tmpdir"));
+            this.dir = Files.createTempDirectory(Paths.get(parent), "taubench").toFile();
+        }
+
+        return new File(this.dir, name).getPath();
+    }
+
+    private List<CountingDatabase> allDatabases() {
+        List<CountingDatabase> list = new ArrayList<>(this.databases);
+        list.addAll(this.storeDatabases);
+        return list;
+    }
+
+    /**
+     * 准备数据之后开始统计写入
+     */
+    protected void startMeasuring() {
+        for (CountingDatabase db: allDatabases()) {
+            db.resetCounters();
+        }
+        this.startWriteBytes = processWriteBytes();
+        this.measuring = true;
+    }
+
+    /**
+     * 暂停统计，例如每次调用前重新准备数据时
+     */
+    protected void stopMeasuring() {
+        if (!this.measuring) {
+            return;
+        }
+        this.measuring = false;
+
+        for (CountingDatabase db: allDatabases()) {
+            this.measuredLogicalBytes += db.getLogicalBytes();
+            this.measuredPrefixDeletes += db.getPrefixDeletes();
+        }
+        long writeBytes = processWriteBytes();
+        if (writeBytes < 0 || this.startWriteBytes < 0 || this.measuredWriteBytes < 0) {
+            this.measuredWriteBytes = -1;
+        } else {
+            this.measuredWriteBytes += writeBytes - this.startWriteBytes;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabases() {
+        if (null == this.dir) {
+            return;
+        }
+
+        stopMeasuring();
+        for (BlockStore store: this.blockStores) {
+            store.close();
+        }
+        for (CountingDatabase db: this.databases) {
+            db.close();
+        }
+        this.blockStores.clear();
+        this.storeDatabases.clear();
+        this.databases.clear();
+        if (null != this.options) {
+            this.options.close();
+            this.options = null;
+        }
+
+        long diskBytes = size(this.dir);
+
+        StringBuilder report = new StringBuilder();
+        report.append(getClass().getSimpleName()).append('[').append(this.backend).append(']')
+                .append(": logical bytes written ").append(this.measuredLogicalBytes)
+                .append(", on-disk size ").append(diskBytes);
+        if (this.measuredWriteBytes >= 0) {
+            report.append(", device bytes written ").append(this.measuredWriteBytes);
+        }
+        if (this.hasBlockLog) {
+            report.append(", write amplification n/a (block log appends not counted)");
+        } else if (this.measuredPrefixDeletes > 0) {
+            report.append(", write amplification n/a (")
+                    .append(this.measuredPrefixDeletes).append(" prefix deletes not counted)");
+        } else if (this.measuredWriteBytes >= 0 && this.measuredLogicalBytes > 0) {
+            report.append(", write amplification ")
+                    .append(String.format("%.2f", (double) this.measuredWriteBytes / this.measuredLogicalBytes));
+        } else {
+            report.append(", write amplification n/a");
+        }
+        System.out.println(report);
+
+        delete(this.dir);
+        this.dir = null;
+        this.measuredLogicalBytes = 0;
+        this.measuredWriteBytes = 0;
+        this.measuredPrefixDeletes = 0;
+        this.hasBlockLog = false;
+    }
+
+    /**
+     * 从/proc/self/io读取本进程写入块设备的字节数，包括WAL、flush和compaction
+     * @return bytes, -1 if not available
+     */
+    static long processWriteBytes() {
+        try {
+            for (String line: Files.readAllLines(Paths.get("/proc/self/io"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("write_bytes:")) {
+                    return Long.parseLong(line.substring("write_bytes:".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+
+        return -1;
+    }
+
+    static long size(File file) {
+        File[] files = file.listFiles();
+        if (null == files) {
+            return file.length();
+        }
+
+        long size = 0;
+        for (File f: files) {
+            size += size(f);
+        }
+        return size;
+    }
+
+    static void delete(File file) {
+        File[] files = file.listFiles();
+        if (null != files) {
+            for (File f: files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,108 @@
+package io.taucoin.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.taucoin.core.WeightedCache;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 所有链共用的WeightedCache在多线程下的开销：单线程读取作为基准，
+ * 与多线程只读、读多写少混合比较，得到共用淘汰锁带来的竞争。
+ */
+public class WeightedCacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cache {
+
+        // 分区数，相当于链数
+        @Param({"8"})
+        public int chains;
+
+        // 每个分区的key数量，总量略大于预算，读取大部分命中
+        @Param({"4096"})
+        public int keys;
+
+        @Param({"1024"})
+        public int valueSize;
+
+        WeightedCache cache;
+
+        List<WeightedCache.Region<byte[]>> regions;
+
+        ByteArrayWrapper[] keyArray;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.cache = new WeightedCache(WeightedCache.DEFAULT_BUDGET);
+            this.regions = new ArrayList<>(this.chains);
+            for (int i = 0; i < this.chains; i++) {
+                this.regions.add(this.cache.newRegion(value -> value.length));
+            }
+
+            Random random = new Random(7);
+            this.keyArray = new ByteArrayWrapper[this.keys];
+            for (int i = 0; i < this.keys; i++) {
+                this.keyArray[i] = new ByteArrayWrapper(Workloads.bytes(random, 32));
+            }
+
+            for (WeightedCache.Region<byte[]> region: this.regions) {
+                for (ByteArrayWrapper key: this.keyArray) {
+                    region.put(key, new byte[this.valueSize]);
+                }
+            }
+        }
+
+        byte[] read() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return this.regions.get(random.nextInt(this.chains)).get(this.keyArray[random.nextInt(this.keys)]);
+        }
+
+        void write() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            this.regions.get(random.nextInt(this.chains))
+                    .put(this.keyArray[random.nextInt(this.keys)], new byte[this.valueSize]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] readSingleThread(Cache state) {
+        return state.read();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] readContended(Cache state) {
+        return state.read();
+    }
+
+    /**
+     * 7个线程读取，1个线程写入，写入需要淘汰锁
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public byte[] mixedRead(Cache state) {
+        return state.read();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite(Cache state) {
+        state.write();
+    }
+}
@@ -0,0 +1,79 @@
+package io.taucoin.benchmark;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.HorizontalItem;
+import io.taucoin.types.Transaction;
+import io.taucoin.types.VerticalItem;
+import io.taucoin.types.WiringCoinsTx;
+
+/**
+ * 合成的负载数据，大小与真实区块、账户相同，随机数种子固定以便重复。
+ */
+final class Workloads {
+
+    static final byte[] CHAIN_ID = "bench#300#1".getBytes();
+
+    private Workloads() {
+    }
+
+    static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 生成一个区块及其vertical item、horizontal item和交易，
+     * 各部分都存入数据库，BlockLogStore才能把区块移入区块日志
+     * @param random random
+     * @param number block number
+     * @param previousHash previous block hash
+     * @return block container
+     */
+    static BlockContainer makeBlockContainer(Random random, long number, byte[] previousHash) {
+        VerticalItem verticalItem = VerticalItem.with(previousHash);
+        Transaction tx = new WiringCoinsTx(1, CHAIN_ID, number, BigInteger.ONE,
+                bytes(random, ChainParam.PubkeyLength), BigInteger.valueOf(number + 1),
+                bytes(random, ChainParam.PubkeyLength), BigInteger.TEN, null, bytes(random, ChainParam.SignatureLength));
+        HorizontalItem horizontalItem = HorizontalItem.with(tx.getTxID());
+        Block block = new Block(1, number, number, verticalItem.getHash(), horizontalItem.getHash(),
+                bytes(random, ChainParam.HashLength), BigInteger.ONE, BigInteger.valueOf(number + 1),
+                bytes(random, ChainParam.HashLength), BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO,
+                BigInteger.ZERO, bytes(random, ChainParam.SignatureLength), bytes(random, ChainParam.PubkeyLength));
+        return new BlockContainer(block, verticalItem, horizontalItem, tx);
+    }
+
+    /**
+     * 生成从number开始的一段连续区块
+     * @param random random
+     * @param number first block number
+     * @param count block count
+     * @param previousHash hash of the parent of the first block
+     * @return block containers from low to high
+     */
+    static List<BlockContainer> makeChain(Random random, long number, int count, byte[] previousHash) {
+        List<BlockContainer> list = new ArrayList<>(count);
+        for (long i = number; i < number + count; i++) {
+            BlockContainer blockContainer = makeBlockContainer(random, i, previousHash);
+            list.add(blockContainer);
+            previousHash = blockContainer.getBlock().getBlockHash();
+        }
+        return list;
+    }
+
+    /**
+     * 第index个账户的公钥
+     * @param index account index
+     * @return public key
+     */
+    static byte[] pubKey(int index) {
+        return bytes(new Random(index), ChainParam.PubkeyLength);
+    }
+}
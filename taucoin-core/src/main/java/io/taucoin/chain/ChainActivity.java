@@ -0,0 +1,197 @@
+package io.taucoin.chain;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 链的活跃状态：记录每条链最近一次活动(本地操作、最佳区块变化、发现新tip)的时间，
+ * 超过空闲时间的链进入休眠，休眠的链只按间隔检查tip，
+ * 发现新tip或者用户操作时唤醒。
+ * 唤醒分两步：回调线程只标记待唤醒，由主循环或用户线程完成恢复，
+ * 保证每次休眠只恢复一次。
+ * 时间单位为秒，所有操作线程安全。
+ */
+public class ChainActivity {
+
+    // 每条链记录的已知tip数量
+    private static final int MAX_KNOWN_TIPS = 16;
+
+    private enum State {
+        ACTIVE,
+        HIBERNATING,
+        WAKING
+    }
+
+    private static class Record {
+        State state = State.ACTIVE;
+        // 最近一次活动时间
+        long lastActiveTime;
+        // 休眠后最近一次检查tip的时间
+        long lastTipCheckTime;
+        // 最近见过的tip区块哈希，旧的在前
+        final Set<ByteArrayWrapper> knownTips = new LinkedHashSet<>();
+
+        Record(long now) {
+            this.lastActiveTime = now;
+        }
+    }
+
+    private final long idleTime;
+
+    private final long tipCheckInterval;
+
+    private final Map<ByteArrayWrapper, Record> records = new HashMap<>();
+
+    /**
+     * @param idleTime 进入休眠的空闲时间
+     * @param tipCheckInterval 休眠后检查tip的间隔
+     */
+    public ChainActivity(long idleTime, long tipCheckInterval) {
+        this.idleTime = idleTime;
+        this.tipCheckInterval = tipCheckInterval;
+    }
+
+    private Record getRecord(ByteArrayWrapper chainID, long now) {
+        Record record = this.records.get(chainID);
+        if (null == record) {
+            record = new Record(now);
+            this.records.put(chainID, record);
+        }
+        return record;
+    }
+
+    /**
+     * 记录一次活动，休眠的链标记为待唤醒
+     * @param chainID chain ID
+     * @param now current time
+     */
+    public synchronized void touch(ByteArrayWrapper chainID, long now) {
+        Record record = getRecord(chainID, now);
+        record.lastActiveTime = now;
+        if (State.HIBERNATING == record.state) {
+            record.state = State.WAKING;
+        }
+    }
+
+    /**
+     * 收到tip区块哈希，没见过的tip算作一次活动
+     * @param chainID chain ID
+     * @param tipHash tip block hash
+     * @param now current time
+     * @return true if tip is new
+     */
+    public synchronized boolean onTip(ByteArrayWrapper chainID, byte[] tipHash, long now) {
+        Record record = getRecord(chainID, now);
+        if (!record.knownTips.add(new ByteArrayWrapper(tipHash))) {
+            return false;
+        }
+
+        if (record.knownTips.size() > MAX_KNOWN_TIPS) {
+            Iterator<ByteArrayWrapper> iterator = record.knownTips.iterator();
+            iterator.next();
+            iterator.remove();
+        }
+
+        touch(chainID, now);
+
+        return true;
+    }
+
+    /**
+     * 记录一次活动并立即转为活跃
+     * @param chainID chain ID
+     * @param now current time
+     * @return true if chain was hibernating or waking, caller should restore it
+     */
+    public synchronized boolean activate(ByteArrayWrapper chainID, long now) {
+        Record record = getRecord(chainID, now);
+        record.lastActiveTime = now;
+        if (State.ACTIVE == record.state) {
+            return false;
+        }
+
+        record.state = State.ACTIVE;
+        return true;
+    }
+
+    /**
+     * 活跃的链是否已空闲到可以休眠
+     * @param chainID chain ID
+     * @param now current time
+     * @return true if idle
+     */
+    public synchronized boolean isIdle(ByteArrayWrapper chainID, long now) {
+        Record record = getRecord(chainID, now);
+        return State.ACTIVE == record.state && now - record.lastActiveTime >= this.idleTime;
+    }
+
+    /**
+     * 进入休眠
+     * @param chainID chain ID
+     * @param now current time
+     */
+    public synchronized void hibernate(ByteArrayWrapper chainID, long now) {
+        Record record = getRecord(chainID, now);
+        record.state = State.HIBERNATING;
+        record.lastTipCheckTime = now;
+    }
+
+    /**
+     * 是否休眠，待唤醒的链不算休眠
+     * @param chainID chain ID
+     * @return true if hibernating
+     */
+    public synchronized boolean isHibernating(ByteArrayWrapper chainID) {
+        Record record = this.records.get(chainID);
+        return null != record && State.HIBERNATING == record.state;
+    }
+
+    /**
+     * 是否待唤醒
+     * @param chainID chain ID
+     * @return true if waking
+     */
+    public synchronized boolean isWaking(ByteArrayWrapper chainID) {
+        Record record = this.records.get(chainID);
+        return null != record && State.WAKING == record.state;
+    }
+
+    /**
+     * 休眠的链是否到了检查tip的时间，到时间则记录本次检查
+     * @param chainID chain ID
+     * @param now current time
+     * @return true if tip check is due
+     */
+    public synchronized boolean pollTipCheck(ByteArrayWrapper chainID, long now) {
+        Record record = this.records.get(chainID);
+        if (null == record || State.HIBERNATING != record.state
+                || now - record.lastTipCheckTime < this.tipCheckInterval) {
+            return false;
+        }
+
+        record.lastTipCheckTime = now;
+        return true;
+    }
+
+    public synchronized void remove(ByteArrayWrapper chainID) {
+        this.records.remove(chainID);
+    }
+
+    /**
+     * @return 休眠的链数量
+     */
+    public synchronized int getHibernatingNumber() {
+        int number = 0;
+        for (Record record: this.records.values()) {
+            if (State.HIBERNATING == record.state) {
+                number++;
+            }
+        }
+        return number;
+    }
+}
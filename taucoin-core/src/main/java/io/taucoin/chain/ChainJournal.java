@@ -0,0 +1,480 @@
+package io.taucoin.chain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.HorizontalItem;
+import io.taucoin.types.LocalDemand;
+import io.taucoin.types.Transaction;
+import io.taucoin.types.TransactionFactory;
+import io.taucoin.types.VerticalItem;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 链的事件日志：只追加、内存映射的文件，记录内存中正在进行的数据——
+ * 已下载的block container、本地demand、投票进度、远端交易，
+ * 重启后回放，继续之前的同步和投票，不必再从DHT重新获取。
+ *
+ * 记录格式：[类型 1字节][长度 4字节][内容][CRC32 4字节]，
+ * 回放到类型为0、长度越界或校验失败的记录为止，进程崩溃时写了一半的记录被丢弃。
+ * 打开时把最后一条完整记录之后的内容清零，否则新记录覆盖坏记录后，后面残留的旧记录会在下次回放时复活。
+ * 写入映射内存即进入页缓存，进程崩溃不丢失，压缩和关闭时刷到磁盘。
+ *
+ * 日志只追加，过时的记录由压缩清除：把当前内存状态写入新文件，再替换旧文件。
+ */
+public class ChainJournal {
+    private static final Logger logger = LoggerFactory.getLogger("ChainJournal");
+
+    // 初始映射大小
+    public static final int DEFAULT_MAPPED_SIZE = 1 << 20;
+
+    // 映射大小上限，写满后丢弃记录，等待压缩
+    public static final int MAX_MAPPED_SIZE = 64 << 20;
+
+    // 日志超过该大小且超过上次压缩后大小的两倍时压缩
+    public static final int MIN_COMPACTION_SIZE = 256 << 10;
+
+    private static final byte BLOCK_CONTAINER = 1;
+    private static final byte DEMAND = 2;
+    private static final byte VOTE = 3;
+    private static final byte VOTING_ROUND = 4;
+    private static final byte REMOTE_TX = 5;
+
+    // 类型 + 长度
+    private static final int HEADER_SIZE = 5;
+
+    // 清零尾部时每次检查的大小，已经为零的块不写，避免弄脏整个映射
+    private static final int ZERO_CHUNK_SIZE = 4096;
+
+    private static final int CRC_SIZE = 4;
+
+    /**
+     * 回放日志记录
+     */
+    public interface Replayer {
+        void onBlockContainer(ByteArrayWrapper key, BlockContainer blockContainer);
+
+        void onDemand(LocalDemand localDemand);
+
+        /**
+         * @param blockHash immutable block hash
+         * @param blockNumber immutable block number
+         * @param weight 票数
+         * @param time 唱票时间，单位毫秒
+         */
+        void onVote(byte[] blockHash, int blockNumber, double weight, long time);
+
+        /**
+         * @param counter 本轮已收到的选票数量
+         * @param tipBlock 本轮最难的tip区块，可能为null
+         */
+        void onVotingRound(int counter, Block tipBlock);
+
+        void onRemoteTx(Transaction tx);
+    }
+
+    /**
+     * 压缩时把当前内存状态写入新日志
+     */
+    public interface Compactor {
+        void write(ChainJournal journal);
+    }
+
+    private final File file;
+
+    private RandomAccessFile raf;
+
+    private MappedByteBuffer buffer;
+
+    // 下一条记录的写入位置
+    private int position = 0;
+
+    // 上次压缩后的大小
+    private int compactedSize = 0;
+
+    // 映射写满后丢弃的记录数量
+    private long droppedRecords = 0;
+
+    /**
+     * 打开日志，找到最后一条完整记录之后的位置
+     * @param file journal file
+     * @throws IOException io exception
+     */
+    public ChainJournal(File file) throws IOException {
+        this.file = file;
+        File parent = file.getParentFile();
+        if (null != parent && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create journal directory:" + parent);
+        }
+
+        open();
+        this.position = scan(null);
+        this.compactedSize = this.position;
+        zeroTail(this.position);
+    }
+
+    private void open() throws IOException {
+        this.raf = new RandomAccessFile(this.file, "rw");
+        long length = this.raf.length();
+        int size = DEFAULT_MAPPED_SIZE;
+        while (size < length && size < MAX_MAPPED_SIZE) {
+            size <<= 1;
+        }
+        this.buffer = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * 清零从恢复位置到映射末尾的内容，包括写了一半的记录和它后面的残留记录
+     * @param from 最后一条完整记录的结束位置
+     */
+    private void zeroTail(int from) {
+        byte[] chunk = new byte[ZERO_CHUNK_SIZE];
+        byte[] zeros = new byte[ZERO_CHUNK_SIZE];
+        boolean dirty = false;
+
+        int capacity = this.buffer.capacity();
+        for (int offset = from; offset < capacity; offset += ZERO_CHUNK_SIZE) {
+            int length = Math.min(ZERO_CHUNK_SIZE, capacity - offset);
+            this.buffer.position(offset);
+            this.buffer.get(chunk, 0, length);
+
+            for (int i = 0; i < length; i++) {
+                if (0 != chunk[i]) {
+                    this.buffer.position(offset);
+                    this.buffer.put(zeros, 0, length);
+                    dirty = true;
+                    break;
+                }
+            }
+        }
+
+        if (dirty) {
+            logger.warn("Journal[{}]: Cleared tail after {}", this.file.getName(), from);
+            this.buffer.force();
+        }
+    }
+
+    /**
+     * 回放所有完整的记录
+     * @param replayer replayer
+     */
+    public synchronized void replay(Replayer replayer) {
+        scan(replayer);
+    }
+
+    // 从头读取记录，返回最后一条完整记录的结束位置
+    private int scan(Replayer replayer) {
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(0);
+        CRC32 crc = new CRC32();
+
+        int end = 0;
+        while (view.remaining() >= HEADER_SIZE + CRC_SIZE) {
+            byte type = view.get();
+            int length = view.getInt();
+            if (0 == type || length < 0 || length > view.remaining() - CRC_SIZE) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            view.get(payload);
+            int checksum = view.getInt();
+
+            crc.reset();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Journal[{}]: Bad record at {}, drop the rest", this.file.getName(), end);
+                break;
+            }
+
+            if (null != replayer) {
+                try {
+                    dispatch(type, ByteBuffer.wrap(payload), replayer);
+                } catch (RuntimeException e) {
+                    // 无法解码的记录跳过，不影响后面的记录
+                    logger.error(e.getMessage(), e);
+                }
+            }
+
+            end = view.position();
+        }
+
+        return end;
+    }
+
+    private static void dispatch(byte type, ByteBuffer payload, Replayer replayer) {
+        switch (type) {
+            case BLOCK_CONTAINER: {
+                ByteArrayWrapper key = new ByteArrayWrapper(readBytes(payload));
+                Block block = new Block(readBytes(payload));
+                byte[] vertical = readBytes(payload);
+                byte[] horizontal = readBytes(payload);
+                byte[] tx = readBytes(payload);
+                replayer.onBlockContainer(key, new BlockContainer(block,
+                        null == vertical ? null : new VerticalItem(vertical),
+                        null == horizontal ? null : new HorizontalItem(horizontal),
+                        null == tx ? null : TransactionFactory.parseTransaction(tx)));
+                break;
+            }
+            case DEMAND: {
+                LocalDemand localDemand = new LocalDemand();
+                localDemand.setBlockHash(readBytes(payload));
+                localDemand.setTxHash(readBytes(payload));
+                localDemand.setHorizontalHash(readBytes(payload));
+                localDemand.setVerticalHash(readBytes(payload));
+                replayer.onDemand(localDemand);
+                break;
+            }
+            case VOTE: {
+                byte[] blockHash = readBytes(payload);
+                int blockNumber = payload.getInt();
+                double weight = payload.getDouble();
+                long time = payload.getLong();
+                replayer.onVote(blockHash, blockNumber, weight, time);
+                break;
+            }
+            case VOTING_ROUND: {
+                int counter = payload.getInt();
+                byte[] tipBlock = readBytes(payload);
+                replayer.onVotingRound(counter, null == tipBlock ? null : new Block(tipBlock));
+                break;
+            }
+            case REMOTE_TX: {
+                replayer.onRemoteTx(TransactionFactory.parseTransaction(readBytes(payload)));
+                break;
+            }
+            default: {
+                logger.error("Unknown journal record type:{}", type);
+            }
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > payload.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] data = new byte[length];
+        payload.get(data);
+        return data;
+    }
+
+    private static int sizeOf(byte[] data) {
+        return 4 + (null == data ? 0 : data.length);
+    }
+
+    private static void writeBytes(ByteBuffer payload, byte[] data) {
+        if (null == data) {
+            payload.putInt(-1);
+        } else {
+            payload.putInt(data.length);
+            payload.put(data);
+        }
+    }
+
+    /**
+     * 记录已下载的block container
+     * @param key block container key
+     * @param blockContainer block container
+     */
+    public void appendBlockContainer(ByteArrayWrapper key, BlockContainer blockContainer) {
+        byte[] block = blockContainer.getBlock().getEncoded();
+        byte[] vertical = null == blockContainer.getVerticalItem() ?
+                null : blockContainer.getVerticalItem().getEncoded();
+        byte[] horizontal = null == blockContainer.getHorizontalItem() ?
+                null : blockContainer.getHorizontalItem().getEncoded();
+        byte[] tx = null == blockContainer.getTx() ? null : blockContainer.getTx().getEncoded();
+
+        ByteBuffer payload = ByteBuffer.allocate(sizeOf(key.getData()) + sizeOf(block) +
+                sizeOf(vertical) + sizeOf(horizontal) + sizeOf(tx));
+        writeBytes(payload, key.getData());
+        writeBytes(payload, block);
+        writeBytes(payload, vertical);
+        writeBytes(payload, horizontal);
+        writeBytes(payload, tx);
+        append(BLOCK_CONTAINER, payload.array());
+    }
+
+    /**
+     * 记录本地demand，后面的记录覆盖前面的
+     * @param localDemand local demand
+     */
+    public void appendDemand(LocalDemand localDemand) {
+        byte[] blockHash = localDemand.getBlockHash();
+        byte[] txHash = localDemand.getTxHash();
+        byte[] horizontalHash = localDemand.getHorizontalHash();
+        byte[] verticalHash = localDemand.getVerticalHash();
+
+        ByteBuffer payload = ByteBuffer.allocate(sizeOf(blockHash) + sizeOf(txHash) +
+                sizeOf(horizontalHash) + sizeOf(verticalHash));
+        writeBytes(payload, blockHash);
+        writeBytes(payload, txHash);
+        writeBytes(payload, horizontalHash);
+        writeBytes(payload, verticalHash);
+        append(DEMAND, payload.array());
+    }
+
+    /**
+     * 记录一张选票
+     * @param blockHash immutable block hash
+     * @param blockNumber immutable block number
+     * @param weight 票数
+     * @param time 唱票时间，单位毫秒
+     */
+    public void appendVote(byte[] blockHash, int blockNumber, double weight, long time) {
+        ByteBuffer payload = ByteBuffer.allocate(sizeOf(blockHash) + 4 + 8 + 8);
+        writeBytes(payload, blockHash);
+        payload.putInt(blockNumber);
+        payload.putDouble(weight);
+        payload.putLong(time);
+        append(VOTE, payload.array());
+    }
+
+    /**
+     * 记录本轮投票进度，后面的记录覆盖前面的
+     * @param counter 本轮已收到的选票数量
+     * @param tipBlock 本轮最难的tip区块，可能为null
+     */
+    public void appendVotingRound(int counter, Block tipBlock) {
+        byte[] block = null == tipBlock ? null : tipBlock.getEncoded();
+        ByteBuffer payload = ByteBuffer.allocate(4 + sizeOf(block));
+        payload.putInt(counter);
+        writeBytes(payload, block);
+        append(VOTING_ROUND, payload.array());
+    }
+
+    /**
+     * 记录远端交易
+     * @param tx remote tx
+     */
+    public void appendRemoteTx(Transaction tx) {
+        byte[] encode = tx.getEncoded();
+        ByteBuffer payload = ByteBuffer.allocate(sizeOf(encode));
+        writeBytes(payload, encode);
+        append(REMOTE_TX, payload.array());
+    }
+
+    private synchronized void append(byte type, byte[] payload) {
+        int size = HEADER_SIZE + payload.length + CRC_SIZE;
+        if (this.position + size > this.buffer.capacity() && !grow(this.position + size)) {
+            this.droppedRecords++;
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        this.buffer.position(this.position);
+        this.buffer.put(type);
+        this.buffer.putInt(payload.length);
+        this.buffer.put(payload);
+        this.buffer.putInt((int) crc.getValue());
+        this.position += size;
+    }
+
+    // 扩大映射，旧的映射由GC释放
+    private boolean grow(int required) {
+        if (required > MAX_MAPPED_SIZE) {
+            return false;
+        }
+
+        int size = this.buffer.capacity();
+        while (size < required) {
+            size <<= 1;
+        }
+
+        try {
+            this.buffer = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return true;
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if journal has grown enough to be compacted
+     */
+    public synchronized boolean needsCompaction() {
+        return this.droppedRecords > 0 ||
+                (this.position > MIN_COMPACTION_SIZE && this.position > 2 * this.compactedSize);
+    }
+
+    /**
+     * 压缩：当前内存状态写入新日志，替换旧日志
+     * @param compactor writes current state into the new journal
+     * @throws IOException io exception
+     */
+    public synchronized void compact(Compactor compactor) throws IOException {
+        File tmp = new File(this.file.getPath() + ".tmp");
+        if (tmp.exists() && !tmp.delete()) {
+            throw new IOException("Cannot delete " + tmp);
+        }
+
+        ChainJournal compacted = new ChainJournal(tmp);
+        compactor.write(compacted);
+        compacted.close();
+
+        this.buffer.force();
+        this.raf.close();
+        if (!tmp.renameTo(this.file)) {
+            open();
+            throw new IOException("Cannot rename " + tmp);
+        }
+
+        open();
+        this.position = compacted.position;
+        this.compactedSize = this.position;
+        this.droppedRecords = 0;
+    }
+
+    public synchronized int size() {
+        return this.position;
+    }
+
+    /**
+     * 刷到磁盘
+     */
+    public synchronized void flush() {
+        this.buffer.force();
+    }
+
+    /**
+     * 刷到磁盘并关闭
+     */
+    public synchronized void close() {
+        try {
+            this.buffer.force();
+            this.raf.close();
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 关闭并删除日志
+     */
+    public synchronized void delete() {
+        close();
+        if (this.file.exists() && !this.file.delete()) {
+            logger.error("Cannot delete journal:{}", this.file);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import io.taucoin.core.TransactionPool;
 import io.taucoin.db.BlockStore;
 import io.taucoin.types.BlockContainer;
 import io.taucoin.db.BlockDB;
+import io.taucoin.db.BlockLogStore;
 import io.taucoin.db.KeyValueDataBaseFactory;
 import io.taucoin.db.StateDB;
 import io.taucoin.db.StateDBImpl;
@@ -56,7 +57,7 @@ public class ChainManager {
     private static final String STATE_PATH = "state";
 
     // block database
-    private BlockDB blockDB;
+    private BlockStore blockDB;
 
     // block store path
     private static final String BLOCK_PATH = "block";
@@ -67,13 +68,24 @@ public class ChainManager {
      * @param listener CompositeTauListener
      */
     public ChainManager(TauListener listener, KeyValueDataBaseFactory dbFactory) {
+        this(listener, dbFactory, false);
+    }
+
+    /**
+     * ChainManager constructor.
+     *
+     * @param listener CompositeTauListener
+     * @param useBlockLog 不可变的主链区块保存在区块日志中
+     */
+    public ChainManager(TauListener listener, KeyValueDataBaseFactory dbFactory, boolean useBlockLog) {
         this.listener = listener;
 
         // create state and block database.
         // If database does not exist, directly load.
         // If not exist, create log
         this.stateDB = new StateDBImpl(dbFactory.newDatabase());
-        this.blockDB = new BlockDB(dbFactory.newDatabase());
+        this.blockDB = useBlockLog ? new BlockLogStore(dbFactory.newDatabase()) :
+                new BlockDB(dbFactory.newDatabase());
 
         chains = new Chains(this.blockDB, this.stateDB, this.listener);
     }
@@ -123,9 +135,7 @@ public class ChainManager {
 //
 //            Set<byte[]> chainIDs = this.stateDB.getAllFollowedChains();
 //            if (null != chainIDs) {
-//                for (byte[] chainID: chainIDs) {
-//                    chains.startChain(chainID);
-//                }
+//                chains.startChains(chainIDs);
 //            }
 //
 //            chains.start();
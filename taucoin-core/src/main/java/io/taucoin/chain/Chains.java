@@ -6,16 +6,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.taucoin.account.AccountManager;
 import io.taucoin.core.AccountState;
@@ -25,11 +34,14 @@ import io.taucoin.core.ImportResult;
 import io.taucoin.core.LRUCache;
 import io.taucoin.core.PeerManager;
 import io.taucoin.core.ProofOfTransaction;
+import io.taucoin.core.SignatureCache;
 import io.taucoin.core.TransactionPool;
 import io.taucoin.core.TransactionPoolImpl;
 import io.taucoin.core.Vote;
 import io.taucoin.core.VotingPool;
+import io.taucoin.core.WeightedCache;
 import io.taucoin.db.BlockInfo;
+import io.taucoin.db.BlockPruner;
 import io.taucoin.db.BlockStore;
 import io.taucoin.db.DBException;
 import io.taucoin.db.StateDB;
@@ -41,6 +53,7 @@ import io.taucoin.dht.DHT;
 import io.taucoin.dht.DHTEngine;
 import io.taucoin.types.Block;
 import io.taucoin.types.BlockContainer;
+import io.taucoin.types.ChainSummary;
 import io.taucoin.types.DemandItem;
 import io.taucoin.types.HashList;
 import io.taucoin.types.HorizontalItem;
@@ -52,6 +65,7 @@ import io.taucoin.types.TypesConfig;
 import io.taucoin.types.VerticalItem;
 import io.taucoin.types.WiringCoinsTx;
 import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.Repo;
 
 /**
  * 主要功能：实现同时在多条链上同步/出块，以及与其它节点交互等任务
@@ -90,6 +104,12 @@ public class Chains implements DHT.GetDHTItemCallback{
     // 循环间隔时间
     private int loopIntervalTime = MIN_LOOP_INTERVAL_TIME;
 
+    // 并行启动链的线程数上限
+    private static final int STARTUP_THREADS = 8;
+
+    // 同步时一次导入、提交的区块数量上限
+    private static final int MAX_SYNC_RANGE = ChainParam.MUTABLE_RANGE;
+
     // mutable item salt: tip channel
     private final Map<ByteArrayWrapper, byte[]> tipSalts = Collections.synchronizedMap(new HashMap<>());
 
@@ -122,6 +142,16 @@ public class Chains implements DHT.GetDHTItemCallback{
     // the synced block container of current chain
     private final Map<ByteArrayWrapper, BlockContainer> syncBlockContainers = Collections.synchronizedMap(new HashMap<>());
 
+    // 挖矿定时器，最佳区块变化时计算下一次出块时间
+    private final MiningScheduler miningScheduler = new MiningScheduler();
+
+    // 链的活跃状态，长时间没有活动的链进入休眠
+    private final ChainActivity chainActivity = new ChainActivity(ChainParam.HIBERNATION_IDLE_TIME,
+            ChainParam.HIBERNATION_TIP_CHECK_INTERVAL);
+
+    // 主链最近区块哈希窗口，覆盖vertical item所需的哈希和可变范围内的分叉
+    private final Map<ByteArrayWrapper, HashWindow> hashWindows = Collections.synchronizedMap(new HashMap<>());
+
     // 时间记录器，用于处理定时事件
     private final Map<ByteArrayWrapper, Long> timeRecorders = Collections.synchronizedMap(new HashMap<>());
 
@@ -140,71 +170,102 @@ public class Chains implements DHT.GetDHTItemCallback{
     // 是否在投票状态标志: {key: chain ID, value: 是否进行投票标志}
     private final Map<ByteArrayWrapper, Boolean> votingFlag = Collections.synchronizedMap(new HashMap<>());
 
-    // 积累的投票所需区块: {key: chain ID, value: block list for voting}
-    private final Map<ByteArrayWrapper, List<Block>> votingBlocks = Collections.synchronizedMap(new HashMap<>());
+    // 本轮收到的选票数量: {key: chain ID, value: vote counter of this round}
+    private final Map<ByteArrayWrapper, AtomicInteger> votingCounters = Collections.synchronizedMap(new HashMap<>());
+
+    // 本轮投票收到的最难tip区块，投票结束后作为新tip候选: {key: chain ID, value: tip block}
+    private final Map<ByteArrayWrapper, Block> votingTipBlocks = Collections.synchronizedMap(new HashMap<>());
 
     // 交易池请求的交易: {key: chain ID, value: tx set for tx pool}
     private final Map<ByteArrayWrapper, Set<Transaction>> txMapForPool = Collections.synchronizedMap(new HashMap<>());
 
+    // 链的启动摘要，最佳区块变化时更新: {key: chain ID, value: chain summary}
+    private final Map<ByteArrayWrapper, ChainSummary> chainSummaries = Collections.synchronizedMap(new HashMap<>());
+
     // 区块容器数据集合: {key: chain ID, value: {key: block hash, value: block container} }，用于结果查询
     private final Map<ByteArrayWrapper, LRUCache.BlockContainerCache> blockContainerMap = Collections.synchronizedMap(new HashMap<>());
 
+    // 各数据类型的字节数
+    private static final WeightedCache.Weigher<Block> BLOCK_WEIGHER = block -> block.getEncoded().length;
+
+    private static final WeightedCache.Weigher<Transaction> TX_WEIGHER = tx -> tx.getEncoded().length;
+
+    private static final WeightedCache.Weigher<HashList> HASH_LIST_WEIGHER = item -> item.getEncoded().length;
+
+    private static final WeightedCache.Weigher<BlockContainer> BLOCK_CONTAINER_WEIGHER = container -> {
+        int weight = 0;
+        if (null != container.getBlock()) {
+            weight += container.getBlock().getEncoded().length;
+        }
+        if (null != container.getTx()) {
+            weight += container.getTx().getEncoded().length;
+        }
+        if (null != container.getVerticalItem()) {
+            weight += container.getVerticalItem().getEncoded().length;
+        }
+        if (null != container.getHorizontalItem()) {
+            weight += container.getHorizontalItem().getEncoded().length;
+        }
+        return weight;
+    };
+
+    // 所有链的区块、交易等数据共用的缓存，每条链每类数据一个分区，
+    // 同步所用的数据刚下载就要用，放在不经过准入的暂存分区，与原来一样每类最多MUTABLE_RANGE条
+    private final WeightedCache itemCache = new WeightedCache();
+
     // 区块数据集合: {key: chain ID, value: {key: block hash, value: block} }，用于缓存block，满载后清理
-    private final Map<ByteArrayWrapper, LRUCache.BlockCache> blockMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<Block>> blockMap = Collections.synchronizedMap(new HashMap<>());
 
     // 交易数据集合: {key: chain ID, value: {key: tx hash, value: Transaction} }， 用于缓存tx，满载后清理
-    private final Map<ByteArrayWrapper, LRUCache.TxCache> txMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<Transaction>> txMap = Collections.synchronizedMap(new HashMap<>());
 
     // horizontal item数据集合: {key: chain ID, value: {key: hash, value: horizontal item} }，用于缓存horizontal item，满载后清理
-    private final Map<ByteArrayWrapper, LRUCache.HorizontalItemCache> horizontalItemMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<HorizontalItem>> horizontalItemMap = Collections.synchronizedMap(new HashMap<>());
 
     // vertical item数据集合: {key: chain ID, value: {key: hash, value: vertical item} }，用于缓存vertical item，满载后清理
-    private final Map<ByteArrayWrapper, LRUCache.VerticalItemCache> verticalItemMap = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<VerticalItem>> verticalItemMap = Collections.synchronizedMap(new HashMap<>());
 
-    // 同步计数器，控制一次同步数量
-    private final Map<ByteArrayWrapper, Integer> syncCounter = Collections.synchronizedMap(new HashMap<>());
+    // 历史区块同步流水线: {key: chain ID, value: sync pipeline}
+    private final Map<ByteArrayWrapper, SyncPipeline> syncPipelines = Collections.synchronizedMap(new HashMap<>());
 
     // 同步所用区块容器数据集合: {key: chain ID, value: {key: block hash, value: block container} }
-    private final Map<ByteArrayWrapper, LRUCache.BlockContainerCache> blockContainerMapForSync = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<BlockContainer>> blockContainerMapForSync = Collections.synchronizedMap(new HashMap<>());
 
     // 同步所用区块数据集合: {key: chain ID, value: {key: block hash, value: block} }
-    private final Map<ByteArrayWrapper, LRUCache.BlockCache> blockMapForSync = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<Block>> blockMapForSync = Collections.synchronizedMap(new HashMap<>());
 
     // 同步所用交易数据集合: {key: chain ID, value: {key: tx hash, value: Transaction} }
-    private final Map<ByteArrayWrapper, LRUCache.TxCache> txMapForSync = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<Transaction>> txMapForSync = Collections.synchronizedMap(new HashMap<>());
 
     // 同步horizontal item数据集合: {key: chain ID, value: {key: hash, value: horizontal item} }，用于缓存horizontal item，满载后清理
-    private final Map<ByteArrayWrapper, LRUCache.HorizontalItemCache> horizontalItemMapForSync = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<HorizontalItem>> horizontalItemMapForSync = Collections.synchronizedMap(new HashMap<>());
 
     // 同步vertical item数据集合: {key: chain ID, value: {key: hash, value: vertical item} }，用于缓存vertical item，满载后清理
-    private final Map<ByteArrayWrapper, LRUCache.VerticalItemCache> verticalItemMapForSync = Collections.synchronizedMap(new HashMap<>());
+    private final Map<ByteArrayWrapper, WeightedCache.Region<VerticalItem>> verticalItemMapForSync = Collections.synchronizedMap(new HashMap<>());
 
     // 远端请求区块哈希数据集合: {key: chain ID, value: block hash set}
     private final Map<ByteArrayWrapper, LocalDemand> localDemandMap = Collections.synchronizedMap(new HashMap<>());
 
-    // 远端请求区块哈希数据集合: {key: chain ID, value: block hash set}
-    private final Map<ByteArrayWrapper, Set<ByteArrayWrapper>> blockHashMapFromDemand = Collections.synchronizedMap(new HashMap<>());
-
-    // 远端请求交易哈希数据集合: {key: chain ID, value: tx hash set}
-    private final Map<ByteArrayWrapper, Set<ByteArrayWrapper>> txHashMapFromDemand = Collections.synchronizedMap(new HashMap<>());
-
-    // 远端请求horizontal hash数据集合: {key: chain ID, value: horizontal hash set}
-    private final Map<ByteArrayWrapper, Set<ByteArrayWrapper>> horizontalHashMapFromDemand = Collections.synchronizedMap(new HashMap<>());
-
-    // 远端请求vertical hash数据集合: {key: chain ID, value: vertical hash set}
-    private final Map<ByteArrayWrapper, Set<ByteArrayWrapper>> verticalHashMapFromDemand = Collections.synchronizedMap(new HashMap<>());
+    // 远端需求回应聚合: {key: chain ID, value: demand responder}
+    private final Map<ByteArrayWrapper, DemandResponder> demandResponders = Collections.synchronizedMap(new HashMap<>());
 
     // 控制是否自己挖矿还是只同步
     private final Map<ByteArrayWrapper, Boolean> enableMineForTest = Collections.synchronizedMap(new HashMap<>());
 
-    // for test
-    private final Map<ByteArrayWrapper, Map<ByteArrayWrapper, Long>> tipSuccess = Collections.synchronizedMap(new HashMap<>());
+    // 事件日志目录
+    private static final String JOURNAL_PATH = "journal";
+
+    // 链的事件日志，重启后回放
+    private final Map<ByteArrayWrapper, ChainJournal> journals = Collections.synchronizedMap(new HashMap<>());
 
-    private final Map<ByteArrayWrapper, Map<ByteArrayWrapper, Long>> tipFailure = Collections.synchronizedMap(new HashMap<>());
+    // 上次记入日志的本地demand
+    private final Map<ByteArrayWrapper, LocalDemand> journaledDemands = Collections.synchronizedMap(new HashMap<>());
 
-    private final Map<ByteArrayWrapper, Map<ByteArrayWrapper, Long>> demandSuccess = Collections.synchronizedMap(new HashMap<>());
+    // 启动时从日志恢复、不必再向DHT请求的数据数量
+    private final Map<ByteArrayWrapper, Integer> journalRestoredItems = Collections.synchronizedMap(new HashMap<>());
 
-    private final Map<ByteArrayWrapper, Map<ByteArrayWrapper, Long>> demandFailure = Collections.synchronizedMap(new HashMap<>());
+    // 后台裁剪旧的分叉区块和主链历史
+    private final BlockPruner blockPruner;
 
     /**
      * Chain constructor.
@@ -216,6 +277,30 @@ public class Chains implements DHT.GetDHTItemCallback{
         this.blockStore = blockStore;
         this.stateDB = stateDB;
         this.tauListener = tauListener;
+        this.blockPruner = new BlockPruner(blockStore, this::getTipNumbers);
+    }
+
+    /**
+     * @return chain ID -> best block number
+     */
+    private Map<ByteArrayWrapper, Long> getTipNumbers() {
+        Map<ByteArrayWrapper, Long> tipNumbers = new HashMap<>();
+        synchronized (this.bestBlockContainers) {
+            for (Map.Entry<ByteArrayWrapper, BlockContainer> entry: this.bestBlockContainers.entrySet()) {
+                if (null != entry.getValue()) {
+                    tipNumbers.put(entry.getKey(), entry.getValue().getBlock().getBlockNum());
+                }
+            }
+        }
+        return tipNumbers;
+    }
+
+    /**
+     * get block pruner, for configuration and metrics
+     * @return block pruner
+     */
+    public BlockPruner getBlockPruner() {
+        return this.blockPruner;
     }
 
     /**
@@ -228,6 +313,8 @@ public class Chains implements DHT.GetDHTItemCallback{
         multiChainThread = new Thread(this::blockChainProcess);
         multiChainThread.start();
 
+        this.blockPruner.start();
+
         return true;
     }
 
@@ -238,6 +325,17 @@ public class Chains implements DHT.GetDHTItemCallback{
         if (null != multiChainThread) {
             multiChainThread.interrupt();
         }
+
+        this.blockPruner.stop();
+
+        // 停止挖矿计时线程
+        this.miningScheduler.shutdown();
+
+        synchronized (this.journals) {
+            for (ChainJournal journal: this.journals.values()) {
+                journal.flush();
+            }
+        }
     }
 
     /**
@@ -353,6 +451,7 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         if (this.chainIDs.contains(wChainID)) {
             logger.info("Chain:{} is followed.", wChainID.toString());
+            activateChain(wChainID);
             return true;
         }
 
@@ -369,12 +468,17 @@ public class Chains implements DHT.GetDHTItemCallback{
         // init state processor
         this.stateProcessors.put(wChainID, new StateProcessorImpl(chainID));
 
+        // 启动时分批转换旧版本区块信息，不留到第一次读写区块时在调用线程上转换
+        this.blockStore.migrateBlockInfos(chainID);
+
         byte[] bestBlockHash = this.stateDB.getBestBlockHash(chainID);
         if (null != bestBlockHash) {
             logger.info("Chain ID[{}]: Best block hash[{}]",
                     new String(chainID), Hex.toHexString(bestBlockHash));
             this.bestBlockContainers.put(wChainID,
                     this.blockStore.getBlockContainerByHash(chainID, bestBlockHash));
+
+            loadHashWindow(wChainID);
         }
 
         byte[] syncBlockHash = this.stateDB.getSyncBlockHash(chainID);
@@ -399,23 +503,20 @@ public class Chains implements DHT.GetDHTItemCallback{
             allPeers.add(new ByteArrayWrapper(AccountManager.getInstance().getKeyPair().first));
         }
 
-        // get from mutable block
+        // get priority peers in mutable range from chain summary
         BlockContainer bestBlockContainer = this.bestBlockContainers.get(wChainID);
-        if (null != bestBlockContainer && bestBlockContainer.getBlock().getBlockNum() > 0) {
-            // get priority peers in mutable range
-            priorityPeers.add(new ByteArrayWrapper(bestBlockContainer.getBlock().getMinerPubkey()));
-            byte[] previousHash = bestBlockContainer.getVerticalItem().getPreviousHash();
-            for (int i = 0; i < ChainParam.MUTABLE_RANGE; i++) {
-                BlockContainer blockContainer = this.blockStore.getBlockContainerByHash(chainID, previousHash);
-                if (null != blockContainer) {
-                    if (blockContainer.getBlock().getBlockNum() <= 0) {
-                        break;
-                    }
-                    priorityPeers.add(new ByteArrayWrapper(blockContainer.getBlock().getMinerPubkey()));
-                    previousHash = blockContainer.getVerticalItem().getPreviousHash();
-                } else {
-                    break;
-                }
+        if (null != bestBlockContainer) {
+            ChainSummary summary = this.stateDB.getChainSummary(chainID);
+            if (null == summary || !Arrays.equals(summary.getBestBlockHash(),
+                    bestBlockContainer.getBlock().getBlockHash())) {
+                // 没有摘要或者摘要已过时，从区块重建
+                summary = buildChainSummary(wChainID, bestBlockContainer);
+                this.stateDB.setChainSummary(chainID, summary);
+            }
+            this.chainSummaries.put(wChainID, summary);
+
+            for (byte[] miner: summary.getRecentMiners()) {
+                priorityPeers.add(new ByteArrayWrapper(miner));
             }
         }
 
@@ -448,52 +549,42 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         this.votingFlag.put(wChainID, false);
 
-        this.votingBlocks.put(wChainID, new ArrayList<>());
+        this.votingCounters.put(wChainID, new AtomicInteger(0));
 
         this.txMapForPool.put(wChainID, new HashSet<>());
 
         this.blockContainerMap.put(wChainID, new LRUCache.BlockContainerCache(ChainParam.WARNING_RANGE, false));
 
-        this.blockMap.put(wChainID, new LRUCache.BlockCache(ChainParam.WARNING_RANGE));
+        this.blockMap.put(wChainID, this.itemCache.newRegion(BLOCK_WEIGHER));
 
-        this.txMap.put(wChainID, new LRUCache.TxCache(ChainParam.WARNING_RANGE));
+        this.txMap.put(wChainID, this.itemCache.newRegion(TX_WEIGHER));
 
-        this.horizontalItemMap.put(wChainID, new LRUCache.HorizontalItemCache(ChainParam.WARNING_RANGE));
+        this.horizontalItemMap.put(wChainID, this.itemCache.newRegion(HASH_LIST_WEIGHER));
 
-        this.verticalItemMap.put(wChainID, new LRUCache.VerticalItemCache(ChainParam.WARNING_RANGE));
+        this.verticalItemMap.put(wChainID, this.itemCache.newRegion(HASH_LIST_WEIGHER));
 
-        this.syncCounter.put(wChainID, 0);
+        this.syncPipelines.put(wChainID, new SyncPipeline());
 
-        this.blockContainerMapForSync.put(wChainID, new LRUCache.BlockContainerCache(ChainParam.MUTABLE_RANGE));
+        this.blockContainerMapForSync.put(wChainID, this.itemCache.newStagingRegion(BLOCK_CONTAINER_WEIGHER, ChainParam.MUTABLE_RANGE));
 
-        this.blockMapForSync.put(wChainID, new LRUCache.BlockCache(ChainParam.MUTABLE_RANGE));
+        this.blockMapForSync.put(wChainID, this.itemCache.newStagingRegion(BLOCK_WEIGHER, ChainParam.MUTABLE_RANGE));
 
-        this.txMapForSync.put(wChainID, new LRUCache.TxCache(ChainParam.MUTABLE_RANGE));
+        this.txMapForSync.put(wChainID, this.itemCache.newStagingRegion(TX_WEIGHER, ChainParam.MUTABLE_RANGE));
 
-        this.horizontalItemMapForSync.put(wChainID, new LRUCache.HorizontalItemCache(ChainParam.MUTABLE_RANGE));
+        this.horizontalItemMapForSync.put(wChainID, this.itemCache.newStagingRegion(HASH_LIST_WEIGHER, ChainParam.MUTABLE_RANGE));
 
-        this.verticalItemMapForSync.put(wChainID, new LRUCache.VerticalItemCache(ChainParam.MUTABLE_RANGE));
+        this.verticalItemMapForSync.put(wChainID, this.itemCache.newStagingRegion(HASH_LIST_WEIGHER, ChainParam.MUTABLE_RANGE));
 
         this.localDemandMap.put(wChainID, new LocalDemand());
 
-        this.blockHashMapFromDemand.put(wChainID, new HashSet<>());
-
-        this.txHashMapFromDemand.put(wChainID, new HashSet<>());
-
-        this.horizontalHashMapFromDemand.put(wChainID, new HashSet<>());
-
-        this.verticalHashMapFromDemand.put(wChainID, new HashSet<>());
+        this.demandResponders.put(wChainID, new DemandResponder());
 
         this.enableMineForTest.put(wChainID, true);
 
-        // for test
-        this.tipSuccess.put(wChainID, new HashMap<>());
-
-        this.tipFailure.put(wChainID, new HashMap<>());
+        // 回放事件日志，继续重启前的同步和投票
+        openJournal(wChainID);
 
-        this.demandSuccess.put(wChainID, new HashMap<>());
-
-        this.demandFailure.put(wChainID, new HashMap<>());
+        this.chainActivity.touch(wChainID, System.currentTimeMillis() / 1000);
 
         // 把新链放入数据库
         this.stateDB.followChain(chainID);
@@ -504,6 +595,48 @@ public class Chains implements DHT.GetDHTItemCallback{
         return true;
     }
 
+    /**
+     * 并行启动多条链，各链的启动互不依赖，失败的链记录日志后跳过
+     * @param chainIDs chain IDs
+     * @return number of chains started
+     */
+    public int startChains(Collection<byte[]> chainIDs) {
+        Set<ByteArrayWrapper> uniqueChainIDs = new LinkedHashSet<>();
+        for (byte[] chainID: chainIDs) {
+            uniqueChainIDs.add(new ByteArrayWrapper(chainID));
+        }
+
+        if (uniqueChainIDs.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(STARTUP_THREADS, uniqueChainIDs.size()));
+        List<Future<Boolean>> futures = new ArrayList<>(uniqueChainIDs.size());
+        for (ByteArrayWrapper chainID: uniqueChainIDs) {
+            futures.add(executor.submit(() -> startChain(chainID.getData())));
+        }
+
+        int started = 0;
+        try {
+            for (Future<Boolean> future: futures) {
+                try {
+                    if (future.get()) {
+                        started++;
+                    }
+                } catch (ExecutionException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.info(e.getMessage(), e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return started;
+    }
+
     /**
      * remove all chain info in database
      * @param chainID chain ID
@@ -538,6 +671,12 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         this.syncBlockContainers.remove(chainID);
 
+        this.hashWindows.remove(chainID);
+
+        this.chainSummaries.remove(chainID);
+
+        this.miningScheduler.unschedule(chainID);
+
         this.peerManagers.remove(chainID);
 
         this.txPools.remove(chainID);
@@ -550,52 +689,55 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         this.votingFlag.remove(chainID);
 
-        this.votingBlocks.remove(chainID);
+        this.votingCounters.remove(chainID);
+
+        this.votingTipBlocks.remove(chainID);
 
         this.txMapForPool.remove(chainID);
 
         this.blockContainerMap.remove(chainID);
 
-        this.blockMap.remove(chainID);
+        clearRegion(this.blockMap.remove(chainID));
 
-        this.txMap.remove(chainID);
+        clearRegion(this.txMap.remove(chainID));
 
-        this.horizontalItemMap.remove(chainID);
+        clearRegion(this.horizontalItemMap.remove(chainID));
 
-        this.verticalItemMap.remove(chainID);
+        clearRegion(this.verticalItemMap.remove(chainID));
 
-        this.blockContainerMapForSync.remove(chainID);
+        clearRegion(this.blockContainerMapForSync.remove(chainID));
 
-        this.syncCounter.remove(chainID);
+        this.syncPipelines.remove(chainID);
 
-        this.blockMapForSync.remove(chainID);
+        clearRegion(this.blockMapForSync.remove(chainID));
 
-        this.txMapForSync.remove(chainID);
+        clearRegion(this.txMapForSync.remove(chainID));
 
-        this.horizontalItemMapForSync.remove(chainID);
+        clearRegion(this.horizontalItemMapForSync.remove(chainID));
 
-        this.verticalItemMapForSync.remove(chainID);
+        clearRegion(this.verticalItemMapForSync.remove(chainID));
 
         this.localDemandMap.remove(chainID);
 
-        this.blockHashMapFromDemand.remove(chainID);
+        this.demandResponders.remove(chainID);
 
-        this.txHashMapFromDemand.remove(chainID);
+        this.enableMineForTest.remove(chainID);
 
-        this.horizontalHashMapFromDemand.remove(chainID);
+        this.chainActivity.remove(chainID);
 
-        this.verticalHashMapFromDemand.remove(chainID);
+        ChainJournal journal = this.journals.remove(chainID);
+        if (null != journal) {
+            journal.delete();
+        }
 
-        this.enableMineForTest.remove(chainID);
+        this.journaledDemands.remove(chainID);
+
+        this.journalRestoredItems.remove(chainID);
 
         // for test
-        this.tipSuccess.remove(chainID);
 
-        this.tipFailure.remove(chainID);
 
-        this.demandSuccess.remove(chainID);
 
-        this.demandFailure.remove(chainID);
     }
 
     /**
@@ -644,6 +786,21 @@ public class Chains implements DHT.GetDHTItemCallback{
     private void traverseMultiChain(Set<ByteArrayWrapper> chainIDs) throws DBException {
         for (ByteArrayWrapper chainID : chainIDs) {
 
+            // 0. 休眠的链只按间隔检查tip，到了挖矿时间则唤醒
+            if (this.chainActivity.isHibernating(chainID)) {
+                if (this.miningScheduler.isDue(chainID)) {
+                    this.chainActivity.touch(chainID, System.currentTimeMillis() / 1000);
+                } else {
+                    checkTipOfHibernatingChain(chainID);
+                    continue;
+                }
+            }
+
+            // 发现新tip或到了挖矿时间的链，先恢复再处理
+            if (this.chainActivity.isWaking(chainID)) {
+                activateChain(chainID);
+            }
+
             // 1. 判断是否空链，非空链忽略这一步
             if (isEmptyChain(chainID)) {
                 // 1.1 如果是空链，先查看是否有之前轮次请求回来的数据，有数据则进行链的初始化，没有数据则请求数据
@@ -754,19 +911,355 @@ public class Chains implements DHT.GetDHTItemCallback{
 
                     // 2.9 尝试缓存瘦身
 //                    tryToSlimDownCache(chainID);
+
+                    // 2.10 长时间没有活动的链进入休眠
+                    tryToHibernate(chainID);
+                }
+            }
+
+            // 3. 记录变化的本地demand，日志过大时压缩
+            journalChain(chainID);
+
+            waitForMiningTime();
+        }
+    }
+
+    /**
+     * 等待一个循环间隔，期间有链到了挖矿时间则立即挖矿
+     */
+    private void waitForMiningTime() throws DBException {
+        long deadline = System.currentTimeMillis() + this.loopIntervalTime;
+        long remaining = this.loopIntervalTime;
+
+        while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+            for (ByteArrayWrapper chainID: this.miningScheduler.pollDueChains()) {
+                // 休眠的链由主循环唤醒后再挖矿
+                if (this.chainIDs.contains(chainID) && !this.unFollowChainIDs.contains(chainID)
+                        && !this.chainActivity.isHibernating(chainID) && !isEmptyChain(chainID) && Boolean.TRUE.equals(this.miningFlag.get(chainID))) {
+                    tryToMine(chainID);
                 }
             }
 
             try {
-                Thread.sleep(this.loopIntervalTime);
+                this.miningScheduler.awaitDue(remaining);
             } catch (InterruptedException e) {
                 logger.info(e.getMessage(), e);
                 Thread.currentThread().interrupt();
             }
 
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 休眠的链到了间隔时间，向一个peer请求tip，发现新tip时在回调中唤醒
+     * @param chainID chain ID
+     */
+    private void checkTipOfHibernatingChain(ByteArrayWrapper chainID) {
+        if (this.chainActivity.pollTipCheck(chainID, System.currentTimeMillis() / 1000)) {
+            byte[] peer = this.peerManagers.get(chainID).getBlockPeerRandomly();
+            requestTipItemFromPeer(chainID, peer);
+        }
+    }
+
+    /**
+     * 空闲的链进入休眠：投票、同步、切换分支、有本地交易以及即将挖矿的链不休眠
+     * @param chainID chain ID
+     */
+    private void tryToHibernate(ByteArrayWrapper chainID) {
+        long now = System.currentTimeMillis() / 1000;
+        if (!this.chainActivity.isIdle(chainID, now)) {
+            return;
+        }
+
+        if (this.votingFlag.get(chainID) || isSyncUncompleted(chainID)
+                || !this.blockContainerMap.get(chainID).isEmpty()
+                || this.txPools.get(chainID).localSize() > 0
+                || this.miningScheduler.getMiningTime(chainID) - now < ChainParam.HIBERNATION_IDLE_TIME) {
+            return;
+        }
+
+        synchronized (this.chainActivity) {
+            // 加锁后再次确认，避免与用户操作的唤醒交错
+            if (!this.chainActivity.isIdle(chainID, now)) {
+                return;
+            }
+
+            logger.info("Chain ID[{}]: hibernate.", new String(chainID.getData()));
+
+            this.chainActivity.hibernate(chainID, now);
+
+            this.txPools.get(chainID).clearPool();
+
+            this.votingPools.get(chainID).clearVotingPool();
+
+            this.votingTipBlocks.remove(chainID);
+
+            this.txMapForPool.get(chainID).clear();
+
+            this.blockContainerMap.get(chainID).clear();
+
+            clearRegion(this.blockMap.get(chainID));
+
+            clearRegion(this.txMap.get(chainID));
+
+            clearRegion(this.horizontalItemMap.get(chainID));
+
+            clearRegion(this.verticalItemMap.get(chainID));
+
+            clearRegion(this.blockContainerMapForSync.get(chainID));
+
+            clearRegion(this.blockMapForSync.get(chainID));
+
+            clearRegion(this.txMapForSync.get(chainID));
+
+            clearRegion(this.horizontalItemMapForSync.get(chainID));
+
+            clearRegion(this.verticalItemMapForSync.get(chainID));
+
+            this.syncPipelines.get(chainID).clear();
+
+            this.localDemandMap.put(chainID, new LocalDemand());
+
+            this.demandResponders.get(chainID).clear();
+        }
+
+        // 内存数据已清空，日志随之清空
+        compactJournal(chainID);
+    }
+
+    /**
+     * 唤醒休眠的链：重新载入交易池，并尽快广播tip
+     * @param chainID chain ID
+     */
+    private void activateChain(ByteArrayWrapper chainID) {
+        synchronized (this.chainActivity) {
+            if (!this.chainIDs.contains(chainID)
+                    || !this.chainActivity.activate(chainID, System.currentTimeMillis() / 1000)) {
+                return;
+            }
+
+            logger.info("Chain ID[{}]: wake up.", new String(chainID.getData()));
+
+            TransactionPool txPool = this.txPools.get(chainID);
+            if (null != txPool) {
+                txPool.reinit();
+            }
+
+            this.timeRecorders.put(chainID, 0L);
+        }
+    }
+
+    /**
+     * 放入已下载的block container，并记入日志
+     * @param chainID chain ID
+     * @param key block container key
+     * @param blockContainer block container
+     */
+    private void putBlockContainer(ByteArrayWrapper chainID, ByteArrayWrapper key, BlockContainer blockContainer) {
+        this.blockContainerMap.get(chainID).put(key, blockContainer);
+
+        ChainJournal journal = this.journals.get(chainID);
+        if (null != journal) {
+            journal.appendBlockContainer(key, blockContainer);
+        }
+    }
+
+    /**
+     * 打开链的事件日志并回放，没有设置数据目录时不记录日志
+     * @param chainID chain ID
+     */
+    private void openJournal(ByteArrayWrapper chainID) {
+        String repoPath = Repo.getRepoPath();
+        if (null == repoPath) {
+            return;
+        }
+
+        File file = new File(repoPath + File.separator + JOURNAL_PATH, Hex.toHexString(chainID.getData()));
+        try {
+            ChainJournal journal = new ChainJournal(file);
+
+            JournalReplayer replayer = new JournalReplayer(chainID);
+            journal.replay(replayer);
+
+            // 重启前投票尚未结束，继续投票
+            if (this.votingCounters.get(chainID).get() > 0) {
+                this.votingFlag.put(chainID, true);
+            }
+
+            LocalDemand localDemand = this.localDemandMap.get(chainID);
+            this.journaledDemands.put(chainID, copyDemand(localDemand));
+            if (null != localDemand.getBlockHash() || null != localDemand.getTxHash()
+                    || null != localDemand.getHorizontalHash() || null != localDemand.getVerticalHash()) {
+                publishDemand(chainID, localDemand);
+            }
+
+            this.journalRestoredItems.put(chainID, replayer.restoredItems);
+            this.journals.put(chainID, journal);
+
+            logger.info("Chain ID[{}]: Journal replayed, size:{}, restored items:{}",
+                    new String(chainID.getData()), journal.size(), replayer.restoredItems);
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * 回放日志，恢复内存中的数据
+     */
+    private class JournalReplayer implements ChainJournal.Replayer {
+        private final ByteArrayWrapper chainID;
+
+        // 恢复的数据数量，每个都省去一次DHT请求
+        private int restoredItems = 0;
+
+        JournalReplayer(ByteArrayWrapper chainID) {
+            this.chainID = chainID;
+        }
+
+        @Override
+        public void onBlockContainer(ByteArrayWrapper key, BlockContainer blockContainer) {
+            blockContainerMap.get(this.chainID).put(key, blockContainer);
+
+            // 区块以及vertical item、horizontal item、交易
+            this.restoredItems++;
+            if (null != blockContainer.getVerticalItem()) {
+                this.restoredItems++;
+            }
+            if (null != blockContainer.getHorizontalItem()) {
+                this.restoredItems++;
+            }
+            if (null != blockContainer.getTx()) {
+                this.restoredItems++;
+            }
+        }
+
+        @Override
+        public void onDemand(LocalDemand localDemand) {
+            localDemandMap.put(this.chainID, localDemand);
+        }
+
+        @Override
+        public void onVote(byte[] blockHash, int blockNumber, double weight, long time) {
+            votingPools.get(this.chainID).putIntoVotingPool(blockHash, blockNumber, weight, time);
+            // 每张选票对应一次tip区块请求
+            this.restoredItems++;
+        }
+
+        @Override
+        public void onVotingRound(int counter, Block tipBlock) {
+            votingCounters.get(this.chainID).set(counter);
+            if (null == tipBlock) {
+                votingTipBlocks.remove(this.chainID);
+            } else {
+                votingTipBlocks.put(this.chainID, tipBlock);
+            }
+        }
+
+        @Override
+        public void onRemoteTx(Transaction tx) {
+            // 下一轮循环入池时重新验证
+            txMapForPool.get(this.chainID).add(tx);
+            this.restoredItems++;
+        }
+    }
+
+    /**
+     * 本地demand变化时记入日志，日志过大时压缩
+     * @param chainID chain ID
+     */
+    private void journalChain(ByteArrayWrapper chainID) {
+        ChainJournal journal = this.journals.get(chainID);
+        if (null == journal) {
+            return;
+        }
+
+        LocalDemand localDemand = this.localDemandMap.get(chainID);
+        if (null != localDemand && !sameDemand(localDemand, this.journaledDemands.get(chainID))) {
+            journal.appendDemand(localDemand);
+            this.journaledDemands.put(chainID, copyDemand(localDemand));
+        }
+
+        if (journal.needsCompaction()) {
+            compactJournal(chainID);
+        }
+    }
+
+    /**
+     * 压缩日志：只保留当前内存中的数据
+     * @param chainID chain ID
+     */
+    private void compactJournal(ByteArrayWrapper chainID) {
+        ChainJournal journal = this.journals.get(chainID);
+        if (null == journal) {
+            return;
+        }
+
+        try {
+            journal.compact(compacted -> {
+                synchronized (this.blockContainerMap.get(chainID)) {
+                    for (Map.Entry<ByteArrayWrapper, BlockContainer> entry:
+                            this.blockContainerMap.get(chainID).entrySet()) {
+                        if (null != entry.getValue()) {
+                            compacted.appendBlockContainer(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+
+                LocalDemand localDemand = this.localDemandMap.get(chainID);
+                compacted.appendDemand(localDemand);
+                this.journaledDemands.put(chainID, copyDemand(localDemand));
+
+                long now = System.currentTimeMillis();
+                for (VotingPool.WeightedVote vote: this.votingPools.get(chainID).getWeightedVotes(now)) {
+                    compacted.appendVote(vote.blockHash, vote.blockNumber, vote.weight, now);
+                }
+                compacted.appendVotingRound(this.votingCounters.get(chainID).get(),
+                        this.votingTipBlocks.get(chainID));
+
+                for (Transaction tx: this.txPools.get(chainID).getRemotes()) {
+                    compacted.appendRemoteTx(tx);
+                }
+                synchronized (this.txMapForPool.get(chainID)) {
+                    for (Transaction tx: this.txMapForPool.get(chainID)) {
+                        compacted.appendRemoteTx(tx);
+                    }
+                }
+            });
+
+            logger.debug("Chain ID[{}]: Journal compacted, size:{}", new String(chainID.getData()), journal.size());
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    private static LocalDemand copyDemand(LocalDemand localDemand) {
+        LocalDemand copy = new LocalDemand();
+        copy.setBlockHash(localDemand.getBlockHash());
+        copy.setTxHash(localDemand.getTxHash());
+        copy.setHorizontalHash(localDemand.getHorizontalHash());
+        copy.setVerticalHash(localDemand.getVerticalHash());
+        return copy;
+    }
+
+    private static boolean sameDemand(LocalDemand a, LocalDemand b) {
+        return null != b
+                && Arrays.equals(a.getBlockHash(), b.getBlockHash())
+                && Arrays.equals(a.getTxHash(), b.getTxHash())
+                && Arrays.equals(a.getHorizontalHash(), b.getHorizontalHash())
+                && Arrays.equals(a.getVerticalHash(), b.getVerticalHash());
+    }
+
+    /**
+     * 启动时从事件日志恢复的数据数量，即重启后省去的DHT请求数量
+     * @param chainID chain ID
+     * @return restored items, 0 if chain has no journal
+     */
+    public int getJournalRestoredItems(byte[] chainID) {
+        Integer restored = this.journalRestoredItems.get(new ByteArrayWrapper(chainID));
+        return null == restored ? 0 : restored;
+    }
+
     /**
      * 尝试使用已有的数据切换链，没有数据则请求数据
      * @param chainID chain ID
@@ -925,66 +1418,90 @@ public class Chains implements DHT.GetDHTItemCallback{
      * @param chainID chain ID
      */
     private void responseDemand(ByteArrayWrapper chainID) throws DBException {
-        // block
-        for (ByteArrayWrapper blockHash : this.blockHashMapFromDemand.get(chainID)) {
-            BlockContainer blockContainer = this.blockStore.
-                    getBlockContainerByHash(chainID.getData(), blockHash.getData());
-            if (null != blockContainer) {
-                publishBlockContainer(blockContainer);
-            }
-
-//            byte[] previousHash = blockHash.getData();
-//            logger.debug("Chain ID:{} Response from block hash:{}",
-//                    new String(chainID.getData()), Hex.toHexString(previousHash));
-//
-//            for (int i = 0; i < ChainParam.MUTABLE_RANGE; i++) {
-//                BlockContainer blockContainer = this.blockStore.
-//                        getBlockContainerByHash(chainID.getData(), previousHash);
-//
-//                if (null != blockContainer) {
-//                    publishBlockContainer(blockContainer);
-//                    if (blockContainer.getBlock().getBlockNum() == 0) {
-//                        break;
-//                    }
-//                    previousHash = blockContainer.getVerticalItem().getPreviousHash();
-//                } else {
-//                    logger.debug("Chain ID:{} Cannot find block hash in local:{}",
-//                            new String(chainID.getData()), Hex.toHexString(previousHash));
-//                    break;
-//                }
-//            }
-        }
+        DemandResponder responder = this.demandResponders.get(chainID);
+        List<byte[]> responses = responder.pollResponses(
+                (type, hash) -> loadDemandedItems(chainID, type, hash), System.currentTimeMillis());
 
-        // tx
-        for (ByteArrayWrapper txid : this.txHashMapFromDemand.get(chainID)) {
-            logger.debug("Chain ID:{} Response tx hash:{}",
-                    new String(chainID.getData()), txid.toString());
-            Transaction tx = this.blockStore.getTransactionByHash(chainID.getData(), txid.getData());
-            publishTransaction(tx);
+        for (byte[] encode: responses) {
+            DHTEngine.getInstance().distribute(new DHT.ImmutableItem(encode));
         }
 
-        // horizontal item
-        for (ByteArrayWrapper horizontalHash : this.horizontalHashMapFromDemand.get(chainID)) {
-            logger.debug("Chain ID:{} Response horizontal hash:{}",
-                    new String(chainID.getData()), horizontalHash.toString());
-            HorizontalItem horizontalItem = this.blockStore.getHorizontalItemByHash(chainID.getData(),
-                    horizontalHash.getData());
-            publishHashList(horizontalItem);
+        if (!responses.isEmpty()) {
+            logger.debug("Chain ID:{} Response {} items, pending demands:{}, responded:{}, deduplicated:{}, cache hit:{}",
+                    new String(chainID.getData()), responses.size(), responder.getPendingSize(),
+                    responder.getRespondedCounter(), responder.getDeduplicatedCounter(),
+                    responder.getCacheHitCounter());
         }
+    }
 
-        // vertical item
-        for (ByteArrayWrapper verticalHash : this.verticalHashMapFromDemand.get(chainID)) {
-            logger.debug("Chain ID:{} Response vertical hash:{}",
-                    new String(chainID.getData()), verticalHash.toString());
-            VerticalItem verticalItem = this.blockStore.getVerticalItemByHash(chainID.getData(),
-                    verticalHash.getData());
-            publishHashList(verticalItem);
+    /**
+     * 从本地读取远端需求的数据
+     * @param chainID chain ID
+     * @param type item type
+     * @param hash item hash
+     * @return encoded items, null if not found
+     */
+    private List<byte[]> loadDemandedItems(ByteArrayWrapper chainID, DemandResponder.ItemType type,
+                                           ByteArrayWrapper hash) throws DBException {
+        List<byte[]> items = new ArrayList<>();
+
+        switch (type) {
+            case BLOCK: {
+                BlockContainer blockContainer = this.blockStore.
+                        getBlockContainerByHash(chainID.getData(), hash.getData());
+                if (null != blockContainer) {
+                    if (null != blockContainer.getTx()) {
+                        items.add(blockContainer.getTx().getEncoded());
+                    }
+                    if (null != blockContainer.getHorizontalItem()) {
+                        items.add(blockContainer.getHorizontalItem().getEncoded());
+                    }
+                    if (null != blockContainer.getVerticalItem()) {
+                        items.add(blockContainer.getVerticalItem().getEncoded());
+                    }
+                    items.add(blockContainer.getBlock().getEncoded());
+                }
+                break;
+            }
+            case TX: {
+                Transaction tx = this.blockStore.getTransactionByHash(chainID.getData(), hash.getData());
+                if (null != tx) {
+                    items.add(tx.getEncoded());
+                }
+                break;
+            }
+            case HORIZONTAL_ITEM: {
+                HorizontalItem horizontalItem = this.blockStore.getHorizontalItemByHash(chainID.getData(),
+                        hash.getData());
+                if (null != horizontalItem) {
+                    items.add(horizontalItem.getEncoded());
+                }
+                break;
+            }
+            case VERTICAL_ITEM: {
+                VerticalItem verticalItem = this.blockStore.getVerticalItemByHash(chainID.getData(),
+                        hash.getData());
+                if (null != verticalItem) {
+                    items.add(verticalItem.getEncoded());
+                }
+                break;
+            }
         }
 
-        this.blockHashMapFromDemand.get(chainID).clear();
-        this.txHashMapFromDemand.get(chainID).clear();
-        this.horizontalHashMapFromDemand.get(chainID).clear();
-        this.verticalHashMapFromDemand.get(chainID).clear();
+        return items.isEmpty() ? null : items;
+    }
+
+    /**
+     * 加入远端需求
+     * @param chainID chain ID
+     * @param type item type
+     * @param hash item hash
+     */
+    private void addDemand(ByteArrayWrapper chainID, DemandResponder.ItemType type, ByteArrayWrapper hash) {
+        DemandResponder responder = this.demandResponders.get(chainID);
+        if (null != responder) {
+            responder.addDemand(type, hash, System.currentTimeMillis());
+        }
     }
 
     /**
@@ -1005,76 +1522,253 @@ public class Chains implements DHT.GetDHTItemCallback{
         logger.debug("Request sync block hash:{}, current sync block number:{}",
                 Hex.toHexString(this.syncBlockContainers.get(chainID).getVerticalItem().getPreviousHash()),
                 this.syncBlockContainers.get(chainID).getBlock().getBlockNum());
-        this.syncCounter.put(chainID, 0);
-        requestBlockForSync(chainID, this.syncBlockContainers.get(chainID).getVerticalItem().getPreviousHash());
+        pumpSyncPipeline(chainID);
+    }
+
+    /**
+     * 推进同步流水线：流水线与同步区块不连续时从同步区块重新开始，
+     * 用已下载的最深区块的vertical item延伸流水线，然后填满请求窗口
+     * @param chainID chain ID
+     */
+    private void pumpSyncPipeline(ByteArrayWrapper chainID) {
+        SyncPipeline pipeline = this.syncPipelines.get(chainID);
+        VerticalItem syncVerticalItem = this.syncBlockContainers.get(chainID).getVerticalItem();
+        ByteArrayWrapper previousHash = new ByteArrayWrapper(syncVerticalItem.getPreviousHash());
+
+        if (!previousHash.equals(pipeline.getHead())) {
+            pipeline.restart(syncVerticalItem.getHashList());
+        }
+
+        WeightedCache.Region<BlockContainer> blockContainers = this.blockContainerMapForSync.get(chainID);
+
+        ByteArrayWrapper frontier = pipeline.getFrontier();
+        if (null != frontier) {
+            BlockContainer blockContainer = blockContainers.get(frontier);
+            if (null != blockContainer && null != blockContainer.getVerticalItem()) {
+                pipeline.extend(frontier, blockContainer.getVerticalItem().getHashList());
+            }
+        }
+
+        List<ByteArrayWrapper> requests = pipeline.nextRequests(System.currentTimeMillis(),
+                blockContainers::containsKey);
+        for (ByteArrayWrapper hash: requests) {
+            requestBlockForSync(chainID, hash.getData());
+        }
     }
 
     /**
-     * 尝试同步，有同步数据返回则同步，否则，不同步
+     * 尝试同步，有同步数据返回则同步，否则，不同步。
+     * 已下载的连续区块（最多MAX_SYNC_RANGE个）一次导入，只提交一次
      * @param chainID chain ID
      */
     private void tryToSync(ByteArrayWrapper chainID) throws DBException {
         // 合法性判断
         while (isSyncUncompleted(chainID)) {
-            ByteArrayWrapper key = new ByteArrayWrapper(this.syncBlockContainers.get(chainID).getVerticalItem().getPreviousHash());
-            BlockContainer blockContainer = this.blockContainerMapForSync.get(chainID).get(key);
-
-            if (null != blockContainer) {
-                // 如果同步遇到非法区块，放弃这条链
-                if (ImportResult.INVALID_BLOCK == syncBlock(chainID, blockContainer)) {
-                    logger.error("Chain ID:{}, Throw this chain away, invalid block:{}",
-                            new String(chainID.getData()),
-                            Hex.toHexString(blockContainer.getBlock().getBlockHash()));
-                    this.blockContainerMapForSync.get(chainID).clear();
-                    resetChain(chainID);
+            WeightedCache.Region<BlockContainer> region = this.blockContainerMapForSync.get(chainID);
+
+            // 从同步区块往前收集已下载的连续区块
+            List<ByteArrayWrapper> keys = new ArrayList<>();
+            List<BlockContainer> range = new ArrayList<>();
+            byte[] previousHash = this.syncBlockContainers.get(chainID).getVerticalItem().getPreviousHash();
+            while (range.size() < MAX_SYNC_RANGE) {
+                ByteArrayWrapper key = new ByteArrayWrapper(previousHash);
+                BlockContainer blockContainer = region.get(key);
+                if (null == blockContainer) {
+                    if (range.isEmpty()) {
+                        region.remove(key);
+                    }
                     break;
                 }
-            } else {
-                this.blockContainerMapForSync.get(chainID).remove(key);
+
+                keys.add(key);
+                range.add(blockContainer);
+
+                if (blockContainer.getBlock().getBlockNum() <= 0) {
+                    break;
+                }
+                previousHash = blockContainer.getVerticalItem().getPreviousHash();
+            }
+
+            if (range.isEmpty()) {
+                break;
+            }
+
+            SyncRangeResult result = syncBlocks(chainID, range);
+
+            long now = System.currentTimeMillis();
+            SyncPipeline pipeline = this.syncPipelines.get(chainID);
+            for (int i = 0; i < result.imported; i++) {
+                region.remove(keys.get(i));
+                pipeline.onSynced(keys.get(i), now);
+            }
+
+            // 如果同步遇到非法区块，放弃这条链
+            if (ImportResult.INVALID_BLOCK == result.importResult) {
+                logger.error("Chain ID:{}, Throw this chain away, invalid block:{}",
+                        new String(chainID.getData()),
+                        Hex.toHexString(range.get(result.imported).getBlock().getBlockHash()));
+                region.clear();
+                resetChain(chainID);
+                return;
+            }
+
+            if (ImportResult.IMPORTED_BEST != result.importResult) {
                 break;
             }
         }
+
+        if (isSyncUncompleted(chainID)) {
+            pumpSyncPipeline(chainID);
+
+            SyncPipeline pipeline = this.syncPipelines.get(chainID);
+            logger.debug("Chain ID:{}, sync rate:{} blocks/s, in-flight:{}, pending:{}, synced:{}",
+                    new String(chainID.getData()), String.format("%.2f", pipeline.getBlocksPerSecond()),
+                    pipeline.getInFlightDepth(), pipeline.getPendingSize(), pipeline.getSyncedBlocks());
+        }
     }
 
     /**
-     * 同步区块
+     * 同步区块或其数据请求失败，流水线下一轮重新请求该区块
      * @param chainID chain ID
-     * @param blockContainer block container
-     * @return import result
+     * @param blockHash block hash
+     */
+    private void onSyncRequestFailed(ByteArrayWrapper chainID, ByteArrayWrapper blockHash) {
+        SyncPipeline pipeline = this.syncPipelines.get(chainID);
+        if (null != pipeline) {
+            pipeline.onFailed(blockHash);
+        }
+    }
+
+    private static void clearRegion(WeightedCache.Region<?> region) {
+        if (null != region) {
+            region.clear();
+        }
+    }
+
+    /**
+     * @return 数据缓存命中率
+     */
+    public double getCacheHitRate() {
+        return this.itemCache.getHitRate();
+    }
+
+    /**
+     * @return 数据缓存占用的字节数
+     */
+    public long getCacheWeight() {
+        return this.itemCache.getWeight();
+    }
+
+    /**
+     * 同步速率
+     * @param chainID chain ID
+     * @return blocks per second, 0 if chain isn't syncing
+     */
+    public double getSyncBlocksPerSecond(byte[] chainID) {
+        SyncPipeline pipeline = this.syncPipelines.get(new ByteArrayWrapper(chainID));
+        return null == pipeline ? 0 : pipeline.getBlocksPerSecond();
+    }
+
+    /**
+     * 同步流水线中请求中的区块数量
+     * @param chainID chain ID
+     * @return in-flight depth
+     */
+    public int getSyncInFlightDepth(byte[] chainID) {
+        SyncPipeline pipeline = this.syncPipelines.get(new ByteArrayWrapper(chainID));
+        return null == pipeline ? 0 : pipeline.getInFlightDepth();
+    }
+
+    /**
+     * 同步导入结果
+     */
+    private static class SyncRangeResult {
+        private final ImportResult importResult;
+
+        // 导入成功的区块数量
+        private final int imported;
+
+        SyncRangeResult(ImportResult importResult, int imported) {
+            this.importResult = importResult;
+            this.imported = imported;
+        }
+    }
+
+    /**
+     * 同步一段连续的区块：一次预读涉及的账户，在同一个track上依次处理，
+     * 全部通过或遇到第一个不能导入的区块后提交一次
+     * @param chainID chain ID
+     * @param blockContainers block containers, from high to low
+     * @return import result of the last processed block and the number of imported blocks
      */
-    private ImportResult syncBlock(ByteArrayWrapper chainID, BlockContainer blockContainer) throws DBException {
+    private SyncRangeResult syncBlocks(ByteArrayWrapper chainID, List<BlockContainer> blockContainers) throws DBException {
+
+        StateDB track = this.stateDB.startTracking(chainID.getData());
+
+        track.prefetchAccounts(chainID.getData(), extractAccountFromBlockContainer(blockContainers));
+        prefetchSignatures(blockContainers);
+
+        StateProcessor stateProcessor = this.stateProcessors.get(chainID);
+
+        ImportResult result = ImportResult.IMPORTED_BEST;
+        int imported = 0;
+        for (BlockContainer blockContainer: blockContainers) {
+            result = stateProcessor.backwardProcess(blockContainer, track);
+            if (ImportResult.IMPORTED_BEST != result) {
+                break;
+            }
+            imported++;
+        }
+
+        if (0 == imported) {
+            return new SyncRangeResult(result, 0);
+        }
+
+        List<BlockContainer> importedContainers = blockContainers.subList(0, imported);
+
+        // after sync
+        // 1. save blocks
+        // 2. save sync block hash
+        // 3. commit new state
+        // 4. set sync block
+        // 5. add old block peer to peer pool
 
-        StateDB track = this.stateDB.startTracking(chainID.getData());
+        for (BlockContainer blockContainer: importedContainers) {
+            this.blockStore.saveBlockContainer(chainID.getData(), blockContainer, true);
+        }
 
-        ImportResult result = this.stateProcessors.get(chainID).backwardProcess(blockContainer, track);
+        BlockContainer syncBlockContainer = importedContainers.get(imported - 1);
+        track.setSyncBlockHash(chainID.getData(), syncBlockContainer.getBlock().getBlockHash());
+        track.commit();
 
-        if (ImportResult.IMPORTED_BEST == result) {
-            // after sync
-            // 1. save block
-            // 2. save sync block hash
-            // 3. commit new state
-            // 4. set sync block
-            // 5. add old block peer to peer pool
+        Set<ByteArrayWrapper> accounts = extractAccountFromBlockContainer(importedContainers);
 
-            this.blockStore.saveBlockContainer(chainID.getData(), blockContainer, true);
+        for (ByteArrayWrapper account: accounts) {
+            this.stateDB.addPeer(chainID.getData(), account.getData());
+        }
 
-            track.setSyncBlockHash(chainID.getData(), blockContainer.getBlock().getBlockHash());
-            track.commit();
+        ChainSummary summary = this.chainSummaries.get(chainID);
+        for (BlockContainer blockContainer: importedContainers) {
+            this.tauListener.onSyncBlock(chainID.getData(), blockContainer);
 
-            Set<ByteArrayWrapper> accounts = extractAccountFromBlockContainer(blockContainer);
+            this.peerManagers.get(chainID).addOldBlockPeer(blockContainer.getBlock().getMinerPubkey());
 
-            for (ByteArrayWrapper account: accounts) {
-                this.stateDB.addPeer(chainID.getData(), account.getData());
+            if (null != summary && !summary.isFull() && blockContainer.getBlock().getBlockNum() > 0) {
+                summary = summary.appendOlder(blockContainer.getBlock());
             }
+        }
 
-            this.tauListener.onSyncBlock(chainID.getData(), blockContainer);
+        if (null != summary && summary != this.chainSummaries.get(chainID)) {
+            this.chainSummaries.put(chainID, summary);
+            this.stateDB.setChainSummary(chainID.getData(), summary);
+        }
 
-            this.syncBlockContainers.put(chainID, blockContainer);
+        this.syncBlockContainers.put(chainID, syncBlockContainer);
 
-            this.peerManagers.get(chainID).addOldBlockPeer(blockContainer.getBlock().getMinerPubkey());
-        }
+        // 同步的区块可能带来自己的挖矿power
+        this.miningScheduler.unschedule(chainID);
 
-        return result;
+        return new SyncRangeResult(result, imported);
     }
 
     /**
@@ -1195,6 +1889,9 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         StateProcessor stateProcessor = this.stateProcessors.get(chainID);
 
+        // 从共同祖先处派生分支的哈希窗口，新区块验证通过后依次连接
+        HashWindow branchWindow = forkHashWindow(chainID, newBlockContainers, targetBlockContainer);
+
         for (BlockContainer undoBlockContainer : undoBlockContainers) {
             if (!stateProcessor.rollback(undoBlockContainer, track)) {
                 logger.error("Chain ID[{}]: Roll back fail, block hash:{}",
@@ -1204,32 +1901,12 @@ public class Chains implements DHT.GetDHTItemCallback{
             }
         }
 
-        int size = newBlockContainers.size();
-        for (int i = size - 1; i >= 0; i--) {
-
-            TryResult validResult = isValidBlockContainer(chainID, newBlockContainers.get(i), track);
-            if (TryResult.SUCCESS != validResult) {
-                logger.error("Chain ID[{}]: Validation is not pass, block hash:{}",
-                        new String(chainID.getData()),
-                        Hex.toHexString(newBlockContainers.get(i).getBlock().getBlockHash()));
-                return validResult;
-            }
-
-            ImportResult result = stateProcessor.forwardProcess(newBlockContainers.get(i), track);
-            // if need sync more block
-            if (result == ImportResult.NO_ACCOUNT_INFO && isSyncUncompleted(chainID)) {
-                requestSyncBlock(chainID);
-                return TryResult.REQUEST;
-            }
-
-            if (result != ImportResult.IMPORTED_BEST) {
-                logger.error("Chain ID[{}]: Import block fail, block hash:{}",
-                        new String(chainID.getData()),
-                        Hex.toHexString(newBlockContainers.get(i).getBlock().getBlockHash()));
-                return TryResult.ERROR;
-            }
-
-            this.peerManagers.get(chainID).addNewBlockPeer(newBlockContainers.get(i).getBlock().getMinerPubkey());
+        // 新区块按高度从低到高导入
+        List<BlockContainer> range = new ArrayList<>(newBlockContainers);
+        Collections.reverse(range);
+        TryResult importResult = importRange(chainID, range, track, branchWindow);
+        if (TryResult.SUCCESS != importResult) {
+            return importResult;
         }
 
         // after chain change
@@ -1247,6 +1924,11 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         track.commit();
 
+        // 分支窗口即为新的主链窗口
+        if (null != branchWindow) {
+            this.hashWindows.put(chainID, branchWindow);
+        }
+
         setBestBlockContainer(chainID, targetBlockContainer);
 
         publishTipItem(chainID);
@@ -1272,7 +1954,7 @@ public class Chains implements DHT.GetDHTItemCallback{
             this.tauListener.onRollBack(chainID.getData(), undoBlockContainer);
         }
 
-        size = newBlockContainers.size();
+        int size = newBlockContainers.size();
         for (int i = size - 1; i >= 0; i--) {
             this.tauListener.onNewBlock(chainID.getData(), newBlockContainers.get(i));
         }
@@ -1281,18 +1963,84 @@ public class Chains implements DHT.GetDHTItemCallback{
     }
 
     /**
-     * 在投票结果出来，成功切到投票结果位置之后，从投票的block中选出最难的作为新tip
+     * 在track上导入一段连续的区块：
+     * 1. 一次预读区块涉及的所有账户；
+     * 2. 并行验证区块和交易签名，结果进入签名缓存；
+     * 3. 依次验证区块（PoT依赖前一区块后的状态）并在内存中执行状态转换。
+     * 调用者最后提交一次track。
      * @param chainID chain ID
+     * @param blockContainers block containers, from low to high
+     * @param track state track
+     * @param branchWindow hash window of the branch, or null
+     * @return SUCCESS if all blocks are imported
      */
-    private void chooseBestBlockAsTipAfterVoting(ByteArrayWrapper chainID) {
-        Block bestTipBlock = null;
-        for (Block block: this.votingBlocks.get(chainID)) {
-            if (null == bestTipBlock || block.getCumulativeDifficulty().
-                    compareTo(bestTipBlock.getCumulativeDifficulty()) > 0) {
-                bestTipBlock = block;
+    private TryResult importRange(ByteArrayWrapper chainID, List<BlockContainer> blockContainers,
+                                  StateDB track, HashWindow branchWindow) throws DBException {
+        track.prefetchAccounts(chainID.getData(), extractAccountFromBlockContainer(blockContainers));
+        prefetchSignatures(blockContainers);
+
+        StateProcessor stateProcessor = this.stateProcessors.get(chainID);
+
+        for (BlockContainer blockContainer: blockContainers) {
+            TryResult validResult = isValidBlockContainer(chainID, blockContainer, track, branchWindow);
+            if (TryResult.SUCCESS != validResult) {
+                logger.error("Chain ID[{}]: Validation is not pass, block hash:{}",
+                        new String(chainID.getData()),
+                        Hex.toHexString(blockContainer.getBlock().getBlockHash()));
+                return validResult;
+            }
+
+            ImportResult result = stateProcessor.forwardProcess(blockContainer, track);
+            // if need sync more block
+            if (result == ImportResult.NO_ACCOUNT_INFO && isSyncUncompleted(chainID)) {
+                requestSyncBlock(chainID);
+                return TryResult.REQUEST;
+            }
+
+            if (result != ImportResult.IMPORTED_BEST) {
+                logger.error("Chain ID[{}]: Import block fail, block hash:{}",
+                        new String(chainID.getData()),
+                        Hex.toHexString(blockContainer.getBlock().getBlockHash()));
+                return TryResult.ERROR;
+            }
+
+            this.peerManagers.get(chainID).addNewBlockPeer(blockContainer.getBlock().getMinerPubkey());
+
+            if (null != branchWindow) {
+                branchWindow.push(blockContainer.getBlock().getBlockNum(),
+                        blockContainer.getBlock().getBlockHash());
             }
         }
 
+        return TryResult.SUCCESS;
+    }
+
+    /**
+     * 并行验证区块和交易签名，验证通过的进入签名缓存，
+     * 之后逐个处理区块时不再验证；验证失败的在逐个处理时报错
+     * @param blockContainers block containers
+     */
+    private static void prefetchSignatures(List<BlockContainer> blockContainers) {
+        if (blockContainers.size() < 2) {
+            return;
+        }
+
+        SignatureCache signatureCache = SignatureCache.getInstance();
+        blockContainers.parallelStream().forEach(blockContainer -> {
+            signatureCache.verify(blockContainer.getBlock());
+            if (null != blockContainer.getTx()) {
+                signatureCache.verify(blockContainer.getTx());
+            }
+        });
+    }
+
+    /**
+     * 在投票结果出来，成功切到投票结果位置之后，从投票的block中选出最难的作为新tip
+     * @param chainID chain ID
+     */
+    private void chooseBestBlockAsTipAfterVoting(ByteArrayWrapper chainID) {
+        Block bestTipBlock = this.votingTipBlocks.get(chainID);
+
         if (null == bestTipBlock) {
             return;
         }
@@ -1336,8 +2084,7 @@ public class Chains implements DHT.GetDHTItemCallback{
         }
 
         if (success) {
-            this.blockContainerMap.get(chainID).
-                    put(new ByteArrayWrapper(bestTipBlock.getBlockHash()), blockContainer);
+            putBlockContainer(chainID, new ByteArrayWrapper(bestTipBlock.getBlockHash()), blockContainer);
         }
     }
 
@@ -1346,10 +2093,16 @@ public class Chains implements DHT.GetDHTItemCallback{
      * @param chainID chain ID
      */
     private void resetAfterVoting(ByteArrayWrapper chainID) {
-        this.votingPools.get(chainID).clearVotingPool();
-        this.votingBlocks.get(chainID).clear();
+        // 投票池跨轮次保留，票数随时间衰减
+        this.votingCounters.get(chainID).set(0);
+        this.votingTipBlocks.remove(chainID);
         this.votingTime.put(chainID, 0L);
         this.votingFlag.put(chainID, false);
+
+        ChainJournal journal = this.journals.get(chainID);
+        if (null != journal) {
+            journal.appendVotingRound(0, null);
+        }
     }
 
     /**
@@ -1367,7 +2120,7 @@ public class Chains implements DHT.GetDHTItemCallback{
             counter = 1;
         }
 
-        int size = this.votingBlocks.get(chainID).size();
+        int size = this.votingCounters.get(chainID).get();
 
         if (counter > size) {
             counter -= size;
@@ -1401,42 +2154,61 @@ public class Chains implements DHT.GetDHTItemCallback{
     }
 
     /**
-     * 汇总选票，并挑出最佳选票
+     * 取出最佳选票，选票在到达时已经唱票
      * @param chainID chain ID
      * @return best vest or null
      */
     private Vote getBestVote(ByteArrayWrapper chainID) {
-        VotingPool votingPool = this.votingPools.get(chainID);
-        List<Block> blocks = this.votingBlocks.get(chainID);
-
-        for (Block block : blocks) {
-            if (null != block) {
-                // vote on immutable point
-                if (block.getBlockNum() > ChainParam.MUTABLE_RANGE) {
-                    votingPool.putIntoVotingPool(block.getImmutableBlockHash(),
-                            (int) block.getBlockNum() - ChainParam.MUTABLE_RANGE);
-                } else {
-                    votingPool.putIntoVotingPool(block.getImmutableBlockHash(), 0);
-                }
-            }
-        }
-
-        Vote bestVote = votingPool.getBestVote();
+        Vote bestVote = this.votingPools.get(chainID).getBestVote();
 
         if (null != bestVote) {
             logger.debug("Chain ID[{}]: Best vote:{}", new String(chainID.getData()), bestVote.toString());
         }
 
-        // clear voting pool for next time when voting end
+        // 本轮投票结束
         this.votingTime.put(chainID, 0L);
 
-        votingPool.clearVotingPool();
+        this.votingCounters.get(chainID).set(0);
 
-        blocks.clear();
+        ChainJournal journal = this.journals.get(chainID);
+        if (null != journal) {
+            journal.appendVotingRound(0, this.votingTipBlocks.get(chainID));
+        }
 
         return bestVote;
     }
 
+    /**
+     * 唱票，只保留本轮最难的tip区块
+     * @param chainID chain ID
+     * @param block voting block
+     */
+    private void countVote(ByteArrayWrapper chainID, Block block) {
+        long now = System.currentTimeMillis();
+
+        // vote on immutable point
+        int immutableNumber = 0;
+        if (block.getBlockNum() > ChainParam.MUTABLE_RANGE) {
+            immutableNumber = (int) block.getBlockNum() - ChainParam.MUTABLE_RANGE;
+        }
+        this.votingPools.get(chainID).putIntoVotingPool(block.getImmutableBlockHash(), immutableNumber, now);
+
+        int counter = this.votingCounters.get(chainID).incrementAndGet();
+
+        Block tipBlock = this.votingTipBlocks.get(chainID);
+        if (null == tipBlock || block.getCumulativeDifficulty().
+                compareTo(tipBlock.getCumulativeDifficulty()) > 0) {
+            this.votingTipBlocks.put(chainID, block);
+            tipBlock = block;
+        }
+
+        ChainJournal journal = this.journals.get(chainID);
+        if (null != journal) {
+            journal.appendVote(block.getImmutableBlockHash(), immutableNumber, 1, now);
+            journal.appendVotingRound(counter, tipBlock);
+        }
+    }
+
     /**
      * 用block container初始化链的状态
      * @param chainID chain ID
@@ -1477,6 +2249,8 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         this.bestBlockContainers.put(chainID, blockContainer);
         this.syncBlockContainers.put(chainID, blockContainer);
+        loadHashWindow(chainID);
+        updateChainSummary(chainID, blockContainer);
 
         publishTipItem(chainID);
 
@@ -1499,6 +2273,13 @@ public class Chains implements DHT.GetDHTItemCallback{
     private void resetChain(ByteArrayWrapper chainID) throws DBException {
         this.blockStore.removeChainBlockInfo(chainID.getData());
         this.stateDB.clearAllState(chainID.getData());
+        this.hashWindows.remove(chainID);
+        this.chainSummaries.remove(chainID);
+        this.miningScheduler.unschedule(chainID);
+        SyncPipeline pipeline = this.syncPipelines.get(chainID);
+        if (null != pipeline) {
+            pipeline.clear();
+        }
 
         this.tauListener.onClearChainAllState(chainID.getData());
 
@@ -2056,6 +2837,19 @@ public class Chains implements DHT.GetDHTItemCallback{
         return blockContainerResult;
     }
 
+    /**
+     * 信誉统计中请求的标识：挖矿和投票都用tip salt请求同一个peer，加上请求类型区分，避免互相覆盖
+     * @param dataType request type
+     * @param salt salt
+     * @return request ID
+     */
+    private static byte[] makeRequestID(DataType dataType, byte[] salt) {
+        byte[] requestID = new byte[salt.length + 1];
+        requestID[0] = (byte) dataType.ordinal();
+        System.arraycopy(salt, 0, requestID, 1, salt.length);
+        return requestID;
+    }
+
     /**
      * request tip item hash from peer
      * @param chainID chain ID
@@ -2066,6 +2860,8 @@ public class Chains implements DHT.GetDHTItemCallback{
         DHT.GetMutableItemSpec spec = new DHT.GetMutableItemSpec(peer, salt);
         DataIdentifier dataIdentifier = new DataIdentifier(chainID,
                 DataType.TIP_ITEM_FROM_PEER_FOR_MINING, new ByteArrayWrapper(peer));
+        this.peerManagers.get(chainID).onPeerRequest(peer,
+                makeRequestID(DataType.TIP_ITEM_FROM_PEER_FOR_MINING, salt));
         DHTEngine.getInstance().request(spec, this, dataIdentifier);
     }
 
@@ -2079,6 +2875,7 @@ public class Chains implements DHT.GetDHTItemCallback{
         DHT.GetMutableItemSpec spec = new DHT.GetMutableItemSpec(peer, salt);
         DataIdentifier dataIdentifier = new DataIdentifier(chainID, DataType.DEMAND_FROM_PEER,
                 new ByteArrayWrapper(peer));
+        this.peerManagers.get(chainID).onPeerRequest(peer, makeRequestID(DataType.DEMAND_FROM_PEER, salt));
         DHTEngine.getInstance().request(spec, this, dataIdentifier);
     }
 
@@ -2213,7 +3010,10 @@ public class Chains implements DHT.GetDHTItemCallback{
     private void requestTipBlockForVotingFromPeer(ByteArrayWrapper chainID, byte[] peer) {
         byte[] salt = this.tipSalts.get(chainID);
         DHT.GetMutableItemSpec spec = new DHT.GetMutableItemSpec(peer, salt);
-        DataIdentifier dataIdentifier = new DataIdentifier(chainID, DataType.TIP_BLOCK_FROM_PEER_FOR_VOTING);
+        DataIdentifier dataIdentifier = new DataIdentifier(chainID, DataType.TIP_BLOCK_FROM_PEER_FOR_VOTING,
+                new ByteArrayWrapper(peer));
+        this.peerManagers.get(chainID).onPeerRequest(peer,
+                makeRequestID(DataType.TIP_BLOCK_FROM_PEER_FOR_VOTING, salt));
         DHTEngine.getInstance().request(spec, this, dataIdentifier);
     }
 
@@ -2370,6 +3170,148 @@ public class Chains implements DHT.GetDHTItemCallback{
      */
     public void setBestBlockContainer(ByteArrayWrapper chainID, BlockContainer blockContainer) {
         this.bestBlockContainers.put(chainID, blockContainer);
+        updateHashWindow(chainID, blockContainer);
+        updateChainSummary(chainID, blockContainer);
+        this.chainActivity.onTip(chainID, blockContainer.getBlock().getBlockHash(),
+                System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * 新的最佳区块连接到摘要，不连续(切换分支)时从区块重建，然后保存
+     * @param chainID chain ID
+     * @param blockContainer best block container
+     */
+    private void updateChainSummary(ByteArrayWrapper chainID, BlockContainer blockContainer) {
+        try {
+            ChainSummary summary = this.chainSummaries.get(chainID);
+            if (null != summary && null != blockContainer.getVerticalItem()
+                    && Arrays.equals(summary.getBestBlockHash(), blockContainer.getVerticalItem().getPreviousHash())) {
+                summary = summary.connect(blockContainer.getBlock());
+            } else if (null == summary
+                    || !Arrays.equals(summary.getBestBlockHash(), blockContainer.getBlock().getBlockHash())) {
+                summary = buildChainSummary(chainID, blockContainer);
+            } else {
+                return;
+            }
+
+            this.chainSummaries.put(chainID, summary);
+            this.stateDB.setChainSummary(chainID.getData(), summary);
+        } catch (DBException e) {
+            logger.error(e.getMessage(), e);
+            this.chainSummaries.remove(chainID);
+        }
+    }
+
+    /**
+     * 从最佳区块往回读取mutable range内的区块，构造链的摘要
+     * @param chainID chain ID
+     * @param bestBlockContainer best block container
+     * @return chain summary
+     * @throws DBException database exception
+     */
+    private ChainSummary buildChainSummary(ByteArrayWrapper chainID, BlockContainer bestBlockContainer)
+            throws DBException {
+        Block bestBlock = bestBlockContainer.getBlock();
+        List<byte[]> miners = new ArrayList<>();
+
+        if (bestBlock.getBlockNum() > 0) {
+            miners.add(bestBlock.getMinerPubkey());
+            byte[] previousHash = null != bestBlockContainer.getVerticalItem() ?
+                    bestBlockContainer.getVerticalItem().getPreviousHash() : null;
+            while (null != previousHash && miners.size() < ChainParam.MUTABLE_RANGE) {
+                BlockContainer blockContainer = this.blockStore.getBlockContainerByHash(chainID.getData(), previousHash);
+                if (null == blockContainer || blockContainer.getBlock().getBlockNum() <= 0) {
+                    break;
+                }
+                miners.add(blockContainer.getBlock().getMinerPubkey());
+                previousHash = null != blockContainer.getVerticalItem() ?
+                        blockContainer.getVerticalItem().getPreviousHash() : null;
+            }
+        }
+
+        return new ChainSummary(bestBlock.getBlockHash(), bestBlock.getBlockNum(), miners);
+    }
+
+    /**
+     * 新的最佳区块连接到窗口，不连续时从数据库重新加载
+     * @param chainID chain ID
+     * @param blockContainer best block container
+     */
+    private void updateHashWindow(ByteArrayWrapper chainID, BlockContainer blockContainer) {
+        HashWindow window = this.hashWindows.get(chainID);
+        Block block = blockContainer.getBlock();
+
+        if (null != window) {
+            if (window.contains(block.getBlockNum(), block.getBlockHash())
+                    && window.getTipNumber() == block.getBlockNum()) {
+                return;
+            }
+
+            if (null != blockContainer.getVerticalItem()
+                    && window.contains(block.getBlockNum() - 1, blockContainer.getVerticalItem().getPreviousHash())
+                    && window.getTipNumber() == block.getBlockNum() - 1) {
+                window.push(block.getBlockNum(), block.getBlockHash());
+                return;
+            }
+        }
+
+        try {
+            loadHashWindow(chainID);
+        } catch (DBException e) {
+            logger.error(e.getMessage(), e);
+            this.hashWindows.remove(chainID);
+        }
+    }
+
+    /**
+     * 从数据库主链区块号索引加载哈希窗口
+     * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    private void loadHashWindow(ByteArrayWrapper chainID) throws DBException {
+        BlockContainer bestBlockContainer = this.bestBlockContainers.get(chainID);
+        if (null == bestBlockContainer) {
+            this.hashWindows.remove(chainID);
+            return;
+        }
+
+        HashWindow window = new HashWindow(ChainParam.MAX_HASH_NUMBER + ChainParam.MUTABLE_RANGE);
+        long number = bestBlockContainer.getBlock().getBlockNum();
+        window.push(number, bestBlockContainer.getBlock().getBlockHash());
+
+        for (long i = number - 1; i >= 0 && window.size() < window.getCapacity(); i--) {
+            byte[] hash = this.blockStore.getMainChainBlockHashByNumber(chainID.getData(), i);
+            if (null == hash) {
+                break;
+            }
+            window.addOldest(hash);
+        }
+
+        this.hashWindows.put(chainID, window);
+    }
+
+    /**
+     * 为分叉派生哈希窗口
+     * @param chainID chain ID
+     * @param newBlockContainers 分叉上的新区块，从新到旧
+     * @param targetBlockContainer 分叉的最新区块
+     * @return 以共同祖先为最新区块的窗口，没有主链窗口时返回null
+     */
+    private HashWindow forkHashWindow(ByteArrayWrapper chainID, List<BlockContainer> newBlockContainers,
+                                      BlockContainer targetBlockContainer) {
+        HashWindow window = this.hashWindows.get(chainID);
+        if (null == window) {
+            return null;
+        }
+
+        long ancestorNumber;
+        if (newBlockContainers.isEmpty()) {
+            ancestorNumber = targetBlockContainer.getBlock().getBlockNum();
+        } else {
+            ancestorNumber = newBlockContainers.get(newBlockContainers.size() - 1).getBlock().getBlockNum() - 1;
+        }
+
+        return window.fork(ancestorNumber);
     }
 
     /**
@@ -2390,6 +3332,19 @@ public class Chains implements DHT.GetDHTItemCallback{
      */
     private TryResult isValidBlockContainer(ByteArrayWrapper chainID,
                                           BlockContainer blockContainer, StateDB stateDB) throws DBException {
+        return isValidBlockContainer(chainID, blockContainer, stateDB, this.hashWindows.get(chainID));
+    }
+
+    /**
+     * check if a block container valid
+     * @param chainID chain ID
+     * @param blockContainer block container
+     * @param stateDB state db
+     * @param window hash window of the branch which block container is on, or null
+     * @return try result
+     */
+    private TryResult isValidBlockContainer(ByteArrayWrapper chainID, BlockContainer blockContainer,
+                                            StateDB stateDB, HashWindow window) throws DBException {
 //                // 是否本链
 //        if (!Arrays.equals(chainID.getData(), block.getChainID())) {
 //            logger.error("ChainID[{}]: ChainID mismatch!", new String(chainID.getData()));
@@ -2424,7 +3379,7 @@ public class Chains implements DHT.GetDHTItemCallback{
             return TryResult.ERROR;
         }
 
-        HashListResult hashListResult = getPreviousHashList(chainID, previousBlockContainer);
+        HashListResult hashListResult = getPreviousHashList(chainID, previousBlockContainer, window);
         if (TryResult.SUCCESS == hashListResult.tryResult) {
             VerticalItem verticalItem = new VerticalItem(hashListResult.hashList);
             if (!Arrays.equals(verticalItem.getHash(), blockContainer.getVerticalItem().getHash())) {
@@ -2451,7 +3406,7 @@ public class Chains implements DHT.GetDHTItemCallback{
         }
 
         // 区块签名检查
-        if (!blockContainer.getBlock().verifyBlockSig()) {
+        if (!SignatureCache.getInstance().verify(blockContainer.getBlock())) {
             logger.error("ChainID[{}]: Block[{}] Bad Signature!",
                     new String(chainID.getData()), Hex.toHexString(blockContainer.getBlock().getBlockHash()));
             return TryResult.ERROR;
@@ -2557,11 +3512,10 @@ public class Chains implements DHT.GetDHTItemCallback{
             return TryResult.ERROR;
         }
 
-        BigInteger hit = pot.calculateRandomHit(genSig);
         long timeInterval = blockContainer.getBlock().getTimeStamp() - parentBlockContainer.getBlock().getTimeStamp();
 
         // verify hit
-        if (!pot.verifyHit(hit, baseTarget, power, timeInterval)) {
+        if (!pot.verifyHit(genSig, baseTarget, power, timeInterval)) {
             logger.error("ChainID[{}]: The block[{}] does not meet the pot consensus!!",
                     new String(chainID.getData()), Hex.toHexString(blockHash));
             return TryResult.ERROR;
@@ -2577,7 +3531,6 @@ public class Chains implements DHT.GetDHTItemCallback{
      */
     private TryResult minable(ByteArrayWrapper chainID) throws DBException {
 
-        ProofOfTransaction pot = this.pots.get(chainID);
         BlockContainer bestBlockContainer = this.bestBlockContainers.get(chainID);
 
         byte[] pubKey = AccountManager.getInstance().getKeyPair().first;
@@ -2587,6 +3540,35 @@ public class Chains implements DHT.GetDHTItemCallback{
             return TryResult.ERROR;
         }
 
+        // 出块时间只依赖最佳区块和自己的power，变化时才重新计算
+        if (!this.miningScheduler.isUpToDate(chainID, bestBlockContainer.getBlock().getBlockHash(), pubKey)) {
+            TryResult result = scheduleMining(chainID, bestBlockContainer, pubKey);
+            if (TryResult.SUCCESS != result) {
+                return result;
+            }
+        }
+
+        if (!this.miningScheduler.isDue(chainID)) {
+            logger.debug("Chain ID[{}]: It's not the time for the block.", new String(chainID.getData()));
+            return TryResult.ERROR;
+        }
+
+        return TryResult.SUCCESS;
+    }
+
+    /**
+     * 基于当前最佳区块计算下一次出块时间，并设置挖矿定时器
+     * @param chainID chain ID
+     * @param bestBlockContainer best block container
+     * @param pubKey mining public key
+     * @return try result
+     */
+    private TryResult scheduleMining(ByteArrayWrapper chainID, BlockContainer bestBlockContainer,
+                                     byte[] pubKey) throws DBException {
+
+        ProofOfTransaction pot = this.pots.get(chainID);
+        byte[] tipHash = bestBlockContainer.getBlock().getBlockHash();
+
         BigInteger power = this.stateDB.getNonce(chainID.getData(), pubKey);
         if (null == power || power.longValue() <= 0) {
             // 如果没有power，并且同步未完成，则请求同步，因为有可能自己的状态数据在更早的区块上记载，比如创世区块地址
@@ -2597,6 +3579,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                 return TryResult.REQUEST;
             }
 
+            this.miningScheduler.schedule(chainID, tipHash, pubKey, MiningScheduler.NEVER);
             return TryResult.ERROR;
         }
 
@@ -2643,19 +3626,42 @@ public class Chains implements DHT.GetDHTItemCallback{
         byte[] genSig = pot.calculateGenerationSignature(bestBlockContainer.
                 getBlock().getGenerationSignature(), pubKey);
 
-        BigInteger hit = pot.calculateRandomHit(genSig);
+        long timeInterval = pot.calculateMiningTimeInterval(genSig, baseTarget, power);
 
-        long timeInterval = pot.calculateMiningTimeInterval(hit, baseTarget, power);
-        if ((System.currentTimeMillis() / 1000 - bestBlockContainer.getBlock().getTimeStamp()) < timeInterval) {
-            logger.debug("Chain ID[{}]: It's not the time for the block.", new String(chainID.getData()));
-            return TryResult.ERROR;
-        }
+        this.miningScheduler.schedule(chainID, tipHash, pubKey,
+                bestBlockContainer.getBlock().getTimeStamp() + timeInterval);
 
         return TryResult.SUCCESS;
     }
 
     /**
-     * get previous hash list
+     * get previous hash list, from hash window if possible
+     * @param chainID chain ID
+     * @param previousBlockContainer previous block container
+     * @param window hash window of the branch which previous block container is on, or null
+     * @return hash list
+     * @throws DBException database exception
+     */
+    private HashListResult getPreviousHashList(ByteArrayWrapper chainID, BlockContainer previousBlockContainer,
+                                               HashWindow window) throws DBException {
+        if (null != window) {
+            Block previousBlock = previousBlockContainer.getBlock();
+            if (window.contains(previousBlock.getBlockNum(), previousBlock.getBlockHash())) {
+                List<byte[]> hashList = window.getHashList(previousBlock.getBlockNum(), ChainParam.MAX_HASH_NUMBER);
+                if (null != hashList) {
+                    HashListResult hashListResult = new HashListResult();
+                    hashListResult.tryResult = TryResult.SUCCESS;
+                    hashListResult.hashList = hashList;
+                    return hashListResult;
+                }
+            }
+        }
+
+        return getPreviousHashList(chainID, previousBlockContainer);
+    }
+
+    /**
+     * get previous hash list from block store
      * @param chainID chain ID
      * @param previousBlockContainer previous block container
      * @return hash list
@@ -2755,7 +3761,8 @@ public class Chains implements DHT.GetDHTItemCallback{
 
         Transaction tx = this.txPools.get(chainID).getBestTransaction();
 
-        HashListResult hashListResult = getPreviousHashList(chainID, bestBlockContainer);
+        HashListResult hashListResult = getPreviousHashList(chainID, bestBlockContainer,
+                this.hashWindows.get(chainID));
         if (TryResult.SUCCESS != hashListResult.tryResult) {
             return null;
         }
@@ -2823,6 +3830,7 @@ public class Chains implements DHT.GetDHTItemCallback{
      * @return tx pool
      */
     public TransactionPool getTransactionPool(ByteArrayWrapper chainID) {
+        activateChain(chainID);
         return this.txPools.get(chainID);
     }
 
@@ -2886,6 +3894,7 @@ public class Chains implements DHT.GetDHTItemCallback{
         ByteArrayWrapper key = new ByteArrayWrapper(chainID);
         if (this.enableMineForTest.containsKey(key)) {
             this.enableMineForTest.put(key, true);
+            activateChain(key);
         }
     }
 
@@ -2921,51 +3930,31 @@ public class Chains implements DHT.GetDHTItemCallback{
         DataIdentifier dataIdentifier = (DataIdentifier) cbData;
         switch (dataIdentifier.getDataType()) {
             case TIP_ITEM_FROM_PEER_FOR_MINING: {
+                PeerManager tipPeerManager = this.peerManagers.get(dataIdentifier.getChainID());
+                if (null != tipPeerManager) {
+                    tipPeerManager.onPeerResult(dataIdentifier.getExtraInfo1().getData(),
+                            makeRequestID(DataType.TIP_ITEM_FROM_PEER_FOR_MINING,
+                                    Salt.makeTipSalt(dataIdentifier.getChainID().getData())), null != item);
+                }
+
                 if (null == item) {
                     logger.error("TIP_ITEM_FROM_PEER_FOR_MINING from peer[{}] is empty.",
                             dataIdentifier.getExtraInfo1().toString());
 
-                    Long count = this.tipFailure.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                    if (null == count) {
-                        count = 1L;
-                    } else {
-                        count++;
-                    }
-                    this.tipFailure.get(dataIdentifier.getChainID()).put(dataIdentifier.getExtraInfo1(), count);
-
-                    Long total = this.tipSuccess.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                    if (null == total) {
-                        total = count;
-                    } else {
-                        total += count;
-                    }
-                    logger.info("Tip Item: Address:{}, failure rate: {} / {} = {}",
-                            dataIdentifier.getExtraInfo1().toString(), count, total, ((float)count / (float)total));
-
                     return;
                 }
 
-                Long count = this.tipSuccess.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                if (null == count) {
-                    count = 1L;
-                } else {
-                    count++;
-                }
-                this.tipSuccess.get(dataIdentifier.getChainID()).put(dataIdentifier.getExtraInfo1(), count);
-
-                Long total = this.tipFailure.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                if (null == total) {
-                    total = count;
-                } else {
-                    total += count;
-                }
-                logger.info("Tip Item: Address:{}, success rate: {} / {} = {}",
-                        dataIdentifier.getExtraInfo1().toString(), count, total, ((float)count / (float)total));
-
                 TipItem tipItem = new TipItem(item);
 
                 if (tipItem.validate()) {
                     byte[] blockHash = tipItem.getBlockHash();
+                    boolean newTip = null != blockHash && this.chainActivity.onTip(dataIdentifier.getChainID(),
+                            blockHash, System.currentTimeMillis() / 1000);
+                    if (!newTip && this.chainActivity.isHibernating(dataIdentifier.getChainID())) {
+                        // 休眠的链只关心新的tip区块
+                        break;
+                    }
+
                     if (null != blockHash) {
                         logger.debug("Request tip block hash[{}] from peer[{}]", Hex.toHexString(blockHash),
                                 dataIdentifier.getExtraInfo1().toString());
@@ -3077,8 +4066,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                 }
 
                 if (success) {
-                    this.blockContainerMap.get(dataIdentifier.getChainID()).
-                            put(dataIdentifier.getExtraInfo1(), blockContainer);
+                    putBlockContainer(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo1(), blockContainer);
                 }
 
                 break;
@@ -3135,8 +4123,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                             }
                         }
 
-                        this.blockContainerMap.get(dataIdentifier.getChainID()).
-                                put(dataIdentifier.getExtraInfo2(), blockContainer);
+                        putBlockContainer(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo2(), blockContainer);
                     }
                 }
 
@@ -3195,8 +4182,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                         }
 
                         logger.info("Got block container [{}] completely.", dataIdentifier.getExtraInfo2().toString());
-                        this.blockContainerMap.get(dataIdentifier.getChainID()).
-                                put(dataIdentifier.getExtraInfo2(), blockContainer);
+                        putBlockContainer(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo2(), blockContainer);
                     }
 
                 }
@@ -3253,8 +4239,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                                     blockContainer.setHorizontalItem(horizontalItem);
                                     blockContainer.setTx(tx);
 
-                                    this.blockContainerMap.get(dataIdentifier.getChainID()).
-                                            put(dataIdentifier.getExtraInfo1(), blockContainer);
+                                    putBlockContainer(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo1(), blockContainer);
                                 } else {
                                     // 从缓存删掉空交易，非空交易不作删除，等队列满删除
                                     this.txMap.get(dataIdentifier.getChainID()).remove(txKey);
@@ -3271,52 +4256,26 @@ public class Chains implements DHT.GetDHTItemCallback{
                             }
                         }
 
-                        this.blockContainerMap.get(dataIdentifier.getChainID()).
-                                put(dataIdentifier.getExtraInfo2(), blockContainer);
+                        putBlockContainer(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo2(), blockContainer);
                     }
 
                 }
                 break;
             }
             case DEMAND_FROM_PEER: {
-                if (null == item) {
-                    logger.error("DEMAND_FROM_PEER is empty");
-                    Long count = this.demandFailure.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                    if (null == count) {
-                        count = 1L;
-                    } else {
-                        count++;
-                    }
-                    this.demandFailure.get(dataIdentifier.getChainID()).put(dataIdentifier.getExtraInfo1(), count);
-
-                    Long total = this.demandSuccess.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                    if (null == total) {
-                        total = count;
-                    } else {
-                        total += count;
-                    }
-                    logger.info("Demand: Address:{}, failure rate: {} / {} = {}",
-                            dataIdentifier.getExtraInfo1().toString(), count, total, ((float)count / (float)total));
-
-                    return;
+                PeerManager demandPeerManager = this.peerManagers.get(dataIdentifier.getChainID());
+                if (null != demandPeerManager) {
+                    demandPeerManager.onPeerResult(dataIdentifier.getExtraInfo1().getData(),
+                            makeRequestID(DataType.DEMAND_FROM_PEER,
+                                    Salt.makeDemandSalt(dataIdentifier.getChainID().getData())), null != item);
                 }
 
-                Long count = this.demandSuccess.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                if (null == count) {
-                    count = 1L;
-                } else {
-                    count++;
-                }
-                this.demandSuccess.get(dataIdentifier.getChainID()).put(dataIdentifier.getExtraInfo1(), count);
+                if (null == item) {
+                    logger.error("DEMAND_FROM_PEER from peer[{}] is empty.",
+                            dataIdentifier.getExtraInfo1().toString());
 
-                Long total = this.demandFailure.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo1());
-                if (null == total) {
-                    total = count;
-                } else {
-                    total += count;
+                    return;
                 }
-                logger.info("Demand: Address:{}, success rate: {} / {} = {}",
-                        dataIdentifier.getExtraInfo1().toString(), count, total, ((float)count / (float)total));
 
                 DemandItem demandItem = new DemandItem(item);
                 if (demandItem.validate()) {
@@ -3329,27 +4288,37 @@ public class Chains implements DHT.GetDHTItemCallback{
                     byte[] txHash = demandItem.getTxHash();
                     if (null != txHash) {
                         logger.info("Got a demand tx hash:{}", Hex.toHexString(txHash));
-                        this.txHashMapFromDemand.get(dataIdentifier.getChainID()).add(new ByteArrayWrapper(txHash));
+                        addDemand(dataIdentifier.getChainID(), DemandResponder.ItemType.TX, new ByteArrayWrapper(txHash));
                     }
 
                     byte[] horizontalHash = demandItem.getHorizontalHash();
                     if (null != horizontalHash) {
                         logger.info("Got a demand horizontal hash:{}", Hex.toHexString(horizontalHash));
-                        this.horizontalHashMapFromDemand.get(dataIdentifier.getChainID()).add(new ByteArrayWrapper(horizontalHash));
+                        addDemand(dataIdentifier.getChainID(), DemandResponder.ItemType.HORIZONTAL_ITEM,
+                                new ByteArrayWrapper(horizontalHash));
                     }
 
                     byte[] verticalHash = demandItem.getVerticalHash();
                     if (null != verticalHash) {
                         logger.info("Got a demand vertical hash:{}", Hex.toHexString(verticalHash));
-                        this.verticalHashMapFromDemand.get(dataIdentifier.getChainID()).add(new ByteArrayWrapper(verticalHash));
+                        addDemand(dataIdentifier.getChainID(), DemandResponder.ItemType.VERTICAL_ITEM,
+                                new ByteArrayWrapper(verticalHash));
                     }
                 }
 
                 break;
             }
             case TIP_BLOCK_FROM_PEER_FOR_VOTING: {
+                PeerManager votingPeerManager = this.peerManagers.get(dataIdentifier.getChainID());
+                if (null != votingPeerManager) {
+                    votingPeerManager.onPeerResult(dataIdentifier.getExtraInfo1().getData(),
+                            makeRequestID(DataType.TIP_BLOCK_FROM_PEER_FOR_VOTING,
+                                    Salt.makeTipSalt(dataIdentifier.getChainID().getData())), null != item);
+                }
+
                 if (null == item) {
-                    logger.error("TIP_BLOCK_FROM_PEER_FOR_VOTING is empty");
+                    logger.error("TIP_BLOCK_FROM_PEER_FOR_VOTING from peer[{}] is empty.",
+                            dataIdentifier.getExtraInfo1().toString());
                     return;
                 }
 
@@ -3379,7 +4348,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                 }
 
                 Block block = new Block(item);
-                this.votingBlocks.get(dataIdentifier.getChainID()).add(block);
+                countVote(dataIdentifier.getChainID(), block);
 
                 break;
             }
@@ -3402,6 +4371,11 @@ public class Chains implements DHT.GetDHTItemCallback{
                 Transaction tx = TransactionFactory.parseTransaction(item);
                 this.txMapForPool.get(dataIdentifier.getChainID()).add(tx);
 
+                ChainJournal journal = this.journals.get(dataIdentifier.getChainID());
+                if (null != journal) {
+                    journal.appendRemoteTx(tx);
+                }
+
                 break;
             }
             case HISTORY_BLOCK_REQUEST_FOR_SYNC: {
@@ -3416,6 +4390,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                     // 返回区块为空，在block container集合里插入空标志
                     this.blockContainerMapForSync.get(dataIdentifier.getChainID()).
                             put(dataIdentifier.getExtraInfo1(), null);
+                    onSyncRequestFailed(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo1());
                     return;
                 }
 
@@ -3518,6 +4493,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                     // 区块对应交易为空，在block container集合里插入空标志
                     this.blockContainerMapForSync.get(dataIdentifier.getChainID()).
                             put(dataIdentifier.getExtraInfo1(), null);
+                    onSyncRequestFailed(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo2());
                     return;
                 } else {
 
@@ -3577,6 +4553,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                     // 区块对应交易为空，在block container集合里插入空标志
                     this.blockContainerMapForSync.get(dataIdentifier.getChainID()).
                             put(dataIdentifier.getExtraInfo2(), null);
+                    onSyncRequestFailed(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo2());
 
                     return;
                 } else {
@@ -3592,16 +4569,10 @@ public class Chains implements DHT.GetDHTItemCallback{
 
                     Block block = this.blockMapForSync.get(dataIdentifier.getChainID()).get(dataIdentifier.getExtraInfo2());
 
-                    int counter = this.syncCounter.get(dataIdentifier.getChainID()) + 1;
-                    this.syncCounter.put(dataIdentifier.getChainID(), counter);
-
-                    if (counter < ChainParam.MUTABLE_RANGE) {
-                        List<byte[]> hashList = verticalItem.getHashList();
-                        if (null != hashList) {
-                            for (byte[] hash: hashList) {
-                                requestBlockForSync(dataIdentifier.getChainID(), hash);
-                            }
-                        }
+                    // 用哈希列表延伸同步流水线，由主循环按窗口请求
+                    SyncPipeline pipeline = this.syncPipelines.get(dataIdentifier.getChainID());
+                    if (null != pipeline) {
+                        pipeline.extend(dataIdentifier.getExtraInfo2(), verticalItem.getHashList());
                     }
 
                     if (null != block) {
@@ -3647,6 +4618,7 @@ public class Chains implements DHT.GetDHTItemCallback{
                     // 区块对应交易为空，在block container集合里插入空标志
                     this.blockContainerMapForSync.get(dataIdentifier.getChainID()).
                             put(dataIdentifier.getExtraInfo2(), null);
+                    onSyncRequestFailed(dataIdentifier.getChainID(), dataIdentifier.getExtraInfo2());
 
                     return;
                 } else {
@@ -3714,7 +4686,7 @@ public class Chains implements DHT.GetDHTItemCallback{
             case HISTORY_BLOCK_DEMAND: {
                 if (null == item) {
                     logger.debug("HISTORY_BLOCK_DEMAND is empty");
-                    this.blockHashMapFromDemand.get(dataIdentifier.getChainID()).add(dataIdentifier.getExtraInfo1());
+                    addDemand(dataIdentifier.getChainID(), DemandResponder.ItemType.BLOCK, dataIdentifier.getExtraInfo1());
                 }
 
                 break;
@@ -0,0 +1,235 @@
+package io.taucoin.chain;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import io.taucoin.db.DBException;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 远端需求回应聚合：一段时间内多个节点对同一数据的需求只回应一次，
+ * 最近回应过的数据缓存编码结果，避免重复读数据库，
+ * 每一轮按字节预算回应，超出预算的需求留到下一轮。
+ */
+public class DemandResponder {
+
+    public enum ItemType {
+        BLOCK,
+        TX,
+        HORIZONTAL_ITEM,
+        VERTICAL_ITEM,
+    }
+
+    /**
+     * 从本地读取需求数据的编码
+     */
+    public interface ItemLoader {
+        /**
+         * @param type item type
+         * @param hash item hash
+         * @return encoded items to publish, null if not found
+         * @throws DBException database exception
+         */
+        List<byte[]> load(ItemType type, ByteArrayWrapper hash) throws DBException;
+    }
+
+    // 回应过的数据在该时间内不再回应，单位毫秒
+    public static final long DEFAULT_DEDUP_WINDOW = 60 * 1000;
+
+    // 每一轮回应的字节预算
+    public static final int DEFAULT_ROUND_BYTES = 256 * 1024;
+
+    // 最近回应数据的缓存字节上限
+    public static final int DEFAULT_CACHE_BYTES = 4 * 1024 * 1024;
+
+    // 最多等待回应的需求数量
+    private static final int MAX_PENDING = 1024;
+
+    // 最多记录的回应时间数量
+    private static final int MAX_PUBLISHED = 4096;
+
+    private static class Demand {
+        final ItemType type;
+        final ByteArrayWrapper hash;
+
+        Demand(ItemType type, ByteArrayWrapper hash) {
+            this.type = type;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Demand)) return false;
+            Demand demand = (Demand) o;
+            return this.type == demand.type && this.hash.equals(demand.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.type, this.hash);
+        }
+    }
+
+    private final long dedupWindow;
+
+    private final int roundBytes;
+
+    private final int cacheBytes;
+
+    // 等待回应的需求，按到达顺序
+    private final Map<Demand, Long> pendingDemands = new LinkedHashMap<>();
+
+    // 需求 -> 最近回应时间
+    private final Map<Demand, Long> publishedTime = new LinkedHashMap<Demand, Long>(16, 0.75F, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Demand, Long> eldest) {
+            return size() > MAX_PUBLISHED;
+        }
+    };
+
+    // 最近回应数据的编码，LRU
+    private final LinkedHashMap<Demand, List<byte[]>> hotItems = new LinkedHashMap<>(16, 0.75F, true);
+
+    private int hotBytes = 0;
+
+    private long respondedCounter = 0;
+
+    private long deduplicatedCounter = 0;
+
+    private long cacheHitCounter = 0;
+
+    public DemandResponder() {
+        this(DEFAULT_DEDUP_WINDOW, DEFAULT_ROUND_BYTES, DEFAULT_CACHE_BYTES);
+    }
+
+    public DemandResponder(long dedupWindow, int roundBytes, int cacheBytes) {
+        this.dedupWindow = dedupWindow;
+        this.roundBytes = roundBytes;
+        this.cacheBytes = cacheBytes;
+    }
+
+    /**
+     * 加入远端需求
+     * @param type item type
+     * @param hash item hash
+     * @param now 当前时间，单位毫秒
+     * @return true if the demand will be responded, false if it is duplicated or dropped
+     */
+    public synchronized boolean addDemand(ItemType type, ByteArrayWrapper hash, long now) {
+        Demand demand = new Demand(type, hash);
+
+        Long time = this.publishedTime.get(demand);
+        if ((null != time && now - time < this.dedupWindow) || this.pendingDemands.containsKey(demand)) {
+            this.deduplicatedCounter++;
+            return false;
+        }
+
+        if (this.pendingDemands.size() >= MAX_PENDING) {
+            return false;
+        }
+
+        this.pendingDemands.put(demand, now);
+
+        return true;
+    }
+
+    /**
+     * 取出本轮需要发布的数据，不超过字节预算，但至少回应一个需求
+     * @param loader local item loader
+     * @param now 当前时间，单位毫秒
+     * @return encoded items to publish
+     * @throws DBException database exception
+     */
+    public synchronized List<byte[]> pollResponses(ItemLoader loader, long now) throws DBException {
+        List<byte[]> responses = new ArrayList<>();
+        int bytes = 0;
+
+        Iterator<Demand> it = this.pendingDemands.keySet().iterator();
+        while (it.hasNext()) {
+            Demand demand = it.next();
+
+            List<byte[]> items = this.hotItems.get(demand);
+            if (null != items) {
+                this.cacheHitCounter++;
+            } else {
+                items = loader.load(demand.type, demand.hash);
+                if (null == items || items.isEmpty()) {
+                    // 本地没有该数据
+                    it.remove();
+                    continue;
+                }
+                cache(demand, items);
+            }
+
+            int size = sizeOf(items);
+            if (bytes > 0 && bytes + size > this.roundBytes) {
+                break;
+            }
+
+            responses.addAll(items);
+            bytes += size;
+
+            it.remove();
+            this.publishedTime.put(demand, now);
+            this.respondedCounter++;
+        }
+
+        return responses;
+    }
+
+    private void cache(Demand demand, List<byte[]> items) {
+        int size = sizeOf(items);
+        if (size > this.cacheBytes) {
+            return;
+        }
+
+        List<byte[]> old = this.hotItems.put(demand, items);
+        if (null != old) {
+            this.hotBytes -= sizeOf(old);
+        }
+        this.hotBytes += size;
+
+        Iterator<List<byte[]>> it = this.hotItems.values().iterator();
+        while (this.hotBytes > this.cacheBytes && it.hasNext()) {
+            this.hotBytes -= sizeOf(it.next());
+            it.remove();
+        }
+    }
+
+    private static int sizeOf(List<byte[]> items) {
+        int size = 0;
+        for (byte[] item: items) {
+            size += item.length;
+        }
+
+        return size;
+    }
+
+    public synchronized int getPendingSize() {
+        return this.pendingDemands.size();
+    }
+
+    public synchronized long getRespondedCounter() {
+        return this.respondedCounter;
+    }
+
+    public synchronized long getDeduplicatedCounter() {
+        return this.deduplicatedCounter;
+    }
+
+    public synchronized long getCacheHitCounter() {
+        return this.cacheHitCounter;
+    }
+
+    public synchronized void clear() {
+        this.pendingDemands.clear();
+        this.publishedTime.clear();
+        this.hotItems.clear();
+        this.hotBytes = 0;
+    }
+}
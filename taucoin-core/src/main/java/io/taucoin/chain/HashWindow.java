@@ -0,0 +1,181 @@
+package io.taucoin.chain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 主链最近区块哈希的滑动窗口，用于构造和验证vertical item，避免逐个从数据库读取祖先区块。
+ * 窗口从新到旧保存连续区块号的哈希，连接新区块O(1)更新，回滚时从头部弹出，
+ * 分叉验证时从共同祖先处复制一个分支窗口。
+ */
+public class HashWindow {
+
+    // 窗口最多保存的哈希数量
+    private final int capacity;
+
+    // 从新到旧的主链区块哈希
+    private final ArrayDeque<byte[]> hashes;
+
+    // 窗口中最新区块的区块号，窗口为空时为-1
+    private long tipNumber = -1;
+
+    public HashWindow(int capacity) {
+        this.capacity = capacity;
+        this.hashes = new ArrayDeque<>(capacity + 1);
+    }
+
+    private HashWindow(HashWindow window) {
+        this.capacity = window.capacity;
+        this.hashes = new ArrayDeque<>(window.hashes);
+        this.tipNumber = window.tipNumber;
+    }
+
+    /**
+     * 连接新区块
+     * @param number 区块号
+     * @param hash 区块哈希
+     */
+    public synchronized void push(long number, byte[] hash) {
+        // 不连续则重新开始
+        if (!this.hashes.isEmpty() && number != this.tipNumber + 1) {
+            this.hashes.clear();
+        }
+
+        this.hashes.addFirst(hash);
+        this.tipNumber = number;
+
+        if (this.hashes.size() > this.capacity) {
+            this.hashes.removeLast();
+        }
+    }
+
+    /**
+     * 在最旧的一端补充哈希，用于从数据库加载窗口
+     * @param hash 比当前最旧区块小1的区块哈希
+     * @return true if added, false if window is full
+     */
+    public synchronized boolean addOldest(byte[] hash) {
+        if (this.hashes.size() >= this.capacity) {
+            return false;
+        }
+
+        this.hashes.addLast(hash);
+
+        return true;
+    }
+
+    /**
+     * 回滚最新区块
+     * @return 回滚的区块哈希，窗口为空返回null
+     */
+    public synchronized byte[] pop() {
+        byte[] hash = this.hashes.pollFirst();
+        if (null != hash) {
+            this.tipNumber--;
+        }
+
+        if (this.hashes.isEmpty()) {
+            this.tipNumber = -1;
+        }
+
+        return hash;
+    }
+
+    /**
+     * 从共同祖先处复制一个分支窗口，原窗口不变
+     * @param ancestorNumber 共同祖先区块号
+     * @return 以共同祖先为最新区块的窗口
+     */
+    public synchronized HashWindow fork(long ancestorNumber) {
+        HashWindow window = new HashWindow(this);
+
+        while (window.tipNumber > ancestorNumber) {
+            window.pop();
+        }
+
+        return window;
+    }
+
+    /**
+     * 获取指定区块号的哈希
+     * @param number 区块号
+     * @return 哈希，不在窗口内返回null
+     */
+    public synchronized byte[] getHash(long number) {
+        if (this.hashes.isEmpty() || number > this.tipNumber || number < getOldestNumber()) {
+            return null;
+        }
+
+        long index = this.tipNumber - number;
+        Iterator<byte[]> it = this.hashes.iterator();
+        for (long i = 0; i < index; i++) {
+            it.next();
+        }
+
+        return it.next();
+    }
+
+    /**
+     * 窗口中是否有该区块
+     * @param number 区块号
+     * @param hash 区块哈希
+     * @return true if contains
+     */
+    public boolean contains(long number, byte[] hash) {
+        return Arrays.equals(hash, getHash(number));
+    }
+
+    /**
+     * 从指定区块开始往前取哈希列表，即该区块的下一个区块的vertical item
+     * @param number 起始区块号
+     * @param max 最多数量
+     * @return 从新到旧的哈希列表，窗口不能提供完整列表时返回null
+     */
+    public synchronized List<byte[]> getHashList(long number, int max) {
+        if (this.hashes.isEmpty() || number > this.tipNumber) {
+            return null;
+        }
+
+        // 到创世区块为止
+        long expected = Math.min(max, number + 1);
+        if (number - expected + 1 < getOldestNumber()) {
+            return null;
+        }
+
+        List<byte[]> list = new ArrayList<>((int) expected);
+        Iterator<byte[]> it = this.hashes.iterator();
+        for (long i = this.tipNumber; i > number; i--) {
+            it.next();
+        }
+
+        for (long i = 0; i < expected; i++) {
+            list.add(it.next());
+        }
+
+        return list;
+    }
+
+    public synchronized long getTipNumber() {
+        return this.tipNumber;
+    }
+
+    public synchronized long getOldestNumber() {
+        return this.tipNumber - this.hashes.size() + 1;
+    }
+
+    public synchronized int size() {
+        return this.hashes.size();
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public synchronized void clear() {
+        this.hashes.clear();
+        this.tipNumber = -1;
+    }
+}
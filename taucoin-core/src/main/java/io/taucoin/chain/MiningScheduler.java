@@ -0,0 +1,194 @@
+package io.taucoin.chain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 挖矿定时器：每条链的下一次出块时间只依赖当前最佳区块和自己的挖矿power，
+ * 因此在最佳区块或power变化时计算一次并缓存，到时间后唤醒主循环挖矿，
+ * 避免主循环每一轮都重新计算是否可以挖矿。
+ */
+public class MiningScheduler {
+    private static final Logger logger = LoggerFactory.getLogger("MiningScheduler");
+
+    // 不可挖矿时的出块时间
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private final ScheduledExecutorService timer;
+
+    // chain ID -> 挖矿计划
+    private final Map<ByteArrayWrapper, Schedule> schedules = new ConcurrentHashMap<>();
+
+    // 已到挖矿时间，等待主循环处理的链
+    private final Set<ByteArrayWrapper> dueChains = ConcurrentHashMap.newKeySet();
+
+    // 唤醒主循环
+    private final Object signal = new Object();
+
+    private static class Schedule {
+        // 计算出块时间时的最佳区块哈希
+        final byte[] tipHash;
+        // 计算出块时间时的挖矿公钥
+        final byte[] pubKey;
+        // 出块时间，单位秒
+        final long miningTime;
+        ScheduledFuture<?> future;
+        volatile boolean due = false;
+
+        Schedule(byte[] tipHash, byte[] pubKey, long miningTime) {
+            this.tipHash = tipHash;
+            this.pubKey = pubKey;
+            this.miningTime = miningTime;
+        }
+    }
+
+    public MiningScheduler() {
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "MiningScheduler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 挖矿计划是否基于当前最佳区块和公钥
+     * @param chainID chain ID
+     * @param tipHash best block hash
+     * @param pubKey mining public key
+     * @return true if up to date
+     */
+    public boolean isUpToDate(ByteArrayWrapper chainID, byte[] tipHash, byte[] pubKey) {
+        Schedule schedule = this.schedules.get(chainID);
+        return null != schedule && Arrays.equals(schedule.tipHash, tipHash)
+                && Arrays.equals(schedule.pubKey, pubKey);
+    }
+
+    /**
+     * 设置链的挖矿时间
+     * @param chainID chain ID
+     * @param tipHash best block hash
+     * @param pubKey mining public key
+     * @param miningTime 出块时间，单位秒，不可挖矿为NEVER
+     */
+    public void schedule(ByteArrayWrapper chainID, byte[] tipHash, byte[] pubKey, long miningTime) {
+        Schedule schedule = new Schedule(tipHash, pubKey, miningTime);
+        cancel(this.schedules.put(chainID, schedule));
+
+        // 已停止，主循环线程退出前可能还会调用
+        if (NEVER == miningTime || this.timer.isShutdown()) {
+            return;
+        }
+
+        long delay = miningTime * 1000 - System.currentTimeMillis();
+        if (delay <= 0) {
+            fire(chainID, schedule);
+        } else {
+            schedule.future = this.timer.schedule(() -> fire(chainID, schedule), delay, TimeUnit.MILLISECONDS);
+        }
+
+        logger.debug("Chain ID[{}]: next mining time {}, delay {} ms",
+                new String(chainID.getData()), miningTime, delay);
+    }
+
+    /**
+     * 取消链的挖矿计划，下一轮重新计算
+     * @param chainID chain ID
+     */
+    public void unschedule(ByteArrayWrapper chainID) {
+        cancel(this.schedules.remove(chainID));
+        this.dueChains.remove(chainID);
+    }
+
+    /**
+     * 链的下一次出块时间
+     * @param chainID chain ID
+     * @return 出块时间，单位秒，没有计划或不可挖矿为NEVER
+     */
+    public long getMiningTime(ByteArrayWrapper chainID) {
+        Schedule schedule = this.schedules.get(chainID);
+        return null == schedule ? NEVER : schedule.miningTime;
+    }
+
+    /**
+     * 是否已到挖矿时间
+     * @param chainID chain ID
+     * @return true if it's time to mine
+     */
+    public boolean isDue(ByteArrayWrapper chainID) {
+        Schedule schedule = this.schedules.get(chainID);
+        return null != schedule && schedule.due;
+    }
+
+    /**
+     * 取出刚到挖矿时间的链
+     * @return chain ID set
+     */
+    public Set<ByteArrayWrapper> pollDueChains() {
+        Set<ByteArrayWrapper> chains = new HashSet<>();
+        for (ByteArrayWrapper chainID: this.dueChains) {
+            if (this.dueChains.remove(chainID)) {
+                chains.add(chainID);
+            }
+        }
+
+        return chains;
+    }
+
+    /**
+     * 等待，直到超时或者有链到了挖矿时间
+     * @param timeout 超时，单位毫秒
+     * @throws InterruptedException interrupted
+     */
+    public void awaitDue(long timeout) throws InterruptedException {
+        synchronized (this.signal) {
+            if (this.dueChains.isEmpty()) {
+                this.signal.wait(timeout);
+            }
+        }
+    }
+
+    public void clear() {
+        for (Schedule schedule: this.schedules.values()) {
+            cancel(schedule);
+        }
+        this.schedules.clear();
+        this.dueChains.clear();
+    }
+
+    public void shutdown() {
+        clear();
+        this.timer.shutdownNow();
+    }
+
+    private void fire(ByteArrayWrapper chainID, Schedule schedule) {
+        // 已被新的计划替换
+        if (this.schedules.get(chainID) != schedule) {
+            return;
+        }
+
+        schedule.due = true;
+
+        synchronized (this.signal) {
+            this.dueChains.add(chainID);
+            this.signal.notifyAll();
+        }
+    }
+
+    private static void cancel(Schedule schedule) {
+        if (null != schedule && null != schedule.future) {
+            schedule.future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package io.taucoin.chain;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 历史区块同步流水线：先通过vertical item里的哈希列表得到前面区块的哈希(header-first)，
+ * 再用一个滑动窗口同时向DHT请求多个区块，区块回来后仍然从新到旧逐个回溯处理。
+ * 最深的已知区块优先请求，使哈希列表始终领先于区块下载。
+ */
+public class SyncPipeline {
+
+    // 默认同时请求的区块数量
+    public static final int DEFAULT_WINDOW = 32;
+
+    // 默认已知未处理的区块数量上限，不超过同步缓存的一半，避免已下载的区块被淘汰
+    public static final int DEFAULT_LOOKAHEAD = ChainParam.MUTABLE_RANGE / 2;
+
+    // 请求超时后重新请求，单位毫秒
+    public static final long REQUEST_TIMEOUT = 15 * 1000;
+
+    // 同步速率统计周期，单位毫秒
+    private static final long RATE_PERIOD = 1000;
+
+    // 同步速率平滑系数
+    private static final double RATE_ALPHA = 0.3;
+
+    private final int window;
+
+    private final int lookahead;
+
+    // 从新到旧待同步的区块哈希，头部是下一个要处理的区块
+    private final ArrayDeque<ByteArrayWrapper> pendingHashes = new ArrayDeque<>();
+
+    private final Set<ByteArrayWrapper> knownHashes = new HashSet<>();
+
+    // 请求中的区块哈希 -> 请求时间
+    private final Map<ByteArrayWrapper, Long> inFlight = new HashMap<>();
+
+    // 已同步区块数量
+    private long syncedBlocks = 0;
+
+    // 同步速率，单位：区块/秒
+    private double blocksPerSecond = 0;
+
+    private long rateStartTime = 0;
+
+    private int rateCounter = 0;
+
+    public SyncPipeline() {
+        this(DEFAULT_WINDOW, DEFAULT_LOOKAHEAD);
+    }
+
+    public SyncPipeline(int window, int lookahead) {
+        this.window = window;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * 从同步区块的vertical item重新开始流水线
+     * @param hashList 同步区块之前的区块哈希，从新到旧
+     */
+    public synchronized void restart(List<byte[]> hashList) {
+        this.pendingHashes.clear();
+        this.knownHashes.clear();
+        this.inFlight.clear();
+
+        append(hashList);
+    }
+
+    /**
+     * 收到一个区块的vertical item，如果该区块在流水线中，则用哈希列表延伸流水线
+     * @param blockHash vertical item所属区块哈希
+     * @param hashList 该区块之前的区块哈希，从新到旧
+     * @return true if pipeline is extended
+     */
+    public synchronized boolean extend(ByteArrayWrapper blockHash, List<byte[]> hashList) {
+        // 只有最深的已知区块能延伸流水线，保证哈希连续
+        if (this.pendingHashes.isEmpty() || !this.pendingHashes.peekLast().equals(blockHash)) {
+            return false;
+        }
+
+        return append(hashList);
+    }
+
+    private boolean append(List<byte[]> hashList) {
+        if (null == hashList) {
+            return false;
+        }
+
+        boolean extended = false;
+        for (byte[] hash: hashList) {
+            if (this.pendingHashes.size() >= this.lookahead) {
+                break;
+            }
+
+            ByteArrayWrapper key = new ByteArrayWrapper(hash);
+            if (this.knownHashes.add(key)) {
+                this.pendingHashes.addLast(key);
+                extended = true;
+            }
+        }
+
+        return extended;
+    }
+
+    /**
+     * 选出需要请求的区块：最深的已知区块优先，其余从新到旧填满请求窗口，超时的请求重新请求
+     * @param now 当前时间，单位毫秒
+     * @param ready 区块是否已经下载完成
+     * @return 需要请求的区块哈希
+     */
+    public synchronized List<ByteArrayWrapper> nextRequests(long now, Predicate<ByteArrayWrapper> ready) {
+        Iterator<Map.Entry<ByteArrayWrapper, Long>> it = this.inFlight.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<ByteArrayWrapper, Long> entry = it.next();
+            if (ready.test(entry.getKey()) || now - entry.getValue() >= REQUEST_TIMEOUT) {
+                it.remove();
+            }
+        }
+
+        List<ByteArrayWrapper> requests = new ArrayList<>();
+        if (this.pendingHashes.isEmpty()) {
+            return requests;
+        }
+
+        ByteArrayWrapper frontier = this.pendingHashes.peekLast();
+        if (this.inFlight.size() < this.window) {
+            request(frontier, now, ready, requests);
+        }
+
+        for (ByteArrayWrapper hash: this.pendingHashes) {
+            if (this.inFlight.size() >= this.window) {
+                break;
+            }
+
+            request(hash, now, ready, requests);
+        }
+
+        return requests;
+    }
+
+    private void request(ByteArrayWrapper hash, long now, Predicate<ByteArrayWrapper> ready,
+                         List<ByteArrayWrapper> requests) {
+        if (this.inFlight.containsKey(hash) || ready.test(hash)) {
+            return;
+        }
+
+        this.inFlight.put(hash, now);
+        requests.add(hash);
+    }
+
+    /**
+     * 区块或其数据请求失败，允许马上重新请求
+     * @param blockHash block hash
+     */
+    public synchronized void onFailed(ByteArrayWrapper blockHash) {
+        this.inFlight.remove(blockHash);
+    }
+
+    /**
+     * 区块已同步
+     * @param blockHash block hash
+     * @param now 当前时间，单位毫秒
+     */
+    public synchronized void onSynced(ByteArrayWrapper blockHash, long now) {
+        if (blockHash.equals(this.pendingHashes.peekFirst())) {
+            this.pendingHashes.pollFirst();
+            this.knownHashes.remove(blockHash);
+        }
+        this.inFlight.remove(blockHash);
+
+        this.syncedBlocks++;
+
+        if (0 == this.rateStartTime) {
+            this.rateStartTime = now;
+        }
+        this.rateCounter++;
+
+        long elapsed = now - this.rateStartTime;
+        if (elapsed >= RATE_PERIOD) {
+            double rate = this.rateCounter * 1000.0 / elapsed;
+            this.blocksPerSecond = 0 == this.blocksPerSecond ?
+                    rate : RATE_ALPHA * rate + (1 - RATE_ALPHA) * this.blocksPerSecond;
+            this.rateStartTime = now;
+            this.rateCounter = 0;
+        }
+    }
+
+    /**
+     * @return 下一个要处理的区块哈希，流水线为空返回null
+     */
+    public synchronized ByteArrayWrapper getHead() {
+        return this.pendingHashes.peekFirst();
+    }
+
+    /**
+     * @return 最深的已知区块哈希，流水线为空返回null
+     */
+    public synchronized ByteArrayWrapper getFrontier() {
+        return this.pendingHashes.peekLast();
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.pendingHashes.isEmpty();
+    }
+
+    /**
+     * @return 已知未处理的区块数量
+     */
+    public synchronized int getPendingSize() {
+        return this.pendingHashes.size();
+    }
+
+    /**
+     * @return 请求中的区块数量
+     */
+    public synchronized int getInFlightDepth() {
+        return this.inFlight.size();
+    }
+
+    public synchronized long getSyncedBlocks() {
+        return this.syncedBlocks;
+    }
+
+    /**
+     * @return 同步速率，单位：区块/秒
+     */
+    public synchronized double getBlocksPerSecond() {
+        return this.blocksPerSecond;
+    }
+
+    public synchronized void clear() {
+        this.pendingHashes.clear();
+        this.knownHashes.clear();
+        this.inFlight.clear();
+    }
+}
@@ -9,9 +9,11 @@ import org.spongycastle.util.encoders.Hex;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -19,10 +21,13 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
 import io.taucoin.account.AccountManager;
 import io.taucoin.account.KeyChangedListener;
+import io.taucoin.communication.metrics.PublishCounter;
 import io.taucoin.core.DataIdentifier;
 import io.taucoin.core.FriendInfo;
 import io.taucoin.core.FriendPair;
@@ -42,6 +47,7 @@ import io.taucoin.types.Message;
 import io.taucoin.types.MutableDataType;
 import io.taucoin.util.ByteArrayWrapper;
 import io.taucoin.util.ByteUtil;
+import io.taucoin.util.HashLongMap;
 import io.taucoin.util.HashUtil;
 
 import static io.taucoin.param.ChainParam.SHORT_ADDRESS_LENGTH;
@@ -61,6 +67,12 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
     // 最大可容纳的多设备数量
     private final int MAX_DEVICE_NUMBER = 32;
 
+    // 每个朋友记录的已通知消息哈希数量
+    private static final int MAX_DELIVERED_MESSAGE_NUMBER = 256;
+
+    // 默认工作线程（分片）数量
+    private static final int DEFAULT_SHARD_NUMBER = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
     // 主循环间隔时间
     private int loopIntervalTime = DEFAULT_LOOP_INTERVAL_TIME;
 
@@ -72,15 +84,15 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
     private final AppRepository repository;
 
     // 当前我加的朋友集合（完整公钥）
-    private final Set<ByteArrayWrapper> friends = new CopyOnWriteArraySet<>();
+    private final Set<ByteArrayWrapper> friends = ConcurrentHashMap.newKeySet();
 
-    // 朋友被延迟访问的时间
-//    private final Map<ByteArrayWrapper, BigInteger> friendDelayTime = new ConcurrentHashMap<>();
+    // 朋友下一次允许被访问的时间（ms），每个朋友独立计时
+    private final HashLongMap friendDelayTime = new HashLongMap(ChainParam.PubkeyLength);
 
     // TODO:: 1. 对方上次给我发信息的时间； 2. 对方在新时间
     // TODO:: 对方在线可能是个隐私问题，需要从YY中获得
     // 我的朋友的最新消息的时间戳 <friend, timestamp>（完整公钥）
-    private final Map<ByteArrayWrapper, BigInteger> lastSeen = new ConcurrentHashMap<>();
+    private final HashLongMap lastSeen = new HashLongMap(ChainParam.PubkeyLength);
 
     // 发现的最新信号时间(区分多设备)<friend, <device id, time> >
     private final Map<ByteArrayWrapper, HashMap<ByteArrayWrapper, BigInteger>> latestSignalTime = new ConcurrentHashMap<>();
@@ -88,19 +100,36 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
     // 待处理的消息哈希前缀数组集合
     private final Map<ByteArrayWrapper, LinkedHashSet<HashPrefixArrayInfo>> hashPrefixArrayCache = new ConcurrentHashMap<>();
 
+    // 每个朋友最近已通知上层的消息哈希<friend, message hashes>，朋友的mutable item每次读到都带着同样的消息列表，
+    // 重复的消息不再通知上层，省去上层逐条查数据库去重
+    private final Map<ByteArrayWrapper, Set<ByteArrayWrapper>> deliveredMessages = new ConcurrentHashMap<>();
+
     // 最新的新消息信号集合
 //    private final Map<ByteArrayWrapper, NewMsgSignal> latestNewMsgSignal = new ConcurrentHashMap<>();
 
-    // 等待发布数据的peer
-    private final Set<ByteArrayWrapper> publishFriends = new CopyOnWriteArraySet<>();
+    // 按朋友公钥分片的工作线程，同一个朋友的数据处理和发布总是在同一个分片上串行执行
+    private final FriendShard[] shards;
+
+    // 发布延迟统计
+    private final PublishCounter publishCounter = new PublishCounter();
 
     // Communication thread.
     private Thread communicationThread;
 
     public Communication(byte[] deviceID, MsgListener msgListener, AppRepository repository) {
+        this(deviceID, msgListener, repository, DEFAULT_SHARD_NUMBER);
+    }
+
+    public Communication(byte[] deviceID, MsgListener msgListener, AppRepository repository, int shardNumber) {
         this.deviceID = adjustDeviceID(deviceID);
         this.msgListener = msgListener;
         this.repository = repository;
+
+        int number = Math.max(1, shardNumber);
+        this.shards = new FriendShard[number];
+        for (int i = 0; i < number; i++) {
+            this.shards[i] = new FriendShard(i);
+        }
     }
 
     /**
@@ -124,48 +153,102 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
 
     /**
      * 检查朋友列表是否变动，变动则进行增删调整，避免内存泄露
+     * 使用哈希集合做差集，代价为O(n)
      */
-    private void checkFriends() {
+    void checkFriends() {
         Set<byte[]> friends = this.repository.getAllFriends();
 
         if (null != friends) {
+            Set<ByteArrayWrapper> latestFriends = new HashSet<>();
+            for (byte[] friend: friends) {
+                latestFriends.add(new ByteArrayWrapper(friend));
+            }
+
             // 移除已经删除的朋友
             for (ByteArrayWrapper localFriend: this.friends) {
-                boolean found = false;
-                for (byte[] friend: friends) {
-                    if (Arrays.equals(localFriend.getData(), friend)) {
-                        found = true;
-                        break;
-                    }
-                }
-
-                if (!found) {
+                if (!latestFriends.contains(localFriend)) {
                     removeFriend(localFriend.getData());
                 }
             }
 
             // 添加新朋友
-            for (byte[] friend: friends) {
-                addNewFriend(friend);
-            }
+            this.friends.addAll(latestFriends);
         }
     }
 
     /**
-     * 发布需要发布数据的peer的数据
+     * 获取朋友所在的分片
+     * @param peer 朋友公钥
+     * @return 分片
      */
-    private void publishFriendMutableData() {
-        for (ByteArrayWrapper peer: this.publishFriends) {
-            try {
-                publishFriendMutableData(peer);
-            } catch (RuntimeException e) {
-                logger.error(peer.toString() + ":" + e.getMessage(), e);
-            }
+    private FriendShard getShard(ByteArrayWrapper peer) {
+        return this.shards[getShardIndex(peer)];
+    }
 
-            this.publishFriends.remove(peer);
+    /**
+     * 朋友所在分片的序号，同一个朋友总是落在同一个分片
+     * @param peer 朋友公钥
+     * @return 分片序号
+     */
+    int getShardIndex(ByteArrayWrapper peer) {
+        return Math.floorMod(peer.hashCode(), this.shards.length);
+    }
+
+    /**
+     * 朋友在分片中排队的任务数量
+     * @param peer 朋友公钥
+     * @return 任务数量
+     */
+    int getQueuedTasks(ByteArrayWrapper peer) {
+        return getShard(peer).getQueuedTasks(peer);
+    }
+
+    /**
+     * 获取当前朋友集合
+     * @return 只读的朋友集合
+     */
+    Set<ByteArrayWrapper> getFriends() {
+        return Collections.unmodifiableSet(this.friends);
+    }
+
+    /**
+     * 距离该朋友下一次允许被访问还需等待的时间
+     * @param peer 朋友公钥
+     * @param currentTime 当前时间（ms）
+     * @return 等待时间（ms），0表示可以立即访问
+     */
+    long getVisitDelay(ByteArrayWrapper peer, long currentTime) {
+        synchronized (this.friendDelayTime) {
+            return Math.max(0, this.friendDelayTime.get(peer.getData(), 0) - currentTime);
+        }
+    }
+
+    /**
+     * 记录访问了该朋友，下一次访问至少间隔DELAY_TIME
+     * @param peer 朋友公钥
+     * @param currentTime 当前时间（ms）
+     */
+    void markVisited(ByteArrayWrapper peer, long currentTime) {
+        if (!this.friendDelayTime.isValidKey(peer.getData())) {
+            logger.error("Invalid friend public key length:{}", peer.getData().length);
+            return;
+        }
+
+        synchronized (this.friendDelayTime) {
+            this.friendDelayTime.put(peer.getData(), currentTime + this.DELAY_TIME);
         }
     }
 
+    /**
+     * 访问朋友：请求对方的数据，并向对方发布数据，在朋友所在分片上执行
+     * @param peer 朋友公钥
+     */
+    private void visitFriend(ByteArrayWrapper peer) {
+        markVisited(peer, System.currentTimeMillis());
+        requestMutableDataFromPeer(peer);
+        publishFriendMutableData(peer);
+    }
+
     /**
      * 向朋友发布相关mutable数据
      * @param peer 发布数据的对象
@@ -206,7 +289,9 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
         LinkedHashSet<HashPrefixArrayInfo> hashPrefixArrayInfoList = this.hashPrefixArrayCache.get(peer);
 
         if (null != hashPrefixArrayInfoList) {
-            for (HashPrefixArrayInfo hashPrefixArrayInfo : hashPrefixArrayInfoList) {
+            Iterator<HashPrefixArrayInfo> it = hashPrefixArrayInfoList.iterator();
+            while (it.hasNext()) {
+                HashPrefixArrayInfo hashPrefixArrayInfo = it.next();
                 try {
                     byte[] hashPrefixArray = hashPrefixArrayInfo.getHashPrefixArray();
                     BigInteger timestamp = hashPrefixArrayInfo.getTimestamp();
@@ -226,7 +311,7 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
                 } catch (Exception e) {
                     logger.error(e.getMessage(), e);
                 }
-                hashPrefixArrayInfoList.remove(hashPrefixArrayInfo);
+                it.remove();
             }
         }
 
@@ -309,6 +394,12 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
         } else {
             // 其次，从近期有聊天的朋友里挑选
             List<byte[]> activeFriends = this.repository.getActiveFriends();
+            Set<ByteArrayWrapper> activeFriendSet = new HashSet<>();
+            if (null != activeFriends) {
+                for (byte[] activeFriend: activeFriends) {
+                    activeFriendSet.add(new ByteArrayWrapper(activeFriend));
+                }
+            }
 
             random = new Random(System.currentTimeMillis() + index);
             index = random.nextInt(10);
@@ -336,15 +427,7 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
                     List<byte[]> otherFriends = new ArrayList<>();
 
                     for (ByteArrayWrapper friend: this.friends) {
-                        boolean found = false;
-                        for (byte[] activeFriend: activeFriends) {
-                            if (Arrays.equals(friend.getData(), activeFriend)) {
-                                found = true;
-                                break;
-                            }
-                        }
-
-                        if (!found) {
+                        if (!activeFriendSet.contains(friend)) {
                             otherFriends.add(friend.getData());
                         }
                     }
@@ -371,19 +454,8 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
         }
 
         if (null != peer) {
-//            updateCounter(peer);
-
-            // 如果选中的朋友没在延迟列表的延迟期(1600 ms)，则访问它
-//            long currentTime = System.currentTimeMillis();
-//            BigInteger timestamp = this.friendDelayTime.get(peer);
-//            if (null == timestamp || currentTime >= timestamp.longValue() ) {
-                // 没在延迟列表
-                requestMutableDataFromPeer(peer);
-                // 加入put列表
-                this.publishFriends.add(peer);
-                // 更新延迟时间
-//                this.friendDelayTime.put(peer, BigInteger.valueOf(currentTime + this.DELAY_TIME));
-//            }
+            // 交给朋友所在分片，在该朋友自己的下一次允许访问时间触发，而不是全部立即排队
+            getShard(peer).scheduleVisit(peer, getVisitDelay(peer, System.currentTimeMillis()));
         }
     }
 
@@ -480,12 +552,9 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
 
                 checkFriends();
 
-                // 访问通过gossip机制推荐的活跃peer
+                // 访问通过gossip机制推荐的活跃peer，数据发布由各分片线程完成
                 visitReferredFriends();
 
-                // 发布需要发布数据的peer的数据
-                publishFriendMutableData();
-
                 try {
                     // 获取间隔时间
                     this.loopIntervalTime = this.repository.getMainLoopInterval();
@@ -597,6 +666,14 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
         this.friends.add(key);
     }
 
+    /**
+     * 获取发布延迟统计
+     * @return publish counter
+     */
+    public PublishCounter getPublishCounter() {
+        return this.publishCounter;
+    }
+
     /**
      * 删除朋友
      * @param friend public key
@@ -615,6 +692,10 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
     public boolean start() {
         AccountManager.getInstance().addListener(this);
 
+        for (FriendShard shard: this.shards) {
+            shard.start();
+        }
+
         communicationThread = new Thread(this::mainLoop);
         communicationThread.start();
 
@@ -629,6 +710,10 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
             communicationThread.interrupt();
         }
 
+        for (FriendShard shard: this.shards) {
+            shard.stop();
+        }
+
         AccountManager.getInstance().removeListener(this);
     }
 
@@ -638,9 +723,18 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
      */
     private void clearPeerCache(ByteArrayWrapper peer) {
         this.friends.remove(peer);
-//        this.friendDelayTime.remove(peer);
-        this.lastSeen.remove(peer);
-        this.publishFriends.remove(peer);
+        synchronized (this.friendDelayTime) {
+            this.friendDelayTime.remove(peer.getData());
+        }
+        synchronized (this.lastSeen) {
+            this.lastSeen.remove(peer.getData());
+        }
+        this.latestSignalTime.remove(peer);
+        this.hashPrefixArrayCache.remove(peer);
+        this.deliveredMessages.remove(peer);
+        this.publishCounter.remove(peer);
+        getShard(peer).cancelPublish(peer);
+        FriendCryptoManager.getInstance().removeContext(peer.getData());
     }
 
     /**
@@ -648,9 +742,19 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
      */
     private void clearAllCache() {
         this.friends.clear();
-//        this.friendDelayTime.clear();
-        this.lastSeen.clear();
-        this.publishFriends.clear();
+        synchronized (this.friendDelayTime) {
+            this.friendDelayTime.clear();
+        }
+        synchronized (this.lastSeen) {
+            this.lastSeen.clear();
+        }
+        this.latestSignalTime.clear();
+        this.hashPrefixArrayCache.clear();
+        this.deliveredMessages.clear();
+        this.publishCounter.clear();
+        for (FriendShard shard: this.shards) {
+            shard.clear();
+        }
     }
 
     @Override
@@ -825,6 +929,33 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
         return solutionInfo;
     }
 
+    /**
+     * 过滤掉最近已经通知过上层的消息，并记录本次的新消息
+     * @param peer 朋友
+     * @param messages 收到的消息
+     * @return 没有通知过的消息
+     */
+    List<Message> filterDeliveredMessages(ByteArrayWrapper peer, List<Message> messages) {
+        Set<ByteArrayWrapper> delivered = this.deliveredMessages.computeIfAbsent(peer,
+                k -> Collections.synchronizedSet(Collections.newSetFromMap(
+                        new LinkedHashMap<ByteArrayWrapper, Boolean>(16, 0.75f, true) {
+                            @Override
+                            protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Boolean> eldest) {
+                                return size() > MAX_DELIVERED_MESSAGE_NUMBER;
+                            }
+                        })));
+
+        // 精确集合而不是Bloom filter：误判会丢掉新消息
+        List<Message> newMessages = new ArrayList<>(messages.size());
+        for (Message message: messages) {
+            if (delivered.add(new ByteArrayWrapper(message.getHash()))) {
+                newMessages.add(message);
+            }
+        }
+
+        return newMessages;
+    }
+
     /**
      * 处理收到的mutable data
      * @param mutableDataWrapper 收到的mutable data
@@ -832,19 +963,43 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
      */
     private void processMutableData(MutableDataWrapper mutableDataWrapper, ByteArrayWrapper peer) {
 
+        if (!this.lastSeen.isValidKey(peer.getData())) {
+            logger.error("Invalid peer public key length:{}", peer.getData().length);
+            return;
+        }
+
         // 是否更新好友的在线时间（完整公钥）
         BigInteger timestamp = mutableDataWrapper.getTimestamp();
-        BigInteger lastSeen = this.lastSeen.get(peer);
+        // 时间戳超出long范围时longValue会截断，比较和记录都会出错
+        if (null == timestamp || timestamp.signum() < 0 || timestamp.bitLength() >= Long.SIZE) {
+            logger.warn("Invalid timestamp:{} from peer:{}", timestamp, peer.toString());
+            return;
+        }
         long currentTime = System.currentTimeMillis() / 1000;
 
-        if (null != lastSeen && lastSeen.compareTo(timestamp) > 0) {
+        long lastSeen;
+        boolean newer;
+        synchronized (this.lastSeen) {
+            // 朋友已被删除，不再处理其数据，否则会重新写入已清除的缓存
+            if (!this.friends.contains(peer)) {
+                logger.debug("Drop data from removed friend:{}", peer.toString());
+                return;
+            }
+
+            lastSeen = this.lastSeen.get(peer.getData(), -1);
+            newer = lastSeen < timestamp.longValue();
+            if (newer) {
+                this.lastSeen.put(peer.getData(), timestamp.longValue());
+            }
+        }
+
+        if (lastSeen > timestamp.longValue()) {
             logger.debug("-----old mutable data from peer:{}", peer.toString());
         }
 
         // 判断时间戳，以避免处理历史数据
-        if (null == lastSeen || lastSeen.compareTo(timestamp) < 0) { // 判断是否是更新的online signal
+        if (newer) { // 判断是否是更新的online signal
             logger.debug("Newer data from peer:{}", peer.toString());
-            this.lastSeen.put(peer, timestamp);
             this.msgListener.onDiscoveryFriend(peer.getData(), timestamp);
 //            this.onlineFriendsToNotify.put(peer, timestamp);
         }
@@ -854,7 +1009,10 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
                 List<Message> messages = messageList.getMessageList();
                 if (null != messages) {
                     logger.debug("Got message list, size:{}", messages.size());
-                    this.msgListener.onNewMessage(peer.getData(), messages);
+                    List<Message> newMessages = filterDeliveredMessages(peer, messages);
+                    if (!newMessages.isEmpty()) {
+                        this.msgListener.onNewMessage(peer.getData(), newMessages);
+                    }
                 }
 
                 break;
@@ -1009,7 +1167,150 @@ public class Communication implements DHT.GetMutableItemCallback, KeyChangedList
         }
 
         MutableDataWrapper mutableDataWrapper = new MutableDataWrapper(item);
-        processMutableData(mutableDataWrapper, dataIdentifier.getExtraInfo1());
+        ByteArrayWrapper peer = dataIdentifier.getExtraInfo1();
+        if (!this.friends.contains(peer)) {
+            logger.debug("Drop data from removed friend:{}", peer.toString());
+            return;
+        }
+
+        // 交给朋友所在分片处理，保证同一个朋友的数据串行处理
+        getShard(peer).submit(new FriendTask(peer, mutableDataWrapper, 0));
     }
 
+    /**
+     * 分片任务，data为空表示访问该朋友（请求并发布数据），否则表示处理该朋友的数据
+     */
+    private static class FriendTask implements Delayed {
+        private final ByteArrayWrapper peer;
+        private final MutableDataWrapper data;
+        // 任务创建时间
+        private final long createTime;
+        // 任务触发时间
+        private final long triggerTime;
+
+        FriendTask(ByteArrayWrapper peer, MutableDataWrapper data, long delay) {
+            this.peer = peer;
+            this.data = data;
+            this.createTime = System.currentTimeMillis();
+            this.triggerTime = this.createTime + delay;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.triggerTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(this.triggerTime, ((FriendTask) o).triggerTime);
+        }
+    }
+
+    /**
+     * 朋友分片，每个分片一个线程，按各朋友的触发时间处理任务，而不是每轮扫描整个朋友列表
+     */
+    private class FriendShard {
+        private final int index;
+
+        // 按触发时间排序的任务队列
+        private final DelayQueue<FriendTask> tasks = new DelayQueue<>();
+
+        // 等待访问的peer，避免重复排队
+        private final Set<ByteArrayWrapper> publishFriends = ConcurrentHashMap.newKeySet();
+
+        private Thread shardThread;
+
+        FriendShard(int index) {
+            this.index = index;
+        }
+
+        /**
+         * 安排访问朋友，已在排队的朋友不再重复排队
+         * @param peer 朋友公钥
+         * @param delay 距离该朋友下一次允许访问的时间（ms）
+         */
+        void scheduleVisit(ByteArrayWrapper peer, long delay) {
+            if (this.publishFriends.add(peer)) {
+                this.tasks.offer(new FriendTask(peer, null, delay));
+            }
+        }
+
+        /**
+         * 取消访问朋友，并丢弃该朋友已在排队的数据
+         * @param peer 朋友公钥
+         */
+        void cancelPublish(ByteArrayWrapper peer) {
+            this.publishFriends.remove(peer);
+            this.tasks.removeIf(task -> peer.equals(task.peer));
+        }
+
+        /**
+         * @param peer 朋友公钥
+         * @return 该朋友在排队的任务数量
+         */
+        int getQueuedTasks(ByteArrayWrapper peer) {
+            int count = 0;
+            for (FriendTask task: this.tasks) {
+                if (peer.equals(task.peer)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        void submit(FriendTask task) {
+            this.tasks.offer(task);
+        }
+
+        void clear() {
+            this.publishFriends.clear();
+            this.tasks.clear();
+        }
+
+        private void run(FriendTask task) {
+            if (null != task.data) {
+                processMutableData(task.data, task.peer);
+                return;
+            }
+
+            // 已经被取消
+            if (!this.publishFriends.remove(task.peer)) {
+                return;
+            }
+
+            visitFriend(task.peer);
+            // 发布延迟从计划的触发时间算起，不包括朋友自己的访问间隔
+            publishCounter.published(task.peer, System.currentTimeMillis() - task.triggerTime);
+        }
+
+        private void loop() {
+            while (!Thread.currentThread().isInterrupted()) {
+                FriendTask task;
+                try {
+                    task = this.tasks.take();
+                } catch (InterruptedException e) {
+                    logger.info(e.getMessage(), e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                try {
+                    run(task);
+                } catch (Exception e) {
+                    logger.error(task.peer.toString() + ":" + e.getMessage(), e);
+                }
+            }
+        }
+
+        void start() {
+            this.shardThread = new Thread(this::loop, "Communication-shard-" + this.index);
+            this.shardThread.start();
+        }
+
+        void stop() {
+            if (null != this.shardThread) {
+                this.shardThread.interrupt();
+            }
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package io.taucoin.communication;
+
+import java.security.Key;
+import java.util.List;
+
+import javax.crypto.Cipher;
+
+import io.taucoin.types.Message;
+import io.taucoin.util.CryptoUtil;
+
+/**
+ * 与某个朋友通信的加解密上下文，缓存密钥交换得到的秘钥，
+ * 并为每个线程缓存已初始化的加密/解密Cipher，避免每条消息重复初始化
+ */
+public class FriendCryptoContext {
+
+    // 做密钥交换的本地公钥
+    private final byte[] localPubKey;
+
+    // 密钥交换得到的秘钥
+    private final byte[] key;
+
+    private final Key secretKey;
+
+    // 每个线程已初始化为加密模式的cipher
+    private final ThreadLocal<Cipher> encryptCipher = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            return initCipher(Cipher.ENCRYPT_MODE);
+        }
+    };
+
+    // 每个线程已初始化为解密模式的cipher
+    private final ThreadLocal<Cipher> decryptCipher = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            return initCipher(Cipher.DECRYPT_MODE);
+        }
+    };
+
+    public FriendCryptoContext(byte[] localPubKey, byte[] key) throws Exception {
+        this.localPubKey = localPubKey;
+        this.key = key;
+        this.secretKey = CryptoUtil.toKey(key);
+    }
+
+    private Cipher initCipher(int mode) {
+        Cipher cipher = CryptoUtil.newCipher();
+        try {
+            cipher.init(mode, this.secretKey, CryptoUtil.getIvParameterSpec());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        return cipher;
+    }
+
+    public byte[] getLocalPubKey() {
+        return localPubKey;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    /**
+     * 加密数据，doFinal之后cipher会回到初始化时的状态，可以直接复用
+     * @param data 待加密数据
+     * @return 加密后的数据
+     * @throws Exception data exception
+     */
+    public byte[] encrypt(byte[] data) throws Exception {
+        return this.encryptCipher.get().doFinal(data);
+    }
+
+    /**
+     * 解密数据
+     * @param data 待解密数据
+     * @return 解密后的数据
+     * @throws Exception data exception
+     */
+    public byte[] decrypt(byte[] data) throws Exception {
+        return this.decryptCipher.get().doFinal(data);
+    }
+
+    /**
+     * 批量加密消息
+     * @param messages 消息列表
+     * @throws Exception data exception
+     */
+    public void encryptMessages(List<Message> messages) throws Exception {
+        for (Message message: messages) {
+            message.encrypt(this);
+        }
+    }
+
+    /**
+     * 批量解密消息
+     * @param messages 消息列表
+     * @throws Exception data exception
+     */
+    public void decryptMessages(List<Message> messages) throws Exception {
+        for (Message message: messages) {
+            message.decrypt(this);
+        }
+    }
+}
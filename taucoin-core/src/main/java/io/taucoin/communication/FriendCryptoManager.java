@@ -0,0 +1,124 @@
+package io.taucoin.communication;
+
+import com.frostwire.jlibtorrent.Pair;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.taucoin.account.AccountManager;
+import io.taucoin.account.KeyChangedListener;
+import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.CryptoUtil;
+
+/**
+ * 管理与各个朋友的加解密上下文，每个密钥对与每个朋友只做一次密钥交换。
+ * 上下文记录做交换的本地公钥，读取时与调用者的密钥对比较，不一致则重新交换，
+ * 因此本地密钥变化后插入的旧上下文不会被使用；本地密钥变化时清空所有上下文释放内存。
+ * This class implementation is the singleton.
+ */
+public class FriendCryptoManager implements KeyChangedListener {
+
+    private static final Logger logger = LoggerFactory.getLogger("FriendCryptoManager");
+
+    private static volatile FriendCryptoManager INSTANCE;
+
+    // 朋友公钥 -> 加解密上下文
+    private final Map<ByteArrayWrapper, FriendCryptoContext> contexts = new ConcurrentHashMap<>();
+
+    // 密钥交换次数
+    private final AtomicLong keyExchangeCounter = new AtomicLong(0);
+
+    /**
+     * Get FriendCryptoManager instance.
+     *
+     * @return FriendCryptoManager instance
+     */
+    public static FriendCryptoManager getInstance() {
+        if (INSTANCE == null) {
+            synchronized (FriendCryptoManager.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new FriendCryptoManager();
+                }
+            }
+        }
+
+        return INSTANCE;
+    }
+
+    private FriendCryptoManager() {
+        AccountManager.getInstance().addListener(this);
+    }
+
+    /**
+     * 获取与朋友的加解密上下文，没有则用本地私钥做一次密钥交换
+     * @param friend 朋友公钥
+     * @return 加解密上下文
+     * @throws Exception key exception
+     */
+    public FriendCryptoContext getContext(byte[] friend) throws Exception {
+        return getContext(friend, AccountManager.getInstance().getKeyPair());
+    }
+
+    /**
+     * 用指定的本地密钥对获取与朋友的加解密上下文，
+     * 缓存的上下文属于别的本地公钥时(例如切换了账户)重新交换并替换
+     * @param friend 朋友公钥
+     * @param keyPair 本地公钥和私钥
+     * @return 加解密上下文
+     * @throws Exception key exception
+     */
+    public FriendCryptoContext getContext(byte[] friend, Pair<byte[], byte[]> keyPair) throws Exception {
+        if (null == keyPair) {
+            throw new IllegalStateException("Key pair is not set");
+        }
+
+        ByteArrayWrapper key = new ByteArrayWrapper(friend);
+
+        FriendCryptoContext context = this.contexts.get(key);
+        if (null != context && Arrays.equals(context.getLocalPubKey(), keyPair.first)) {
+            return context;
+        }
+
+        byte[] sharedKey = CryptoUtil.keyExchange(friend, keyPair.second);
+        this.keyExchangeCounter.incrementAndGet();
+        context = new FriendCryptoContext(keyPair.first, sharedKey);
+
+        // 并发时保留同一本地公钥先插入的上下文，别的本地公钥的上下文直接替换
+        FriendCryptoContext old = this.contexts.putIfAbsent(key, context);
+        while (null != old) {
+            if (Arrays.equals(old.getLocalPubKey(), keyPair.first)) {
+                return old;
+            }
+            if (this.contexts.replace(key, old, context)) {
+                break;
+            }
+            old = this.contexts.putIfAbsent(key, context);
+        }
+
+        return context;
+    }
+
+    /**
+     * 删除朋友时删除对应的上下文
+     * @param friend 朋友公钥
+     */
+    public void removeContext(byte[] friend) {
+        this.contexts.remove(new ByteArrayWrapper(friend));
+    }
+
+    public long getKeyExchangeCounter() {
+        return this.keyExchangeCounter.get();
+    }
+
+    @Override
+    public void onKeyChanged(Pair<byte[], byte[]> newKey) {
+        logger.info("Key changed and clear all crypto contexts");
+        // 清空只为释放内存，之后插入的旧上下文读取时会因本地公钥不一致被替换
+        this.contexts.clear();
+    }
+}
@@ -0,0 +1,75 @@
+package io.taucoin.communication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 群聊gossip的转发对象选择：每个成员只访问有限的k个成员，
+ * 其中一半是按DHT(XOR)距离最近的成员，保证局部覆盖稳定，
+ * 另一半从其余成员中随机选择，保证整个群的连通，消息扩散轮数约为O(log n)
+ */
+public class GossipFanout {
+
+    private GossipFanout() {
+    }
+
+    /**
+     * 计算两个公钥的XOR距离并比较
+     * @param target 参照公钥
+     * @param a 公钥a
+     * @param b 公钥b
+     * @return a离target更近返回负数，更远返回正数，一样返回0
+     */
+    public static int compareDistance(byte[] target, byte[] a, byte[] b) {
+        int length = Math.min(target.length, Math.min(a.length, b.length));
+        for (int i = 0; i < length; i++) {
+            int da = (a[i] ^ target[i]) & 0xff;
+            int db = (b[i] ^ target[i]) & 0xff;
+            if (da != db) {
+                return da - db;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * 为自己选择本轮访问的k个成员
+     * @param self 自己的公钥
+     * @param members 群成员
+     * @param k 扇出数量
+     * @param random 随机数
+     * @return 本轮访问的成员
+     */
+    public static List<ByteArrayWrapper> selectRelayPeers(byte[] self, Collection<ByteArrayWrapper> members,
+                                                         int k, Random random) {
+        List<ByteArrayWrapper> candidates = new ArrayList<>(members.size());
+        for (ByteArrayWrapper member: members) {
+            if (!Arrays.equals(self, member.getData())) {
+                candidates.add(member);
+            }
+        }
+
+        if (candidates.size() <= k) {
+            return candidates;
+        }
+
+        candidates.sort((a, b) -> compareDistance(self, a.getData(), b.getData()));
+
+        int nearest = (k + 1) / 2;
+        List<ByteArrayWrapper> selected = new ArrayList<>(candidates.subList(0, nearest));
+
+        // 从剩余成员中随机挑选
+        List<ByteArrayWrapper> others = candidates.subList(nearest, candidates.size());
+        Collections.shuffle(others, random);
+        selected.addAll(others.subList(0, k - nearest));
+
+        return selected;
+    }
+}
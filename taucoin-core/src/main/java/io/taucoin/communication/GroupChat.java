@@ -1,25 +1,129 @@
 package io.taucoin.communication;
 
+import com.frostwire.jlibtorrent.Pair;
+import com.google.common.util.concurrent.RateLimiter;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
-import io.taucoin.chain.Salt;
+import io.taucoin.account.AccountManager;
+import io.taucoin.core.DataIdentifier;
+import io.taucoin.core.DataType;
+import io.taucoin.core.Utils;
 import io.taucoin.db.DBException;
 import io.taucoin.db.MessageDB;
+import io.taucoin.dht2.DHT;
+import io.taucoin.dht2.DHTEngine;
+import io.taucoin.dht2.DHTReqResult;
 import io.taucoin.listener.MsgListener;
 import io.taucoin.param.ChainParam;
+import io.taucoin.types.GossipElement;
+import io.taucoin.types.GroupChatGossip;
+import io.taucoin.types.Message;
 import io.taucoin.util.ByteArrayWrapper;
 
-public class GroupChat {
+/**
+ * 群聊消息扩散引擎：
+ * 1. 每个成员把自己发出和转发的消息摘要(GossipElement)写到自己的群gossip频道(mutable item)；
+ * 2. 每个成员每轮只访问k个成员的gossip频道(见GossipFanout)，而不是访问所有成员，DHT流量为O(n * k)；
+ * 3. 消息按哈希去重，新发现的消息摘要会放入自己的gossip频道继续转发，消息体通过immutable item获取；
+ * 4. 每个群的DHT操作受速率限制，获取消息、发布gossip、读取gossip轮流使用配额；
+ * 5. 获取不到的消息按指数退避重试，超过次数或gossip元素过期后放弃
+ */
+public class GroupChat implements DHT.GetMutableItemCallback, DHT.GetImmutableItemCallback {
     private static final Logger logger = LoggerFactory.getLogger("GroupChat");
 
+    // 每轮访问的成员数量
+    private static final int FANOUT = 3;
+
+    // 每个群每秒允许的DHT操作数
+    private static final double GROUP_DHT_OPS_PER_SECOND = 4.0;
+
+    // 每个群记录的已见消息数量
+    private static final int SEEN_CACHE_SIZE = 1024;
+
+    // gossip元素的转发有效期
+    static final long GOSSIP_EXPIRE_TIME = 10 * 60; // 10 min
+
+    // gossip频道即使没有变化，也定期重新发布的时间
+    private static final long GOSSIP_REFRESH_TIME = 60 * 1000; // 60 s
+
+    // 获取消息的最大尝试次数
+    static final int MAX_MESSAGE_ATTEMPTS = 5;
+
+    // 获取消息失败后第一次重试的等待时间，之后每次加倍
+    static final long MESSAGE_RETRY_TIME = 2 * 1000; // 2 s
+
+    // DHT操作种类，轮流获得速率配额
+    private static final int FETCH_MESSAGE = 0;
+    private static final int PUBLISH_GOSSIP = 1;
+    private static final int REQUEST_GOSSIP = 2;
+    private static final int OPERATION_KINDS = 3;
+
+    /**
+     * 群聊使用的DHT操作，默认由DHTEngine完成，结果通过GroupChat的回调返回
+     */
+    interface GroupDHT {
+        /**
+         * @return true if the request is accepted
+         */
+        boolean putImmutable(byte[] data);
+
+        boolean putMutable(byte[] publicKey, byte[] privateKey, byte[] data, byte[] salt);
+
+        boolean getImmutable(byte[] hash, DHT.GetImmutableItemCallback cb, Object cbData);
+
+        boolean getMutable(byte[] publicKey, byte[] salt, DHT.GetMutableItemCallback cb, Object cbData);
+    }
+
+    private static final GroupDHT DHT_ENGINE = new GroupDHT() {
+        @Override
+        public boolean putImmutable(byte[] data) {
+            return DHTEngine.getInstance().distribute(new DHT.ImmutableItem(data), null, null)
+                    == DHTReqResult.Success;
+        }
+
+        @Override
+        public boolean putMutable(byte[] publicKey, byte[] privateKey, byte[] data, byte[] salt) {
+            return DHTEngine.getInstance().distribute(new DHT.MutableItem(publicKey, privateKey, data, salt),
+                    null, null) == DHTReqResult.Success;
+        }
+
+        @Override
+        public boolean getImmutable(byte[] hash, DHT.GetImmutableItemCallback cb, Object cbData) {
+            return DHTEngine.getInstance().request(new DHT.GetImmutableItemSpec(hash), cb, cbData)
+                    == DHTReqResult.Success;
+        }
+
+        @Override
+        public boolean getMutable(byte[] publicKey, byte[] salt, DHT.GetMutableItemCallback cb, Object cbData) {
+            return DHTEngine.getInstance().request(new DHT.GetMutableItemSpec(publicKey, salt), cb, cbData)
+                    == DHTReqResult.Success;
+        }
+    };
+
+    private final GroupDHT dht;
+
+    private final Supplier<Pair<byte[], byte[]>> keyPair;
+
+    // 每个群每秒允许的DHT操作数
+    private final double groupDHTOpsPerSecond;
+
     private final MsgListener msgListener;
 
     // message db
@@ -34,27 +138,209 @@ public class GroupChat {
     // 主循环间隔时间
     private int loopIntervalTime = MIN_LOOP_INTERVAL_TIME;
 
-    // 当前follow的group id集合
-    private final Set<ByteArrayWrapper> groupIDs = Collections.synchronizedSet(new HashSet<>());
+    // 当前follow的群
+    private final Map<ByteArrayWrapper, Group> groups = new ConcurrentHashMap<>();
 
-    // gossip channel salt
-    private final Map<ByteArrayWrapper, byte[]> gossipSalts = Collections.synchronizedMap(new HashMap<>());
+    // DHT操作次数
+    private final AtomicLong dhtOpsCounter = new AtomicLong(0);
+
+    // 收到的新消息数量
+    private final AtomicLong deliveredCounter = new AtomicLong(0);
+
+    private final Random random = new Random();
 
     public GroupChat(MessageDB messageDB, MsgListener msgListener) {
+        this(messageDB, msgListener, DHT_ENGINE, () -> AccountManager.getInstance().getKeyPair(),
+                GROUP_DHT_OPS_PER_SECOND);
+    }
+
+    GroupChat(MessageDB messageDB, MsgListener msgListener, GroupDHT dht,
+              Supplier<Pair<byte[], byte[]>> keyPair, double groupDHTOpsPerSecond) {
         this.messageDB = messageDB;
         this.msgListener = msgListener;
+        this.dht = dht;
+        this.keyPair = keyPair;
+        this.groupDHTOpsPerSecond = groupDHTOpsPerSecond;
     }
 
     private boolean init() {
         return true;
     }
 
+    /**
+     * 等待获取的消息
+     */
+    private static class PendingMessage implements Comparable<PendingMessage> {
+        private final ByteArrayWrapper msgRoot;
+
+        // gossip元素过期的时间(秒)，之后不再获取
+        private final long expireTime;
+
+        // 已经尝试的次数
+        private int attempts = 0;
+
+        // 下次可以获取的时间(毫秒)
+        private long nextTime = 0;
+
+        PendingMessage(ByteArrayWrapper msgRoot, long expireTime) {
+            this.msgRoot = msgRoot;
+            this.expireTime = expireTime;
+        }
+
+        @Override
+        public int compareTo(PendingMessage other) {
+            return Long.compare(this.nextTime, other.nextTime);
+        }
+    }
+
+    /**
+     * 单个群的状态
+     */
+    private static class Group {
+        private final ByteArrayWrapper groupID;
+
+        // gossip channel salt
+        private final byte[] gossipSalt;
+
+        // 群成员
+        private final Set<ByteArrayWrapper> members = ConcurrentHashMap.newKeySet();
+
+        // 待发布的gossip元素 <msg root, element>
+        private final LinkedHashMap<ByteArrayWrapper, GossipElement> outgoing = new LinkedHashMap<>();
+
+        // 已经见过的消息
+        private final Map<ByteArrayWrapper, Boolean> seen = Collections.synchronizedMap(
+                new LinkedHashMap<ByteArrayWrapper, Boolean>(SEEN_CACHE_SIZE, 0.75f, false) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Boolean> eldest) {
+                        return size() > SEEN_CACHE_SIZE;
+                    }
+                });
+
+        // 等待获取的消息，按下次获取时间排序
+        private final PriorityQueue<PendingMessage> pendingMessages = new PriorityQueue<>();
+
+        // 已经发出请求、等待结果的消息
+        private final Map<ByteArrayWrapper, PendingMessage> requestedMessages = new ConcurrentHashMap<>();
+
+        private final RateLimiter rateLimiter;
+
+        private volatile boolean dirty = false;
+
+        private long lastPublishTime = 0;
+
+        // 下一个速率配额给哪种DHT操作
+        private int turn = FETCH_MESSAGE;
+
+        Group(byte[] groupID, double dhtOpsPerSecond) {
+            this.groupID = new ByteArrayWrapper(groupID);
+            this.gossipSalt = makeGossipSalt(groupID);
+            this.rateLimiter = RateLimiter.create(dhtOpsPerSecond);
+        }
+
+        /**
+         * 加入等待获取的消息
+         * @param message pending message
+         */
+        void addPendingMessage(PendingMessage message) {
+            synchronized (this.pendingMessages) {
+                this.pendingMessages.offer(message);
+            }
+        }
+
+        /**
+         * 取出一个已经到时间的消息，过期的消息直接丢弃
+         * @param currentTime 当前时间(毫秒)
+         * @param peek true则只查看不取出
+         * @return pending message, or null if none
+         */
+        PendingMessage pollPendingMessage(long currentTime, boolean peek) {
+            synchronized (this.pendingMessages) {
+                PendingMessage message = this.pendingMessages.peek();
+                while (null != message && message.expireTime < currentTime / 1000) {
+                    logger.debug("Message[{}] gossip expired, give up", message.msgRoot.toString());
+                    this.pendingMessages.poll();
+                    message = this.pendingMessages.peek();
+                }
+
+                if (null == message || message.nextTime > currentTime) {
+                    return null;
+                }
+
+                return peek ? message : this.pendingMessages.poll();
+            }
+        }
+
+        /**
+         * @return 等待获取和正在获取的消息数量
+         */
+        int getPendingMessageCount() {
+            synchronized (this.pendingMessages) {
+                return this.pendingMessages.size() + this.requestedMessages.size();
+            }
+        }
+
+        /**
+         * 记录一个消息，第一次见到返回true
+         * @param msgRoot 消息哈希
+         * @return true if new
+         */
+        boolean markSeen(ByteArrayWrapper msgRoot) {
+            return null == this.seen.put(msgRoot, Boolean.TRUE);
+        }
+
+        /**
+         * 加入待转发的gossip元素
+         * @param element gossip element
+         */
+        void addGossip(GossipElement element) {
+            synchronized (this.outgoing) {
+                this.outgoing.put(new ByteArrayWrapper(element.getMsgRoot()), element);
+            }
+            this.dirty = true;
+        }
+
+        /**
+         * 构造本轮要发布的gossip，过期的元素被删除，编码不超过安全尺寸
+         * @return gossip
+         */
+        GroupChatGossip makeGossip() {
+            long currentTime = Utils.currentTimeSeconds();
+            List<GossipElement> list = new ArrayList<>();
+
+            synchronized (this.outgoing) {
+                Iterator<Map.Entry<ByteArrayWrapper, GossipElement>> it = this.outgoing.entrySet().iterator();
+                while (it.hasNext()) {
+                    GossipElement element = it.next().getValue();
+                    if (element.getTimestamp().longValue() + GOSSIP_EXPIRE_TIME < currentTime) {
+                        it.remove();
+                    }
+                }
+
+                // 新加入的元素在后，从后往前取最新的
+                List<GossipElement> elements = new ArrayList<>(this.outgoing.values());
+                int size = 0;
+                for (int i = elements.size() - 1; i >= 0; i--) {
+                    GossipElement element = elements.get(i);
+                    size += element.getEncoded().length;
+                    if (size > ChainParam.MESSAGE_LIST_SAFE_SIZE) {
+                        break;
+                    }
+                    list.add(element);
+                }
+            }
+
+            return new GroupChatGossip(null, null, list);
+        }
+    }
+
     /**
      * 主循环
      */
     private void mainLoop() {
         while (!Thread.currentThread().isInterrupted()) {
             try {
+                visitGroups();
 
                 try {
                     Thread.sleep(this.loopIntervalTime);
@@ -62,8 +348,7 @@ public class GroupChat {
                     logger.info(e.getMessage(), e);
                     Thread.currentThread().interrupt();
                 }
-            } /*catch (DBException e) {
-                this.msgListener.onMsgError("Data Base Exception!");
+            } catch (Exception e) {
                 logger.error(e.getMessage(), e);
 
                 try {
@@ -72,19 +357,162 @@ public class GroupChat {
                     logger.info(ex.getMessage(), ex);
                     Thread.currentThread().interrupt();
                 }
-            }*/ catch (Exception e) {
-                logger.error(e.getMessage(), e);
+            }
+        }
+    }
 
-                try {
-                    Thread.sleep(this.MIN_LOOP_INTERVAL_TIME);
-                } catch (InterruptedException ex) {
-                    logger.info(ex.getMessage(), ex);
-                    Thread.currentThread().interrupt();
+    /**
+     * 处理所有群一次
+     */
+    void visitGroups() {
+        for (Group group: this.groups.values()) {
+            visitGroup(group);
+        }
+    }
+
+    /**
+     * 处理一个群：获取缺失的消息，发布自己的gossip，访问k个成员的gossip。
+     * 所有DHT操作都受群速率限制，三种操作轮流获得配额，获取消息不会占满配额
+     * @param group 群
+     */
+    private void visitGroup(Group group) {
+        long currentTime = Utils.currentTimeMillis();
+        expireRequestedMessages(group, currentTime);
+
+        boolean publish = group.dirty || currentTime - group.lastPublishTime > GOSSIP_REFRESH_TIME;
+
+        byte[] pubKey = this.keyPair.get().first;
+        List<ByteArrayWrapper> peers = GossipFanout.selectRelayPeers(pubKey, group.members, FANOUT, this.random);
+        int peerIndex = 0;
+
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+
+            for (int i = 0; i < OPERATION_KINDS; i++) {
+                int kind = (group.turn + i) % OPERATION_KINDS;
+
+                boolean hasWork;
+                switch (kind) {
+                    case FETCH_MESSAGE:
+                        hasWork = null != group.pollPendingMessage(currentTime, true);
+                        break;
+                    case PUBLISH_GOSSIP:
+                        hasWork = publish;
+                        break;
+                    default: // REQUEST_GOSSIP
+                        hasWork = peerIndex < peers.size();
+                }
+                if (!hasWork) {
+                    continue;
+                }
+
+                if (!group.rateLimiter.tryAcquire()) {
+                    // 下次从没拿到配额的操作开始
+                    group.turn = kind;
+                    return;
+                }
+                group.turn = (kind + 1) % OPERATION_KINDS;
+                progress = true;
+
+                switch (kind) {
+                    case FETCH_MESSAGE:
+                        PendingMessage message = group.pollPendingMessage(currentTime, false);
+                        if (null != message) {
+                            requestMessage(group, message, currentTime);
+                        }
+                        break;
+                    case PUBLISH_GOSSIP:
+                        publishGossip(group);
+                        group.dirty = false;
+                        group.lastPublishTime = currentTime;
+                        publish = false;
+                        break;
+                    default: // REQUEST_GOSSIP
+                        requestGossip(group, peers.get(peerIndex));
+                        peerIndex++;
                 }
             }
         }
     }
 
+    /**
+     * 丢弃gossip元素已经过期、仍没有结果的请求
+     * @param group 群
+     * @param currentTime 当前时间(毫秒)
+     */
+    private void expireRequestedMessages(Group group, long currentTime) {
+        long currentSeconds = currentTime / 1000;
+        group.requestedMessages.values().removeIf(message -> message.expireTime < currentSeconds);
+    }
+
+    /**
+     * 发布自己的群gossip
+     * @param group 群
+     */
+    private void publishGossip(Group group) {
+        GroupChatGossip gossip = group.makeGossip();
+        if (gossip.getGossipList().isEmpty()) {
+            return;
+        }
+
+        Pair<byte[], byte[]> keyPair = this.keyPair.get();
+        this.dht.putMutable(keyPair.first, keyPair.second, gossip.getEncoded(), group.gossipSalt);
+        this.dhtOpsCounter.incrementAndGet();
+    }
+
+    /**
+     * 获取某个成员的群gossip
+     * @param group 群
+     * @param peer 成员
+     */
+    private void requestGossip(Group group, ByteArrayWrapper peer) {
+        DataIdentifier dataIdentifier = new DataIdentifier(group.groupID, DataType.GOSSIP_FROM_PEER, peer);
+
+        this.dht.getMutable(peer.getData(), group.gossipSalt, this, dataIdentifier);
+        this.dhtOpsCounter.incrementAndGet();
+    }
+
+    /**
+     * 获取消息
+     * @param group 群
+     * @param message 等待获取的消息
+     * @param currentTime 当前时间(毫秒)
+     */
+    private void requestMessage(Group group, PendingMessage message, long currentTime) {
+        DataIdentifier dataIdentifier = new DataIdentifier(group.groupID, DataType.MESSAGE, message.msgRoot);
+
+        message.attempts++;
+        group.requestedMessages.put(message.msgRoot, message);
+        this.dhtOpsCounter.incrementAndGet();
+        if (!this.dht.getImmutable(message.msgRoot.getData(), this, dataIdentifier)) {
+            // 请求被丢弃，按失败处理
+            retryMessage(group, message.msgRoot, currentTime);
+        }
+    }
+
+    /**
+     * 没获取到消息：未超过尝试次数且gossip未过期时，按指数退避稍后重试，否则放弃
+     * @param group 群
+     * @param msgRoot 消息哈希
+     * @param currentTime 当前时间(毫秒)
+     */
+    private void retryMessage(Group group, ByteArrayWrapper msgRoot, long currentTime) {
+        PendingMessage message = group.requestedMessages.remove(msgRoot);
+        if (null == message) {
+            return;
+        }
+
+        if (message.attempts >= MAX_MESSAGE_ATTEMPTS || message.expireTime < currentTime / 1000) {
+            logger.debug("Message[{}] not found after {} attempts, give up",
+                    msgRoot.toString(), message.attempts);
+            return;
+        }
+
+        message.nextTime = currentTime + (MESSAGE_RETRY_TIME << (message.attempts - 1));
+        group.addPendingMessage(message);
+    }
+
     /**
      * make gossip salt
      * @param groupID group ID
@@ -103,12 +531,31 @@ public class GroupChat {
     /**
      * follow a new group
      * @param groupID group ID
+     * @param peerList group members
      * @return true if succeed, false otherwise
      */
     public boolean followGroup(byte[] groupID, List<byte[]> peerList) throws DBException {
+        if (!startGroup(groupID)) {
+            return false;
+        }
+
+        if (null != peerList) {
+            for (byte[] peer: peerList) {
+                addMember(groupID, peer);
+            }
+        }
+
         return true;
     }
 
+    /**
+     * unfollow a group
+     * @param groupID group ID
+     */
+    public void unfollowGroup(byte[] groupID) {
+        this.groups.remove(new ByteArrayWrapper(groupID));
+    }
+
     /**
      * start chatting group
      * @param groupID group ID
@@ -117,16 +564,169 @@ public class GroupChat {
     public boolean startGroup(byte[] groupID) throws DBException {
         ByteArrayWrapper wGroupID = new ByteArrayWrapper(groupID);
 
-        if (this.groupIDs.contains(wGroupID)) {
-            logger.info("Chain:{} is followed.", wGroupID.toString());
+        if (this.groups.containsKey(wGroupID)) {
+            logger.info("Group:{} is followed.", wGroupID.toString());
             return true;
         }
 
-        this.gossipSalts.put(wGroupID, makeGossipSalt(groupID));
+        this.groups.put(wGroupID, new Group(groupID, this.groupDHTOpsPerSecond));
+
+        return true;
+    }
+
+    /**
+     * add a group member
+     * @param groupID group ID
+     * @param peer member public key
+     */
+    public void addMember(byte[] groupID, byte[] peer) {
+        Group group = this.groups.get(new ByteArrayWrapper(groupID));
+        if (null != group) {
+            group.members.add(new ByteArrayWrapper(peer));
+        }
+    }
+
+    /**
+     * remove a group member
+     * @param groupID group ID
+     * @param peer member public key
+     */
+    public void removeMember(byte[] groupID, byte[] peer) {
+        Group group = this.groups.get(new ByteArrayWrapper(groupID));
+        if (null != group) {
+            group.members.remove(new ByteArrayWrapper(peer));
+        }
+    }
+
+    /**
+     * 向群里发布一条消息：消息体作为immutable item发布，摘要进入自己的gossip频道
+     * @param groupID group ID
+     * @param message 消息
+     * @return true if succeed, false otherwise
+     */
+    public boolean publishMessage(byte[] groupID, Message message) throws DBException {
+        Group group = this.groups.get(new ByteArrayWrapper(groupID));
+        if (null == group) {
+            logger.error("Group:{} is not followed.", new ByteArrayWrapper(groupID).toString());
+            return false;
+        }
+
+        byte[] hash = message.getHash();
+        this.messageDB.putMessage(hash, message.getEncoded());
+
+        this.dht.putImmutable(message.getEncoded());
+        this.dhtOpsCounter.incrementAndGet();
+
+        group.markSeen(new ByteArrayWrapper(hash));
+        byte[] pubKey = this.keyPair.get().first;
+        group.addGossip(new GossipElement(pubKey, hash, message.getTimestamp()));
 
         return true;
     }
 
+    /**
+     * 处理收到的群gossip
+     * @param group 群
+     * @param gossip gossip
+     */
+    private void processGossip(Group group, GroupChatGossip gossip) {
+        long currentTime = Utils.currentTimeSeconds();
+
+        for (GossipElement element: gossip.getGossipList()) {
+            BigInteger timestamp = element.getTimestamp();
+            if (null == element.getMsgRoot() || null == timestamp
+                    || timestamp.longValue() + GOSSIP_EXPIRE_TIME < currentTime) {
+                continue;
+            }
+
+            ByteArrayWrapper msgRoot = new ByteArrayWrapper(element.getMsgRoot());
+            // 按消息哈希去重，新消息继续转发并获取消息体
+            if (group.markSeen(msgRoot)) {
+                group.addGossip(element);
+                group.addPendingMessage(new PendingMessage(msgRoot, timestamp.longValue() + GOSSIP_EXPIRE_TIME));
+            }
+        }
+    }
+
+    /**
+     * 获取DHT操作次数
+     * @return dht ops
+     */
+    public long getDHTOpsCounter() {
+        return this.dhtOpsCounter.get();
+    }
+
+    /**
+     * 获取收到的新消息数量
+     * @return delivered messages
+     */
+    public long getDeliveredCounter() {
+        return this.deliveredCounter.get();
+    }
+
+    /**
+     * 获取群里等待获取和正在获取的消息数量
+     * @param groupID group ID
+     * @return pending messages
+     */
+    public int getPendingMessageCount(byte[] groupID) {
+        Group group = this.groups.get(new ByteArrayWrapper(groupID));
+        return null == group ? 0 : group.getPendingMessageCount();
+    }
+
+    @Override
+    public void onDHTItemGot(byte[] item, Object cbData, boolean auth) {
+        DataIdentifier dataIdentifier = (DataIdentifier) cbData;
+        if (null == item) {
+            logger.debug("Gossip from peer[{}] is empty", dataIdentifier.getExtraInfo1().toString());
+            return;
+        }
+
+        Group group = this.groups.get(dataIdentifier.getChainID());
+        if (null == group) {
+            return;
+        }
+
+        try {
+            processGossip(group, new GroupChatGossip(item));
+        } catch (RuntimeException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onDHTItemGot(byte[] item, Object cbData) {
+        DataIdentifier dataIdentifier = (DataIdentifier) cbData;
+        Group group = this.groups.get(dataIdentifier.getChainID());
+        if (null == item) {
+            logger.debug("Message[{}] is empty", dataIdentifier.getExtraInfo1().toString());
+            // 没获取到，退避后重试
+            if (null != group) {
+                retryMessage(group, dataIdentifier.getExtraInfo1(), Utils.currentTimeMillis());
+            }
+            return;
+        }
+
+        if (null != group) {
+            group.requestedMessages.remove(dataIdentifier.getExtraInfo1());
+        }
+
+        try {
+            Message message = new Message(item);
+            this.messageDB.putMessage(message.getHash(), item);
+            this.deliveredCounter.incrementAndGet();
+
+            List<Message> messages = new LinkedList<>();
+            messages.add(message);
+            this.msgListener.onNewMessage(message.getSender(), messages);
+        } catch (DBException e) {
+            this.msgListener.onMsgError("Data Base Exception!");
+            logger.error(e.getMessage(), e);
+        } catch (RuntimeException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
     /**
      * Start thread
      *
@@ -0,0 +1,134 @@
+package io.taucoin.communication.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 统计向每个朋友发布mutable数据的延迟，延迟是指从朋友被选中（加入发布队列）到数据put出去的时间
+ */
+public class PublishCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger("Communication-Counter");
+
+    // 平滑系数，新采样所占的权重
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    // 每个朋友的发布延迟统计
+    private final Map<ByteArrayWrapper, Latency> latencies = new ConcurrentHashMap<>();
+
+    // 所有朋友的发布次数
+    private long publishCounter;
+
+    // 所有朋友的总发布延迟
+    private long totalLatency;
+
+    // 所有朋友中出现过的最大发布延迟
+    private long maxLatency;
+
+    public PublishCounter() {
+        this.publishCounter = 0;
+        this.totalLatency = 0;
+        this.maxLatency = 0;
+    }
+
+    /**
+     * 记录一次发布
+     * @param peer 朋友公钥
+     * @param latency 本次发布延迟，单位ms
+     */
+    public void published(ByteArrayWrapper peer, long latency) {
+        Latency record = this.latencies.computeIfAbsent(peer, k -> new Latency());
+        record.update(latency);
+
+        synchronized (this) {
+            this.publishCounter++;
+            this.totalLatency += latency;
+            if (latency > this.maxLatency) {
+                this.maxLatency = latency;
+            }
+        }
+
+        logger.trace("Publish to peer:{}, latency:{} ms, average:{} ms", peer.toString(),
+                latency, record.getAverage());
+    }
+
+    /**
+     * 朋友被删除时，删除对应的统计
+     * @param peer 朋友公钥
+     */
+    public void remove(ByteArrayWrapper peer) {
+        this.latencies.remove(peer);
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public synchronized void clear() {
+        this.latencies.clear();
+        this.publishCounter = 0;
+        this.totalLatency = 0;
+        this.maxLatency = 0;
+    }
+
+    /**
+     * 获取某个朋友平滑后的发布延迟
+     * @param peer 朋友公钥
+     * @return 平滑延迟，单位ms，没有记录返回-1
+     */
+    public double getPeerAverageLatency(ByteArrayWrapper peer) {
+        Latency record = this.latencies.get(peer);
+        return null == record ? -1 : record.getAverage();
+    }
+
+    /**
+     * 获取某个朋友最近一次的发布延迟
+     * @param peer 朋友公钥
+     * @return 最近一次延迟，单位ms，没有记录返回-1
+     */
+    public long getPeerLastLatency(ByteArrayWrapper peer) {
+        Latency record = this.latencies.get(peer);
+        return null == record ? -1 : record.getLast();
+    }
+
+    public synchronized long getPublishCounter() {
+        return publishCounter;
+    }
+
+    public synchronized long getMaxLatency() {
+        return maxLatency;
+    }
+
+    public synchronized double getAverageLatency() {
+        return publishCounter == 0 ? 0 : totalLatency / (double)publishCounter;
+    }
+
+    /**
+     * 单个朋友的延迟记录
+     */
+    private static class Latency {
+        private long last = 0;
+        private double average = -1;
+
+        synchronized void update(long latency) {
+            this.last = latency;
+            if (this.average < 0) {
+                this.average = latency;
+            } else {
+                this.average = SMOOTHING_FACTOR * latency + (1 - SMOOTHING_FACTOR) * this.average;
+            }
+        }
+
+        synchronized long getLast() {
+            return last;
+        }
+
+        synchronized double getAverage() {
+            return average;
+        }
+    }
+}
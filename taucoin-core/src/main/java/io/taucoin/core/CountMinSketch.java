@@ -0,0 +1,87 @@
+package io.taucoin.core;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch：用固定内存估计大量key的计数，估计值只会偏大。
+ * 计数达到上限后所有计数减半，使旧数据逐渐老化。
+ */
+public class CountMinSketch {
+
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private final int width;
+
+    private final int[][] counters;
+
+    // 计数总和，达到上限后减半
+    private long total = 0;
+
+    private final long resetThreshold;
+
+    /**
+     * @param width 每行计数器数量，取2的幂
+     * @param resetThreshold 计数总和达到该值后全部减半
+     */
+    public CountMinSketch(int width, long resetThreshold) {
+        this.width = Integer.highestOneBit(Math.max(width, 16));
+        this.counters = new int[SEEDS.length][this.width];
+        this.resetThreshold = resetThreshold;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return h & (this.width - 1);
+    }
+
+    /**
+     * 计数加1
+     * @param hash key hash code
+     */
+    public void increment(int hash) {
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = index(hash, i);
+            if (this.counters[i][index] < Integer.MAX_VALUE) {
+                this.counters[i][index]++;
+            }
+        }
+
+        if (++this.total >= this.resetThreshold) {
+            halve();
+        }
+    }
+
+    /**
+     * 估计计数
+     * @param hash key hash code
+     * @return estimated count
+     */
+    public int estimate(int hash) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            min = Math.min(min, this.counters[i][index(hash, i)]);
+        }
+
+        return min;
+    }
+
+    /**
+     * 所有计数减半
+     */
+    public void halve() {
+        for (int[] row: this.counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        this.total >>>= 1;
+    }
+
+    public void clear() {
+        for (int[] row: this.counters) {
+            Arrays.fill(row, 0);
+        }
+        this.total = 0;
+    }
+}
@@ -3,6 +3,7 @@ package io.taucoin.core;
 import io.taucoin.account.AccountManager;
 import io.taucoin.param.ChainParam;
 import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.HashLongMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,7 +28,7 @@ public class PeerManager {
     private List<ByteArrayWrapper> priorityPeers;
 
     // peer info: peer <-> time
-    private final Map<ByteArrayWrapper, Long> peerInfo = new HashMap<>();
+    private final HashLongMap peerInfo = new HashLongMap(ChainParam.PubkeyLength);
 
     // block peers
     private final Set<ByteArrayWrapper> blockPeers = new HashSet<>(PEER_NUMBER);
@@ -35,6 +36,11 @@ public class PeerManager {
     // tx peers
     private final Set<ByteArrayWrapper> txPeers = new HashSet<>(PEER_NUMBER);
 
+    // peer reputation from dht getting results
+    private final PeerReputation reputation = new PeerReputation();
+
+    private final Random random = new Random(System.currentTimeMillis());
+
     public PeerManager(byte[] chainID) {
         this.chainID = chainID;
     }
@@ -61,7 +67,7 @@ public class PeerManager {
 
         // set time to zero
         for (ByteArrayWrapper peer: this.allPeers) {
-            this.peerInfo.put(peer, (long)0);
+            putPeerInfo(peer.getData(), 0);
         }
 
         int size = this.priorityPeers.size();
@@ -133,8 +139,8 @@ public class PeerManager {
             }
 
             // 2. Cannot find peer info
-            Long time = this.peerInfo.get(new ByteArrayWrapper(peer));
-            if (null == time) {
+            long time = this.peerInfo.get(peer, -1);
+            if (time < 0) {
                 break;
             }
 
@@ -147,29 +153,66 @@ public class PeerManager {
 
         // update latest timestamp
         long currentTime = System.currentTimeMillis() / 1000;
-        this.peerInfo.put(new ByteArrayWrapper(peer), currentTime);
+        putPeerInfo(peer, currentTime);
 
         return peer;
     }
 
     /**
-     * get a block peer randomly
+     * get a block peer randomly, weighted by peer reputation
      * @return public key
      */
     public synchronized byte[] getBlockPeerRandomly() {
-        byte[] peer;
-
         // if empty, fill it up
         if (this.blockPeers.isEmpty()) {
             fillBlockPeers();
         }
 
-        // get first peer, then remove it
-        Iterator<ByteArrayWrapper> iterator = this.blockPeers.iterator();
-        peer = iterator.next().getData();
-        iterator.remove();
+        // choose a peer by reputation, then remove it
+        ByteArrayWrapper peer = this.reputation.choose(this.blockPeers, this.random, System.currentTimeMillis());
+        this.blockPeers.remove(peer);
 
-        return peer;
+        return peer.getData();
+    }
+
+    /**
+     * record a dht request to peer
+     * @param peer public key
+     * @param itemID requested item, e.g. mutable item salt
+     */
+    public void onPeerRequest(byte[] peer, byte[] itemID) {
+        this.reputation.onRequest(new ByteArrayWrapper(peer), itemID, System.currentTimeMillis());
+    }
+
+    /**
+     * record the result of a dht request to peer
+     * @param peer public key
+     * @param itemID requested item, same as onPeerRequest
+     * @param success true if got item, false otherwise
+     */
+    public void onPeerResult(byte[] peer, byte[] itemID, boolean success) {
+        this.reputation.onResult(new ByteArrayWrapper(peer), itemID, success, System.currentTimeMillis());
+    }
+
+    /**
+     * get peer success rate of dht requests
+     * @param peer public key
+     * @return decayed success rate
+     */
+    public double getPeerSuccessRate(byte[] peer) {
+        return this.reputation.getSuccessRate(new ByteArrayWrapper(peer), System.currentTimeMillis());
+    }
+
+    /**
+     * pick a priority peer: choose two randomly, then one of them weighted by reputation
+     * @return peer
+     */
+    private ByteArrayWrapper pickPriorityPeer() {
+        int size = this.priorityPeers.size();
+        ByteArrayWrapper first = this.priorityPeers.get(this.random.nextInt(size));
+        ByteArrayWrapper second = this.priorityPeers.get(this.random.nextInt(size));
+
+        return this.reputation.choose(Arrays.asList(first, second), this.random, System.currentTimeMillis());
     }
 
     /**
@@ -178,12 +221,7 @@ public class PeerManager {
      * @return last visiting time, or 0 if first visit
      */
     public synchronized long getPeerVisitTime(byte[] pubKey) {
-        Long time = this.peerInfo.get(new ByteArrayWrapper(pubKey));
-        if (null != time) {
-            return time;
-        }
-
-        return 0;
+        return this.peerInfo.get(pubKey, 0);
     }
 
     /**
@@ -193,7 +231,22 @@ public class PeerManager {
     public synchronized void updateVisitTime(byte[] pubKey) {
         // update latest timestamp
         long currentTime = System.currentTimeMillis() / 1000;
-        this.peerInfo.put(new ByteArrayWrapper(pubKey), currentTime);
+        putPeerInfo(pubKey, currentTime);
+    }
+
+    /**
+     * record peer visiting time, peer public key comes from network, ignore it if length is wrong
+     * @param pubKey public key
+     * @param time visiting time
+     */
+    private void putPeerInfo(byte[] pubKey, long time) {
+        if (!this.peerInfo.isValidKey(pubKey)) {
+            logger.error("ChainID:{}: Invalid peer public key length:{}", new String(this.chainID),
+                    null == pubKey ? 0 : pubKey.length);
+            return;
+        }
+
+        this.peerInfo.put(pubKey, time);
     }
 
     /**
@@ -278,20 +331,17 @@ public class PeerManager {
      * fill block peers
      */
     private void fillBlockPeers() {
-        int size = this.priorityPeers.size();
-        Random random = new Random(System.currentTimeMillis());
-
         int i = 0;
         for (; i < PEER_NUMBER / 2; i++) {
-            // add a peer to tx peers randomly from priority peers
-            this.blockPeers.add(priorityPeers.get(random.nextInt(size)));
+            // add a peer to block peers from priority peers
+            this.blockPeers.add(pickPriorityPeer());
         }
 
         if (this.randomPeerList.size() < PEER_NUMBER) {
             fillRandomPeerList();
         }
 
-        size = Math.min(randomPeerList.size(), PEER_NUMBER);
+        int size = Math.min(randomPeerList.size(), PEER_NUMBER);
         for (; i < size; i++) {
             // add a peer to tx peers randomly from all peers
             this.blockPeers.add(this.randomPeerList.get(0));
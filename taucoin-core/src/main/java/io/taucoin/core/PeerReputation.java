@@ -0,0 +1,267 @@
+package io.taucoin.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 节点信誉：根据向节点请求DHT数据的结果，统计随时间衰减的成功率和延迟。
+ * 只为得分最高的K个节点保存精确统计，其余节点用count-min sketch估计成功率，
+ * 内存与节点数量无关。选择节点时按得分加权随机，得分低的节点仍有机会被探测。
+ */
+public class PeerReputation {
+
+    // 精确统计的节点数量
+    public static final int DEFAULT_TOP_K = 64;
+
+    // 成功率衰减时间常数，单位毫秒，之后统计逐渐回到先验值
+    public static final long DECAY_TIME = 30 * 60 * 1000;
+
+    // 每次请求结果的平滑系数
+    private static final double ALPHA = 0.2;
+
+    // 没有统计的节点的先验成功率
+    private static final double PRIOR_SUCCESS_RATE = 0.5;
+
+    // 延迟达到该值时得分减半，单位毫秒
+    private static final double LATENCY_SCALE = 5000;
+
+    // 最低得分，保证每个节点都有机会被选中
+    private static final double MIN_SCORE = 0.05;
+
+    // 记录请求时间的最多请求数量
+    private static final int MAX_PENDING = 256;
+
+    private final int topK;
+
+    // 得分最高的K个节点
+    private final Map<ByteArrayWrapper, PeerScore> topPeers = new LinkedHashMap<>();
+
+    // 其余节点的成功和请求次数，两者同时减半，成功率不因老化不同步而失真
+    private final CountMinSketch successSketch;
+    private final CountMinSketch requestSketch;
+
+    // 长尾请求计数，达到上限后两个sketch同时减半
+    private long tailRequests = 0;
+
+    private final long tailResetThreshold;
+
+    // 请求中的(节点, 数据) -> 请求时间，同一节点的并发请求各自计算延迟
+    private final Map<ByteArrayWrapper, Long> pendingRequests =
+            new LinkedHashMap<ByteArrayWrapper, Long>(MAX_PENDING, 0.75F, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, Long> eldest) {
+                    return size() > MAX_PENDING;
+                }
+            };
+
+    private static class PeerScore {
+        double successRate = PRIOR_SUCCESS_RATE;
+        // 平均延迟，单位毫秒，没有数据时为-1
+        double latency = -1;
+        long lastUpdate;
+
+        PeerScore(long now) {
+            this.lastUpdate = now;
+        }
+
+        void decay(long now) {
+            double factor = Math.exp(-(double) (now - this.lastUpdate) / DECAY_TIME);
+            this.successRate = PRIOR_SUCCESS_RATE + (this.successRate - PRIOR_SUCCESS_RATE) * factor;
+            this.lastUpdate = now;
+        }
+
+        void update(boolean success, long latency, long now) {
+            decay(now);
+            this.successRate = (1 - ALPHA) * this.successRate + ALPHA * (success ? 1 : 0);
+
+            if (success && latency >= 0) {
+                this.latency = this.latency < 0 ? latency : (1 - ALPHA) * this.latency + ALPHA * latency;
+            }
+        }
+
+        double score() {
+            double score = this.successRate;
+            if (this.latency > 0) {
+                score /= 1 + this.latency / LATENCY_SCALE;
+            }
+
+            return score;
+        }
+    }
+
+    public PeerReputation() {
+        this(DEFAULT_TOP_K);
+    }
+
+    public PeerReputation(int topK) {
+        this.topK = topK;
+        // 由本类统一减半，sketch自身不减半
+        this.successSketch = new CountMinSketch(topK * 16, Long.MAX_VALUE);
+        this.requestSketch = new CountMinSketch(topK * 16, Long.MAX_VALUE);
+        this.tailResetThreshold = topK * 160L;
+    }
+
+    private static ByteArrayWrapper requestKey(ByteArrayWrapper peer, byte[] itemID) {
+        byte[] peerBytes = peer.getData();
+        byte[] key = new byte[peerBytes.length + itemID.length];
+        System.arraycopy(peerBytes, 0, key, 0, peerBytes.length);
+        System.arraycopy(itemID, 0, key, peerBytes.length, itemID.length);
+        return new ByteArrayWrapper(key);
+    }
+
+    /**
+     * 记录向节点发出请求
+     * @param peer peer public key
+     * @param itemID 请求的数据，如mutable item的salt
+     * @param now 请求时间，单位毫秒
+     */
+    public synchronized void onRequest(ByteArrayWrapper peer, byte[] itemID, long now) {
+        this.pendingRequests.put(requestKey(peer, itemID), now);
+    }
+
+    /**
+     * 记录请求结果
+     * @param peer peer public key
+     * @param itemID 请求的数据，与onRequest相同
+     * @param success 是否取到数据
+     * @param now 结果返回时间，单位毫秒
+     */
+    public synchronized void onResult(ByteArrayWrapper peer, byte[] itemID, boolean success, long now) {
+        Long requestTime = this.pendingRequests.remove(requestKey(peer, itemID));
+        long latency = null == requestTime ? -1 : now - requestTime;
+
+        PeerScore peerScore = this.topPeers.get(peer);
+        if (null != peerScore) {
+            peerScore.update(success, latency, now);
+            return;
+        }
+
+        int hash = peer.hashCode();
+        this.requestSketch.increment(hash);
+        if (success) {
+            this.successSketch.increment(hash);
+        }
+        if (++this.tailRequests >= this.tailResetThreshold) {
+            this.requestSketch.halve();
+            this.successSketch.halve();
+            this.tailRequests >>>= 1;
+        }
+
+        double estimate = estimateTailRate(hash);
+        if (this.topPeers.size() >= this.topK) {
+            ByteArrayWrapper weakestPeer = null;
+            double weakestScore = Double.MAX_VALUE;
+            for (Map.Entry<ByteArrayWrapper, PeerScore> entry: this.topPeers.entrySet()) {
+                entry.getValue().decay(now);
+                double score = entry.getValue().score();
+                if (score < weakestScore) {
+                    weakestPeer = entry.getKey();
+                    weakestScore = score;
+                }
+            }
+
+            // 长尾节点得分超过K个节点中最低的，才替换进来
+            if (estimate <= weakestScore) {
+                return;
+            }
+
+            this.topPeers.remove(weakestPeer);
+        }
+
+        peerScore = new PeerScore(now);
+        peerScore.successRate = estimate;
+        if (success && latency >= 0) {
+            peerScore.latency = latency;
+        }
+        this.topPeers.put(peer, peerScore);
+    }
+
+    // 长尾节点成功率估计，带先验平滑
+    private double estimateTailRate(int hash) {
+        int requests = this.requestSketch.estimate(hash);
+        int successes = Math.min(this.successSketch.estimate(hash), requests);
+
+        return (successes + PRIOR_SUCCESS_RATE * 2) / (requests + 2);
+    }
+
+    /**
+     * 节点得分
+     * @param peer peer public key
+     * @param now 当前时间，单位毫秒
+     * @return score in (0, 1]
+     */
+    public synchronized double getScore(ByteArrayWrapper peer, long now) {
+        PeerScore peerScore = this.topPeers.get(peer);
+        double score;
+        if (null != peerScore) {
+            peerScore.decay(now);
+            score = peerScore.score();
+        } else {
+            score = estimateTailRate(peer.hashCode());
+        }
+
+        return Math.max(score, MIN_SCORE);
+    }
+
+    /**
+     * 节点成功率
+     * @param peer peer public key
+     * @param now 当前时间，单位毫秒
+     * @return success rate
+     */
+    public synchronized double getSuccessRate(ByteArrayWrapper peer, long now) {
+        PeerScore peerScore = this.topPeers.get(peer);
+        if (null != peerScore) {
+            peerScore.decay(now);
+            return peerScore.successRate;
+        }
+
+        return estimateTailRate(peer.hashCode());
+    }
+
+    /**
+     * 按得分加权随机选择一个节点
+     * @param peers candidate peers, not empty
+     * @param random random
+     * @param now 当前时间，单位毫秒
+     * @return chosen peer
+     */
+    public synchronized ByteArrayWrapper choose(Iterable<ByteArrayWrapper> peers, Random random, long now) {
+        double total = 0;
+        for (ByteArrayWrapper peer: peers) {
+            total += getScore(peer, now);
+        }
+
+        double r = random.nextDouble() * total;
+        ByteArrayWrapper chosen = null;
+        Iterator<ByteArrayWrapper> it = peers.iterator();
+        while (it.hasNext()) {
+            chosen = it.next();
+            r -= getScore(chosen, now);
+            if (r < 0) {
+                break;
+            }
+        }
+
+        return chosen;
+    }
+
+    /**
+     * @return 精确统计的节点数量
+     */
+    public synchronized int getTopPeerNumber() {
+        return this.topPeers.size();
+    }
+
+    public synchronized void clear() {
+        this.topPeers.clear();
+        this.pendingRequests.clear();
+        this.successSketch.clear();
+        this.requestSketch.clear();
+        this.tailRequests = 0;
+    }
+}
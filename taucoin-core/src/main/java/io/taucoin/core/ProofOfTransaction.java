@@ -23,6 +23,20 @@ public class ProofOfTransaction {
     private final static BigInteger DiffAdjustNumeratorHalf = new BigInteger("0100000000",16);
     private final static BigInteger DiffAdjustNumeratorCoe = new BigInteger("800000000000000",16); //2^59
 
+    // long版本的计算使用的常量，与BigInteger版本逐位一致
+    // ln(2^64)
+    private final static double LogDiffAdjustNumerator = 2 * log(DiffAdjustNumeratorHalf.doubleValue());
+    // 2^59 = HitQuotient * 1000 + HitRemainder
+    private final static long HitQuotient = (1L << 59) / 1000;
+    private final static long HitRemainder = (1L << 59) % 1000;
+    // ulogarithm超过该值时，hit超出long的表示范围
+    private final static long MaxLongULogarithm = Long.MAX_VALUE / HitQuotient - 1;
+
+    // long版本无法表示hit时的返回值，此时需要使用BigInteger版本计算
+    // 合法的hit不会是负数，所以不会冲突；base target是无符号64位，全部取值都合法，
+    // 不能使用该值，溢出时抛出ArithmeticException
+    public final static long NOT_REPRESENTABLE = -1;
+
     private final int averageBlockTime;
 
     private final int minRatio;
@@ -64,6 +78,24 @@ public class ProofOfTransaction {
      * @return base target or null if error
      */
     public BigInteger calculateRequiredBaseTarget(Block previousBlock, Block ancestor3) {
+        if (previousBlock.getBlockNum() <= 3 || isUnsignedLong(previousBlock.getBaseTarget())) {
+            try {
+                return toUnsignedBigInteger(calculateRequiredBaseTargetValue(previousBlock, ancestor3));
+            } catch (ArithmeticException e) {
+                logger.trace("Chain ID:{}: Base target overflows unsigned long", new String(this.chainID));
+            }
+        }
+
+        return calculateRequiredBaseTargetByBigInteger(previousBlock, ancestor3);
+    }
+
+    /**
+     * get required base target with BigInteger, the reference implementation
+     *
+     * @param previousBlock previous block
+     * @return base target
+     */
+    BigInteger calculateRequiredBaseTargetByBigInteger(Block previousBlock, Block ancestor3) {
         long blockNumber = previousBlock.getBlockNum();
         if (blockNumber <= 3) {
             return this.genesisBaseTarget;
@@ -115,6 +147,43 @@ public class ProofOfTransaction {
     }
 
 
+    /**
+     * get required base target as an unsigned long, without allocation
+     *
+     * @param previousBlock previous block
+     * @return unsigned base target
+     * @throws ArithmeticException if previous or required base target doesn't fit in 64 bits
+     */
+    public long calculateRequiredBaseTargetValue(Block previousBlock, Block ancestor3) {
+        long blockNumber = previousBlock.getBlockNum();
+        if (blockNumber <= 3) {
+            return toUnsignedLong(this.genesisBaseTarget);
+        }
+
+        long totalTimeInterval = 0;
+        if (previousBlock.getTimeStamp() > ancestor3.getTimeStamp()) {
+            totalTimeInterval = previousBlock.getTimeStamp() -ancestor3.getTimeStamp();
+        }
+
+        long timeAver = totalTimeInterval / 3;
+
+        long previousBlockBaseTarget = toUnsignedLong(previousBlock.getBaseTarget());
+
+        if (timeAver > this.averageBlockTime ) {
+            long min = timeAver < this.maxRatio ? timeAver : this.maxRatio;
+
+            return multiplyDivide(previousBlockBaseTarget, min, this.averageBlockTime);
+        } else {
+            long max = timeAver > this.minRatio ? timeAver : this.minRatio;
+
+            // 与BigInteger版本的计算顺序一致
+            long delta = multiplyDivide(previousBlockBaseTarget, 64, 100);
+            delta = multiplyDivide(delta, this.averageBlockTime - max, this.averageBlockTime);
+
+            return previousBlockBaseTarget - delta;
+        }
+    }
+
     /**
      * get next block generation signature
      *     Gn+1 = hash(Gn, pubkey)
@@ -180,6 +249,32 @@ public class ProofOfTransaction {
         return adjustHit;
     }
 
+    /**
+     * calculate hit as a long, without allocation
+     * @param generationSignature generation signature
+     * @return hit, or NOT_REPRESENTABLE if it doesn't fit in a long
+     */
+    public long calculateRandomHitValue(byte[] generationSignature) {
+        long bhit = 0;
+        for (int i = 0; i < 8; i++) {
+            bhit = (bhit << 8) | (generationSignature[i] & 0xff);
+        }
+
+        // bhit + 1 as double, the same as BigInteger.doubleValue()
+        double bhitUzero = (-1 == bhit) ? 0x1p64 : unsignedToDouble(bhit + 1);
+
+        double logarithm = abs(log(bhitUzero) - LogDiffAdjustNumerator);
+        logarithm = logarithm * 1000;
+
+        long ulogarithm = (long) logarithm;
+        if (ulogarithm > MaxLongULogarithm) {
+            return NOT_REPRESENTABLE;
+        }
+
+        // 2^59 * ulogarithm / 1000
+        return ulogarithm * HitQuotient + ulogarithm * HitRemainder / 1000;
+    }
+
     /**
      * calculate cumulative difficulty
      * @param lastCumulativeDifficulty last cumulative difficulty
@@ -219,6 +314,48 @@ public class ProofOfTransaction {
         return timeInterval;
     }
 
+    /**
+     * calculate mining time interval with long, without allocation
+     * @param hit hit, see calculateRandomHitValue
+     * @param baseTarget unsigned base target
+     * @param power power
+     * @return time interval
+     */
+    public long calculateMiningTimeInterval(long hit, long baseTarget, long power) {
+        long realPower = (long) sqrt((double) power);
+        long timeInterval = Long.divideUnsigned(hit, baseTarget) / realPower;
+
+        // C++ to make sure T > H
+        timeInterval++;
+
+        if (timeInterval < this.minBlockTime) {
+            timeInterval = this.minBlockTime;
+        } else if (timeInterval > this.maxBlockTime) {
+            timeInterval = this.maxBlockTime;
+        }
+
+        return timeInterval;
+    }
+
+    /**
+     * calculate mining time interval from generation signature,
+     * use long if possible, otherwise BigInteger
+     * @param generationSignature generation signature
+     * @param baseTarget base target
+     * @param power power
+     * @return time interval
+     */
+    public long calculateMiningTimeInterval(byte[] generationSignature, BigInteger baseTarget, BigInteger power) {
+        long hit = calculateRandomHitValue(generationSignature);
+
+        if (NOT_REPRESENTABLE != hit && isUnsignedLong(baseTarget)
+                && power.signum() >= 0 && power.bitLength() < 64) {
+            return calculateMiningTimeInterval(hit, baseTarget.longValue(), power.longValue());
+        }
+
+        return calculateMiningTimeInterval(calculateRandomHit(generationSignature), baseTarget, power);
+    }
+
     /**
      * verifyHit verifies that target is greater than hit or the time meets the requirements
      * @param hit hit
@@ -247,5 +384,131 @@ public class ProofOfTransaction {
         return true;
     }
 
+    /**
+     * verifyHit with long, without allocation
+     * @param hit hit, see calculateRandomHitValue
+     * @param baseTarget unsigned base target
+     * @param power power
+     * @param timeInterval time interval
+     * @return true if validated, false otherwise
+     */
+    public boolean verifyHit(long hit, long baseTarget, long power, long timeInterval) {
+        if (timeInterval < this.minBlockTime) {
+            logger.error("Chain ID:{}: Time interval is less than MinBlockTime[{}]",
+                    new String(this.chainID), this.minBlockTime);
+            return false;
+        } else if (timeInterval >= this.maxBlockTime) {
+            return true;
+        } else {
+            long realPower = (long) sqrt((double) power);
+            if (!isTargetGreaterThanHit(baseTarget, realPower, timeInterval, hit)) {
+                logger.error("Chain ID:{}: Invalid POT: target[{} * {} * {}] <= hit[{}]",
+                        new String(this.chainID), Long.toUnsignedString(baseTarget),
+                        realPower, timeInterval, hit);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * verifyHit from generation signature, use long if possible, otherwise BigInteger
+     * @param generationSignature generation signature
+     * @param baseTarget base target
+     * @param power power
+     * @param timeInterval time interval
+     * @return true if validated, false otherwise
+     */
+    public boolean verifyHit(byte[] generationSignature, BigInteger baseTarget, BigInteger power, long timeInterval) {
+        long hit = calculateRandomHitValue(generationSignature);
+
+        if (NOT_REPRESENTABLE != hit && isUnsignedLong(baseTarget)
+                && power.signum() >= 0 && power.bitLength() < 64 && timeInterval > 0) {
+            return verifyHit(hit, baseTarget.longValue(), power.longValue(), timeInterval);
+        }
+
+        return verifyHit(calculateRandomHit(generationSignature), baseTarget, power, timeInterval);
+    }
+
+    // baseTarget * realPower * time > hit, the product is computed in 128 bits
+    private static boolean isTargetGreaterThanHit(long baseTarget, long realPower, long time, long hit) {
+        if (0 != multiplyHighUnsigned(baseTarget, realPower)) {
+            return true;
+        }
+
+        long target = baseTarget * realPower;
+        if (0 != multiplyHighUnsigned(target, time)) {
+            return true;
+        }
+
+        return Long.compareUnsigned(target * time, hit) > 0;
+    }
+
+    // floor(x * m / d) for unsigned x and small positive m, d,
+    // the same as x.multiply(m).divide(d) with BigInteger,
+    // throw ArithmeticException if the result overflows unsigned long
+    private static long multiplyDivide(long x, long m, long d) {
+        // x = q * d + r, x * m / d = q * m + r * m / d
+        long q = Long.divideUnsigned(x, d);
+        long r = Long.remainderUnsigned(x, d);
+
+        if (0 != multiplyHighUnsigned(q, m)) {
+            throw new ArithmeticException("unsigned long overflow");
+        }
+
+        long high = q * m;
+        long result = high + r * m / d;
+        if (Long.compareUnsigned(result, high) < 0) {
+            throw new ArithmeticException("unsigned long overflow");
+        }
+
+        return result;
+    }
+
+    // high 64 bits of the unsigned 128 bits product
+    static long multiplyHighUnsigned(long x, long y) {
+        long x0 = x & 0xffffffffL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xffffffffL;
+        long y1 = y >>> 32;
+
+        long w0 = x0 * y0;
+        long t = x1 * y0 + (w0 >>> 32);
+        long w1 = (t & 0xffffffffL) + x0 * y1;
+
+        return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+    }
+
+    // unsigned long to double, rounded as BigInteger.doubleValue()
+    private static double unsignedToDouble(long x) {
+        if (x >= 0) {
+            return (double) x;
+        }
+
+        // keep the lowest bit for correct rounding
+        return (double) ((x >>> 1) | (x & 1)) * 2.0;
+    }
+
+    private static boolean isUnsignedLong(BigInteger x) {
+        return x.signum() >= 0 && x.bitLength() <= 64;
+    }
+
+    private static long toUnsignedLong(BigInteger x) {
+        if (!isUnsignedLong(x)) {
+            throw new ArithmeticException("unsigned long overflow");
+        }
+
+        return x.longValue();
+    }
+
+    private static BigInteger toUnsignedBigInteger(long x) {
+        BigInteger value = BigInteger.valueOf(x);
+        if (x < 0) {
+            value = value.add(BigInteger.ONE.shiftLeft(64));
+        }
+
+        return value;
+    }
+
 }
 
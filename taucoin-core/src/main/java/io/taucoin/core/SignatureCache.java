@@ -0,0 +1,145 @@
+package io.taucoin.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.Transaction;
+import io.taucoin.util.HashLongMap;
+
+/**
+ * 已验证签名缓存：记录签名验证通过的交易ID和区块哈希，
+ * 交易池入池、区块状态处理、切换分支时重放区块都先查询，
+ * 同一个签名在进程内只验证一次。
+ * 交易ID和区块哈希都覆盖签名，哈希相同即签名相同。
+ * 只缓存验证通过的结果；缓存分新旧两代，新一代写满后替换旧一代，
+ * 最近验证过的哈希保留在缓存中。
+ * 单例，所有链共用，线程安全。
+ */
+public class SignatureCache {
+
+    // 每一代的哈希数量
+    public static final int DEFAULT_GENERATION_SIZE = 16384;
+
+    private static volatile SignatureCache INSTANCE;
+
+    private final int generationSize;
+
+    private HashLongMap current;
+
+    private HashLongMap previous;
+
+    // 实际验证签名的次数
+    private final AtomicLong verifiedCounter = new AtomicLong(0);
+
+    // 命中缓存，省去验证的次数
+    private final AtomicLong skippedCounter = new AtomicLong(0);
+
+    /**
+     * Get SignatureCache instance.
+     *
+     * @return SignatureCache instance
+     */
+    public static SignatureCache getInstance() {
+        if (INSTANCE == null) {
+            synchronized (SignatureCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SignatureCache(DEFAULT_GENERATION_SIZE);
+                }
+            }
+        }
+
+        return INSTANCE;
+    }
+
+    /**
+     * @param generationSize 每一代的哈希数量，缓存最多保存两代
+     */
+    public SignatureCache(int generationSize) {
+        this.generationSize = generationSize;
+        this.current = new HashLongMap(ChainParam.HashLength, generationSize, false);
+        this.previous = new HashLongMap(ChainParam.HashLength, 0, false);
+    }
+
+    private synchronized boolean contains(byte[] hash) {
+        if (this.current.containsKey(hash)) {
+            return true;
+        }
+
+        if (this.previous.containsKey(hash)) {
+            // 仍在使用，移到新一代
+            add(hash);
+            return true;
+        }
+
+        return false;
+    }
+
+    private synchronized void add(byte[] hash) {
+        if (this.current.size() >= this.generationSize) {
+            this.previous = this.current;
+            this.current = new HashLongMap(ChainParam.HashLength, this.generationSize, false);
+        }
+
+        this.current.put(hash, 0);
+    }
+
+    /**
+     * 验证交易签名，验证过的交易不再验证
+     * @param tx transaction
+     * @return true if signature is valid
+     */
+    public boolean verify(Transaction tx) {
+        byte[] txid = tx.getTxID();
+        if (contains(txid)) {
+            this.skippedCounter.incrementAndGet();
+            return true;
+        }
+
+        this.verifiedCounter.incrementAndGet();
+        if (!tx.verifyTransactionSig()) {
+            return false;
+        }
+
+        add(txid);
+        return true;
+    }
+
+    /**
+     * 验证区块签名，验证过的区块不再验证
+     * @param block block
+     * @return true if signature is valid
+     */
+    public boolean verify(Block block) {
+        byte[] blockHash = block.getBlockHash();
+        if (contains(blockHash)) {
+            this.skippedCounter.incrementAndGet();
+            return true;
+        }
+
+        this.verifiedCounter.incrementAndGet();
+        if (!block.verifyBlockSig()) {
+            return false;
+        }
+
+        add(blockHash);
+        return true;
+    }
+
+    public synchronized int size() {
+        return this.current.size() + this.previous.size();
+    }
+
+    public synchronized void clear() {
+        this.current.clear();
+        this.previous.clear();
+    }
+
+    public long getVerifiedCounter() {
+        return this.verifiedCounter.get();
+    }
+
+    public long getSkippedCounter() {
+        return this.skippedCounter.get();
+    }
+}
@@ -61,6 +61,12 @@ public interface TransactionPool {
      */
     List<Transaction> getLocals();
 
+    /**
+     * get all remote transactions
+     * @return remote tx list
+     */
+    List<Transaction> getRemotes();
+
     /**
      * save all local transaction in db
      */
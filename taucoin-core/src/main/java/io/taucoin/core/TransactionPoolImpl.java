@@ -154,7 +154,7 @@ public class TransactionPoolImpl implements TransactionPool {
             return;
         }
 
-        if (!tx.verifyTransactionSig()) {
+        if (!SignatureCache.getInstance().verify(tx)) {
             logger.error("Chain ID[{}]: Tx[{}] bad signature.",
                     new String(this.chainID), Hex.toHexString(tx.getTxID()));
             return;
@@ -236,6 +236,23 @@ public class TransactionPoolImpl implements TransactionPool {
         return list;
     }
 
+    /**
+     * get all remote transactions in pool
+     *
+     * @return remote tx list
+     */
+    @Override
+    public synchronized List<Transaction> getRemotes() {
+        List<Transaction> list = new ArrayList<>(remotes.size());
+        for (MemoryPoolEntry entry: remotes) {
+            Transaction tx = getTransactionByTxid(entry.txid);
+            if (null != tx) {
+                list.add(tx);
+            }
+        }
+        return list;
+    }
+
     /**
      * save all local transaction in db
      */
@@ -334,7 +351,7 @@ public class TransactionPoolImpl implements TransactionPool {
             return;
         }
 
-        if (!tx.verifyTransactionSig()) {
+        if (!SignatureCache.getInstance().verify(tx)) {
             logger.error("Chain ID[{}]: Tx[{}] bad signature.",
                     new String(this.chainID), Hex.toHexString(tx.getTxID()));
             return;
@@ -1,5 +1,7 @@
 package io.taucoin.core;
 
+import org.spongycastle.util.encoders.Hex;
+
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -88,7 +90,7 @@ public class Vote implements Comparable<Vote> {
     @Override
     public String toString() {
         return "Vote{" +
-                "blockHash=" + new String(blockHash) +
+                "blockHash=" + Hex.toHexString(blockHash) +
                 ", blockNumber=" + blockNumber +
                 ", count=" + count +
                 '}';
@@ -5,96 +5,248 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
+import io.taucoin.param.ChainParam;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 投票池：选票到达时即时唱票，只保存(immutable block hash, block number, 票数)，
+ * 票数随时间指数衰减，跨轮次保留，最佳选票随时可以O(1)取得。
+ *
+ * 衰减采用前向衰减：每张选票记为exp(λ(t - landmark))，所有候选的分数同比例衰减，
+ * 排序不随时间改变，因此只需在唱票时比较一次最佳选票。
+ */
 public class VotingPool {
     private static final Logger logger = LoggerFactory.getLogger("voting pool");
 
+    // 默认票数半衰期，单位毫秒
+    public static final long DEFAULT_HALF_LIFE = ChainParam.DEFAULT_MAX_BLOCK_TIME * 1000L;
+
+    // 默认最多保存的候选数量
+    public static final int DEFAULT_MAX_CANDIDATES = 128;
+
+    // 衰减后票数低于该值的候选视为过期
+    private static final double MIN_WEIGHT = 0.5;
+
+    // 指数超过该值时重新设置基准时间，避免浮点溢出
+    private static final double MAX_EXPONENT = 64;
+
     private final byte[] chainID;
 
-    private final Map<String, Vote> votingPool = new HashMap<>();
-    private Vote bestVote = null;
+    // 衰减系数λ，单位1/毫秒
+    private final double lambda;
+
+    private final int maxCandidates;
+
+    private final Map<ByteArrayWrapper, Tally> votingPool = new HashMap<>();
+
+    private Tally bestTally = null;
+
+    // 前向衰减的基准时间
+    private long landmark = -1;
 
-//    public VotingPool(Map<String, Map<String, Vote>> votingPool) {
-//        this.votingPool = votingPool;
-//    }
+    private static class Tally {
+        final byte[] blockHash;
+        final int blockNumber;
+        // 以landmark为基准的分数
+        double score = 0;
+
+        Tally(byte[] blockHash, int blockNumber) {
+            this.blockHash = blockHash;
+            this.blockNumber = blockNumber;
+        }
+
+        // 票数优先；票数相同的情况下，高度优先
+        boolean isBetterThan(Tally o) {
+            return this.score > o.score ||
+                    (this.score == o.score && this.blockNumber > o.blockNumber);
+        }
+    }
+
+    /**
+     * 候选及其票数
+     */
+    public static class WeightedVote {
+        public final byte[] blockHash;
+        public final int blockNumber;
+        public final double weight;
+
+        public WeightedVote(byte[] blockHash, int blockNumber, double weight) {
+            this.blockHash = blockHash;
+            this.blockNumber = blockNumber;
+            this.weight = weight;
+        }
+    }
 
     public VotingPool(byte[] chainID) {
+        this(chainID, DEFAULT_HALF_LIFE, DEFAULT_MAX_CANDIDATES);
+    }
+
+    public VotingPool(byte[] chainID, long halfLife, int maxCandidates) {
         this.chainID = chainID;
+        this.lambda = Math.log(2) / halfLife;
+        this.maxCandidates = maxCandidates;
     }
 
     /**
      * put a vote into voting pool
-     * @param blockHash
-     * @param blockNumber
+     * @param blockHash immutable block hash
+     * @param blockNumber immutable block number
      */
-    public synchronized void putIntoVotingPool(byte[] blockHash, int blockNumber) {
-        String key = new String(blockHash);
-        Vote vote = votingPool.get(key);
-        if (null == vote) {
-            vote = new Vote(blockHash, blockNumber);
-            logger.info("Chain ID:{}: The first time the vote appeared:{}", new String(this.chainID), vote.toString());
+    public void putIntoVotingPool(byte[] blockHash, int blockNumber) {
+        putIntoVotingPool(blockHash, blockNumber, System.currentTimeMillis());
+    }
+
+    /**
+     * put a vote into voting pool
+     * @param blockHash immutable block hash
+     * @param blockNumber immutable block number
+     * @param now 唱票时间，单位毫秒
+     */
+    public void putIntoVotingPool(byte[] blockHash, int blockNumber, long now) {
+        putIntoVotingPool(blockHash, blockNumber, 1, now);
+    }
+
+    /**
+     * put votes into voting pool
+     * @param blockHash immutable block hash
+     * @param blockNumber immutable block number
+     * @param weight 票数，恢复投票池时为衰减后的票数
+     * @param now 唱票时间，单位毫秒
+     */
+    public synchronized void putIntoVotingPool(byte[] blockHash, int blockNumber, double weight, long now) {
+        if (this.landmark < 0) {
+            this.landmark = now;
         }
+
+        double exponent = this.lambda * (now - this.landmark);
+        if (exponent > MAX_EXPONENT) {
+            rescale(now);
+            exponent = 0;
+        }
+
+        ByteArrayWrapper key = new ByteArrayWrapper(blockHash);
+        Tally tally = this.votingPool.get(key);
+        if (null == tally) {
+            if (this.votingPool.size() >= this.maxCandidates) {
+                evictWeakest();
+            }
+
+            tally = new Tally(blockHash, blockNumber);
+            this.votingPool.put(key, tally);
+            logger.info("Chain ID:{}: The first time the vote appeared, hash:{}, number:{}",
+                    new String(this.chainID), key.toString(), blockNumber);
+        }
+
         // 唱票
-        vote.voteUp();
+        tally.score += weight * Math.exp(exponent);
 
         // 判断是否需要更新bestVote，三种情况下需要更新：
         // 1. bestVote为null;
         // 2. bestVote票数落后;
         // 3. bestVote与选票最多的票数相同，但是高度较低
-        if (null == bestVote || bestVote.getCount() < vote.getCount() ||
-                (bestVote.getCount() == vote.getCount() && bestVote.getBlockNumber() < vote.getBlockNumber())) {
-            bestVote = vote;
-            logger.info("Chain ID:{}: Update Best Vote:{}", new String(this.chainID), bestVote);
+        if (null == this.bestTally || (tally != this.bestTally && tally.isBetterThan(this.bestTally))) {
+            this.bestTally = tally;
+            logger.info("Chain ID:{}: Update Best Vote, hash:{}, number:{}",
+                    new String(this.chainID), key.toString(), blockNumber);
         }
-
-        // 更新投票池
-        votingPool.put(key, vote);
     }
 
     /**
      * get best vote
-     * @return
+     * @return best vote with decayed count, null if there is no vote or the best vote expired
      */
     public Vote getBestVote() {
-        return bestVote;
+        return getBestVote(System.currentTimeMillis());
     }
 
     /**
-     * clear the voting pool
+     * get best vote
+     * @param now 当前时间，单位毫秒
+     * @return best vote with decayed count, null if there is no vote or the best vote expired
      */
-    public void clearVotingPool() {
-        votingPool.clear();
-        bestVote = null;
+    public synchronized Vote getBestVote(long now) {
+        if (null == this.bestTally) {
+            return null;
+        }
+
+        double weight = decayedWeight(this.bestTally, now);
+        if (weight < MIN_WEIGHT) {
+            return null;
+        }
+
+        return new Vote(this.bestTally.blockHash, this.bestTally.blockNumber, (int) Math.round(weight));
     }
 
     /**
-     * remove all the votes corresponding to an chainID from voting pool
-     * @param chainID
+     * 所有候选及其衰减后的票数，用于保存和恢复投票池
+     * @param now 当前时间，单位毫秒
+     * @return candidates with decayed weight
      */
-//    public synchronized void removeAllVotes(String chainID) {
-//        if(votingPool.containsKey(chainID)) {
-//            votingPool.remove(chainID);
-//        } else {
-//            logger.info("Not found. Chain id:{}", chainID);
-//        }
-//    }
+    public synchronized List<WeightedVote> getWeightedVotes(long now) {
+        List<WeightedVote> votes = new ArrayList<>(this.votingPool.size());
+        for (Tally tally: this.votingPool.values()) {
+            double weight = decayedWeight(tally, now);
+            if (weight >= MIN_WEIGHT) {
+                votes.add(new WeightedVote(tally.blockHash, tally.blockNumber, weight));
+            }
+        }
+        return votes;
+    }
 
     /**
-     * get the sorted vote list corresponding to an chainID
-     * @param chainID
-     * @return
+     * @return 候选数量
      */
-//    public synchronized List<Vote> getSortedVotes(String chainID) {
-//        Map<String, Vote> votes = votingPool.get(chainID);
-//        if(null == votes || votes.isEmpty()) {
-//            logger.info("Chain ID:{} is empty.", chainID);
-//            return null;
-//        }
-//
-//        List<Vote> list = new ArrayList<>(votes.values());
-//        Collections.sort(list);
-//
-//        return list;
-//    }
+    public synchronized int size() {
+        return this.votingPool.size();
+    }
 
-}
+    /**
+     * clear the voting pool
+     */
+    public synchronized void clearVotingPool() {
+        this.votingPool.clear();
+        this.bestTally = null;
+        this.landmark = -1;
+    }
+
+    private double decayedWeight(Tally tally, long now) {
+        return tally.score * Math.exp(-this.lambda * (now - this.landmark));
+    }
+
+    private void rescale(long now) {
+        double factor = Math.exp(-this.lambda * (now - this.landmark));
+        Iterator<Tally> it = this.votingPool.values().iterator();
+        while (it.hasNext()) {
+            Tally tally = it.next();
+            tally.score *= factor;
+            if (tally.score < MIN_WEIGHT && tally != this.bestTally) {
+                it.remove();
+            }
+        }
+        this.landmark = now;
+    }
+
+    // 候选已满时移除最佳选票以外票数最少的候选；票数和高度都相同时最佳选票也可能是最少的，需要跳过
+    private void evictWeakest() {
+        ByteArrayWrapper weakestKey = null;
+        Tally weakest = null;
+        for (Map.Entry<ByteArrayWrapper, Tally> entry: this.votingPool.entrySet()) {
+            if (entry.getValue() == this.bestTally) {
+                continue;
+            }
+
+            if (null == weakest || weakest.isBetterThan(entry.getValue())) {
+                weakestKey = entry.getKey();
+                weakest = entry.getValue();
+            }
+        }
 
+        if (null != weakestKey) {
+            this.votingPool.remove(weakestKey);
+        } else if (null != this.bestTally) {
+            // 只能保存一个候选时，让位给新的候选
+            this.votingPool.remove(new ByteArrayWrapper(this.bestTally.blockHash));
+            this.bestTally = null;
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package io.taucoin.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 按字节计量的共享缓存，所有链的区块、交易等数据分区存放，共用一个内存预算。
+ * 淘汰策略为W-TinyLFU：新数据先进入占预算1%的LRU窗口，
+ * 被挤出窗口后进入主区的试用段，主区超出预算时，
+ * 试用段中最久未用的数据与最新移入的数据比较访问频率，频率低的被淘汰，
+ * 试用段中再次被访问的数据升入保护段。
+ * 一次性扫描的数据因此不会冲掉经常访问的数据。
+ * 访问频率由count-min sketch估计，定期减半以便老化。
+ *
+ * 暂存分区(newStagingRegion)用于刚下载、马上要用的数据，例如同步中的区块：
+ * 不经过频率准入，也不占共享预算，按条数限定容量，满了淘汰本分区最久未用的数据。
+ *
+ * 线程安全：读取不加锁，分区用ConcurrentHashMap查找，命中后尝试拿淘汰锁更新访问顺序，
+ * 拿不到锁不等待，把节点记入有损的读缓冲，由下一个拿到锁的线程重放；
+ * 缓冲槽被覆盖时访问记录丢失，只影响淘汰顺序和频率估计的精度，不影响正确性。
+ * 写入、删除和淘汰在淘汰锁内进行，所有链共用一把锁：共享预算要求全局的淘汰顺序，
+ * 按分区拆锁就不能在分区之间比较频率。写入远少于读取(区块和交易只在下载后写入一次)，
+ * 写入之间的竞争可以接受；多线程读写的开销见taucoin-benchmark的WeightedCacheBenchmark。
+ */
+public class WeightedCache {
+
+    // 默认内存预算
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    // 窗口占预算的比例
+    private static final double WINDOW_RATIO = 0.01;
+
+    // 保护段占主区的比例
+    private static final double PROTECTED_RATIO = 0.8;
+
+    // 估计频率时假设的平均数据大小
+    private static final int AVERAGE_WEIGHT = 1024;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int STAGING = 3;
+
+    // 读缓冲的槽数，取2的幂
+    private static final int READ_BUFFER_SIZE = 64;
+
+    /**
+     * 数据占用的字节数
+     */
+    public interface Weigher<V> {
+        int weigh(V value);
+    }
+
+    private static final class Node {
+        final Region<?> region;
+        final ByteArrayWrapper key;
+        // 读取时不加锁
+        volatile Object value;
+        int weight;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(Region<?> region, ByteArrayWrapper key) {
+            this.region = region;
+            this.key = key;
+        }
+
+        int frequencyHash() {
+            return 31 * this.region.id + this.key.hashCode();
+        }
+    }
+
+    // 按访问顺序排列的双向链表，头部最久未用
+    private static final class AccessQueue {
+        final Node head = new Node(null, null);
+        long weight = 0;
+
+        AccessQueue() {
+            this.head.prev = this.head;
+            this.head.next = this.head;
+        }
+
+        void add(Node node) {
+            node.prev = this.head.prev;
+            node.next = this.head;
+            this.head.prev.next = node;
+            this.head.prev = node;
+            this.weight += node.weight;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            this.weight -= node.weight;
+        }
+
+        void moveToTail(Node node) {
+            remove(node);
+            add(node);
+        }
+
+        Node first() {
+            return this.head.next == this.head ? null : this.head.next;
+        }
+
+        Node last() {
+            return this.head.prev == this.head ? null : this.head.prev;
+        }
+    }
+
+    private final long budget;
+
+    private final long windowBudget;
+
+    private final long protectedBudget;
+
+    private final AccessQueue[] queues = {new AccessQueue(), new AccessQueue(), new AccessQueue()};
+
+    private final CountMinSketch frequency;
+
+    // 保护访问队列、频率估计和各分区的写入
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // 拿不到淘汰锁时的读取命中，按线程分槽，同一槽的新记录覆盖旧记录
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+    // 读缓冲中有待重放的记录
+    private volatile boolean drainNeeded = false;
+
+    private int regionCounter = 0;
+
+    // 所有暂存分区占用的字节数
+    private long stagingWeight = 0;
+
+    private final AtomicLong hitCounter = new AtomicLong(0);
+
+    private final AtomicLong missCounter = new AtomicLong(0);
+
+    private long evictionCounter = 0;
+
+    public WeightedCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param budget 所有分区共用的字节预算
+     */
+    public WeightedCache(long budget) {
+        this.budget = budget;
+        this.windowBudget = Math.max(1, (long) (budget * WINDOW_RATIO));
+        this.protectedBudget = (long) ((budget - this.windowBudget) * PROTECTED_RATIO);
+
+        int width = (int) Math.min(1 << 20, Math.max(1024, budget / AVERAGE_WEIGHT));
+        this.frequency = new CountMinSketch(width, width * 10L);
+    }
+
+    /**
+     * 创建一个分区
+     * @param weigher 分区数据的字节数计算
+     * @param <V> value type
+     * @return region
+     */
+    public <V> Region<V> newRegion(Weigher<? super V> weigher) {
+        this.evictionLock.lock();
+        try {
+            return new Region<>(this.regionCounter++, weigher, 0);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 创建一个暂存分区，数据总是被接纳，不占共享预算
+     * @param weigher 分区数据的字节数计算
+     * @param capacity 最多保存的数据条数
+     * @param <V> value type
+     * @return region
+     */
+    public <V> Region<V> newStagingRegion(Weigher<? super V> weigher, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Staging capacity must be positive:" + capacity);
+        }
+
+        this.evictionLock.lock();
+        try {
+            return new Region<>(this.regionCounter++, weigher, capacity);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次读取命中，拿到淘汰锁则立即处理，否则记入读缓冲留给下一个拿到锁的线程
+     * @param node 命中的节点
+     */
+    private void recordRead(Node node) {
+        if (this.evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+                // 记录之后已被删除或淘汰的节点不再在队列中
+                if (null != node.prev) {
+                    onAccess(node);
+                }
+            } finally {
+                this.evictionLock.unlock();
+            }
+            return;
+        }
+
+        int index = (int) (Thread.currentThread().getId() & (READ_BUFFER_SIZE - 1));
+        this.readBuffer.lazySet(index, node);
+        this.drainNeeded = true;
+    }
+
+    /**
+     * 记录一次未命中的访问频率，拿不到淘汰锁时放弃
+     * @param hash frequency hash
+     */
+    private void recordMiss(int hash) {
+        if (this.evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+                this.frequency.increment(hash);
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    // 在淘汰锁内调用
+    private void drainReadBuffer() {
+        if (!this.drainNeeded) {
+            return;
+        }
+
+        // 先清标志再扫描，扫描期间新记入的读取会重新设置标志
+        this.drainNeeded = false;
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            if (null == this.readBuffer.get(i)) {
+                continue;
+            }
+
+            Node node = this.readBuffer.getAndSet(i, null);
+            // 记录之后已被删除或淘汰的节点不再在队列中
+            if (null != node && null != node.prev) {
+                onAccess(node);
+            }
+        }
+    }
+
+    private void lock() {
+        this.evictionLock.lock();
+        drainReadBuffer();
+    }
+
+    private void unlock() {
+        this.evictionLock.unlock();
+    }
+
+    private long totalWeight() {
+        return this.queues[WINDOW].weight + this.queues[PROBATION].weight + this.queues[PROTECTED].weight;
+    }
+
+    private AccessQueue queueOf(Node node) {
+        return STAGING == node.queue ? node.region.staging : this.queues[node.queue];
+    }
+
+    private void onAccess(Node node) {
+        if (STAGING == node.queue) {
+            node.region.staging.moveToTail(node);
+            return;
+        }
+
+        this.frequency.increment(node.frequencyHash());
+
+        switch (node.queue) {
+            case WINDOW:
+            case PROTECTED: {
+                this.queues[node.queue].moveToTail(node);
+                break;
+            }
+            case PROBATION: {
+                // 试用段再次访问，升入保护段
+                this.queues[PROBATION].remove(node);
+                node.queue = PROTECTED;
+                this.queues[PROTECTED].add(node);
+
+                while (this.queues[PROTECTED].weight > this.protectedBudget) {
+                    Node demoted = this.queues[PROTECTED].first();
+                    this.queues[PROTECTED].remove(demoted);
+                    demoted.queue = PROBATION;
+                    this.queues[PROBATION].add(demoted);
+                }
+                break;
+            }
+        }
+    }
+
+    private void evict() {
+        // 窗口中最久未用的数据移入试用段
+        while (this.queues[WINDOW].weight > this.windowBudget) {
+            Node node = this.queues[WINDOW].first();
+            this.queues[WINDOW].remove(node);
+            node.queue = PROBATION;
+            this.queues[PROBATION].add(node);
+        }
+
+        while (totalWeight() > this.budget) {
+            Node victim = this.queues[PROBATION].first();
+            Node candidate = this.queues[PROBATION].last();
+
+            if (null == victim) {
+                victim = this.queues[PROTECTED].first();
+                if (null == victim) {
+                    victim = this.queues[WINDOW].first();
+                }
+                candidate = victim;
+            }
+
+            if (victim != candidate && this.frequency.estimate(candidate.frequencyHash())
+                    <= this.frequency.estimate(victim.frequencyHash())) {
+                // 新数据频率不高于最久未用的数据，不予接纳
+                victim = candidate;
+            }
+
+            unlink(victim);
+            victim.region.nodes.remove(victim.key);
+            this.evictionCounter++;
+        }
+    }
+
+    private void unlink(Node node) {
+        if (STAGING == node.queue) {
+            this.stagingWeight -= node.weight;
+        }
+        queueOf(node).remove(node);
+    }
+
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * @return 共享预算内的字节数
+     */
+    public long getWeight() {
+        lock();
+        try {
+            return totalWeight();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * @return 暂存分区占用的字节数，不计入共享预算
+     */
+    public long getStagingWeight() {
+        lock();
+        try {
+            return this.stagingWeight;
+        } finally {
+            unlock();
+        }
+    }
+
+    public long getHitCounter() {
+        return this.hitCounter.get();
+    }
+
+    public long getMissCounter() {
+        return this.missCounter.get();
+    }
+
+    public long getEvictionCounter() {
+        lock();
+        try {
+            return this.evictionCounter;
+        } finally {
+            unlock();
+        }
+    }
+
+    public double getHitRate() {
+        long hits = this.hitCounter.get();
+        long requests = hits + this.missCounter.get();
+        return 0 == requests ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * 缓存的一个分区，通常对应一条链的一类数据
+     * @param <V> value type
+     */
+    public final class Region<V> {
+
+        private final int id;
+
+        private final Weigher<? super V> weigher;
+
+        // 读取不加锁，修改在淘汰锁内
+        private final Map<ByteArrayWrapper, Node> nodes = new ConcurrentHashMap<>();
+
+        private final AtomicLong hits = new AtomicLong(0);
+
+        private final AtomicLong misses = new AtomicLong(0);
+
+        // 暂存分区的容量和访问队列，普通分区为0和null
+        private final int stagingCapacity;
+
+        private final AccessQueue staging;
+
+        private Region(int id, Weigher<? super V> weigher, int stagingCapacity) {
+            this.id = id;
+            this.weigher = weigher;
+            this.stagingCapacity = stagingCapacity;
+            this.staging = stagingCapacity > 0 ? new AccessQueue() : null;
+        }
+
+        private boolean isStaging() {
+            return null != this.staging;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(ByteArrayWrapper key) {
+            Node node = this.nodes.get(key);
+            if (null == node) {
+                if (!isStaging()) {
+                    recordMiss(31 * this.id + key.hashCode());
+                }
+                this.misses.incrementAndGet();
+                missCounter.incrementAndGet();
+                return null;
+            }
+
+            Object value = node.value;
+            recordRead(node);
+            this.hits.incrementAndGet();
+            hitCounter.incrementAndGet();
+
+            return (V) value;
+        }
+
+        /**
+         * 只判断是否存在，不算作一次访问
+         * @param key key
+         * @return true if cached
+         */
+        public boolean containsKey(ByteArrayWrapper key) {
+            return this.nodes.containsKey(key);
+        }
+
+        public void put(ByteArrayWrapper key, V value) {
+            if (null == value) {
+                remove(key);
+                return;
+            }
+
+            int weight = Math.max(1, this.weigher.weigh(value));
+
+            lock();
+            try {
+                Node node = this.nodes.get(key);
+                if (null != node) {
+                    AccessQueue queue = queueOf(node);
+                    queue.weight += weight - node.weight;
+                    if (STAGING == node.queue) {
+                        stagingWeight += weight - node.weight;
+                    }
+                    node.weight = weight;
+                    node.value = value;
+                    onAccess(node);
+                } else if (isStaging()) {
+                    node = new Node(this, key);
+                    node.value = value;
+                    node.weight = weight;
+                    node.queue = STAGING;
+                    this.staging.add(node);
+                    stagingWeight += weight;
+                    this.nodes.put(key, node);
+
+                    // 超出容量淘汰本分区最久未用的数据
+                    while (this.nodes.size() > this.stagingCapacity) {
+                        Node oldest = this.staging.first();
+                        unlink(oldest);
+                        this.nodes.remove(oldest.key);
+                        evictionCounter++;
+                    }
+                    return;
+                } else {
+                    if (weight > budget) {
+                        return;
+                    }
+
+                    node = new Node(this, key);
+                    node.value = value;
+                    node.weight = weight;
+                    node.queue = WINDOW;
+                    queues[WINDOW].add(node);
+                    this.nodes.put(key, node);
+                    frequency.increment(node.frequencyHash());
+                }
+
+                evict();
+            } finally {
+                unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public V remove(ByteArrayWrapper key) {
+            lock();
+            try {
+                Node node = this.nodes.remove(key);
+                if (null == node) {
+                    return null;
+                }
+
+                unlink(node);
+
+                return (V) node.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        public int size() {
+            return this.nodes.size();
+        }
+
+        public boolean isEmpty() {
+            return this.nodes.isEmpty();
+        }
+
+        /**
+         * @return 分区占用的字节数
+         */
+        public long getWeight() {
+            lock();
+            try {
+                long weight = 0;
+                for (Node node: this.nodes.values()) {
+                    weight += node.weight;
+                }
+                return weight;
+            } finally {
+                unlock();
+            }
+        }
+
+        public double getHitRate() {
+            long hits = this.hits.get();
+            long requests = hits + this.misses.get();
+            return 0 == requests ? 0 : (double) hits / requests;
+        }
+
+        /**
+         * 清空分区，分区不再使用时也应调用，以释放预算
+         */
+        public void clear() {
+            lock();
+            try {
+                for (Node node: this.nodes.values()) {
+                    unlink(node);
+                }
+                this.nodes.clear();
+            } finally {
+                unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package io.taucoin.db;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.taucoin.core.AccountState;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 账户状态缓存：每条链一个按LRU淘汰的有界缓存，key为公钥，
+ * 同时缓存不存在的账户，避免重复读取数据库和解码。
+ *
+ * 写入时在链的锁内先写数据库再更新缓存，读者看不到数据库和缓存不一致的状态；
+ * 缓存未命中时在锁外读数据库，期间有写入则不放入缓存，避免旧值覆盖新值。
+ * 调用者会修改取到的账户状态，因此缓存保存快照，每次返回副本。
+ */
+public class AccountCache {
+
+    // 每条链缓存的账户数量上限
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // 不存在的账户
+    private static final AccountState ABSENT = new AccountState(BigInteger.ZERO, BigInteger.ZERO);
+
+    /**
+     * 缓存未命中时从数据库读取账户
+     */
+    public interface Loader {
+        AccountState load() throws DBException;
+    }
+
+    /**
+     * 预读时一次从数据库读取多个账户
+     */
+    public interface BatchLoader {
+        /**
+         * @param pubKeys public keys
+         * @return account states in the same order, null if account doesn't exist
+         * @throws DBException database exception
+         */
+        List<AccountState> load(List<byte[]> pubKeys) throws DBException;
+    }
+
+    /**
+     * 在链的锁内写数据库
+     */
+    public interface Writer {
+        void write() throws DBException;
+    }
+
+    private static class ChainAccounts extends LinkedHashMap<ByteArrayWrapper, AccountState> {
+        private final int capacity;
+
+        // 每次写入加一
+        private long generation = 0;
+
+        ChainAccounts(int capacity) {
+            super(16, 0.75F, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, AccountState> eldest) {
+            return size() > this.capacity;
+        }
+    }
+
+    private final int capacity;
+
+    private final Map<ByteArrayWrapper, ChainAccounts> chains = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCounter = new AtomicLong(0);
+
+    private final AtomicLong missCounter = new AtomicLong(0);
+
+    public AccountCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 每条链缓存的账户数量上限
+     */
+    public AccountCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private ChainAccounts getChainAccounts(byte[] chainID) {
+        return this.chains.computeIfAbsent(new ByteArrayWrapper(chainID), k -> new ChainAccounts(this.capacity));
+    }
+
+    private static AccountState copy(AccountState state) {
+        if (null == state || ABSENT == state) {
+            return null;
+        }
+
+        return new AccountState(state.getBalance(), state.getNonce());
+    }
+
+    /**
+     * 获取账户状态，未命中时从数据库读取并放入缓存
+     * @param chainID chain ID
+     * @param pubKey public key
+     * @param loader database loader
+     * @return copy of account state, or null if account doesn't exist
+     * @throws DBException database exception
+     */
+    public AccountState get(byte[] chainID, byte[] pubKey, Loader loader) throws DBException {
+        ChainAccounts accounts = getChainAccounts(chainID);
+        ByteArrayWrapper key = new ByteArrayWrapper(pubKey);
+
+        long generation;
+        synchronized (accounts) {
+            AccountState state = accounts.get(key);
+            if (null != state) {
+                this.hitCounter.incrementAndGet();
+                return copy(state);
+            }
+            generation = accounts.generation;
+        }
+
+        this.missCounter.incrementAndGet();
+        AccountState state = loader.load();
+
+        synchronized (accounts) {
+            if (accounts.generation == generation) {
+                accounts.put(key, null == state ? ABSENT : copy(state));
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * 预读账户：缓存中没有的账户一次从数据库读取，放入缓存
+     * @param chainID chain ID
+     * @param pubKeys public keys
+     * @param loader database batch loader
+     * @throws DBException database exception
+     */
+    public void prefetch(byte[] chainID, Collection<ByteArrayWrapper> pubKeys, BatchLoader loader) throws DBException {
+        ChainAccounts accounts = getChainAccounts(chainID);
+        List<ByteArrayWrapper> misses = new ArrayList<>();
+
+        long generation;
+        synchronized (accounts) {
+            for (ByteArrayWrapper pubKey: pubKeys) {
+                if (!accounts.containsKey(pubKey)) {
+                    misses.add(pubKey);
+                }
+            }
+            generation = accounts.generation;
+        }
+
+        if (misses.isEmpty()) {
+            return;
+        }
+
+        this.missCounter.addAndGet(misses.size());
+        List<byte[]> keys = new ArrayList<>(misses.size());
+        for (ByteArrayWrapper pubKey: misses) {
+            keys.add(pubKey.getData());
+        }
+        List<AccountState> states = loader.load(keys);
+
+        synchronized (accounts) {
+            if (accounts.generation == generation) {
+                for (int i = 0; i < misses.size(); i++) {
+                    AccountState state = states.get(i);
+                    accounts.put(misses.get(i), null == state ? ABSENT : copy(state));
+                }
+            }
+        }
+    }
+
+    /**
+     * 在链的锁内写数据库，成功后更新缓存
+     * @param chainID chain ID
+     * @param changed changed accounts: {key: public key, value: account state}
+     * @param writer database writer
+     * @throws DBException database exception
+     */
+    public void update(byte[] chainID, Map<ByteArrayWrapper, AccountState> changed, Writer writer) throws DBException {
+        ChainAccounts accounts = getChainAccounts(chainID);
+
+        synchronized (accounts) {
+            accounts.generation++;
+            try {
+                writer.write();
+            } catch (DBException e) {
+                // 写入结果不确定，丢弃这些账户的缓存
+                for (ByteArrayWrapper pubKey: changed.keySet()) {
+                    accounts.remove(pubKey);
+                }
+                throw e;
+            }
+
+            for (Map.Entry<ByteArrayWrapper, AccountState> entry: changed.entrySet()) {
+                accounts.put(entry.getKey(), copy(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * 在链的锁内清除数据库中链的状态，之后丢弃整条链的缓存；
+     * 删除期间读者等待锁，不会把删除前的账户重新放入缓存
+     * @param chainID chain ID
+     * @param writer database writer
+     * @throws DBException database exception
+     */
+    public void invalidate(byte[] chainID, Writer writer) throws DBException {
+        ByteArrayWrapper key = new ByteArrayWrapper(chainID);
+        ChainAccounts accounts = getChainAccounts(chainID);
+
+        synchronized (accounts) {
+            // 正在读数据库的读者不再放入缓存
+            accounts.generation++;
+            try {
+                writer.write();
+            } finally {
+                accounts.clear();
+                this.chains.remove(key, accounts);
+            }
+        }
+    }
+
+    /**
+     * @param chainID chain ID
+     * @return 链缓存的账户数量
+     */
+    public int size(byte[] chainID) {
+        ChainAccounts accounts = this.chains.get(new ByteArrayWrapper(chainID));
+        if (null == accounts) {
+            return 0;
+        }
+
+        synchronized (accounts) {
+            return accounts.size();
+        }
+    }
+
+    public long getHitCounter() {
+        return this.hitCounter.get();
+    }
+
+    public long getMissCounter() {
+        return this.missCounter.get();
+    }
+
+    public double getHitRate() {
+        long hits = this.hitCounter.get();
+        long requests = hits + this.missCounter.get();
+        return 0 == requests ? 0 : (double) hits / requests;
+    }
+}
@@ -8,23 +8,79 @@ import io.taucoin.types.HorizontalItem;
 import io.taucoin.types.Transaction;
 import io.taucoin.types.TransactionFactory;
 import io.taucoin.types.VerticalItem;
+import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.ByteUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.LongPredicate;
 
 public class BlockDB implements BlockStore {
     private static final Logger logger = LoggerFactory.getLogger("BlockDB");
 
     private KeyValueDataBase db;
 
+    // 每条链已保存的区块、交易和hash list哈希
+    private final KnownHashIndex knownHashIndex;
+
+    // 区块索引记录长度：区块号 + 是否主链
+    private static final int BLOCK_INDEX_LENGTH = 9;
+
+    private static final byte[] FORK_MARKER = {0};
+
+    // 旧版本BlockInfos转换时每批处理的高度数，每批单独提交
+    static final int MIGRATION_BATCH_SIZE = 256;
+
+    // 旧版本BlockInfos已转换为区块索引的链
+    private final Set<ByteArrayWrapper> indexedChains = Collections.synchronizedSet(new HashSet<>());
+
     public BlockDB(KeyValueDataBase db) {
         this.db = db;
+        this.knownHashIndex = new KnownHashIndex(db, this::getAllSavedHashes, PrefixKey::knownHashFilterKey);
+    }
+
+    /**
+     * 从数据库读取链的所有区块、交易和hash list哈希，用于重建已知哈希索引
+     * @param chainID chain ID
+     * @return hash list
+     */
+    private List<byte[]> getAllSavedHashes(byte[] chainID) throws Exception {
+        List<byte[]> hashes = new ArrayList<>();
+
+        byte[][] prefixes = {PrefixKey.blockPrefix(chainID), PrefixKey.txPrefix(chainID),
+                PrefixKey.hashListPrefix(chainID)};
+        for (byte[] prefix: prefixes) {
+            Set<byte[]> keys = db.retrieveKeysWithPrefix(prefix);
+            if (null == keys) {
+                continue;
+            }
+
+            for (byte[] key: keys) {
+                if (key.length > prefix.length) {
+                    hashes.add(Arrays.copyOfRange(key, prefix.length, key.length));
+                }
+            }
+        }
+
+        return hashes;
+    }
+
+    /**
+     * get known hash index, for metrics
+     * @return known hash index
+     */
+    public KnownHashIndex getKnownHashIndex() {
+        return this.knownHashIndex;
     }
 
     /**
@@ -44,6 +100,7 @@ public class BlockDB implements BlockStore {
      * close db
      */
     public void close() {
+        this.knownHashIndex.saveSnapshots();
         db.close();
     }
 
@@ -56,6 +113,7 @@ public class BlockDB implements BlockStore {
         try {
             if (null != tx) {
                 db.put(PrefixKey.txKey(chainID, tx.getTxID()), tx.getEncoded());
+                this.knownHashIndex.add(chainID, tx.getTxID());
             }
         } catch (Exception e) {
             throw new DBException(e.getMessage());
@@ -76,8 +134,12 @@ public class BlockDB implements BlockStore {
             return null;
         }
 
-        byte[] encode;
+        // 已知哈希索引判定不存在，不读数据库
+        if (!this.knownHashIndex.mightContain(chainID, hash)) {
+            return null;
+        }
 
+        byte[] encode;
         try {
             encode = db.get(PrefixKey.txKey(chainID, hash));
         } catch (Exception e) {
@@ -85,6 +147,10 @@ public class BlockDB implements BlockStore {
             throw new DBException(e.getMessage());
         }
 
+        if (null == encode) {
+            this.knownHashIndex.onFalsePositive();
+        }
+
         if (null != encode) {
             return TransactionFactory.parseTransaction(encode);
         }
@@ -104,6 +170,7 @@ public class BlockDB implements BlockStore {
             if (null != hashList) {
                 logger.info("Save item hash:{}", Hex.toHexString(hashList.getHash()));
                 db.put(PrefixKey.hashListKey(chainID, hashList.getHash()), hashList.getEncoded());
+                this.knownHashIndex.add(chainID, hashList.getHash());
             }
         } catch (Exception e) {
             throw new DBException(e.getMessage());
@@ -123,6 +190,11 @@ public class BlockDB implements BlockStore {
             return null;
         }
 
+        // 已知哈希索引判定不存在，不读数据库
+        if (!this.knownHashIndex.mightContain(chainID, hash)) {
+            return null;
+        }
+
         byte[] encode;
         try {
             encode = db.get(PrefixKey.hashListKey(chainID, hash));
@@ -131,6 +203,10 @@ public class BlockDB implements BlockStore {
             throw new DBException(e.getMessage());
         }
 
+        if (null == encode) {
+            this.knownHashIndex.onFalsePositive();
+        }
+
         if (null != encode) {
             return new HorizontalItem(encode);
         }
@@ -152,6 +228,11 @@ public class BlockDB implements BlockStore {
             return null;
         }
 
+        // 已知哈希索引判定不存在，不读数据库
+        if (!this.knownHashIndex.mightContain(chainID, hash)) {
+            return null;
+        }
+
         byte[] encode;
         try {
             encode = db.get(PrefixKey.hashListKey(chainID, hash));
@@ -160,6 +241,10 @@ public class BlockDB implements BlockStore {
             throw new DBException(e.getMessage());
         }
 
+        if (null == encode) {
+            this.knownHashIndex.onFalsePositive();
+        }
+
         if (null != encode) {
             return new VerticalItem(encode);
         }
@@ -182,6 +267,11 @@ public class BlockDB implements BlockStore {
             return null;
         }
 
+        // 已知哈希索引判定不存在，不读数据库
+        if (!this.knownHashIndex.mightContain(chainID, hash)) {
+            return null;
+        }
+
         byte[] blockEncode;
         try {
             blockEncode = db.get(PrefixKey.blockKey(chainID, hash));
@@ -190,6 +280,10 @@ public class BlockDB implements BlockStore {
             throw new DBException(e.getMessage());
         }
 
+        if (null == blockEncode) {
+            this.knownHashIndex.onFalsePositive();
+        }
+
         if (null != blockEncode) {
             return new Block(blockEncode);
         }
@@ -256,34 +350,130 @@ public class BlockDB implements BlockStore {
     }
 
     /**
-     * get block info
+     * 区块索引记录：[区块号 8字节][是否主链 1字节]
+     * @param number block number
+     * @param isMainChain if main chain
+     * @return record
+     */
+    private static byte[] encodeBlockIndex(long number, boolean isMainChain) {
+        byte[] record = new byte[BLOCK_INDEX_LENGTH];
+        System.arraycopy(ByteUtil.longToBytes(number), 0, record, 0, 8);
+        record[8] = isMainChain ? (byte) 1 : (byte) 0;
+        return record;
+    }
+
+    private static long getIndexedNumber(byte[] record) {
+        return ByteUtil.byteArrayToLong(Arrays.copyOfRange(record, 0, 8));
+    }
+
+    private static boolean isIndexedMainChain(byte[] record) {
+        return 1 == record[8];
+    }
+
+    /**
+     * convert legacy block infos of a chain to block index in bounded batches, called at chain startup
+     * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    @Override
+    public void migrateBlockInfos(byte[] chainID) throws DBException {
+        ensureIndexed(chainID);
+    }
+
+    /**
+     * 旧版本每个高度保存一个BlockInfos RLP列表，转换为定长索引。
+     * 链启动时调用migrateBlockInfos完成转换，这里兜底未经启动就访问的链。
+     * 分批读取和提交，每批同时写入索引并删除对应的BlockInfos，中途退出后剩下的下次继续转换
      * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    private void ensureIndexed(byte[] chainID) throws DBException {
+        ByteArrayWrapper key = new ByteArrayWrapper(chainID);
+        if (this.indexedChains.contains(key)) {
+            return;
+        }
+
+        synchronized (this.indexedChains) {
+            if (this.indexedChains.contains(key)) {
+                return;
+            }
+
+            try {
+                byte[] prefix = PrefixKey.blockInfoPrefix(chainID);
+                Set<byte[]> keys = db.retrieveKeysWithPrefix(prefix);
+                if (null != keys && !keys.isEmpty()) {
+                    List<byte[]> infoKeys = new ArrayList<>(keys);
+                    for (int from = 0; from < infoKeys.size(); from += MIGRATION_BATCH_SIZE) {
+                        List<byte[]> batch = infoKeys.subList(from,
+                                Math.min(from + MIGRATION_BATCH_SIZE, infoKeys.size()));
+                        List<byte[]> encodes = db.multiGet(batch);
+
+                        Map<byte[], byte[]> writes = new HashMap<>();
+                        Set<byte[]> delKeys = new HashSet<>();
+                        for (int i = 0; i < batch.size(); i++) {
+                            byte[] infoKey = batch.get(i);
+                            long number = ByteUtil.byteArrayToLong(Arrays.copyOfRange(infoKey, prefix.length, infoKey.length));
+                            byte[] encode = encodes.get(i);
+                            if (null != encode) {
+                                for (BlockInfo blockInfo: new BlockInfos(encode).getBlockInfoList()) {
+                                    putBlockIndex(chainID, blockInfo.getHash(), number, blockInfo.isMainChain(), writes, delKeys);
+                                }
+                            }
+                            delKeys.add(infoKey);
+                        }
+                        db.updateBatch(writes, delKeys);
+                    }
+                    logger.info("ChainID[{}]: Convert {} heights of block infos to block index",
+                            new String(chainID), keys.size());
+                }
+            } catch (Exception e) {
+                throw new DBException(e.getMessage());
+            }
+
+            this.indexedChains.add(key);
+        }
+    }
+
+    /**
+     * 把一个区块的索引写入批量操作：哈希索引，主链区块写区块号索引，分叉区块写分叉标记
+     * @param chainID chain ID
+     * @param hash block hash
      * @param number block number
+     * @param isMainChain if main chain
+     * @param writes batch writes
+     * @param delKeys batch deletes
+     */
+    private static void putBlockIndex(byte[] chainID, byte[] hash, long number, boolean isMainChain,
+                                      Map<byte[], byte[]> writes, Set<byte[]> delKeys) {
+        writes.put(PrefixKey.blockIndexKey(chainID, hash), encodeBlockIndex(number, isMainChain));
+        if (isMainChain) {
+            writes.put(PrefixKey.mainChainHashKey(chainID, number), hash);
+            delKeys.add(PrefixKey.forkBlockKey(chainID, number, hash));
+        } else {
+            writes.put(PrefixKey.forkBlockKey(chainID, number, hash), FORK_MARKER);
+        }
+    }
+
+    /**
+     * get block index record
+     * @param chainID chain ID
      * @param hash block hash
-     * @return block info or null if not found
+     * @return [number][isMainChain] or null if not found
      * @throws DBException database exception
      */
-    private BlockInfo getBlockInfo(byte[] chainID, long number, byte[] hash) throws DBException {
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.blockInfoKey(chainID, number));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
+    private byte[] getBlockIndex(byte[] chainID, byte[] hash) throws DBException {
+        ensureIndexed(chainID);
 
-        if (null == encode) {
-            logger.info("ChainID[{}]:There is no block in this height:{}", new String(chainID), number);
+        // 已知哈希索引判定不存在，不读数据库
+        if (!this.knownHashIndex.mightContain(chainID, hash)) {
             return null;
         }
-        BlockInfos blockInfos = new BlockInfos(encode);
-        List<BlockInfo> list = blockInfos.getBlockInfoList();
-        for (BlockInfo blockInfo: list) {
-            if (Arrays.equals(blockInfo.getHash(), hash)) {
-                return blockInfo;
-            }
-        }
 
-        return null;
+        try {
+            return db.get(PrefixKey.blockIndexKey(chainID, hash));
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
     }
 
     /**
@@ -301,16 +491,9 @@ public class BlockDB implements BlockStore {
             return null;
         }
 
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.blockKey(chainID, hash));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
-
-        if (null != encode) {
-            Block block = new Block(encode);
-            return getBlockInfo(chainID, block.getBlockNum(), hash);
+        byte[] record = getBlockIndex(chainID, hash);
+        if (null != record) {
+            return new BlockInfo(hash, isIndexedMainChain(record));
         }
 
         logger.info("ChainID[{}]:Cannot find block info by hash:{}", new String(chainID), Hex.toHexString(hash));
@@ -332,19 +515,9 @@ public class BlockDB implements BlockStore {
             return false;
         }
 
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.blockKey(chainID, hash));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
-
-        if (null != encode) {
-            Block block = new Block(encode);
-            BlockInfo blockInfo = getBlockInfo(chainID, block.getBlockNum(), hash);
-            if (null != blockInfo) {
-                return blockInfo.isMainChain();
-            }
+        byte[] record = getBlockIndex(chainID, hash);
+        if (null != record) {
+            return isIndexedMainChain(record);
         }
 
         logger.info("ChainID[{}]:Cannot find block info by hash:{}", new String(chainID), Hex.toHexString(hash));
@@ -367,19 +540,8 @@ public class BlockDB implements BlockStore {
             return false;
         }
 
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.blockKey(chainID, hash));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
-
-        if (null != encode) {
-            Block block = new Block(encode);
-            BlockInfo blockInfo = getBlockInfo(chainID, block.getBlockNum(), hash);
-            if (null != blockInfo) {
-                return true;
-            }
+        if (null != getBlockIndex(chainID, hash)) {
+            return true;
         }
 
         logger.info("ChainID[{}]:Cannot find block info by hash:{}", new String(chainID), Hex.toHexString(hash));
@@ -396,32 +558,12 @@ public class BlockDB implements BlockStore {
      */
     @Override
     public Block getMainChainBlockByNumber(byte[] chainID, long number) throws DBException {
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.blockInfoKey(chainID, number));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
-
-        if (null == encode) {
-            logger.info("ChainID[{}]:There is no block in this height:{}", new String(chainID), number);
+        byte[] hash = getMainChainBlockHashByNumber(chainID, number);
+        if (null == hash) {
             return null;
         }
 
-        BlockInfos blockInfos = new BlockInfos(encode);
-        List<BlockInfo> list = blockInfos.getBlockInfoList();
-        logger.debug("Chain ID[{}]: Block infos in height[{}] size: {}",
-                new String(chainID), number, list.size());
-        for (BlockInfo blockInfo: list) {
-            logger.debug("Chain ID[{}]: block info in height {}: {}",
-                    new String(chainID), number, blockInfo.toString());
-            if (blockInfo.isMainChain()) {
-                return getBlockByHash(chainID, blockInfo.getHash());
-            }
-        }
-        logger.info("ChainID[{}]:There is no main chain block in this height:{}",
-                new String(chainID), number);
-        return null;
+        return getBlockByHash(chainID, hash);
     }
 
     /**
@@ -487,35 +629,21 @@ public class BlockDB implements BlockStore {
      */
     @Override
     public byte[] getMainChainBlockHashByNumber(byte[] chainID, long number) throws DBException {
-        byte[] encode;
+        ensureIndexed(chainID);
+
+        byte[] hash;
         try {
-            encode = db.get(PrefixKey.blockInfoKey(chainID, number));
+            hash = db.get(PrefixKey.mainChainHashKey(chainID, number));
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
 
-        if (null == encode) {
-            logger.info("ChainID[{}]:There is no block in this height:{}",
+        if (null == hash) {
+            logger.info("ChainID[{}]:There is no main chain block hash in this height:{}",
                     new String(chainID), number);
-            return null;
         }
 
-        BlockInfos blockInfos = new BlockInfos(encode);
-        List<BlockInfo> list = blockInfos.getBlockInfoList();
-        logger.debug("Chain ID[{}]: Block infos in height[{}] size: {}",
-                new String(chainID), number, list.size());
-
-        for (BlockInfo blockInfo: list) {
-            logger.debug("Chain ID[{}]: block info in height {}: {}",
-                    new String(chainID), number, blockInfo.toString());
-            if (blockInfo.isMainChain()) {
-                return blockInfo.getHash();
-            }
-        }
-
-        logger.info("ChainID[{}]:There is no main chain block hash in this height:{}",
-                new String(chainID), number);
-        return null;
+        return hash;
     }
 
     /**
@@ -526,24 +654,24 @@ public class BlockDB implements BlockStore {
      * @throws DBException database exception
      */
     private void saveBlockInfo(byte[] chainID, Block block, boolean isMainChain) throws DBException {
-        BlockInfos blockInfos;
-        // if saved in the same height
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.blockInfoKey(chainID, block.getBlockNum()));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
+        ensureIndexed(chainID);
 
-        if (null == encode) {
-            blockInfos = new BlockInfos();
-        } else {
-            blockInfos = new BlockInfos(encode);
-        }
-        blockInfos.putBlock(block, isMainChain);
+        byte[] hash = block.getBlockHash();
+        long number = block.getBlockNum();
+        Map<byte[], byte[]> writes = new HashMap<>();
+        Set<byte[]> delKeys = new HashSet<>();
+        putBlockIndex(chainID, hash, number, isMainChain, writes, delKeys);
 
         try {
-            db.put(PrefixKey.blockInfoKey(chainID, block.getBlockNum()), blockInfos.getEncoded());
+            if (!isMainChain) {
+                // 原来是这个高度的主链区块
+                byte[] mainChainKey = PrefixKey.mainChainHashKey(chainID, number);
+                if (Arrays.equals(hash, db.get(mainChainKey))) {
+                    delKeys.add(mainChainKey);
+                }
+            }
+
+            db.updateBatch(writes, delKeys);
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
@@ -562,6 +690,7 @@ public class BlockDB implements BlockStore {
         // save block
         try {
             db.put(PrefixKey.blockKey(chainID, block.getBlockHash()), block.getEncoded());
+            this.knownHashIndex.add(chainID, block.getBlockHash());
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
@@ -592,6 +721,7 @@ public class BlockDB implements BlockStore {
         // save block
         try {
             db.put(PrefixKey.blockKey(chainID, block.getBlockHash()), block.getEncoded());
+            this.knownHashIndex.add(chainID, block.getBlockHash());
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
@@ -614,6 +744,98 @@ public class BlockDB implements BlockStore {
         }
     }
 
+    /**
+     * 主链区块的item和交易哈希，同一高度的分叉区块可能与它共用(如同一父区块的vertical item)
+     * @param chainID chain ID
+     * @param number block number
+     * @return item and tx hashes of main chain block in this height
+     */
+    private Set<ByteArrayWrapper> getMainChainItemHashes(byte[] chainID, long number) throws Exception {
+        Set<ByteArrayWrapper> hashes = new HashSet<>();
+
+        byte[] hash = db.get(PrefixKey.mainChainHashKey(chainID, number));
+        if (null == hash) {
+            return hashes;
+        }
+
+        byte[] encode = db.get(PrefixKey.blockKey(chainID, hash));
+        if (null == encode) {
+            return hashes;
+        }
+
+        Block block = new Block(encode);
+        if (null != block.getVerticalHash()) {
+            hashes.add(new ByteArrayWrapper(block.getVerticalHash()));
+        }
+        if (null != block.getHorizontalHash()) {
+            hashes.add(new ByteArrayWrapper(block.getHorizontalHash()));
+            byte[] itemEncode = db.get(PrefixKey.hashListKey(chainID, block.getHorizontalHash()));
+            if (null != itemEncode) {
+                byte[] txHash = new HorizontalItem(itemEncode).getTxHash();
+                if (null != txHash) {
+                    hashes.add(new ByteArrayWrapper(txHash));
+                }
+            }
+        }
+
+        return hashes;
+    }
+
+    /**
+     * 把区块、item、交易和区块索引的key加入删除集合
+     * @param chainID chain ID
+     * @param hash block hash
+     * @param keep item and tx hashes still in use
+     * @param delKeys batch deletes
+     * @return bytes to delete
+     */
+    private long collectBlockData(byte[] chainID, byte[] hash, Set<ByteArrayWrapper> keep,
+                                  Set<byte[]> delKeys) throws Exception {
+        long bytes = 0;
+
+        byte[] blockEncode = db.get(PrefixKey.blockKey(chainID, hash));
+        if (null != blockEncode) {
+            bytes += blockEncode.length;
+            Block block = new Block(blockEncode);
+
+            byte[] verticalHash = block.getVerticalHash();
+            if (null != verticalHash && !keep.contains(new ByteArrayWrapper(verticalHash))) {
+                byte[] key = PrefixKey.hashListKey(chainID, verticalHash);
+                byte[] encode = db.get(key);
+                if (null != encode) {
+                    bytes += encode.length;
+                    delKeys.add(key);
+                }
+            }
+
+            byte[] horizontalHash = block.getHorizontalHash();
+            if (null != horizontalHash && !keep.contains(new ByteArrayWrapper(horizontalHash))) {
+                byte[] key = PrefixKey.hashListKey(chainID, horizontalHash);
+                byte[] encode = db.get(key);
+                if (null != encode) {
+                    bytes += encode.length;
+                    delKeys.add(key);
+
+                    // delete tx
+                    byte[] txHash = new HorizontalItem(encode).getTxHash();
+                    if (null != txHash && !keep.contains(new ByteArrayWrapper(txHash))) {
+                        byte[] txKey = PrefixKey.txKey(chainID, txHash);
+                        byte[] txEncode = db.get(txKey);
+                        if (null != txEncode) {
+                            bytes += txEncode.length;
+                            delKeys.add(txKey);
+                        }
+                    }
+                }
+            }
+        }
+
+        delKeys.add(PrefixKey.blockKey(chainID, hash));
+        delKeys.add(PrefixKey.blockIndexKey(chainID, hash));
+
+        return bytes;
+    }
+
     /**
      * delete fork chain block, tx and block info
      * @param chainID chain ID
@@ -621,47 +843,189 @@ public class BlockDB implements BlockStore {
      * @throws DBException database exception
      */
     private void delForkChainBlockByNumber(byte[] chainID, long number) throws DBException {
+        ensureIndexed(chainID);
+
         try {
-            byte[] encode = db.get(PrefixKey.blockInfoKey(chainID, number));
-            if (null == encode) {
-                logger.info("ChainID[{}]: There is no block in this height:{}", new String(chainID), number);
+            byte[] prefix = PrefixKey.forkBlockPrefix(chainID, number);
+            Set<byte[]> keys = db.retrieveKeysWithPrefix(prefix);
+            if (null == keys || keys.isEmpty()) {
+                logger.info("ChainID[{}]: There is no fork block in this height:{}", new String(chainID), number);
                 return;
             }
 
-            BlockInfos blockInfos = new BlockInfos(encode);
-            List<BlockInfo> list = blockInfos.getBlockInfoList();
-            for (int i = list.size() - 1; i >= 0; i--) {
-                if (!list.get(i).isMainChain()) {
-                    // delete tx
-                    Block block = getBlockByHash(chainID, list.get(i).getHash());
-                    if (null != block) {
-                        if (null != block.getVerticalHash()) {
-                            db.delete(PrefixKey.hashListKey(chainID, block.getVerticalHash()));
-                        }
+            Set<ByteArrayWrapper> keep = getMainChainItemHashes(chainID, number);
+            Set<byte[]> delKeys = new HashSet<>();
+            for (byte[] forkKey: keys) {
+                byte[] hash = Arrays.copyOfRange(forkKey, prefix.length, forkKey.length);
+                // delete non-main chain block and its index
+                collectBlockData(chainID, hash, keep, delKeys);
+                delKeys.add(forkKey);
+            }
 
-                        if (null != block.getHorizontalHash()) {
-                            HorizontalItem horizontalItem = getHorizontalItemByHash(chainID, block.getHorizontalHash());
-                            if (null != horizontalItem) {
-                                if (null != horizontalItem.getTxHash()) {
-                                    db.delete(PrefixKey.txKey(chainID, horizontalItem.getTxHash()));
-                                }
-                                db.delete(PrefixKey.hashListKey(chainID, block.getHorizontalHash()));
-                            }
-                        }
+            db.updateBatch(new HashMap<>(), delKeys);
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
+    }
+
+    /**
+     * prune fork blocks below a block number
+     * @param chainID chain ID
+     * @param belowNumber fork blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    @Override
+    public PruneResult pruneForkBlocks(byte[] chainID, long belowNumber, int limit) throws DBException {
+        ensureIndexed(chainID);
+
+        try {
+            // 已裁剪到的高度，每次只按高度前缀扫描之后的一段，不再扫描全部分叉标记
+            byte[] forkPrunedNumberKey = PrefixKey.forkPrunedNumberKey(chainID);
+            byte[] encode = db.get(forkPrunedNumberKey);
+            long from = null == encode ? 0 : ByteUtil.byteArrayToLong(encode);
+            long to = Math.min(belowNumber, from + limit);
+            if (from >= to) {
+                return PruneResult.EMPTY;
+            }
+
+            Map<byte[], byte[]> writes = new HashMap<>();
+            Set<byte[]> delKeys = new HashSet<>();
+            int blocks = 0;
+            long bytes = 0;
+            long number = from;
+            for (; number < to && blocks < limit; number++) {
+                byte[] prefix = PrefixKey.forkBlockPrefix(chainID, number);
+                Set<byte[]> keys = db.retrieveKeysWithPrefix(prefix);
+                if (null == keys || keys.isEmpty()) {
+                    continue;
+                }
+
+                // 一个高度的分叉区块超过本批剩余数量时，游标停在该高度，下次继续
+                if (blocks + keys.size() > limit && blocks > 0) {
+                    break;
+                }
+
+                Set<ByteArrayWrapper> keep = getMainChainItemHashes(chainID, number);
+                for (byte[] forkKey: keys) {
+                    byte[] hash = Arrays.copyOfRange(forkKey, prefix.length, forkKey.length);
+                    bytes += collectBlockData(chainID, hash, keep, delKeys);
+                    delKeys.add(forkKey);
+                    blocks++;
+                }
+            }
+            writes.put(forkPrunedNumberKey, ByteUtil.longToBytes(number));
+
+            db.updateBatch(writes, delKeys);
+
+            return new PruneResult(blocks, bytes);
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
+    }
+
+    /**
+     * prune main chain history below a block number, genesis block is kept
+     * @param chainID chain ID
+     * @param belowNumber main chain blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    @Override
+    public PruneResult pruneMainChainBlocks(byte[] chainID, long belowNumber, int limit) throws DBException {
+        return pruneMainChainBlocks(chainID, belowNumber, limit, number -> false);
+    }
+
+    /**
+     * prune main chain history below a block number, genesis block is kept
+     * @param chainID chain ID
+     * @param belowNumber main chain blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @param archived heights moved out of key-value database, skipped by the cursor
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    PruneResult pruneMainChainBlocks(byte[] chainID, long belowNumber, int limit,
+                                     LongPredicate archived) throws DBException {
+        ensureIndexed(chainID);
+
+        try {
+            // 已裁剪到的高度，从1开始，保留创世区块
+            byte[] prunedNumberKey = PrefixKey.prunedNumberKey(chainID);
+            byte[] encode = db.get(prunedNumberKey);
+            long from = null == encode ? 1 : ByteUtil.byteArrayToLong(encode);
+            long to = Math.min(belowNumber, from + limit);
+            if (from >= to) {
+                return PruneResult.EMPTY;
+            }
+
+            Map<byte[], byte[]> writes = new HashMap<>();
+            Set<byte[]> delKeys = new HashSet<>();
+            int blocks = 0;
+            long bytes = 0;
+            long number = from;
+            for (; number < to; number++) {
+                byte[] mainChainKey = PrefixKey.mainChainHashKey(chainID, number);
+                byte[] hash = db.get(mainChainKey);
+                if (null == hash) {
+                    if (archived.test(number)) {
+                        continue;
                     }
-                    // delete non-main chain block
-                    db.delete(PrefixKey.blockKey(chainID, list.get(i).getHash()));
-                    list.remove(i);
+
+                    // 历史区块还没有同步到，游标停在第一个缺失的高度，同步之后再裁剪
+                    break;
                 }
+
+                bytes += collectBlockData(chainID, hash, Collections.emptySet(), delKeys);
+                delKeys.add(mainChainKey);
+                blocks++;
             }
+            if (number == from) {
+                return PruneResult.EMPTY;
+            }
+            writes.put(prunedNumberKey, ByteUtil.longToBytes(number));
 
-            // save or delete main chain block info
-            byte[] infosEncode = blockInfos.getEncoded();
-            if (null == infosEncode) {
-                db.delete(PrefixKey.blockInfoKey(chainID, number));
-            } else {
-                db.put(PrefixKey.blockInfoKey(chainID, number), blockInfos.getEncoded());
+            db.updateBatch(writes, delKeys);
+
+            return new PruneResult(blocks, bytes);
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
+    }
+
+    /**
+     * 删除已移入区块日志的主链block container及其区块索引，同一高度的分叉区块保留
+     * @param chainID chain ID
+     * @param blockContainer archived block container
+     * @throws DBException database exception
+     */
+    void removeArchivedBlockContainer(byte[] chainID, BlockContainer blockContainer) throws DBException {
+        ensureIndexed(chainID);
+
+        Block block = blockContainer.getBlock();
+        Set<byte[]> delKeys = new HashSet<>();
+        delKeys.add(PrefixKey.blockKey(chainID, block.getBlockHash()));
+        if (null != blockContainer.getVerticalItem()) {
+            delKeys.add(PrefixKey.hashListKey(chainID, blockContainer.getVerticalItem().getHash()));
+        }
+        if (null != blockContainer.getHorizontalItem()) {
+            delKeys.add(PrefixKey.hashListKey(chainID, blockContainer.getHorizontalItem().getHash()));
+        }
+        if (null != blockContainer.getTx()) {
+            delKeys.add(PrefixKey.txKey(chainID, blockContainer.getTx().getTxID()));
+        }
+        delKeys.add(PrefixKey.blockIndexKey(chainID, block.getBlockHash()));
+        delKeys.add(PrefixKey.forkBlockKey(chainID, block.getBlockNum(), block.getBlockHash()));
+
+        try {
+            byte[] mainChainKey = PrefixKey.mainChainHashKey(chainID, block.getBlockNum());
+            if (Arrays.equals(block.getBlockHash(), db.get(mainChainKey))) {
+                delKeys.add(mainChainKey);
             }
+
+            db.updateBatch(new HashMap<>(), delKeys);
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
@@ -710,6 +1074,8 @@ public class BlockDB implements BlockStore {
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
+
+        this.knownHashIndex.reset(chainID);
     }
 
     /**
@@ -721,6 +1087,11 @@ public class BlockDB implements BlockStore {
     public void removeChainBlockInfo(byte[] chainID) throws DBException {
         try {
             db.removeWithKeyPrefix(PrefixKey.blockInfoPrefix(chainID));
+            db.removeWithKeyPrefix(PrefixKey.mainChainHashPrefix(chainID));
+            db.removeWithKeyPrefix(PrefixKey.blockIndexPrefix(chainID));
+            db.removeWithKeyPrefix(PrefixKey.forkBlockPrefix(chainID));
+            db.delete(PrefixKey.prunedNumberKey(chainID));
+            db.delete(PrefixKey.forkPrunedNumberKey(chainID));
         } catch (Exception e) {
             throw new DBException(e.getMessage());
         }
@@ -957,6 +1328,28 @@ public class BlockDB implements BlockStore {
                                               BlockContainer bestBlockContainer,
                                               List<BlockContainer> undoBlockContainers,
                                               List<BlockContainer> newBlockContainers) throws DBException {
+        return getForkBlockContainersInfo(this, chainID, forkBlockContainer, bestBlockContainer,
+                undoBlockContainers, newBlockContainers);
+    }
+
+    /**
+     * get fork info with block containers, reading block containers from the given store
+     *
+     * @param store               block store
+     * @param chainID             chain ID
+     * @param forkBlockContainer  fork point block container
+     * @param bestBlockContainer  current chain best block container
+     * @param undoBlockContainers block containers to roll back from high to low
+     * @param newBlockContainers  block containers to connect from high to low
+     * @return true/false
+     * @throws DBException database exception
+     */
+    static boolean getForkBlockContainersInfo(BlockStore store,
+                                              byte[] chainID,
+                                              BlockContainer forkBlockContainer,
+                                              BlockContainer bestBlockContainer,
+                                              List<BlockContainer> undoBlockContainers,
+                                              List<BlockContainer> newBlockContainers) throws DBException {
 
         // 1. First ensure that you are one the save level
         long currentLevel = Math.max(bestBlockContainer.getBlock().getBlockNum(),
@@ -968,7 +1361,7 @@ public class BlockDB implements BlockStore {
             while (currentLevel > bestBlockContainer.getBlock().getBlockNum()) {
                 newBlockContainers.add(forkLine);
 
-                forkLine = getBlockContainerByHash(chainID, forkLine.getVerticalItem().getPreviousHash());
+                forkLine = store.getBlockContainerByHash(chainID, forkLine.getVerticalItem().getPreviousHash());
                 if (forkLine == null)
                     return false;
                 --currentLevel;
@@ -981,7 +1374,7 @@ public class BlockDB implements BlockStore {
             while (currentLevel > forkBlockContainer.getBlock().getBlockNum()) {
                 undoBlockContainers.add(bestLine);
 
-                bestLine = getBlockContainerByHash(chainID, bestLine.getVerticalItem().getPreviousHash());
+                bestLine = store.getBlockContainerByHash(chainID, bestLine.getVerticalItem().getPreviousHash());
                 --currentLevel;
             }
         }
@@ -995,8 +1388,8 @@ public class BlockDB implements BlockStore {
             newBlockContainers.add(forkLine);
             undoBlockContainers.add(bestLine);
 
-            bestLine = getBlockContainerByHash(chainID, bestLine.getVerticalItem().getPreviousHash());
-            forkLine = getBlockContainerByHash(chainID, forkLine.getVerticalItem().getPreviousHash());
+            bestLine = store.getBlockContainerByHash(chainID, bestLine.getVerticalItem().getPreviousHash());
+            forkLine = store.getBlockContainerByHash(chainID, forkLine.getVerticalItem().getPreviousHash());
 
             if (forkLine == null)
                 return false;
@@ -1042,16 +1435,35 @@ public class BlockDB implements BlockStore {
     public void reBranchBlocksWithContainers(byte[] chainID,
                                              List<BlockContainer> undoBlockContainers,
                                              List<BlockContainer> newBlockContainers) throws DBException {
+        ensureIndexed(chainID);
+
+        Map<byte[], byte[]> writes = new HashMap<>();
+        Set<byte[]> delKeys = new HashSet<>();
+        Set<Long> newNumbers = new HashSet<>();
+
+        if (newBlockContainers != null) {
+            for (BlockContainer blockContainer : newBlockContainers) {
+                Block block = blockContainer.getBlock();
+                putBlockIndex(chainID, block.getBlockHash(), block.getBlockNum(), true, writes, delKeys);
+                newNumbers.add(block.getBlockNum());
+            }
+        }
+
         if (undoBlockContainers != null) {
             for (BlockContainer blockContainer : undoBlockContainers) {
-                saveBlockInfo(chainID, blockContainer.getBlock(), false);
+                Block block = blockContainer.getBlock();
+                putBlockIndex(chainID, block.getBlockHash(), block.getBlockNum(), false, writes, delKeys);
+                // 新链没有这个高度，这个高度不再有主链区块
+                if (!newNumbers.contains(block.getBlockNum())) {
+                    delKeys.add(PrefixKey.mainChainHashKey(chainID, block.getBlockNum()));
+                }
             }
         }
 
-        if (newBlockContainers != null) {
-            for (BlockContainer blockContainer : newBlockContainers) {
-                saveBlockInfo(chainID, blockContainer.getBlock(), true);
-            }
+        try {
+            db.updateBatch(writes, delKeys);
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
         }
     }
 }
@@ -0,0 +1,462 @@
+package io.taucoin.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.Transaction;
+import io.taucoin.util.HashLongMap;
+
+/**
+ * 一条链的不可变区块日志：block container依次追加到分段的内存映射文件，
+ * 区块不再修改，没有LSM的合并和点查开销。
+ *
+ * 记录格式：[记录长度 4字节][区块号 8字节][区块哈希][vertical哈希][horizontal哈希][交易哈希]
+ * [区块][vertical item][horizontal item][交易]，各部分为[长度 4字节][内容]，长度-1表示没有。
+ * 记录不跨段，段内剩余空间不足时写入下一段；记录长度为0表示段内没有更多记录。
+ *
+ * 打开时扫描记录头重建索引：区块、item和交易哈希 -> 记录位置(堆外哈希表)，
+ * 主链区块号 -> 记录位置(long数组)。读取返回映射内存的ByteBuffer切片，不复制。
+ *
+ * 清除区块号索引时把当时的尾部位置写入RESET_FILE，之后扫描时该位置之前的记录只按哈希索引。
+ *
+ * 线程安全：追加和索引操作加锁，按记录位置读取不加锁(段列表写时复制，记录写入后不再修改)，
+ * 关闭后不能再读取。
+ */
+public class BlockLog {
+    private static final Logger logger = LoggerFactory.getLogger("BlockLog");
+
+    // 默认段大小
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final int HASH_LENGTH = ChainParam.HashLength;
+
+    // 记录长度 + 区块号 + 4个哈希
+    private static final int HEADER_SIZE = 4 + 8 + 4 * HASH_LENGTH;
+
+    private static final byte[] NO_HASH = new byte[HASH_LENGTH];
+
+    // 记录中各部分的序号
+    public static final int BLOCK = 0;
+    public static final int VERTICAL_ITEM = 1;
+    public static final int HORIZONTAL_ITEM = 2;
+    public static final int TX = 3;
+
+    // 区块号索引被清除的位置
+    private static final String RESET_FILE = "numbers.reset";
+
+    private final File dir;
+
+    private final int segmentSize;
+
+    private final List<RandomAccessFile> files = new ArrayList<>();
+
+    // 读取不加锁，只在打开新段和关闭时修改
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+
+    // 下一条记录的全局位置：段序号 * 段大小 + 段内位置
+    private long tail = 0;
+
+    // 该位置之前的记录已刷到磁盘
+    private long forced = 0;
+
+    // 哈希 -> 记录位置
+    private final HashLongMap hashIndex = new HashLongMap(HASH_LENGTH, 1024, true);
+
+    // 主链区块号 -> 记录位置 + 1，0表示没有
+    private long[] numberIndex = new long[0];
+
+    private long maxNumber = -1;
+
+    // 该位置之前的记录不在主链区块号索引中
+    private long resetOffset = 0;
+
+    /**
+     * 打开日志目录，扫描所有段重建索引
+     * @param dir log directory
+     * @param segmentSize segment size
+     * @throws IOException io exception
+     */
+    public BlockLog(File dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create block log directory:" + dir);
+        }
+
+        this.resetOffset = readResetOffset();
+
+        for (int i = 0; segmentFile(i).exists(); i++) {
+            openSegment(i);
+            scan(i);
+        }
+    }
+
+    private File segmentFile(int index) {
+        return new File(this.dir, String.format("%08d.log", index));
+    }
+
+    private long readResetOffset() throws IOException {
+        File file = new File(this.dir, RESET_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.readLong();
+        }
+    }
+
+    private void writeResetOffset(long offset) throws IOException {
+        // 先写临时文件再改名，中途崩溃不会留下半个标记
+        File tmp = new File(this.dir, RESET_FILE + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            raf.setLength(0);
+            raf.writeLong(offset);
+            raf.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(this.dir, RESET_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void openSegment(int index) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segmentFile(index), "rw");
+        this.files.add(raf);
+        this.segments.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize));
+    }
+
+    private void scan(int index) {
+        ByteBuffer segment = this.segments.get(index);
+        int position = 0;
+        while (position + HEADER_SIZE <= this.segmentSize) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + length > this.segmentSize) {
+                break;
+            }
+
+            long offset = (long) index * this.segmentSize + position;
+            long number = segment.getLong(position + 4);
+            byte[] hash = new byte[HASH_LENGTH];
+            for (int i = 0; i < 4; i++) {
+                ByteBuffer view = segment.duplicate();
+                view.position(position + 12 + i * HASH_LENGTH);
+                view.get(hash);
+                if (!Arrays.equals(hash, NO_HASH)) {
+                    this.hashIndex.put(hash, offset);
+                }
+            }
+            if (offset >= this.resetOffset) {
+                setNumber(number, offset);
+            }
+
+            position += length;
+        }
+
+        this.tail = (long) index * this.segmentSize + position;
+        this.forced = this.tail;
+    }
+
+    private void setNumber(long number, long offset) {
+        if (number >= this.numberIndex.length) {
+            this.numberIndex = Arrays.copyOf(this.numberIndex,
+                    (int) Math.max(number + 1, this.numberIndex.length * 2L));
+        }
+        this.numberIndex[(int) number] = offset + 1;
+        this.maxNumber = Math.max(this.maxNumber, number);
+    }
+
+    private static int sizeOf(byte[] data) {
+        return 4 + (null == data ? 0 : data.length);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] data) {
+        if (null == data) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(data.length);
+            buffer.put(data);
+        }
+    }
+
+    private static void putHash(ByteBuffer buffer, byte[] hash) {
+        if (null == hash) {
+            buffer.put(NO_HASH);
+        } else if (HASH_LENGTH == hash.length) {
+            buffer.put(hash);
+        } else {
+            throw new IllegalArgumentException("Bad hash length:" + hash.length);
+        }
+    }
+
+    /**
+     * 追加一个不可变的主链block container
+     * @param blockContainer block container
+     * @throws IOException io exception
+     */
+    public synchronized void append(BlockContainer blockContainer) throws IOException {
+        byte[] block = blockContainer.getBlock().getEncoded();
+        byte[] vertical = null == blockContainer.getVerticalItem() ?
+                null : blockContainer.getVerticalItem().getEncoded();
+        byte[] horizontal = null == blockContainer.getHorizontalItem() ?
+                null : blockContainer.getHorizontalItem().getEncoded();
+        Transaction tx = blockContainer.getTx();
+        byte[] txEncode = null == tx ? null : tx.getEncoded();
+
+        int length = HEADER_SIZE + sizeOf(block) + sizeOf(vertical) + sizeOf(horizontal) + sizeOf(txEncode);
+        if (length > this.segmentSize) {
+            throw new IOException("Block container is larger than segment:" + length);
+        }
+
+        int index = (int) (this.tail / this.segmentSize);
+        int position = (int) (this.tail % this.segmentSize);
+        if (position + length > this.segmentSize) {
+            // 剩余空间不足，写入下一段
+            index++;
+            position = 0;
+        }
+        if (index >= this.segments.size()) {
+            openSegment(index);
+        }
+
+        long number = blockContainer.getBlock().getBlockNum();
+        byte[][] hashes = {
+                blockContainer.getBlock().getBlockHash(),
+                null == blockContainer.getVerticalItem() ? null : blockContainer.getVerticalItem().getHash(),
+                null == blockContainer.getHorizontalItem() ? null : blockContainer.getHorizontalItem().getHash(),
+                null == tx ? null : tx.getTxID()};
+
+        ByteBuffer view = this.segments.get(index).duplicate();
+        view.position(position + 4);
+        view.putLong(number);
+        for (byte[] hash: hashes) {
+            putHash(view, hash);
+        }
+        putBytes(view, block);
+        putBytes(view, vertical);
+        putBytes(view, horizontal);
+        putBytes(view, txEncode);
+        // 最后写记录长度，写了一半的记录扫描时被忽略
+        this.segments.get(index).putInt(position, length);
+
+        long offset = (long) index * this.segmentSize + position;
+        for (byte[] hash: hashes) {
+            if (null != hash) {
+                this.hashIndex.put(hash, offset);
+            }
+        }
+        setNumber(number, offset);
+
+        this.tail = offset + length;
+    }
+
+    /**
+     * @param hash block, item or tx hash
+     * @return record offset, -1 if not found
+     */
+    public synchronized long find(byte[] hash) {
+        if (null == hash || HASH_LENGTH != hash.length) {
+            return -1;
+        }
+        return this.hashIndex.get(hash, -1);
+    }
+
+    /**
+     * @param number block number
+     * @return record offset of main chain block, -1 if not found
+     */
+    public synchronized long findByNumber(long number) {
+        if (number < 0 || number >= this.numberIndex.length) {
+            return -1;
+        }
+        return this.numberIndex[(int) number] - 1;
+    }
+
+    /**
+     * @param offset record offset
+     * @return true if the record is the main chain block at its number
+     */
+    public synchronized boolean isMainChain(long offset) {
+        return findByNumber(getNumber(offset)) == offset;
+    }
+
+    /**
+     * 区块号索引被清除后，记录仍然可以按哈希读取，但不再是主链区块，重新打开后仍然如此
+     * @throws IOException io exception
+     */
+    public synchronized void clearNumberIndex() throws IOException {
+        writeResetOffset(this.tail);
+        this.resetOffset = this.tail;
+        this.numberIndex = new long[0];
+        this.maxNumber = -1;
+    }
+
+    /**
+     * @return 日志中最高的主链区块号，-1表示没有
+     */
+    public synchronized long getMaxNumber() {
+        return this.maxNumber;
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (long offset: this.numberIndex) {
+            if (offset > 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private ByteBuffer segmentOf(long offset) {
+        return this.segments.get((int) (offset / this.segmentSize));
+    }
+
+    /**
+     * @param offset record offset
+     * @return block number of the record
+     */
+    public long getNumber(long offset) {
+        return segmentOf(offset).getLong((int) (offset % this.segmentSize) + 4);
+    }
+
+    /**
+     * @param offset record offset
+     * @return block hash of the record
+     */
+    public byte[] getBlockHash(long offset) {
+        ByteBuffer view = segmentOf(offset).duplicate();
+        view.position((int) (offset % this.segmentSize) + 12);
+        byte[] hash = new byte[HASH_LENGTH];
+        view.get(hash);
+        return hash;
+    }
+
+    /**
+     * 读取记录的一部分，返回映射内存的切片
+     * @param offset record offset
+     * @param part BLOCK, VERTICAL_ITEM, HORIZONTAL_ITEM or TX
+     * @return read-only slice, null if the part is absent
+     */
+    public ByteBuffer read(long offset, int part) {
+        ByteBuffer segment = segmentOf(offset);
+        int position = (int) (offset % this.segmentSize) + HEADER_SIZE;
+        for (int i = 0; i < part; i++) {
+            int length = segment.getInt(position);
+            position += 4 + Math.max(length, 0);
+        }
+
+        int length = segment.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+
+        ByteBuffer view = segment.asReadOnlyBuffer();
+        view.position(position + 4);
+        view.limit(position + 4 + length);
+        return view.slice();
+    }
+
+    /**
+     * 读取记录的一部分
+     * @param offset record offset
+     * @param part BLOCK, VERTICAL_ITEM, HORIZONTAL_ITEM or TX
+     * @return encoded bytes, null if the part is absent
+     */
+    public byte[] readBytes(long offset, int part) {
+        ByteBuffer slice = read(offset, part);
+        if (null == slice) {
+            return null;
+        }
+
+        byte[] data = new byte[slice.remaining()];
+        slice.get(data);
+        return data;
+    }
+
+    /**
+     * 遍历所有记录
+     * @param visitor called with each record offset
+     */
+    public synchronized void forEach(HashLongMap.Visitor visitor) {
+        for (int index = 0; index < this.segments.size(); index++) {
+            ByteBuffer segment = this.segments.get(index);
+            int position = 0;
+            long end = Math.min(this.tail - (long) index * this.segmentSize, this.segmentSize);
+            while (position + HEADER_SIZE <= end) {
+                int length = segment.getInt(position);
+                if (length <= 0) {
+                    break;
+                }
+                long offset = (long) index * this.segmentSize + position;
+                visitor.visit(getBlockHash(offset), offset);
+                position += length;
+            }
+        }
+    }
+
+    /**
+     * 把上次刷盘之后写入的段刷到磁盘，返回后已追加的记录在断电后仍然存在
+     */
+    public synchronized void force() {
+        if (this.forced >= this.tail) {
+            return;
+        }
+
+        int last = (int) ((this.tail - 1) / this.segmentSize);
+        for (int index = (int) (this.forced / this.segmentSize); index <= last; index++) {
+            this.segments.get(index).force();
+        }
+        this.forced = this.tail;
+    }
+
+    /**
+     * 刷到磁盘并关闭
+     */
+    public synchronized void close() {
+        for (MappedByteBuffer segment: this.segments) {
+            segment.force();
+        }
+        for (RandomAccessFile raf: this.files) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        this.segments.clear();
+        this.files.clear();
+    }
+
+    /**
+     * 关闭并删除日志
+     */
+    public synchronized void delete() {
+        close();
+        File[] files = this.dir.listFiles();
+        if (null != files) {
+            for (File file: files) {
+                if (!file.delete()) {
+                    logger.error("Cannot delete block log segment:{}", file);
+                }
+            }
+        }
+        if (!this.dir.delete()) {
+            logger.error("Cannot delete block log directory:{}", this.dir);
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package io.taucoin.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.HorizontalItem;
+import io.taucoin.types.Transaction;
+import io.taucoin.types.TransactionFactory;
+import io.taucoin.types.VerticalItem;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 区块存储的另一种实现：可变范围内的区块仍保存在KV数据库(BlockDB)，
+ * 主链区块超出WARNING_RANGE(该高度的分叉区块已被删除)后移入每条链的区块日志(BlockLog)，
+ * 不再参与LSM合并。同步回来的已不可变的旧区块直接写入区块日志。
+ *
+ * 读取时先查区块日志的索引，没有再读KV数据库。
+ * 区块日志中的区块只有在区块号索引指向它时才是主链区块，
+ * 因此清除区块信息后，这些区块与KV数据库中的区块一样不再在链上。
+ */
+public class BlockLogStore implements BlockStore {
+    private static final Logger logger = LoggerFactory.getLogger("BlockLogStore");
+
+    // 区块日志目录后缀
+    private static final String LOG_SUFFIX = "-log";
+
+    private final BlockDB blockDB;
+
+    private final int segmentSize;
+
+    private String logPath;
+
+    private final Map<ByteArrayWrapper, BlockLog> logs = new ConcurrentHashMap<>();
+
+    // 每条链保存过的最高主链区块号
+    private final Map<ByteArrayWrapper, Long> highestNumbers = new ConcurrentHashMap<>();
+
+    public BlockLogStore(KeyValueDataBase db) {
+        this(db, BlockLog.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param db key-value database for mutable range
+     * @param segmentSize block log segment size
+     */
+    public BlockLogStore(KeyValueDataBase db, int segmentSize) {
+        this.blockDB = new BlockDB(db);
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * open db
+     * @param path database path which can be accessed, block logs are stored in path + "-log"
+     * @throws DBException database exception
+     */
+    @Override
+    public void open(String path) throws DBException {
+        this.blockDB.open(path);
+        this.logPath = path + LOG_SUFFIX;
+    }
+
+    /**
+     * close db
+     */
+    @Override
+    public void close() {
+        for (BlockLog log: this.logs.values()) {
+            log.close();
+        }
+        this.logs.clear();
+        this.blockDB.close();
+    }
+
+    private BlockLog getLog(byte[] chainID) throws DBException {
+        ByteArrayWrapper key = new ByteArrayWrapper(chainID);
+        BlockLog log = this.logs.get(key);
+        if (null != log) {
+            return log;
+        }
+
+        synchronized (this.logs) {
+            log = this.logs.get(key);
+            if (null == log) {
+                try {
+                    log = new BlockLog(new File(this.logPath, Hex.toHexString(chainID)), this.segmentSize);
+                } catch (IOException e) {
+                    throw new DBException(e.getMessage());
+                }
+                this.logs.put(key, log);
+            }
+        }
+
+        return log;
+    }
+
+    // 区块哈希在日志中的记录位置，-1表示没有
+    private static long findBlock(BlockLog log, byte[] hash) {
+        long offset = log.find(hash);
+        if (offset >= 0 && Arrays.equals(log.getBlockHash(offset), hash)) {
+            return offset;
+        }
+        return -1;
+    }
+
+    private static BlockContainer readBlockContainer(BlockLog log, long offset) {
+        byte[] vertical = log.readBytes(offset, BlockLog.VERTICAL_ITEM);
+        byte[] horizontal = log.readBytes(offset, BlockLog.HORIZONTAL_ITEM);
+        byte[] tx = log.readBytes(offset, BlockLog.TX);
+        return new BlockContainer(new Block(log.readBytes(offset, BlockLog.BLOCK)),
+                null == vertical ? null : new VerticalItem(vertical),
+                null == horizontal ? null : new HorizontalItem(horizontal),
+                null == tx ? null : TransactionFactory.parseTransaction(tx));
+    }
+
+    /**
+     * get tx by hash
+     * @param chainID chain ID
+     * @param hash tx hash
+     * @return transaction or null
+     * @throws DBException database exception
+     */
+    @Override
+    public Transaction getTransactionByHash(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = log.find(hash);
+        if (offset >= 0) {
+            byte[] encode = log.readBytes(offset, BlockLog.TX);
+            if (null != encode) {
+                return TransactionFactory.parseTransaction(encode);
+            }
+        }
+
+        return this.blockDB.getTransactionByHash(chainID, hash);
+    }
+
+    /**
+     * get block by hash
+     * @param chainID chain ID
+     * @param hash block hash
+     * @return block if found, null otherwise
+     * @throws DBException database exception
+     */
+    @Override
+    public Block getBlockByHash(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = findBlock(log, hash);
+        if (offset >= 0) {
+            return new Block(log.readBytes(offset, BlockLog.BLOCK));
+        }
+
+        return this.blockDB.getBlockByHash(chainID, hash);
+    }
+
+    /**
+     * get horizontal item by hash
+     * @param chainID chain ID
+     * @param hash hash
+     * @return horizontal item
+     * @throws DBException database exception
+     */
+    @Override
+    public HorizontalItem getHorizontalItemByHash(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = log.find(hash);
+        if (offset >= 0) {
+            byte[] encode = log.readBytes(offset, BlockLog.HORIZONTAL_ITEM);
+            if (null != encode) {
+                return new HorizontalItem(encode);
+            }
+        }
+
+        return this.blockDB.getHorizontalItemByHash(chainID, hash);
+    }
+
+    /**
+     * get vertical item by hash
+     * @param chainID chain ID
+     * @param hash hash
+     * @return vertical item
+     * @throws DBException database exception
+     */
+    @Override
+    public VerticalItem getVerticalItemByHash(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = log.find(hash);
+        if (offset >= 0) {
+            byte[] encode = log.readBytes(offset, BlockLog.VERTICAL_ITEM);
+            if (null != encode) {
+                return new VerticalItem(encode);
+            }
+        }
+
+        return this.blockDB.getVerticalItemByHash(chainID, hash);
+    }
+
+    /**
+     * get block container by hash
+     * @param chainID chain ID
+     * @param hash block hash
+     * @return block container
+     * @throws DBException database exception
+     */
+    @Override
+    public BlockContainer getBlockContainerByHash(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = findBlock(log, hash);
+        if (offset >= 0) {
+            return readBlockContainer(log, offset);
+        }
+
+        return this.blockDB.getBlockContainerByHash(chainID, hash);
+    }
+
+    /**
+     * get block info by hash
+     * @param chainID chain ID
+     * @param hash block hash
+     * @return block info or null if not found
+     * @throws DBException database exception
+     */
+    @Override
+    public BlockInfo getBlockInfoByHash(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = findBlock(log, hash);
+        if (offset >= 0 && log.isMainChain(offset)) {
+            return new BlockInfo(hash, true);
+        }
+
+        return this.blockDB.getBlockInfoByHash(chainID, hash);
+    }
+
+    /**
+     * if a block hash is main chain block hash
+     * @param chainID chain ID
+     * @param hash block hash
+     * @return true if main chain, false otherwise
+     * @throws DBException database exception
+     */
+    @Override
+    public boolean isMainChainBlock(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = findBlock(log, hash);
+        if (offset >= 0 && log.isMainChain(offset)) {
+            return true;
+        }
+
+        return this.blockDB.isMainChainBlock(chainID, hash);
+    }
+
+    /**
+     * if a block is on chain
+     * @param chainID chain ID
+     * @param hash block hash
+     * @return true if on chain, false otherwise
+     * @throws DBException database exception
+     */
+    @Override
+    public boolean isBlockOnChain(byte[] chainID, byte[] hash) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = findBlock(log, hash);
+        if (offset >= 0 && log.isMainChain(offset)) {
+            return true;
+        }
+
+        return this.blockDB.isBlockOnChain(chainID, hash);
+    }
+
+    /**
+     * get main chain block by number
+     * @param chainID chain ID
+     * @param number block number
+     * @return block or null if not found
+     * @throws DBException database exception
+     */
+    @Override
+    public Block getMainChainBlockByNumber(byte[] chainID, long number) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = log.findByNumber(number);
+        if (offset >= 0) {
+            return new Block(log.readBytes(offset, BlockLog.BLOCK));
+        }
+
+        return this.blockDB.getMainChainBlockByNumber(chainID, number);
+    }
+
+    /**
+     * get main chain block container by number
+     * @param chainID chain ID
+     * @param number block number
+     * @return block container or null if not found
+     * @throws DBException database exception
+     */
+    @Override
+    public BlockContainer getMainChainBlockContainerByNumber(byte[] chainID, long number) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = log.findByNumber(number);
+        if (offset >= 0) {
+            return readBlockContainer(log, offset);
+        }
+
+        return this.blockDB.getMainChainBlockContainerByNumber(chainID, number);
+    }
+
+    /**
+     * get main chain block hash by number
+     * @param chainID chain ID
+     * @param number block number
+     * @return block hash or null if not found
+     * @throws DBException database exception
+     */
+    @Override
+    public byte[] getMainChainBlockHashByNumber(byte[] chainID, long number) throws DBException {
+        BlockLog log = getLog(chainID);
+        long offset = log.findByNumber(number);
+        if (offset >= 0) {
+            return log.getBlockHash(offset);
+        }
+
+        return this.blockDB.getMainChainBlockHashByNumber(chainID, number);
+    }
+
+    /**
+     * save block
+     * @param chainID chain ID
+     * @param block block to save
+     * @param isMainChain if on main chain
+     * @throws DBException database exception
+     */
+    @Override
+    public void saveBlock(byte[] chainID, Block block, boolean isMainChain) throws DBException {
+        this.blockDB.saveBlock(chainID, block, isMainChain);
+    }
+
+    /**
+     * save block container: immutable main chain block goes to block log, others to key-value database
+     * @param chainID chain ID
+     * @param blockContainer block container to save
+     * @param isMainChain if on main chain
+     * @throws DBException database exception
+     */
+    @Override
+    public void saveBlockContainer(byte[] chainID, BlockContainer blockContainer, boolean isMainChain) throws DBException {
+        long number = blockContainer.getBlock().getBlockNum();
+
+        if (isMainChain && getHighestNumber(chainID) - number >= ChainParam.WARNING_RANGE) {
+            // 同步回来的旧区块已不可变，直接写入区块日志
+            try {
+                getLog(chainID).append(blockContainer);
+            } catch (IOException e) {
+                throw new DBException(e.getMessage());
+            }
+            return;
+        }
+
+        this.blockDB.saveBlockContainer(chainID, blockContainer, isMainChain);
+
+        if (isMainChain) {
+            advance(chainID, number);
+        }
+    }
+
+    private long getHighestNumber(byte[] chainID) throws DBException {
+        ByteArrayWrapper key = new ByteArrayWrapper(chainID);
+        Long highest = this.highestNumbers.get(key);
+        if (null != highest) {
+            return highest;
+        }
+
+        // 重启后以日志中最高的区块推算下限
+        long maxNumber = getLog(chainID).getMaxNumber();
+        return maxNumber < 0 ? -1 : maxNumber + ChainParam.WARNING_RANGE;
+    }
+
+    /**
+     * 主链增长后，把超出WARNING_RANGE的主链区块移入区块日志
+     * @param chainID chain ID
+     * @param number new main chain block number
+     */
+    private void advance(byte[] chainID, long number) throws DBException {
+        long highest = getHighestNumber(chainID);
+        if (number <= highest) {
+            return;
+        }
+        this.highestNumbers.put(new ByteArrayWrapper(chainID), number);
+
+        // 最高区块未知时只处理当前高度，之前的区块留在KV数据库中
+        long from = highest < 0 ? number : highest + 1;
+        List<BlockContainer> archived = new ArrayList<>();
+        for (long n = from; n <= number; n++) {
+            BlockContainer blockContainer = archive(chainID, n - ChainParam.WARNING_RANGE);
+            if (null != blockContainer) {
+                archived.add(blockContainer);
+            }
+        }
+
+        if (archived.isEmpty()) {
+            return;
+        }
+
+        // 日志刷盘之后才能删除KV中的副本，否则断电或系统崩溃会同时丢失两份
+        getLog(chainID).force();
+        for (BlockContainer blockContainer: archived) {
+            this.blockDB.removeArchivedBlockContainer(chainID, blockContainer);
+        }
+    }
+
+    /**
+     * 把主链区块追加到区块日志，KV中的副本由调用者在日志刷盘后删除
+     * @param chainID chain ID
+     * @param number block number
+     * @return appended block container, null if nothing appended
+     */
+    private BlockContainer archive(byte[] chainID, long number) throws DBException {
+        if (number < 0) {
+            return null;
+        }
+
+        BlockLog log = getLog(chainID);
+        if (log.findByNumber(number) >= 0) {
+            return null;
+        }
+
+        byte[] hash = this.blockDB.getMainChainBlockHashByNumber(chainID, number);
+        if (null == hash) {
+            return null;
+        }
+
+        BlockContainer blockContainer = this.blockDB.getBlockContainerByHash(chainID, hash);
+        if (null == blockContainer) {
+            logger.error("ChainID[{}]: Cannot archive incomplete block:{}", new String(chainID), Hex.toHexString(hash));
+            return null;
+        }
+
+        try {
+            log.append(blockContainer);
+        } catch (IOException e) {
+            throw new DBException(e.getMessage());
+        }
+
+        return blockContainer;
+    }
+
+    /**
+     * get all blocks of a chain, whether it is a block on the main chain or not
+     * @param chainID chain ID
+     * @return block set on the chain or empty set otherwise
+     * @throws DBException database exception
+     */
+    @Override
+    public Set<Block> getChainAllBlocks(byte[] chainID) throws DBException {
+        Set<Block> set = this.blockDB.getChainAllBlocks(chainID);
+
+        BlockLog log = getLog(chainID);
+        log.forEach((hash, offset) -> set.add(new Block(log.readBytes(offset, BlockLog.BLOCK))));
+
+        return set;
+    }
+
+    /**
+     * remove all chain info
+     * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    @Override
+    public void removeChainInfo(byte[] chainID) throws DBException {
+        this.blockDB.removeChainInfo(chainID);
+
+        getLog(chainID).delete();
+        this.logs.remove(new ByteArrayWrapper(chainID));
+        this.highestNumbers.remove(new ByteArrayWrapper(chainID));
+    }
+
+    /**
+     * remove block info of a chain
+     * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    @Override
+    public void removeChainBlockInfo(byte[] chainID) throws DBException {
+        this.blockDB.removeChainBlockInfo(chainID);
+
+        try {
+            getLog(chainID).clearNumberIndex();
+        } catch (IOException e) {
+            throw new DBException(e.getMessage());
+        }
+        this.highestNumbers.remove(new ByteArrayWrapper(chainID));
+    }
+
+    /**
+     * get fork info with block containers
+     * @param chainID chain ID
+     * @param forkBlockContainer fork point block container
+     * @param bestBlockContainer current chain best block container
+     * @param undoBlockContainers block containers to roll back from high to low
+     * @param newBlockContainers block containers to connect from high to low
+     * @return true/false
+     * @throws DBException database exception
+     */
+    @Override
+    public boolean getForkBlockContainersInfo(byte[] chainID,
+                                              BlockContainer forkBlockContainer,
+                                              BlockContainer bestBlockContainer,
+                                              List<BlockContainer> undoBlockContainers,
+                                              List<BlockContainer> newBlockContainers) throws DBException {
+        return BlockDB.getForkBlockContainersInfo(this, chainID, forkBlockContainer, bestBlockContainer,
+                undoBlockContainers, newBlockContainers);
+    }
+
+    /**
+     * re-branch blocks with block containers
+     * @param chainID chain ID
+     * @param undoBlockContainers move to non-main chain
+     * @param newBlockContainers move to main chain
+     * @throws DBException database exception
+     */
+    @Override
+    public void reBranchBlocksWithContainers(byte[] chainID,
+                                             List<BlockContainer> undoBlockContainers,
+                                             List<BlockContainer> newBlockContainers) throws DBException {
+        this.blockDB.reBranchBlocksWithContainers(chainID, undoBlockContainers, newBlockContainers);
+
+        if (null != newBlockContainers) {
+            long number = -1;
+            for (BlockContainer blockContainer: newBlockContainers) {
+                number = Math.max(number, blockContainer.getBlock().getBlockNum());
+            }
+            if (number >= 0) {
+                advance(chainID, number);
+            }
+        }
+    }
+
+    /**
+     * prune fork blocks below a block number, fork blocks are only kept in key-value database
+     * @param chainID chain ID
+     * @param belowNumber fork blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    @Override
+    public PruneResult pruneForkBlocks(byte[] chainID, long belowNumber, int limit) throws DBException {
+        return this.blockDB.pruneForkBlocks(chainID, belowNumber, limit);
+    }
+
+    /**
+     * prune main chain history in key-value database, block log is append-only and kept as it is
+     * @param chainID chain ID
+     * @param belowNumber main chain blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    @Override
+    public PruneResult pruneMainChainBlocks(byte[] chainID, long belowNumber, int limit) throws DBException {
+        // 已移入区块日志的高度在KV数据库中没有主链索引，裁剪游标跳过这些高度
+        BlockLog log = getLog(chainID);
+        return this.blockDB.pruneMainChainBlocks(chainID, belowNumber, limit, number -> log.findByNumber(number) >= 0);
+    }
+
+    /**
+     * convert legacy block infos of a chain to block index in bounded batches, called at chain startup
+     * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    @Override
+    public void migrateBlockInfos(byte[] chainID) throws DBException {
+        this.blockDB.migrateBlockInfos(chainID);
+    }
+}
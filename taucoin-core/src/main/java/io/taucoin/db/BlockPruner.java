@@ -0,0 +1,187 @@
+package io.taucoin.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.util.ByteArrayWrapper;
+
+/**
+ * 后台区块裁剪：删除immutable point之前的分叉区块及其item和交易，
+ * 可选地只保留最近一段深度的主链区块(账户状态不受影响)。
+ *
+ * 每条链每次最多裁剪BATCH_SIZE个区块，按速率限制在批次之间等待，
+ * 在单独的线程中增量进行，不阻塞链的主循环。
+ */
+public class BlockPruner {
+    private static final Logger logger = LoggerFactory.getLogger("BlockPruner");
+
+    // 每条链每批最多裁剪的区块数
+    static final int BATCH_SIZE = 32;
+
+    /**
+     * 提供各条链当前最佳区块号
+     */
+    public interface TipSource {
+        /**
+         * @return chain ID -> best block number
+         */
+        Map<ByteArrayWrapper, Long> getTipNumbers();
+    }
+
+    private final BlockStore blockStore;
+
+    private final TipSource tipSource;
+
+    // 每秒最多删除的区块数
+    private volatile int rate = ChainParam.PRUNING_RATE;
+
+    // 主链历史保留的深度，0表示全部保留
+    private volatile long historyDepth = ChainParam.PRUNING_HISTORY_DEPTH;
+
+    private Thread thread;
+
+    private final AtomicLong prunedForkBlocks = new AtomicLong(0);
+
+    private final AtomicLong prunedHistoryBlocks = new AtomicLong(0);
+
+    private final AtomicLong reclaimedBytes = new AtomicLong(0);
+
+    // 删除数据花费的时间，不含速率限制的等待
+    private final AtomicLong busyNanos = new AtomicLong(0);
+
+    public BlockPruner(BlockStore blockStore, TipSource tipSource) {
+        this.blockStore = blockStore;
+        this.tipSource = tipSource;
+    }
+
+    /**
+     * @param rate 每秒最多删除的区块数
+     */
+    public void setRate(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Pruning rate must be positive:" + rate);
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * @param historyDepth 主链历史保留的深度，0表示全部保留，非0时不小于WARNING_RANGE
+     */
+    public void setHistoryDepth(long historyDepth) {
+        if (historyDepth < 0 || (historyDepth > 0 && historyDepth < ChainParam.WARNING_RANGE)) {
+            throw new IllegalArgumentException("Pruning history depth must be 0 or at least "
+                    + ChainParam.WARNING_RANGE + ":" + historyDepth);
+        }
+        this.historyDepth = historyDepth;
+    }
+
+    public synchronized void start() {
+        if (null != this.thread) {
+            return;
+        }
+
+        this.thread = new Thread(this::process, "BlockPruner");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public synchronized void stop() {
+        if (null != this.thread) {
+            this.thread.interrupt();
+            this.thread = null;
+        }
+    }
+
+    private void process() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (!pruneOnce()) {
+                    Thread.sleep(ChainParam.PRUNING_INTERVAL * 1000L);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (DBException e) {
+                logger.error(e.getMessage(), e);
+                try {
+                    Thread.sleep(ChainParam.PRUNING_INTERVAL * 1000L);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 每条链裁剪一批，按速率等待
+     * @return true if there may be more to prune
+     * @throws DBException database exception
+     * @throws InterruptedException interrupted while waiting
+     */
+    boolean pruneOnce() throws DBException, InterruptedException {
+        boolean more = false;
+
+        for (Map.Entry<ByteArrayWrapper, Long> entry: this.tipSource.getTipNumbers().entrySet()) {
+            byte[] chainID = entry.getKey().getData();
+            long tipNumber = entry.getValue();
+
+            long start = System.nanoTime();
+
+            // immutable point之前的分叉区块
+            PruneResult forks = this.blockStore.pruneForkBlocks(chainID,
+                    tipNumber - ChainParam.MUTABLE_RANGE, BATCH_SIZE);
+
+            PruneResult history = PruneResult.EMPTY;
+            long depth = this.historyDepth;
+            if (depth > 0) {
+                history = this.blockStore.pruneMainChainBlocks(chainID, tipNumber - depth, BATCH_SIZE);
+            }
+
+            this.busyNanos.addAndGet(System.nanoTime() - start);
+
+            int blocks = forks.getBlocks() + history.getBlocks();
+            if (blocks > 0) {
+                this.prunedForkBlocks.addAndGet(forks.getBlocks());
+                this.prunedHistoryBlocks.addAndGet(history.getBlocks());
+                this.reclaimedBytes.addAndGet(forks.getBytes() + history.getBytes());
+                logger.info("ChainID[{}]: Pruned {} fork blocks and {} history blocks, {} bytes",
+                        new String(chainID), forks.getBlocks(), history.getBlocks(),
+                        forks.getBytes() + history.getBytes());
+
+                // 速率限制
+                Thread.sleep(blocks * 1000L / this.rate);
+            }
+
+            // 裁剪游标推进了就可能还有
+            if (forks != PruneResult.EMPTY || history != PruneResult.EMPTY) {
+                more = true;
+            }
+        }
+
+        return more;
+    }
+
+    public long getPrunedForkBlocks() {
+        return this.prunedForkBlocks.get();
+    }
+
+    public long getPrunedHistoryBlocks() {
+        return this.prunedHistoryBlocks.get();
+    }
+
+    public long getReclaimedBytes() {
+        return this.reclaimedBytes.get();
+    }
+
+    /**
+     * @return 裁剪吞吐量，每秒删除的区块数，不含速率限制的等待
+     */
+    public double getThroughput() {
+        long nanos = this.busyNanos.get();
+        long blocks = this.prunedForkBlocks.get() + this.prunedHistoryBlocks.get();
+        return 0 == nanos ? 0 : blocks * 1e9 / nanos;
+    }
+}
@@ -233,4 +233,31 @@ public interface BlockStore {
     void reBranchBlocksWithContainers(byte[] chainID,
                                  List<BlockContainer> undoBlockContainers,
                                  List<BlockContainer> newBlockContainers) throws DBException;
+
+    /**
+     * prune fork blocks below a block number
+     * @param chainID chain ID
+     * @param belowNumber fork blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    PruneResult pruneForkBlocks(byte[] chainID, long belowNumber, int limit) throws DBException;
+
+    /**
+     * prune main chain history below a block number, genesis block is kept
+     * @param chainID chain ID
+     * @param belowNumber main chain blocks lower than this number are pruned
+     * @param limit max blocks to prune
+     * @return pruned blocks and bytes
+     * @throws DBException database exception
+     */
+    PruneResult pruneMainChainBlocks(byte[] chainID, long belowNumber, int limit) throws DBException;
+
+    /**
+     * convert legacy block infos of a chain to block index in bounded batches, called at chain startup
+     * @param chainID chain ID
+     * @throws DBException database exception
+     */
+    void migrateBlockInfos(byte[] chainID) throws DBException;
 }
@@ -1,5 +1,6 @@
 package io.taucoin.db;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -27,6 +28,15 @@ public interface KeyValueDataBase {
      */
     byte[] get(byte[] key) throws Exception;
 
+    /**
+     * Retrieves values by keys from the database in one call.
+     *
+     * @param keys
+     * @return values in the same order as keys, null if not found
+     * @throws Exception
+     */
+    List<byte[]> multiGet(List<byte[]> keys) throws Exception;
+
     /**
      * Store the key and value into the database.
      *
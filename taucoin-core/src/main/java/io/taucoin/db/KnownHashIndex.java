@@ -0,0 +1,191 @@
+package io.taucoin.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.ScalableBloomFilter;
+
+/**
+ * 已知哈希索引：每个命名空间(链或消息)一个可扩展Bloom filter，
+ * 读数据库前先查询，过滤器判定不存在的哈希不再读数据库。
+ *
+ * 过滤器在第一次使用时从快照加载，没有快照则扫描数据库重建。
+ * 快照只在正常关闭时写入，加载后立即删除，异常退出后下次启动会重建，
+ * 保证过滤器不会漏掉已保存的数据。
+ */
+public class KnownHashIndex {
+    private static final Logger logger = LoggerFactory.getLogger("KnownHashIndex");
+
+    // 过滤器第一级容量
+    public static final int DEFAULT_INITIAL_CAPACITY = 4096;
+
+    // 过滤器第一级误判率
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * 重建过滤器时从数据库读取命名空间下所有哈希
+     */
+    public interface HashSource {
+        Collection<byte[]> getAllHashes(byte[] namespace) throws Exception;
+    }
+
+    /**
+     * 命名空间的快照key
+     */
+    public interface SnapshotKey {
+        byte[] of(byte[] namespace);
+    }
+
+    private final KeyValueDataBase db;
+
+    private final HashSource hashSource;
+
+    private final SnapshotKey snapshotKey;
+
+    private final Map<ByteArrayWrapper, ScalableBloomFilter> filters = new ConcurrentHashMap<>();
+
+    // 过滤器判定不存在，省去的数据库读取次数
+    private final AtomicLong skippedReads = new AtomicLong(0);
+
+    // 过滤器判定可能存在的次数
+    private final AtomicLong positiveChecks = new AtomicLong(0);
+
+    // 过滤器判定可能存在，数据库却没有的次数
+    private final AtomicLong falsePositives = new AtomicLong(0);
+
+    public KnownHashIndex(KeyValueDataBase db, HashSource hashSource, SnapshotKey snapshotKey) {
+        this.db = db;
+        this.hashSource = hashSource;
+        this.snapshotKey = snapshotKey;
+    }
+
+    private ScalableBloomFilter getFilter(byte[] namespace) throws DBException {
+        ByteArrayWrapper key = new ByteArrayWrapper(namespace);
+        ScalableBloomFilter filter = this.filters.get(key);
+        if (null != filter) {
+            return filter;
+        }
+
+        synchronized (this) {
+            filter = this.filters.get(key);
+            if (null == filter) {
+                filter = loadFilter(namespace);
+                this.filters.put(key, filter);
+            }
+        }
+
+        return filter;
+    }
+
+    private ScalableBloomFilter loadFilter(byte[] namespace) throws DBException {
+        try {
+            byte[] snapshotKey = this.snapshotKey.of(namespace);
+            byte[] encode = this.db.get(snapshotKey);
+            if (null != encode) {
+                // 快照只用一次，异常退出后重建
+                this.db.delete(snapshotKey);
+
+                ScalableBloomFilter filter = ScalableBloomFilter.fromEncoded(encode);
+                if (null != filter) {
+                    logger.info("Load known hash filter of {} from snapshot, size:{}",
+                            new String(namespace), filter.size());
+                    return filter;
+                }
+            }
+
+            ScalableBloomFilter filter = new ScalableBloomFilter(DEFAULT_INITIAL_CAPACITY,
+                    DEFAULT_FALSE_POSITIVE_RATE);
+            for (byte[] hash: this.hashSource.getAllHashes(namespace)) {
+                filter.add(hash);
+            }
+            logger.info("Rebuild known hash filter of {}, size:{}", new String(namespace), filter.size());
+
+            return filter;
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
+    }
+
+    /**
+     * 哈希是否可能已保存
+     * @param namespace chain ID or message namespace
+     * @param hash hash
+     * @return false if definitely not saved
+     * @throws DBException database exception
+     */
+    public boolean mightContain(byte[] namespace, byte[] hash) throws DBException {
+        if (getFilter(namespace).mightContain(hash)) {
+            this.positiveChecks.incrementAndGet();
+            return true;
+        }
+
+        this.skippedReads.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 记录已保存的哈希
+     * @param namespace chain ID or message namespace
+     * @param hash hash
+     * @throws DBException database exception
+     */
+    public void add(byte[] namespace, byte[] hash) throws DBException {
+        getFilter(namespace).add(hash);
+    }
+
+    /**
+     * 过滤器判定可能存在，但数据库没有
+     */
+    public void onFalsePositive() {
+        this.falsePositives.incrementAndGet();
+    }
+
+    /**
+     * 命名空间的数据被删除，重新开始
+     * @param namespace chain ID or message namespace
+     */
+    public void reset(byte[] namespace) {
+        this.filters.put(new ByteArrayWrapper(namespace),
+                new ScalableBloomFilter(DEFAULT_INITIAL_CAPACITY, DEFAULT_FALSE_POSITIVE_RATE));
+    }
+
+    /**
+     * 正常关闭时保存快照
+     */
+    public synchronized void saveSnapshots() {
+        for (Map.Entry<ByteArrayWrapper, ScalableBloomFilter> entry: this.filters.entrySet()) {
+            try {
+                this.db.put(this.snapshotKey.of(entry.getKey().getData()), entry.getValue().getEncoded());
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+        this.filters.clear();
+    }
+
+    public long getSkippedReads() {
+        return this.skippedReads.get();
+    }
+
+    public long getFalsePositives() {
+        return this.falsePositives.get();
+    }
+
+    /**
+     * @return 观测到的误判率：数据库没有的哈希中，被过滤器判定可能存在的比例
+     */
+    public double getFalsePositiveRate() {
+        long negatives = this.skippedReads.get() + this.falsePositives.get();
+        return 0 == negatives ? 0 : (double) this.falsePositives.get() / negatives;
+    }
+
+    public long getPositiveChecks() {
+        return this.positiveChecks.get();
+    }
+}
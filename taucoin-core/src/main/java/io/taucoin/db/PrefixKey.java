@@ -10,14 +10,20 @@ public class PrefixKey {
     private static final byte[] BLOCK = "B-".getBytes();
     private static final byte[] BEST_BLOCK = "b-".getBytes();
     public static final byte[] CHAIN = "C-".getBytes();
+    private static final byte[] CHAIN_SUMMARY = "CS-".getBytes();
     public static final byte[] FRIEND = "F-".getBytes();
     public static final byte[] HASH_LIST = "H-".getBytes();
     private static final byte[] BLOCK_INFO = "I-".getBytes();
     private static final byte[] IMMUTABLE_POINT_BLOCK_HASH = "i-".getBytes();
+    private static final byte[] KNOWN_HASH_FILTER = "KF-".getBytes();
     private static final byte[] MUTABLE_RANGE = "M-".getBytes();
     private static final byte[] MESSAGE_HASH_LIST = "ML-".getBytes();
     private static final byte[] MESSAGE = "m-".getBytes();
+    private static final byte[] MAIN_CHAIN_HASH = "N-".getBytes();
+    private static final byte[] FORK_BLOCK = "O-".getBytes();
+    private static final byte[] FORK_PRUNED_NUMBER = "o-".getBytes();
     private static final byte[] PEER = "P-".getBytes();
+    private static final byte[] PRUNED_NUMBER = "p-".getBytes();
     private static final byte[] COMMUNICATION_PEER = "CP-".getBytes();
     private static final byte[] FRIEND_MESSAGE_ROOT = "R-".getBytes();
     private static final byte[] MESSAGE_ROOT_TO_FRIEND = "RT-".getBytes();
@@ -25,6 +31,7 @@ public class PrefixKey {
     private static final byte[] TX_POOL = "T-".getBytes();
     private static final byte[] TX = "t-".getBytes();
     private static final byte[] VOTES_COUNTING_POINT_BLOCK_HASH = "V-".getBytes();
+    private static final byte[] BLOCK_INDEX = "X-".getBytes();
 
     // key
 
@@ -52,6 +59,18 @@ public class PrefixKey {
         return key;
     }
 
+    /**
+     * chain summary key: chainID + 'ChainSummary'
+     * @param chainID
+     * @return
+     */
+    public static byte[] chainSummaryKey(byte[] chainID) {
+        byte[] key = new byte[chainID.length + CHAIN_SUMMARY.length];
+        System.arraycopy(chainID, 0, key, 0, chainID.length);
+        System.arraycopy(CHAIN_SUMMARY, 0, key, chainID.length, CHAIN_SUMMARY.length);
+        return key;
+    }
+
     /**
      * synced block hash key: chainID + 'SyncBlockHash'
      * @param chainID
@@ -182,6 +201,18 @@ public class PrefixKey {
         return key;
     }
 
+    /**
+     * known hash filter snapshot key: namespace + 'KnownHashFilter'
+     * @param namespace chain ID or message namespace
+     * @return key
+     */
+    public static byte[] knownHashFilterKey(byte[] namespace) {
+        byte[] key = new byte[namespace.length + KNOWN_HASH_FILTER.length];
+        System.arraycopy(namespace, 0, key, 0, namespace.length);
+        System.arraycopy(KNOWN_HASH_FILTER, 0, key, namespace.length, KNOWN_HASH_FILTER.length);
+        return key;
+    }
+
     /**
      * block prefix: chainID + 'block'
      * @param chainID
@@ -288,6 +319,125 @@ public class PrefixKey {
         return key;
     }
 
+    /**
+     * main chain hash prefix: chainID + 'mainChainHash'
+     * @param chainID chain ID
+     * @return prefix
+     */
+    public static byte[] mainChainHashPrefix(byte[] chainID) {
+        byte[] prefix = new byte[chainID.length + MAIN_CHAIN_HASH.length];
+        System.arraycopy(chainID, 0, prefix, 0, chainID.length);
+        System.arraycopy(MAIN_CHAIN_HASH, 0, prefix, chainID.length, MAIN_CHAIN_HASH.length);
+        return prefix;
+    }
+
+    /**
+     * main chain hash key: chainID + 'mainChainHash' + number
+     * @param chainID chain ID
+     * @param number block number
+     * @return key
+     */
+    public static byte[] mainChainHashKey(byte[] chainID, long number) {
+        byte[] numberBytes = ByteUtil.longToBytes(number);
+        byte[] key = new byte[chainID.length + MAIN_CHAIN_HASH.length + numberBytes.length];
+        System.arraycopy(chainID, 0, key, 0, chainID.length);
+        System.arraycopy(MAIN_CHAIN_HASH, 0, key, chainID.length, MAIN_CHAIN_HASH.length);
+        System.arraycopy(numberBytes, 0, key, chainID.length + MAIN_CHAIN_HASH.length, numberBytes.length);
+        return key;
+    }
+
+    /**
+     * block index prefix: chainID + 'blockIndex'
+     * @param chainID chain ID
+     * @return prefix
+     */
+    public static byte[] blockIndexPrefix(byte[] chainID) {
+        byte[] prefix = new byte[chainID.length + BLOCK_INDEX.length];
+        System.arraycopy(chainID, 0, prefix, 0, chainID.length);
+        System.arraycopy(BLOCK_INDEX, 0, prefix, chainID.length, BLOCK_INDEX.length);
+        return prefix;
+    }
+
+    /**
+     * block index key: chainID + 'blockIndex' + hash
+     * @param chainID chain ID
+     * @param hash block hash
+     * @return key
+     */
+    public static byte[] blockIndexKey(byte[] chainID, byte[] hash) {
+        byte[] key = new byte[chainID.length + BLOCK_INDEX.length + hash.length];
+        System.arraycopy(chainID, 0, key, 0, chainID.length);
+        System.arraycopy(BLOCK_INDEX, 0, key, chainID.length, BLOCK_INDEX.length);
+        System.arraycopy(hash, 0, key, chainID.length + BLOCK_INDEX.length, hash.length);
+        return key;
+    }
+
+    /**
+     * pruned number key: chainID + 'prunedNumber'
+     * @param chainID chain ID
+     * @return key
+     */
+    public static byte[] prunedNumberKey(byte[] chainID) {
+        byte[] key = new byte[chainID.length + PRUNED_NUMBER.length];
+        System.arraycopy(chainID, 0, key, 0, chainID.length);
+        System.arraycopy(PRUNED_NUMBER, 0, key, chainID.length, PRUNED_NUMBER.length);
+        return key;
+    }
+
+    /**
+     * fork pruned number key: chainID + 'forkPrunedNumber'
+     * @param chainID chain ID
+     * @return key
+     */
+    public static byte[] forkPrunedNumberKey(byte[] chainID) {
+        byte[] key = new byte[chainID.length + FORK_PRUNED_NUMBER.length];
+        System.arraycopy(chainID, 0, key, 0, chainID.length);
+        System.arraycopy(FORK_PRUNED_NUMBER, 0, key, chainID.length, FORK_PRUNED_NUMBER.length);
+        return key;
+    }
+
+    /**
+     * fork block prefix: chainID + 'forkBlock'
+     * @param chainID chain ID
+     * @return prefix
+     */
+    public static byte[] forkBlockPrefix(byte[] chainID) {
+        byte[] prefix = new byte[chainID.length + FORK_BLOCK.length];
+        System.arraycopy(chainID, 0, prefix, 0, chainID.length);
+        System.arraycopy(FORK_BLOCK, 0, prefix, chainID.length, FORK_BLOCK.length);
+        return prefix;
+    }
+
+    /**
+     * fork block prefix in a height: chainID + 'forkBlock' + number
+     * @param chainID chain ID
+     * @param number block number
+     * @return prefix
+     */
+    public static byte[] forkBlockPrefix(byte[] chainID, long number) {
+        byte[] numberBytes = ByteUtil.longToBytes(number);
+        byte[] prefix = new byte[chainID.length + FORK_BLOCK.length + numberBytes.length];
+        System.arraycopy(chainID, 0, prefix, 0, chainID.length);
+        System.arraycopy(FORK_BLOCK, 0, prefix, chainID.length, FORK_BLOCK.length);
+        System.arraycopy(numberBytes, 0, prefix, chainID.length + FORK_BLOCK.length, numberBytes.length);
+        return prefix;
+    }
+
+    /**
+     * fork block key: chainID + 'forkBlock' + number + hash
+     * @param chainID chain ID
+     * @param number block number
+     * @param hash block hash
+     * @return key
+     */
+    public static byte[] forkBlockKey(byte[] chainID, long number, byte[] hash) {
+        byte[] prefix = forkBlockPrefix(chainID, number);
+        byte[] key = new byte[prefix.length + hash.length];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        System.arraycopy(hash, 0, key, prefix.length, hash.length);
+        return key;
+    }
+
     /**
      * friend prefix: 'FRIEND'
      * @return prefix
@@ -0,0 +1,35 @@
+package io.taucoin.db;
+
+/**
+ * 一次裁剪删除的区块数量和字节数
+ */
+public class PruneResult {
+    public static final PruneResult EMPTY = new PruneResult(0, 0);
+
+    // 删除的区块数量
+    private final int blocks;
+
+    // 删除的区块、item和交易的字节数
+    private final long bytes;
+
+    public PruneResult(int blocks, long bytes) {
+        this.blocks = blocks;
+        this.bytes = bytes;
+    }
+
+    public int getBlocks() {
+        return blocks;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "PruneResult{" +
+                "blocks=" + blocks +
+                ", bytes=" + bytes +
+                '}';
+    }
+}
@@ -1,11 +1,13 @@
 package io.taucoin.db;
 
 import io.taucoin.core.AccountState;
+import io.taucoin.types.ChainSummary;
 import io.taucoin.types.Message;
 import io.taucoin.types.Transaction;
 import io.taucoin.util.ByteArrayWrapper;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -106,6 +108,22 @@ public interface StateDB {
      */
     byte[] getSyncBlockHash(byte[] chainID) throws DBException;
 
+    /**
+     * set chain summary for fast startup
+     * @param chainID chain ID
+     * @param summary chain summary
+     * @throws DBException database exception
+     */
+    void setChainSummary(byte[] chainID, ChainSummary summary) throws DBException;
+
+    /**
+     * get chain summary
+     * @param chainID chain ID
+     * @return chain summary, or null if not found
+     * @throws DBException database exception
+     */
+    ChainSummary getChainSummary(byte[] chainID) throws DBException;
+
     /**
      * set mutable range
      * @param chainID chain ID
@@ -277,6 +295,14 @@ public interface StateDB {
      */
     BigInteger getNonce(byte[] chainID, byte[] pubKey) throws DBException;
 
+    /**
+     * prefetch accounts in one database read, before processing a range of blocks
+     * @param chainID chain ID
+     * @param pubKeys public keys
+     * @throws DBException database exception
+     */
+    void prefetchAccounts(byte[] chainID, Collection<ByteArrayWrapper> pubKeys) throws DBException;
+
 //    /**
 //     * delete a account
 //     * @param chainID
@@ -293,6 +319,17 @@ public interface StateDB {
      */
     void updateBatch(Map<byte[], byte[]> rows) throws DBException;
 
+    /**
+     * Write batch with changed accounts of a chain into the database.
+     *
+     * @param chainID chain ID
+     * @param accounts changed accounts: {key: public key, value: account state}
+     * @param rows other key-value batch
+     * @throws DBException database exception
+     */
+    void updateBatch(byte[] chainID, Map<ByteArrayWrapper, AccountState> accounts,
+                     Map<byte[], byte[]> rows) throws DBException;
+
     /**
      * clear all state data
      * @param chainID  chain ID
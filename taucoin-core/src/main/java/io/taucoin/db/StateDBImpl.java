@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.taucoin.core.AccountState;
+import io.taucoin.types.ChainSummary;
 import io.taucoin.types.Transaction;
 import io.taucoin.types.TransactionFactory;
 import io.taucoin.util.ByteArrayWrapper;
@@ -18,8 +19,24 @@ public class StateDBImpl implements StateDB {
 
     private final KeyValueDataBase db;
 
+    // 账户状态缓存
+    private final AccountCache accountCache;
+
     public StateDBImpl(KeyValueDataBase db) {
+        this(db, new AccountCache());
+    }
+
+    public StateDBImpl(KeyValueDataBase db, AccountCache accountCache) {
         this.db = db;
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * get account cache, mainly for statistics
+     * @return account cache
+     */
+    public AccountCache getAccountCache() {
+        return this.accountCache;
     }
 
     /**
@@ -211,6 +228,45 @@ public class StateDBImpl implements StateDB {
         }
     }
 
+    /**
+     * set chain summary for fast startup
+     *
+     * @param chainID chain ID
+     * @param summary chain summary
+     * @throws DBException database exception
+     */
+    @Override
+    public void setChainSummary(byte[] chainID, ChainSummary summary) throws DBException {
+        try {
+            db.put(PrefixKey.chainSummaryKey(chainID), summary.getEncoded());
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
+    }
+
+    /**
+     * get chain summary
+     *
+     * @param chainID chain ID
+     * @return chain summary or null
+     * @throws DBException database exception
+     */
+    @Override
+    public ChainSummary getChainSummary(byte[] chainID) throws DBException {
+        byte[] encode;
+        try {
+            encode = db.get(PrefixKey.chainSummaryKey(chainID));
+        } catch (Exception e) {
+            throw new DBException(e.getMessage());
+        }
+
+        if (null != encode) {
+            return new ChainSummary(encode);
+        }
+
+        return null;
+    }
+
 //    /**
 //     * delete current chain synced block hash
 //     *
@@ -520,16 +576,7 @@ public class StateDBImpl implements StateDB {
     @Override
     public void updateAccounts(byte[] chainID, Map<ByteArrayWrapper, AccountState> accountStateMap) throws DBException {
         if (null != accountStateMap) {
-            Map<byte[], byte[]> map = new HashMap<>(accountStateMap.size());
-            for (Map.Entry<ByteArrayWrapper, AccountState> entry: accountStateMap.entrySet()) {
-                map.put(PrefixKey.accountKey(chainID, entry.getKey().getData()), entry.getValue().getEncoded());
-            }
-
-            try {
-                db.updateBatch(map);
-            } catch (Exception e) {
-                throw new DBException(e.getMessage());
-            }
+            updateBatch(chainID, accountStateMap, new HashMap<>());
         }
     }
 
@@ -544,11 +591,13 @@ public class StateDBImpl implements StateDB {
     @Override
     public void updateAccount(byte[] chainID, byte[] pubKey, AccountState account) throws DBException {
         if (null != account) {
-            try {
-                db.put(PrefixKey.accountKey(chainID, pubKey), account.getEncoded());
-            } catch (Exception e) {
-                throw new DBException(e.getMessage());
-            }
+            this.accountCache.update(chainID, Collections.singletonMap(new ByteArrayWrapper(pubKey), account), () -> {
+                try {
+                    db.put(PrefixKey.accountKey(chainID, pubKey), account.getEncoded());
+                } catch (Exception e) {
+                    throw new DBException(e.getMessage());
+                }
+            });
         }
     }
 
@@ -561,6 +610,17 @@ public class StateDBImpl implements StateDB {
      */
     @Override
     public AccountState getAccount(byte[] chainID, byte[] pubKey) throws DBException {
+        return this.accountCache.get(chainID, pubKey, () -> loadAccount(chainID, pubKey));
+    }
+
+    /**
+     * read a account state from database
+     * @param chainID chain ID
+     * @param pubKey public key
+     * @return account state or null
+     * @throws DBException database exception
+     */
+    private AccountState loadAccount(byte[] chainID, byte[] pubKey) throws DBException {
         byte[] encode;
         try {
             encode = db.get(PrefixKey.accountKey(chainID, pubKey));
@@ -575,6 +635,35 @@ public class StateDBImpl implements StateDB {
         return null;
     }
 
+    /**
+     * prefetch accounts in one database read, before processing a range of blocks
+     * @param chainID chain ID
+     * @param pubKeys public keys
+     * @throws DBException database exception
+     */
+    @Override
+    public void prefetchAccounts(byte[] chainID, Collection<ByteArrayWrapper> pubKeys) throws DBException {
+        this.accountCache.prefetch(chainID, pubKeys, keys -> {
+            List<byte[]> dbKeys = new ArrayList<>(keys.size());
+            for (byte[] pubKey: keys) {
+                dbKeys.add(PrefixKey.accountKey(chainID, pubKey));
+            }
+
+            List<byte[]> values;
+            try {
+                values = this.db.multiGet(dbKeys);
+            } catch (Exception e) {
+                throw new DBException(e.getMessage());
+            }
+
+            List<AccountState> states = new ArrayList<>(values.size());
+            for (byte[] encode: values) {
+                states.add(null == encode ? null : new AccountState(encode));
+            }
+            return states;
+        });
+    }
+
     /**
      * get nonce by pubKey
      *
@@ -585,15 +674,8 @@ public class StateDBImpl implements StateDB {
      */
     @Override
     public BigInteger getNonce(byte[] chainID, byte[] pubKey) throws DBException {
-        byte[] encode;
-        try {
-            encode = db.get(PrefixKey.accountKey(chainID, pubKey));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
-
-        if (null != encode) {
-            AccountState accountState = new AccountState(encode);
+        AccountState accountState = getAccount(chainID, pubKey);
+        if (null != accountState) {
             return accountState.getNonce();
         }
 
@@ -629,6 +711,33 @@ public class StateDBImpl implements StateDB {
         }
     }
 
+    /**
+     * Write batch with changed accounts of a chain into the database,
+     * and update account cache in the same time.
+     *
+     * @param chainID chain ID
+     * @param accounts changed accounts: {key: public key, value: account state}
+     * @param rows other key-value batch
+     * @throws DBException database exception
+     */
+    @Override
+    public void updateBatch(byte[] chainID, Map<ByteArrayWrapper, AccountState> accounts,
+                            Map<byte[], byte[]> rows) throws DBException {
+        Map<byte[], byte[]> batch = new HashMap<>(rows.size() + accounts.size());
+        batch.putAll(rows);
+        for (Map.Entry<ByteArrayWrapper, AccountState> entry: accounts.entrySet()) {
+            batch.put(PrefixKey.accountKey(chainID, entry.getKey().getData()), entry.getValue().getEncoded());
+        }
+
+        this.accountCache.update(chainID, accounts, () -> {
+            try {
+                this.db.updateBatch(batch);
+            } catch (Exception e) {
+                throw new DBException(e.getMessage());
+            }
+        });
+    }
+
     /**
      * clear all state data
      *
@@ -637,13 +746,16 @@ public class StateDBImpl implements StateDB {
      */
     @Override
     public void clearAllState(byte[] chainID) throws DBException {
-        try {
-            this.db.removeWithKeyPrefix(PrefixKey.accountPrefix(chainID));
-            this.db.delete(PrefixKey.bestBlockHashKey(chainID));
-            this.db.delete(PrefixKey.syncBlockHashKey(chainID));
-        } catch (Exception e) {
-            throw new DBException(e.getMessage());
-        }
+        this.accountCache.invalidate(chainID, () -> {
+            try {
+                db.removeWithKeyPrefix(PrefixKey.accountPrefix(chainID));
+                db.delete(PrefixKey.bestBlockHashKey(chainID));
+                db.delete(PrefixKey.syncBlockHashKey(chainID));
+                db.delete(PrefixKey.chainSummaryKey(chainID));
+            } catch (Exception e) {
+                throw new DBException(e.getMessage());
+            }
+        });
     }
 }
 
@@ -1,13 +1,17 @@
 package io.taucoin.db;
 
 import io.taucoin.core.AccountState;
+import io.taucoin.types.ChainSummary;
 import io.taucoin.types.Transaction;
 import io.taucoin.util.ByteArrayWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -20,7 +24,7 @@ public class StateDBTrack implements StateDB {
     private final byte[] chainID;
 
     // cache changed account only
-    // key: chainID + pubKey
+    // key: pubKey
     // value: account state
     private final Map<ByteArrayWrapper, AccountState> cacheAccounts = new HashMap<>();
 
@@ -74,13 +78,7 @@ public class StateDBTrack implements StateDB {
      */
     @Override
     public void commit() throws DBException {
-        // update changed accounts
         Map<byte[], byte[]> rows = new HashMap<>();
-        if (null != cacheAccounts) {
-            for (Map.Entry<ByteArrayWrapper, AccountState> entry: cacheAccounts.entrySet()) {
-                rows.put(entry.getKey().getData(), entry.getValue().getEncoded());
-            }
-        }
 
         // update best block hash
         if (null != this.bestBlockHash) {
@@ -92,8 +90,8 @@ public class StateDBTrack implements StateDB {
             rows.put(PrefixKey.syncBlockHashKey(this.chainID), this.syncBlockHash);
         }
 
-        // commit
-        this.stateDB.updateBatch(rows);
+        // commit, with changed accounts
+        this.stateDB.updateBatch(this.chainID, this.cacheAccounts, rows);
 
         cacheAccounts.clear();
         this.bestBlockHash = null;
@@ -211,6 +209,30 @@ public class StateDBTrack implements StateDB {
         }
     }
 
+    /**
+     * set chain summary for fast startup
+     *
+     * @param chainID chain ID
+     * @param summary chain summary
+     * @throws DBException database exception
+     */
+    @Override
+    public void setChainSummary(byte[] chainID, ChainSummary summary) throws DBException {
+        this.stateDB.setChainSummary(chainID, summary);
+    }
+
+    /**
+     * get chain summary
+     *
+     * @param chainID chain ID
+     * @return chain summary or null
+     * @throws DBException database exception
+     */
+    @Override
+    public ChainSummary getChainSummary(byte[] chainID) throws DBException {
+        return this.stateDB.getChainSummary(chainID);
+    }
+
     /**
      * set mutable range
      *
@@ -429,7 +451,7 @@ public class StateDBTrack implements StateDB {
      */
     @Override
     public void updateAccount(byte[] chainID, byte[] pubKey, AccountState account) {
-        this.cacheAccounts.put(wrap(PrefixKey.accountKey(chainID, pubKey)), account);
+        this.cacheAccounts.put(wrap(pubKey), account);
     }
 
     /**
@@ -443,7 +465,7 @@ public class StateDBTrack implements StateDB {
     @Override
     public AccountState getAccount(byte[] chainID, byte[] pubKey) throws DBException {
 
-        AccountState accountState = cacheAccounts.get(wrap(PrefixKey.accountKey(chainID, pubKey)));
+        AccountState accountState = cacheAccounts.get(wrap(pubKey));
 
         if (accountState == null) {
             return this.stateDB.getAccount(chainID, pubKey);
@@ -452,6 +474,26 @@ public class StateDBTrack implements StateDB {
         return accountState;
     }
 
+    /**
+     * prefetch accounts in one database read, before processing a range of blocks
+     * @param chainID chain ID
+     * @param pubKeys public keys
+     * @throws DBException database exception
+     */
+    @Override
+    public void prefetchAccounts(byte[] chainID, Collection<ByteArrayWrapper> pubKeys) throws DBException {
+        List<ByteArrayWrapper> misses = new ArrayList<>();
+        for (ByteArrayWrapper pubKey: pubKeys) {
+            if (!this.cacheAccounts.containsKey(pubKey)) {
+                misses.add(pubKey);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            this.stateDB.prefetchAccounts(chainID, misses);
+        }
+    }
+
     /**
      * get nonce by pubKey
      *
@@ -462,7 +504,7 @@ public class StateDBTrack implements StateDB {
      */
     @Override
     public BigInteger getNonce(byte[] chainID, byte[] pubKey) throws DBException {
-        AccountState accountState = cacheAccounts.get(wrap(PrefixKey.accountKey(chainID, pubKey)));
+        AccountState accountState = cacheAccounts.get(wrap(pubKey));
 
         if (accountState == null) {
             return this.stateDB.getNonce(chainID, pubKey);
@@ -494,6 +536,18 @@ public class StateDBTrack implements StateDB {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Write batch with changed accounts of a chain into the database.
+     *
+     * @param chainID chain ID
+     * @param accounts changed accounts: {key: public key, value: account state}
+     * @param rows other key-value batch
+     */
+    @Override
+    public void updateBatch(byte[] chainID, Map<ByteArrayWrapper, AccountState> accounts, Map<byte[], byte[]> rows) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * clear all state data
      *
@@ -22,7 +22,13 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Iterator;
@@ -48,6 +54,9 @@ public class DHTEngine {
 
     private static final long CACHE_TIMEOUT_THRESOLD = 60 * 1000; // milliseconds
 
+    // Extra waiting time of the future after the dht operation timeout.
+    private static final int FUTURE_TIMEOUT_MARGIN = 5; // seconds
+
     private static volatile DHTEngine INSTANCE;
 
     // counter for dht immutable and mutable item request
@@ -82,6 +91,14 @@ public class DHTEngine {
 
     private Timer getCacheCheker = null;
 
+    // Scheduler which times out the futures returned by requestAsync.
+    private static final ScheduledExecutorService futureTimeoutScheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DHTEngine-future-timeout");
+                t.setDaemon(true);
+                return t;
+            });
+
     private static class GetCacheTimeoutTask extends TimerTask {
 
         @Override
@@ -391,6 +408,100 @@ public class DHTEngine {
         return Dropped;
     }
 
+    /**
+     * Request immutable item and return a future instead of calling back.
+     *
+     * The future is completed with the item, or null if the item isn't
+     * found or the request is dropped. If the dht doesn't answer within
+     * spec.timeout, the future is completed exceptionally with
+     * TimeoutException. Cancelling the future stops waiting for the item.
+     *
+     * @param spec immutable item specification
+     * @return future of the item
+     */
+    public CompletableFuture<byte[]> requestAsync(GetImmutableItemSpec spec) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        GetImmutableItemCallback cb = new GetImmutableItemCallback() {
+            @Override
+            public void onDHTItemGot(byte[] item, Object cbData) {
+                future.complete(item);
+            }
+        };
+
+        if (request(spec, cb, future) != Success) {
+            future.complete(null);
+            return future;
+        }
+
+        watchFuture(spec.hash(), spec.timeout, future);
+        return future;
+    }
+
+    /**
+     * Request mutable item and return a future instead of calling back.
+     *
+     * The future is completed with the first item got, or null if the
+     * authoritative response has no item or the request is dropped.
+     * If the dht doesn't answer within spec.timeout, the future is completed
+     * exceptionally with TimeoutException. Cancelling the future stops
+     * waiting for the item.
+     *
+     * @param spec mutable item specification
+     * @return future of the item
+     */
+    public CompletableFuture<byte[]> requestAsync(GetMutableItemSpec spec) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        GetMutableItemCallback cb = new GetMutableItemCallback() {
+            @Override
+            public void onDHTItemGot(byte[] item, Object cbData, boolean auth) {
+                if (item != null || auth) {
+                    future.complete(item);
+                }
+            }
+        };
+
+        if (request(spec, cb, future) != Success) {
+            future.complete(null);
+            return future;
+        }
+
+        watchFuture(spec.hash(), spec.timeout, future);
+        return future;
+    }
+
+    // Time out the future, and drop the request from getCache
+    // if nobody waits for it any more.
+    private void watchFuture(Sha1Hash hash, int timeout,
+            CompletableFuture<byte[]> future) {
+
+        int seconds = (timeout > 0 ? timeout : DHT_OP_TIMEOUT) + FUTURE_TIMEOUT_MARGIN;
+        ScheduledFuture<?> timer = futureTimeoutScheduler.schedule(
+                () -> future.completeExceptionally(
+                        new TimeoutException("dht request timeout:" + hash)),
+                seconds, TimeUnit.SECONDS);
+
+        future.whenComplete((item, t) -> {
+            timer.cancel(false);
+
+            if (t != null) {
+                getCache.computeIfPresent(hash,
+                        (k, req) -> callbackDataOf(req) == future ? null : req);
+            }
+        });
+    }
+
+    private static Object callbackDataOf(Object req) {
+        if (req instanceof ImmutableItemRequest) {
+            return ((ImmutableItemRequest)req).getCallbackData();
+        } else if (req instanceof MutableItemRequest) {
+            return ((MutableItemRequest)req).getCallbackData();
+        }
+
+        return null;
+    }
+
     public void reopenNetworks() {
         session.reopenNetworks();
     }
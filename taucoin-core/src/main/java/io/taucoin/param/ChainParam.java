@@ -52,10 +52,20 @@ public class ChainParam {
     public static final int DEFAULT_MIN_BLOCK_TIME = 60;
     public static final int DEFAULT_MAX_BLOCK_TIME = 540;
 
+    // 链休眠：没有活动超过该时间进入休眠，休眠后按间隔检查tip
+    public static final int HIBERNATION_IDLE_TIME = DEFAULT_BLOCK_TIME * 3;
+    public static final int HIBERNATION_TIP_CHECK_INTERVAL = DEFAULT_BLOCK_TIME;
+
     // range
     public static final int MUTABLE_RANGE = 288; // 1 days
     public static final int WARNING_RANGE = MUTABLE_RANGE * 3;
 
+    // 区块裁剪：每秒最多删除的区块数，每轮没有可裁剪数据后等待的间隔(s)
+    public static final int PRUNING_RATE = 100;
+    public static final int PRUNING_INTERVAL = DEFAULT_BLOCK_TIME;
+    // 主链历史保留的深度，0表示保留全部主链区块；非0时不小于WARNING_RANGE
+    public static final long PRUNING_HISTORY_DEPTH = 0;
+
     // 一般public key截取保留的长度
     public static final int SHORT_ADDRESS_LENGTH = 4;
 
@@ -3,6 +3,7 @@ package io.taucoin.processor;
 import io.taucoin.core.AccountState;
 import io.taucoin.types.BlockContainer;
 import io.taucoin.core.ImportResult;
+import io.taucoin.core.SignatureCache;
 import io.taucoin.db.StateDB;
 import io.taucoin.genesis.GenesisItem;
 import io.taucoin.types.TypesConfig;
@@ -51,7 +52,7 @@ public class StateProcessorImpl implements StateProcessor {
                     return INVALID_BLOCK;
                 }
 
-                if (!tx.verifyTransactionSig()) {
+                if (!SignatureCache.getInstance().verify(tx)) {
                     logger.error("Bad Signature.");
                     return INVALID_BLOCK;
                 }
@@ -158,7 +159,7 @@ public class StateProcessorImpl implements StateProcessor {
                 return INVALID_BLOCK;
             }
 
-            if (!tx.verifyTransactionSig()) {
+            if (!SignatureCache.getInstance().verify(tx)) {
                 logger.error("Bad Signature.");
                 return INVALID_BLOCK;
             }
@@ -240,7 +241,7 @@ public class StateProcessorImpl implements StateProcessor {
                     return INVALID_BLOCK;
                 }
 
-                if (!tx.verifyTransactionSig()) {
+                if (!SignatureCache.getInstance().verify(tx)) {
                     logger.error("Bad Signature.");
                     return INVALID_BLOCK;
                 }
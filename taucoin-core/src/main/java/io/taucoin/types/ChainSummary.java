@@ -0,0 +1,119 @@
+package io.taucoin.types;
+
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.util.ByteUtil;
+import io.taucoin.util.RLP;
+import io.taucoin.util.RLPList;
+
+/**
+ * 链的启动摘要：最佳区块以及mutable range内最近的出块者，
+ * 启动时直接读取，不必从最佳区块往回逐个读取区块容器。
+ * 最佳区块变化时整体替换，只在最佳区块哈希与数据库记录一致时有效。
+ */
+public class ChainSummary {
+
+    private final byte[] bestBlockHash;
+
+    private final long bestBlockNumber;
+
+    // 最近的出块者，从新到旧，最多MUTABLE_RANGE个
+    private final List<byte[]> recentMiners;
+
+    private byte[] rlpEncoded;
+
+    public ChainSummary(byte[] bestBlockHash, long bestBlockNumber, List<byte[]> recentMiners) {
+        this.bestBlockHash = bestBlockHash;
+        this.bestBlockNumber = bestBlockNumber;
+        this.recentMiners = recentMiners.size() > ChainParam.MUTABLE_RANGE ?
+                new ArrayList<>(recentMiners.subList(0, ChainParam.MUTABLE_RANGE)) : new ArrayList<>(recentMiners);
+    }
+
+    public ChainSummary(byte[] encode) {
+        RLPList params = RLP.decode2(encode);
+        RLPList summary = (RLPList) params.get(0);
+
+        this.bestBlockHash = summary.get(0).getRLPData();
+        this.bestBlockNumber = ByteUtil.byteArrayToLong(summary.get(1).getRLPData());
+
+        RLPList miners = (RLPList) summary.get(2);
+        this.recentMiners = new ArrayList<>(miners.size());
+        for (int i = 0; i < miners.size(); i++) {
+            this.recentMiners.add(miners.get(i).getRLPData());
+        }
+
+        this.rlpEncoded = encode;
+    }
+
+    /**
+     * 连接新的最佳区块
+     * @param block new best block, whose previous block is current best block
+     * @return new summary
+     */
+    public ChainSummary connect(Block block) {
+        List<byte[]> miners = new ArrayList<>(this.recentMiners.size() + 1);
+        miners.add(block.getMinerPubkey());
+        miners.addAll(this.recentMiners);
+
+        return new ChainSummary(block.getBlockHash(), block.getBlockNum(), miners);
+    }
+
+    /**
+     * 同步到更早的区块，出块者补在最旧的一端
+     * @param block synced block
+     * @return new summary, or this if mutable range is full
+     */
+    public ChainSummary appendOlder(Block block) {
+        if (isFull()) {
+            return this;
+        }
+
+        List<byte[]> miners = new ArrayList<>(this.recentMiners);
+        miners.add(block.getMinerPubkey());
+
+        return new ChainSummary(this.bestBlockHash, this.bestBlockNumber, miners);
+    }
+
+    public boolean isFull() {
+        return this.recentMiners.size() >= ChainParam.MUTABLE_RANGE;
+    }
+
+    public byte[] getBestBlockHash() {
+        return this.bestBlockHash;
+    }
+
+    public long getBestBlockNumber() {
+        return this.bestBlockNumber;
+    }
+
+    public List<byte[]> getRecentMiners() {
+        return Collections.unmodifiableList(this.recentMiners);
+    }
+
+    public byte[] getEncoded() {
+        if (null == this.rlpEncoded) {
+            byte[][] miners = new byte[this.recentMiners.size()][];
+            for (int i = 0; i < miners.length; i++) {
+                miners[i] = RLP.encodeElement(this.recentMiners.get(i));
+            }
+
+            this.rlpEncoded = RLP.encodeList(RLP.encodeElement(this.bestBlockHash),
+                    RLP.encodeElement(ByteUtil.longToBytes(this.bestBlockNumber)),
+                    RLP.encodeList(miners));
+        }
+
+        return this.rlpEncoded;
+    }
+
+    @Override
+    public String toString() {
+        return "ChainSummary{best block hash:" + Hex.toHexString(this.bestBlockHash) +
+                ", best block number:" + this.bestBlockNumber +
+                ", recent miners:" + this.recentMiners.size() + '}';
+    }
+}
@@ -25,6 +25,14 @@ public class GossipElement {
         this.parsed = true;
     }
 
+    public GossipElement(byte[] sender, byte[] msgRoot, BigInteger timestamp) {
+        this.sender = sender;
+        this.msgRoot = msgRoot;
+        this.timestamp = timestamp;
+
+        this.parsed = true;
+    }
+
     public GossipElement(byte[] encode) {
         this.encode = encode;
     }
@@ -5,6 +5,7 @@ import org.spongycastle.util.encoders.Hex;
 import java.math.BigInteger;
 import java.util.Arrays;
 
+import io.taucoin.communication.FriendCryptoContext;
 import io.taucoin.util.CryptoUtil;
 import io.taucoin.util.HashUtil;
 import io.taucoin.util.RLP;
@@ -137,6 +138,34 @@ public class Message {
         }
     }
 
+    /**
+     * 使用朋友的加解密上下文对消息内容进行加密
+     * @param context 加解密上下文
+     * @throws Exception data exception
+     */
+    public void encrypt(FriendCryptoContext context) throws Exception {
+        if (null != this.rawContent) {
+            this.encryptedContent = context.encrypt(this.rawContent);
+        }
+    }
+
+    /**
+     * 使用朋友的加解密上下文对消息内容解密
+     * @param context 加解密上下文
+     * @throws Exception data exception
+     */
+    public byte[] decrypt(FriendCryptoContext context) throws Exception {
+        if (null == this.rawContent) {
+            if (!this.parsed) {
+                parseRLP();
+            }
+
+            this.rawContent = context.decrypt(this.encryptedContent);
+        }
+
+        return this.rawContent;
+    }
+
     /**
      * 对消息内容解密
      * @param key 加解密秘钥
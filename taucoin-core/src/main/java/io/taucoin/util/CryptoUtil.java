@@ -21,6 +21,34 @@ public class CryptoUtil {
     private static final byte[] iv = {0x01, 0x23, 0x45, 0x67, 0x89 - 0xFF, 0xAB - 0xFF, 0xCD - 0xFF, 0xEF - 0xFF,
             0x01, 0x23, 0x45, 0x67, 0x89 - 0xFF, 0xAB - 0xFF, 0xCD - 0xFF, 0xEF - 0xFF};
 
+    // 每个线程复用一个Cipher实例，避免每次调用Cipher.getInstance
+    private static final ThreadLocal<Cipher> CIPHER = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            return newCipher();
+        }
+    };
+
+    /**
+     * 创建一个新的Cipher实例
+     * @return cipher
+     */
+    public static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(CIPHER_ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 获取初始化向量
+     * @return iv
+     */
+    public static IvParameterSpec getIvParameterSpec() {
+        return new IvParameterSpec(iv);
+    }
+
     /**
      * 秘钥分发
      * @param publicKey 对方公钥
@@ -52,7 +80,7 @@ public class CryptoUtil {
     public static byte[] decrypt(byte[] data, byte[] key) throws Exception {
         // 欢迎密钥
         Key k = toKey(key);
-        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        Cipher cipher = CIPHER.get();
         // 初始化，设置为解密模式
         cipher.init(Cipher.DECRYPT_MODE, k, new IvParameterSpec(iv));
         // 执行操作
@@ -71,7 +99,7 @@ public class CryptoUtil {
     public static byte[] encrypt(byte[] data, byte[] key) throws Exception {
         // 还原密钥
         Key k = toKey(key);
-        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        Cipher cipher = CIPHER.get();
         // 初始化，设置为加密模式
         cipher.init(Cipher.ENCRYPT_MODE, k, new IvParameterSpec(iv));
         // 执行操作
@@ -0,0 +1,385 @@
+package io.taucoin.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * 以定长哈希(或公钥)为key、long为value的开放寻址哈希表。
+ * key按8字节一组内联存放在long数组中(20字节哈希占3个long，公钥占4个long)，
+ * 不需要为每个key创建ByteArrayWrapper、byte[]以及装箱的value对象。
+ * 表也可以放在堆外，适合很大的索引，不增加GC扫描负担。
+ * 非线程安全，由使用者加锁。
+ */
+public class HashLongMap {
+
+    private static final int MIN_CAPACITY = 64;
+
+    private static final float LOAD_FACTOR = 0.75F;
+
+    /**
+     * 遍历回调
+     */
+    public interface Visitor {
+        void visit(byte[] key, long value);
+    }
+
+    private interface LongStore {
+        long get(int index);
+
+        void set(int index, long value);
+    }
+
+    private static class HeapStore implements LongStore {
+        private final long[] words;
+
+        HeapStore(int size) {
+            this.words = new long[size];
+        }
+
+        @Override
+        public long get(int index) {
+            return this.words[index];
+        }
+
+        @Override
+        public void set(int index, long value) {
+            this.words[index] = value;
+        }
+    }
+
+    private static class OffHeapStore implements LongStore {
+        private final LongBuffer words;
+
+        OffHeapStore(int size) {
+            // allocateDirect已经清零
+            this.words = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override
+        public long get(int index) {
+            return this.words.get(index);
+        }
+
+        @Override
+        public void set(int index, long value) {
+            this.words.put(index, value);
+        }
+    }
+
+    private final int keyLength;
+
+    private final int keyWords;
+
+    // 每个槽位：key + value
+    private final int stride;
+
+    private final boolean offHeap;
+
+    private LongStore table;
+
+    // 槽位占用位图
+    private LongStore used;
+
+    // 槽位数量，2的幂
+    private int capacity;
+
+    private int size = 0;
+
+    public HashLongMap(int keyLength) {
+        this(keyLength, MIN_CAPACITY, false);
+    }
+
+    /**
+     * @param keyLength key的字节长度，所有key长度必须相同
+     * @param expectedSize 预计的元素数量
+     * @param offHeap 是否把表放在堆外
+     */
+    public HashLongMap(int keyLength, int expectedSize, boolean offHeap) {
+        if (keyLength <= 0) {
+            throw new IllegalArgumentException("Key length must be positive");
+        }
+
+        this.keyLength = keyLength;
+        this.keyWords = (keyLength + 7) >>> 3;
+        this.stride = this.keyWords + 1;
+        this.offHeap = offHeap;
+        this.capacity = capacityFor(expectedSize);
+        this.table = allocate((long) this.capacity * this.stride);
+        this.used = allocate(this.capacity >>> 6);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private LongStore allocate(long words) {
+        if (words * 8 > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Hash long map is too large");
+        }
+
+        return this.offHeap ? new OffHeapStore((int) words) : new HeapStore((int) words);
+    }
+
+    /**
+     * @param key key
+     * @return true if key length matches this map
+     */
+    public boolean isValidKey(byte[] key) {
+        return null != key && key.length == this.keyLength;
+    }
+
+    private void checkKey(byte[] key) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException("Key length must be " + this.keyLength);
+        }
+    }
+
+    // key的第i个long，大端，不足8字节补零
+    private static long word(byte[] key, int i) {
+        long word = 0;
+        int offset = i << 3;
+        for (int j = 0; j < 8; j++) {
+            word <<= 8;
+            if (offset + j < key.length) {
+                word |= key[offset + j] & 0xff;
+            }
+        }
+        return word;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long hashOf(byte[] key) {
+        long h = 0;
+        for (int i = 0; i < this.keyWords; i++) {
+            h = h * 31 + word(key, i);
+        }
+        return mix(h);
+    }
+
+    private long hashOfSlot(LongStore table, int slot) {
+        int base = slot * this.stride;
+        long h = 0;
+        for (int i = 0; i < this.keyWords; i++) {
+            h = h * 31 + table.get(base + i);
+        }
+        return mix(h);
+    }
+
+    private static boolean isUsed(LongStore used, int slot) {
+        return 0 != (used.get(slot >>> 6) & (1L << slot));
+    }
+
+    private static void setUsed(LongStore used, int slot, boolean value) {
+        long word = used.get(slot >>> 6);
+        used.set(slot >>> 6, value ? word | (1L << slot) : word & ~(1L << slot));
+    }
+
+    private boolean keyEquals(int slot, byte[] key) {
+        int base = slot * this.stride;
+        for (int i = 0; i < this.keyWords; i++) {
+            if (this.table.get(base + i) != word(key, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 返回key所在槽位，不存在则返回应插入的空槽位的相反数减一
+    private int find(byte[] key) {
+        int mask = this.capacity - 1;
+        int slot = (int) hashOf(key) & mask;
+        while (true) {
+            if (!isUsed(this.used, slot)) {
+                return -slot - 1;
+            }
+            if (keyEquals(slot, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(byte[] key) {
+        // 长度不符的key不可能存在，查询时不抛异常
+        if (!isValidKey(key)) {
+            return false;
+        }
+        return find(key) >= 0;
+    }
+
+    /**
+     * @param key key
+     * @param defaultValue value returned if key is absent
+     * @return value of key, or default value
+     */
+    public long get(byte[] key, long defaultValue) {
+        if (!isValidKey(key)) {
+            return defaultValue;
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            return defaultValue;
+        }
+
+        return this.table.get(slot * this.stride + this.stride - 1);
+    }
+
+    /**
+     * @param key key
+     * @param value value
+     * @return true if key is new, false if value is replaced
+     */
+    public boolean put(byte[] key, long value) {
+        checkKey(key);
+        int slot = find(key);
+        if (slot >= 0) {
+            this.table.set(slot * this.stride + this.stride - 1, value);
+            return false;
+        }
+
+        if (this.size + 1 > this.capacity * LOAD_FACTOR) {
+            resize(this.capacity << 1);
+            slot = find(key);
+        }
+
+        slot = -slot - 1;
+        int base = slot * this.stride;
+        setUsed(this.used, slot, true);
+        for (int i = 0; i < this.keyWords; i++) {
+            this.table.set(base + i, word(key, i));
+        }
+        this.table.set(base + this.stride - 1, value);
+        this.size++;
+
+        return true;
+    }
+
+    /**
+     * @param key key
+     * @return true if key is removed, false if absent
+     */
+    public boolean remove(byte[] key) {
+        if (!isValidKey(key)) {
+            return false;
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+
+        // 线性探测的反向移动删除，不留删除标记
+        int mask = this.capacity - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (isUsed(this.used, next)) {
+            int ideal = (int) hashOfSlot(this.table, next) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                copySlot(this.table, next, this.table, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        setUsed(this.used, hole, false);
+        this.size--;
+
+        return true;
+    }
+
+    private void copySlot(LongStore from, int fromSlot, LongStore to, int toSlot) {
+        int fromBase = fromSlot * this.stride;
+        int toBase = toSlot * this.stride;
+        for (int i = 0; i < this.stride; i++) {
+            to.set(toBase + i, from.get(fromBase + i));
+        }
+    }
+
+    private void resize(int newCapacity) {
+        LongStore old = this.table;
+        LongStore oldUsed = this.used;
+        int oldCapacity = this.capacity;
+
+        LongStore table = allocate((long) newCapacity * this.stride);
+        LongStore used = allocate(newCapacity >>> 6);
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (!isUsed(oldUsed, slot)) {
+                continue;
+            }
+
+            int newSlot = (int) hashOfSlot(old, slot) & mask;
+            while (isUsed(used, newSlot)) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            copySlot(old, slot, table, newSlot);
+            setUsed(used, newSlot, true);
+        }
+
+        this.table = table;
+        this.used = used;
+        this.capacity = newCapacity;
+    }
+
+    /**
+     * 遍历所有元素，遍历时不能修改
+     * @param visitor visitor
+     */
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < this.capacity; slot++) {
+            if (!isUsed(this.used, slot)) {
+                continue;
+            }
+
+            int base = slot * this.stride;
+            byte[] key = new byte[this.keyLength];
+            for (int i = 0; i < this.keyLength; i++) {
+                long word = this.table.get(base + (i >>> 3));
+                key[i] = (byte) (word >>> (56 - ((i & 7) << 3)));
+            }
+            visitor.visit(key, this.table.get(base + this.stride - 1));
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == this.size;
+    }
+
+    public void clear() {
+        this.capacity = MIN_CAPACITY;
+        this.table = allocate((long) this.capacity * this.stride);
+        this.used = allocate(this.capacity >>> 6);
+        this.size = 0;
+    }
+
+    public int getKeyLength() {
+        return this.keyLength;
+    }
+
+    public boolean isOffHeap() {
+        return this.offHeap;
+    }
+
+    /**
+     * @return 表占用的字节数
+     */
+    public long getMemoryBytes() {
+        return (long) this.capacity * this.stride * 8 + (this.capacity >>> 3);
+    }
+}
@@ -0,0 +1,237 @@
+package io.taucoin.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可扩展的Bloom filter：当前过滤器装满后追加一个容量翻倍、误判率减半的新过滤器，
+ * 总误判率收敛于初始误判率的两倍以内，元素数量不需要事先知道。
+ * 只能加入不能删除，删除的数据只会成为误判。
+ */
+public class ScalableBloomFilter {
+
+    // 每一级的容量增长倍数
+    private static final int GROWTH = 2;
+
+    // 每一级的误判率收紧系数
+    private static final double TIGHTENING = 0.5;
+
+    private final int initialCapacity;
+
+    private final double falsePositiveRate;
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    private long size = 0;
+
+    private static class Stage {
+        final int capacity;
+        final int numHashes;
+        final int numBits;
+        final long[] bits;
+        int count = 0;
+
+        Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            // m = -n * ln(p) / (ln2)^2, k = m / n * ln2
+            long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.numBits = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 63));
+            this.numHashes = Math.max(1, (int) Math.round((double) this.numBits / capacity * Math.log(2)));
+            this.bits = new long[(this.numBits + 63) >>> 6];
+        }
+
+        Stage(int capacity, int numHashes, int numBits, int count, long[] bits) {
+            this.capacity = capacity;
+            this.numHashes = numHashes;
+            this.numBits = numBits;
+            this.count = count;
+            this.bits = bits;
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < this.numHashes; i++) {
+                int index = (int) Long.remainderUnsigned(h1 + i * h2, this.numBits);
+                this.bits[index >>> 6] |= 1L << index;
+            }
+            this.count++;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < this.numHashes; i++) {
+                int index = (int) Long.remainderUnsigned(h1 + i * h2, this.numBits);
+                if (0 == (this.bits[index >>> 6] & (1L << index))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // (1 - e^(-kn/m))^k
+        double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) this.numHashes * this.count / this.numBits), this.numHashes);
+        }
+    }
+
+    /**
+     * @param initialCapacity 第一级的容量
+     * @param falsePositiveRate 第一级的误判率
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        this.initialCapacity = Math.max(initialCapacity, 1);
+        this.falsePositiveRate = falsePositiveRate;
+        this.stages.add(new Stage(this.initialCapacity, falsePositiveRate));
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long hash64(byte[] key) {
+        // FNV-1a
+        long h = 0xcbf29ce484222325L;
+        for (byte b: key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return fmix64(h);
+    }
+
+    /**
+     * 加入一个元素
+     * @param key key
+     */
+    public synchronized void add(byte[] key) {
+        long h1 = hash64(key);
+        long h2 = fmix64(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+
+        // 已存在的元素不占用容量
+        for (Stage stage: this.stages) {
+            if (stage.mightContain(h1, h2)) {
+                return;
+            }
+        }
+
+        Stage stage = this.stages.get(this.stages.size() - 1);
+        if (stage.count >= stage.capacity) {
+            int capacity = (int) Math.min((long) stage.capacity * GROWTH, Integer.MAX_VALUE / 64);
+            double rate = this.falsePositiveRate * Math.pow(TIGHTENING, this.stages.size());
+            stage = new Stage(capacity, rate);
+            this.stages.add(stage);
+        }
+
+        stage.add(h1, h2);
+        this.size++;
+    }
+
+    /**
+     * 元素是否可能存在
+     * @param key key
+     * @return false if definitely absent, true if maybe present
+     */
+    public synchronized boolean mightContain(byte[] key) {
+        long h1 = hash64(key);
+        long h2 = fmix64(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+
+        for (Stage stage: this.stages) {
+            if (stage.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return 加入的元素数量，可能因误判而略少
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * @return 按当前装载量估计的误判率
+     */
+    public synchronized double getExpectedFalsePositiveRate() {
+        double none = 1;
+        for (Stage stage: this.stages) {
+            none *= 1 - stage.expectedFalsePositiveRate();
+        }
+        return 1 - none;
+    }
+
+    /**
+     * @return 占用的字节数
+     */
+    public synchronized long getMemoryBytes() {
+        long bytes = 0;
+        for (Stage stage: this.stages) {
+            bytes += stage.bits.length * 8L;
+        }
+        return bytes;
+    }
+
+    public synchronized byte[] getEncoded() {
+        int length = 4 + 8 + 8 + 4;
+        for (Stage stage: this.stages) {
+            length += 4 * 4 + stage.bits.length * 8;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(this.initialCapacity);
+        buffer.putDouble(this.falsePositiveRate);
+        buffer.putLong(this.size);
+        buffer.putInt(this.stages.size());
+        for (Stage stage: this.stages) {
+            buffer.putInt(stage.capacity);
+            buffer.putInt(stage.numHashes);
+            buffer.putInt(stage.numBits);
+            buffer.putInt(stage.count);
+            for (long word: stage.bits) {
+                buffer.putLong(word);
+            }
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * 从编码恢复过滤器
+     * @param encode encode
+     * @return filter or null if encode is broken
+     */
+    public static ScalableBloomFilter fromEncoded(byte[] encode) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(encode);
+            ScalableBloomFilter filter = new ScalableBloomFilter(buffer.getInt(), buffer.getDouble());
+            filter.stages.clear();
+            filter.size = buffer.getLong();
+
+            int stageNumber = buffer.getInt();
+            for (int i = 0; i < stageNumber; i++) {
+                int capacity = buffer.getInt();
+                int numHashes = buffer.getInt();
+                int numBits = buffer.getInt();
+                int count = buffer.getInt();
+                long[] bits = new long[(numBits + 63) >>> 6];
+                for (int j = 0; j < bits.length; j++) {
+                    bits[j] = buffer.getLong();
+                }
+                filter.stages.add(new Stage(capacity, numHashes, numBits, count, bits));
+            }
+
+            if (filter.stages.isEmpty() || buffer.hasRemaining()) {
+                return null;
+            }
+
+            return filter;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
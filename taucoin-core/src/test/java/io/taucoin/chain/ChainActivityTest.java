@@ -0,0 +1,90 @@
+package io.taucoin.chain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+public class ChainActivityTest {
+
+    private static final long IDLE_TIME = 900;
+
+    private static final long TIP_CHECK_INTERVAL = 300;
+
+    private final ByteArrayWrapper chainID = new ByteArrayWrapper("test#300#1".getBytes());
+
+    private static byte[] hash(int i) {
+        byte[] hash = new byte[20];
+        hash[0] = (byte) i;
+        return hash;
+    }
+
+    @Test
+    public void testHibernateAfterIdleTime() {
+        ChainActivity activity = new ChainActivity(IDLE_TIME, TIP_CHECK_INTERVAL);
+        activity.touch(this.chainID, 1000);
+
+        Assert.assertFalse(activity.isIdle(this.chainID, 1000 + IDLE_TIME - 1));
+        Assert.assertTrue(activity.isIdle(this.chainID, 1000 + IDLE_TIME));
+
+        activity.hibernate(this.chainID, 1000 + IDLE_TIME);
+        Assert.assertTrue(activity.isHibernating(this.chainID));
+        Assert.assertFalse(activity.isIdle(this.chainID, 1000 + IDLE_TIME * 2));
+        Assert.assertEquals(1, activity.getHibernatingNumber());
+    }
+
+    @Test
+    public void testTipCheckInterval() {
+        ChainActivity activity = new ChainActivity(IDLE_TIME, TIP_CHECK_INTERVAL);
+        Assert.assertFalse(activity.pollTipCheck(this.chainID, 0));
+
+        activity.hibernate(this.chainID, 1000);
+        Assert.assertFalse(activity.pollTipCheck(this.chainID, 1000 + TIP_CHECK_INTERVAL - 1));
+        Assert.assertTrue(activity.pollTipCheck(this.chainID, 1000 + TIP_CHECK_INTERVAL));
+        Assert.assertFalse(activity.pollTipCheck(this.chainID, 1000 + TIP_CHECK_INTERVAL + 1));
+        Assert.assertTrue(activity.pollTipCheck(this.chainID, 1000 + TIP_CHECK_INTERVAL * 2));
+    }
+
+    @Test
+    public void testNewTipWakesUp() {
+        ChainActivity activity = new ChainActivity(IDLE_TIME, TIP_CHECK_INTERVAL);
+        Assert.assertTrue(activity.onTip(this.chainID, hash(1), 1000));
+        activity.hibernate(this.chainID, 2000);
+
+        // 见过的tip不唤醒
+        Assert.assertFalse(activity.onTip(this.chainID, hash(1), 2100));
+        Assert.assertTrue(activity.isHibernating(this.chainID));
+
+        Assert.assertTrue(activity.onTip(this.chainID, hash(2), 2200));
+        Assert.assertFalse(activity.isHibernating(this.chainID));
+        Assert.assertTrue(activity.isWaking(this.chainID));
+
+        // 只恢复一次
+        Assert.assertTrue(activity.activate(this.chainID, 2200));
+        Assert.assertFalse(activity.activate(this.chainID, 2201));
+        Assert.assertFalse(activity.isWaking(this.chainID));
+        Assert.assertFalse(activity.isIdle(this.chainID, 2201 + IDLE_TIME - 1));
+    }
+
+    @Test
+    public void testKnownTipsAreBounded() {
+        ChainActivity activity = new ChainActivity(IDLE_TIME, TIP_CHECK_INTERVAL);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(activity.onTip(this.chainID, hash(i), i));
+        }
+
+        // 最旧的tip已被淘汰，最新的仍然记得
+        Assert.assertTrue(activity.onTip(this.chainID, hash(0), 100));
+        Assert.assertFalse(activity.onTip(this.chainID, hash(99), 101));
+    }
+
+    @Test
+    public void testRemove() {
+        ChainActivity activity = new ChainActivity(IDLE_TIME, TIP_CHECK_INTERVAL);
+        activity.hibernate(this.chainID, 1000);
+        activity.remove(this.chainID);
+
+        Assert.assertFalse(activity.isHibernating(this.chainID));
+        Assert.assertEquals(0, activity.getHibernatingNumber());
+    }
+}
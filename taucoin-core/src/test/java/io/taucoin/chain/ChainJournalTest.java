@@ -0,0 +1,319 @@
+package io.taucoin.chain;
+
+import com.frostwire.jlibtorrent.Ed25519;
+import com.frostwire.jlibtorrent.Pair;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.HorizontalItem;
+import io.taucoin.types.LocalDemand;
+import io.taucoin.types.Transaction;
+import io.taucoin.types.VerticalItem;
+import io.taucoin.types.WiringCoinsTx;
+import io.taucoin.util.ByteArrayWrapper;
+
+public class ChainJournalTest {
+    private static final Logger logger = LoggerFactory.getLogger("test");
+
+    private static final byte[] chainID = "test#300#1".getBytes();
+
+    private static final int BLOCK_NUMBER = 50;
+
+    private static final int TX_NUMBER = 20;
+
+    private static final int VOTE_NUMBER = 3;
+
+    private File dir;
+
+    private File file;
+
+    /**
+     * 记录回放的数据，按DHT请求计数
+     */
+    private static class RecordingReplayer implements ChainJournal.Replayer {
+        final Map<ByteArrayWrapper, BlockContainer> blockContainers = new LinkedHashMap<>();
+        final List<Transaction> txs = new ArrayList<>();
+        LocalDemand localDemand = null;
+        int votes = 0;
+        int votingCounter = 0;
+        Block tipBlock = null;
+        int requests = 0;
+
+        @Override
+        public void onBlockContainer(ByteArrayWrapper key, BlockContainer blockContainer) {
+            this.blockContainers.put(key, blockContainer);
+            this.requests++;
+            if (null != blockContainer.getVerticalItem()) {
+                this.requests++;
+            }
+            if (null != blockContainer.getHorizontalItem()) {
+                this.requests++;
+            }
+            if (null != blockContainer.getTx()) {
+                this.requests++;
+            }
+        }
+
+        @Override
+        public void onDemand(LocalDemand localDemand) {
+            this.localDemand = localDemand;
+        }
+
+        @Override
+        public void onVote(byte[] blockHash, int blockNumber, double weight, long time) {
+            this.votes++;
+            this.requests++;
+        }
+
+        @Override
+        public void onVotingRound(int counter, Block tipBlock) {
+            this.votingCounter = counter;
+            this.tipBlock = tipBlock;
+        }
+
+        @Override
+        public void onRemoteTx(Transaction tx) {
+            this.txs.add(tx);
+            this.requests++;
+        }
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static Transaction makeTx(byte[] seed, byte[] sender, long nonce) {
+        WiringCoinsTx tx = new WiringCoinsTx(1, chainID, 1597998963, BigInteger.TEN, sender,
+                BigInteger.valueOf(nonce), new byte[32], BigInteger.ONE, "memo".getBytes());
+        tx.signTransactionWithSeed(seed);
+        return tx;
+    }
+
+    private static List<BlockContainer> makeBlockContainers(Random random, Transaction tx) {
+        List<BlockContainer> list = new ArrayList<>();
+        byte[] previousHash = bytes(random, ChainParam.HashLength);
+        for (int i = 0; i < BLOCK_NUMBER; i++) {
+            VerticalItem verticalItem = VerticalItem.with(previousHash);
+            HorizontalItem horizontalItem = HorizontalItem.with(tx.getTxID());
+            Block block = new Block(1, i, i, verticalItem.getHash(), horizontalItem.getHash(),
+                    new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.valueOf(i + 1),
+                    new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO,
+                    BigInteger.ZERO, new byte[ChainParam.SignatureLength], bytes(random, ChainParam.PubkeyLength));
+            list.add(new BlockContainer(block, verticalItem, horizontalItem, tx));
+            previousHash = block.getBlockHash();
+        }
+        return list;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("journal").toFile();
+        this.file = new File(this.dir, "chain");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = this.dir.listFiles();
+        if (null != files) {
+            for (File f: files) {
+                f.delete();
+            }
+        }
+        this.dir.delete();
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws IOException {
+        Random random = new Random(1);
+        byte[] seed = Ed25519.createSeed();
+        Pair<byte[], byte[]> keys = Ed25519.createKeypair(seed);
+
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < TX_NUMBER; i++) {
+            txs.add(makeTx(seed, keys.first, i + 1));
+        }
+        List<BlockContainer> blockContainers = makeBlockContainers(random, txs.get(0));
+
+        ChainJournal journal = new ChainJournal(this.file);
+        for (BlockContainer blockContainer: blockContainers) {
+            journal.appendBlockContainer(new ByteArrayWrapper(blockContainer.getBlock().getBlockHash()), blockContainer);
+        }
+        for (Transaction tx: txs) {
+            journal.appendRemoteTx(tx);
+        }
+
+        LocalDemand localDemand = new LocalDemand();
+        localDemand.setBlockHash(bytes(random, ChainParam.HashLength));
+        journal.appendDemand(localDemand);
+
+        Block tipBlock = blockContainers.get(BLOCK_NUMBER - 1).getBlock();
+        for (int i = 0; i < VOTE_NUMBER; i++) {
+            journal.appendVote(tipBlock.getImmutableBlockHash(), 1, 1, 1000 + i);
+            journal.appendVotingRound(i + 1, tipBlock);
+        }
+        journal.close();
+
+        // 重启
+        ChainJournal reopened = new ChainJournal(this.file);
+        RecordingReplayer replayer = new RecordingReplayer();
+        reopened.replay(replayer);
+
+        Assert.assertEquals(BLOCK_NUMBER, replayer.blockContainers.size());
+        BlockContainer first = replayer.blockContainers.get(
+                new ByteArrayWrapper(blockContainers.get(0).getBlock().getBlockHash()));
+        Assert.assertArrayEquals(blockContainers.get(0).getBlock().getEncoded(), first.getBlock().getEncoded());
+        Assert.assertArrayEquals(txs.get(0).getTxID(), first.getTx().getTxID());
+
+        Assert.assertEquals(TX_NUMBER, replayer.txs.size());
+        Assert.assertArrayEquals(localDemand.getBlockHash(), replayer.localDemand.getBlockHash());
+        Assert.assertNull(replayer.localDemand.getTxHash());
+        Assert.assertEquals(VOTE_NUMBER, replayer.votes);
+        Assert.assertEquals(VOTE_NUMBER, replayer.votingCounter);
+        Assert.assertArrayEquals(tipBlock.getBlockHash(), replayer.tipBlock.getBlockHash());
+
+        // 每个block container 4个数据，每张选票和每个交易各一个
+        Assert.assertEquals(BLOCK_NUMBER * 4 + VOTE_NUMBER + TX_NUMBER, replayer.requests);
+        logger.info("Journal size:{} bytes, DHT requests saved after restart:{}", reopened.size(), replayer.requests);
+
+        // 继续追加
+        reopened.appendRemoteTx(makeTx(seed, keys.first, TX_NUMBER + 1));
+        reopened.close();
+        replayer = new RecordingReplayer();
+        new ChainJournal(this.file).replay(replayer);
+        Assert.assertEquals(TX_NUMBER + 1, replayer.txs.size());
+    }
+
+    @Test
+    public void testTornRecordDropped() throws IOException {
+        byte[] seed = Ed25519.createSeed();
+        Pair<byte[], byte[]> keys = Ed25519.createKeypair(seed);
+
+        ChainJournal journal = new ChainJournal(this.file);
+        journal.appendRemoteTx(makeTx(seed, keys.first, 1));
+        int size = journal.size();
+        journal.appendRemoteTx(makeTx(seed, keys.first, 2));
+        int end = journal.size();
+        journal.close();
+
+        // 最后一条记录写了一半
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            raf.seek(end - 3);
+            raf.write(new byte[] {0, 0, 0});
+        }
+
+        ChainJournal reopened = new ChainJournal(this.file);
+        Assert.assertEquals(size, reopened.size());
+        RecordingReplayer replayer = new RecordingReplayer();
+        reopened.replay(replayer);
+        Assert.assertEquals(1, replayer.txs.size());
+
+        // 从完整记录之后继续写
+        reopened.appendRemoteTx(makeTx(seed, keys.first, 3));
+        reopened.close();
+        replayer = new RecordingReplayer();
+        new ChainJournal(this.file).replay(replayer);
+        Assert.assertEquals(2, replayer.txs.size());
+        Assert.assertEquals(BigInteger.valueOf(3), replayer.txs.get(1).getNonce());
+    }
+
+    @Test
+    public void testStaleRecordsCleared() throws IOException {
+        byte[] seed = Ed25519.createSeed();
+        Pair<byte[], byte[]> keys = Ed25519.createKeypair(seed);
+
+        ChainJournal journal = new ChainJournal(this.file);
+        journal.appendRemoteTx(makeTx(seed, keys.first, 1));
+        int first = journal.size();
+        journal.appendRemoteTx(makeTx(seed, keys.first, 2));
+        int second = journal.size();
+        journal.appendRemoteTx(makeTx(seed, keys.first, 3));
+        journal.close();
+
+        // 中间的记录损坏，后面的记录完整
+        try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+            raf.seek(second - 1);
+            int checksum = raf.read();
+            raf.seek(second - 1);
+            raf.write(~checksum);
+        }
+
+        ChainJournal reopened = new ChainJournal(this.file);
+        Assert.assertEquals(first, reopened.size());
+
+        // 同样长度的新记录覆盖坏记录，之后残留的旧记录不能复活
+        reopened.appendRemoteTx(makeTx(seed, keys.first, 4));
+        Assert.assertEquals(second, reopened.size());
+        reopened.close();
+
+        RecordingReplayer replayer = new RecordingReplayer();
+        new ChainJournal(this.file).replay(replayer);
+        Assert.assertEquals(2, replayer.txs.size());
+        Assert.assertEquals(BigInteger.valueOf(4), replayer.txs.get(1).getNonce());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        LocalDemand localDemand = new LocalDemand();
+        ChainJournal journal = new ChainJournal(this.file);
+        Random random = new Random(2);
+
+        int records = 0;
+        while (!journal.needsCompaction()) {
+            localDemand.setTxHash(bytes(random, ChainParam.HashLength));
+            journal.appendDemand(localDemand);
+            records++;
+        }
+        Assert.assertTrue(records > 1);
+
+        journal.compact(compacted -> compacted.appendDemand(localDemand));
+        Assert.assertFalse(journal.needsCompaction());
+        Assert.assertTrue(journal.size() < ChainJournal.MIN_COMPACTION_SIZE / 100);
+
+        // 压缩后继续写入新文件
+        journal.appendVotingRound(0, null);
+        journal.close();
+
+        RecordingReplayer replayer = new RecordingReplayer();
+        new ChainJournal(this.file).replay(replayer);
+        Assert.assertArrayEquals(localDemand.getTxHash(), replayer.localDemand.getTxHash());
+        Assert.assertNull(replayer.tipBlock);
+    }
+
+    @Test
+    public void testGrowMapping() throws IOException {
+        ChainJournal journal = new ChainJournal(this.file);
+        byte[] hash = new byte[ChainParam.HashLength];
+
+        int votes = 0;
+        while (journal.size() < ChainJournal.DEFAULT_MAPPED_SIZE * 2) {
+            journal.appendVote(hash, votes, 1, votes);
+            votes++;
+        }
+        journal.close();
+
+        RecordingReplayer replayer = new RecordingReplayer();
+        new ChainJournal(this.file).replay(replayer);
+        Assert.assertEquals(votes, replayer.votes);
+    }
+}
@@ -0,0 +1,125 @@
+package io.taucoin.chain;
+
+import com.frostwire.jlibtorrent.Pair;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.account.AccountManager;
+import io.taucoin.db.BlockDB;
+import io.taucoin.db.MemoryDatabase;
+import io.taucoin.db.StateDBImpl;
+import io.taucoin.listener.TauListener;
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.ChainSummary;
+import io.taucoin.types.VerticalItem;
+
+public class ChainStartupTest {
+    private static final int CHAIN_NUMBER = 4;
+
+    private static final int BLOCK_NUMBER = ChainParam.MUTABLE_RANGE + 12;
+
+    private static TauListener newListener() {
+        return (TauListener) Proxy.newProxyInstance(TauListener.class.getClassLoader(),
+                new Class<?>[] {TauListener.class}, (proxy, method, args) -> null);
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static List<byte[]> makeChains(BlockDB blockDB, StateDBImpl stateDB) throws Exception {
+        Random random = new Random(1);
+        List<byte[]> chainIDs = new ArrayList<>();
+
+        for (int c = 0; c < CHAIN_NUMBER; c++) {
+            byte[] chainID = ("startup" + c + "#300#" + c).getBytes();
+            byte[] previousHash = bytes(random, ChainParam.HashLength);
+
+            for (int i = 0; i < BLOCK_NUMBER; i++) {
+                VerticalItem verticalItem = VerticalItem.with(previousHash);
+                Block block = new Block(1, i, i, verticalItem.getHash(), null,
+                        new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.valueOf(i + 1),
+                        new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO,
+                        BigInteger.ZERO, new byte[ChainParam.SignatureLength], bytes(random, ChainParam.PubkeyLength));
+                blockDB.saveBlockContainer(chainID, new BlockContainer(block, verticalItem), true);
+                stateDB.addPeer(chainID, block.getMinerPubkey());
+                previousHash = block.getBlockHash();
+            }
+
+            stateDB.setBestBlockHash(chainID, previousHash);
+            stateDB.followChain(chainID);
+            chainIDs.add(chainID);
+        }
+
+        return chainIDs;
+    }
+
+    @BeforeClass
+    public static void setKey() {
+        if (null == AccountManager.getInstance().getKeyPair()) {
+            Random random = new Random(2);
+            AccountManager.getInstance().updateKey(new Pair<>(bytes(random, 32), bytes(random, 64)));
+        }
+    }
+
+    @Test
+    public void testStartupWritesSummary() throws Exception {
+        BlockDB blockDB = new BlockDB(new MemoryDatabase());
+        StateDBImpl stateDB = new StateDBImpl(new MemoryDatabase());
+        List<byte[]> chainIDs = makeChains(blockDB, stateDB);
+
+        // 没有摘要，逐条链往回读取区块后写入摘要
+        Chains walking = new Chains(blockDB, stateDB, newListener());
+        for (byte[] chainID: chainIDs) {
+            Assert.assertTrue(walking.startChain(chainID));
+        }
+        walking.stop();
+
+        for (byte[] chainID: chainIDs) {
+            ChainSummary summary = stateDB.getChainSummary(chainID);
+            Assert.assertNotNull(summary);
+            Assert.assertEquals(BLOCK_NUMBER - 1, summary.getBestBlockNumber());
+            Assert.assertEquals(ChainParam.MUTABLE_RANGE, summary.getRecentMiners().size());
+        }
+
+        // 有摘要，并行启动，重复的链只启动一次
+        List<byte[]> duplicated = new ArrayList<>(chainIDs);
+        duplicated.add(chainIDs.get(0).clone());
+        Chains parallel = new Chains(blockDB, stateDB, newListener());
+        Assert.assertEquals(CHAIN_NUMBER, parallel.startChains(duplicated));
+        Assert.assertEquals(CHAIN_NUMBER, parallel.getAllChainIDs().size());
+        parallel.stop();
+    }
+
+    @Test
+    public void testSummaryEncode() {
+        Random random = new Random(3);
+        List<byte[]> miners = new ArrayList<>();
+        for (int i = 0; i < ChainParam.MUTABLE_RANGE + 5; i++) {
+            miners.add(bytes(random, ChainParam.PubkeyLength));
+        }
+
+        ChainSummary summary = new ChainSummary(bytes(random, ChainParam.HashLength), 100, miners);
+        Assert.assertTrue(summary.isFull());
+
+        ChainSummary decoded = new ChainSummary(summary.getEncoded());
+        Assert.assertArrayEquals(summary.getBestBlockHash(), decoded.getBestBlockHash());
+        Assert.assertEquals(100, decoded.getBestBlockNumber());
+        Assert.assertEquals(ChainParam.MUTABLE_RANGE, decoded.getRecentMiners().size());
+        for (int i = 0; i < ChainParam.MUTABLE_RANGE; i++) {
+            Assert.assertArrayEquals(miners.get(i), decoded.getRecentMiners().get(i));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.taucoin.chain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+public class DemandResponderTest {
+
+    private static ByteArrayWrapper hash(int i) {
+        byte[] hash = new byte[20];
+        hash[0] = (byte) i;
+        return new ByteArrayWrapper(hash);
+    }
+
+    private int loads = 0;
+
+    private List<byte[]> load(DemandResponder.ItemType type, ByteArrayWrapper hash) {
+        this.loads++;
+        // 哈希为0的数据本地没有
+        if (0 == hash.getData()[0]) {
+            return null;
+        }
+
+        return Collections.singletonList(new byte[100]);
+    }
+
+    @Test
+    public void testDeduplicateWithinWindow() throws Exception {
+        DemandResponder responder = new DemandResponder(1000, 1024, 4096);
+
+        Assert.assertTrue(responder.addDemand(DemandResponder.ItemType.BLOCK, hash(1), 0));
+        // 不同节点的相同需求
+        Assert.assertFalse(responder.addDemand(DemandResponder.ItemType.BLOCK, hash(1), 10));
+        Assert.assertTrue(responder.addDemand(DemandResponder.ItemType.TX, hash(1), 10));
+        Assert.assertTrue(responder.addDemand(DemandResponder.ItemType.TX, hash(0), 10));
+
+        Assert.assertEquals(2, responder.pollResponses(this::load, 20).size());
+        Assert.assertEquals(0, responder.getPendingSize());
+
+        // 窗口内已回应过
+        Assert.assertFalse(responder.addDemand(DemandResponder.ItemType.BLOCK, hash(1), 500));
+
+        // 窗口外重新回应，从缓存读取
+        Assert.assertTrue(responder.addDemand(DemandResponder.ItemType.BLOCK, hash(1), 1500));
+        int loaded = this.loads;
+        Assert.assertEquals(1, responder.pollResponses(this::load, 1500).size());
+        Assert.assertEquals(loaded, this.loads);
+        Assert.assertEquals(1, responder.getCacheHitCounter());
+    }
+
+    @Test
+    public void testRoundBudget() throws Exception {
+        DemandResponder responder = new DemandResponder(1000, 350, 4096);
+        for (int i = 1; i <= 10; i++) {
+            responder.addDemand(DemandResponder.ItemType.VERTICAL_ITEM, hash(i), 0);
+        }
+
+        Assert.assertEquals(3, responder.pollResponses(this::load, 0).size());
+        Assert.assertEquals(7, responder.getPendingSize());
+        Assert.assertEquals(3, responder.pollResponses(this::load, 1).size());
+        Assert.assertEquals(3, responder.pollResponses(this::load, 2).size());
+        Assert.assertEquals(1, responder.pollResponses(this::load, 3).size());
+        Assert.assertEquals(10, responder.getRespondedCounter());
+    }
+}
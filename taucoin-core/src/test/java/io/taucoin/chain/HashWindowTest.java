@@ -0,0 +1,83 @@
+package io.taucoin.chain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class HashWindowTest {
+
+    private static byte[] hash(long number, int branch) {
+        byte[] hash = new byte[20];
+        hash[0] = (byte) branch;
+        hash[1] = (byte) (number >> 8);
+        hash[2] = (byte) number;
+        return hash;
+    }
+
+    @Test
+    public void testPushAndHashList() {
+        HashWindow window = new HashWindow(10);
+        for (long i = 0; i < 30; i++) {
+            window.push(i, hash(i, 0));
+        }
+
+        Assert.assertEquals(10, window.size());
+        Assert.assertEquals(29, window.getTipNumber());
+        Assert.assertEquals(20, window.getOldestNumber());
+
+        List<byte[]> list = window.getHashList(29, 5);
+        Assert.assertEquals(5, list.size());
+        Assert.assertArrayEquals(hash(29, 0), list.get(0));
+        Assert.assertArrayEquals(hash(25, 0), list.get(4));
+
+        // 窗口深度不够
+        Assert.assertNull(window.getHashList(25, 10));
+    }
+
+    @Test
+    public void testGenesis() {
+        HashWindow window = new HashWindow(10);
+        for (long i = 0; i < 3; i++) {
+            window.push(i, hash(i, 0));
+        }
+
+        List<byte[]> list = window.getHashList(2, 47);
+        Assert.assertEquals(3, list.size());
+        Assert.assertArrayEquals(hash(0, 0), list.get(2));
+    }
+
+    @Test
+    public void testFork() {
+        HashWindow window = new HashWindow(20);
+        for (long i = 0; i < 15; i++) {
+            window.push(i, hash(i, 0));
+        }
+
+        HashWindow branch = window.fork(10);
+        Assert.assertEquals(10, branch.getTipNumber());
+        for (long i = 11; i < 18; i++) {
+            branch.push(i, hash(i, 1));
+        }
+
+        // 原窗口不变
+        Assert.assertEquals(14, window.getTipNumber());
+        Assert.assertTrue(window.contains(12, hash(12, 0)));
+
+        Assert.assertTrue(branch.contains(12, hash(12, 1)));
+        List<byte[]> list = branch.getHashList(12, 5);
+        Assert.assertArrayEquals(hash(12, 1), list.get(0));
+        Assert.assertArrayEquals(hash(10, 0), list.get(2));
+    }
+
+    @Test
+    public void testDiscontinuousPush() {
+        HashWindow window = new HashWindow(10);
+        window.push(5, hash(5, 0));
+        window.push(6, hash(6, 0));
+        window.push(9, hash(9, 0));
+
+        Assert.assertEquals(1, window.size());
+        Assert.assertNull(window.getHash(6));
+    }
+}
@@ -0,0 +1,72 @@
+package io.taucoin.chain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+public class MiningSchedulerTest {
+
+    private static final ByteArrayWrapper chainID = new ByteArrayWrapper("chain".getBytes());
+    private static final byte[] pubKey = "pubkey".getBytes();
+
+    @Test
+    public void testFireOnTime() throws InterruptedException {
+        MiningScheduler scheduler = new MiningScheduler();
+        long now = System.currentTimeMillis() / 1000;
+
+        scheduler.schedule(chainID, "tip1".getBytes(), pubKey, now + 1);
+        Assert.assertTrue(scheduler.isUpToDate(chainID, "tip1".getBytes(), pubKey));
+        Assert.assertFalse(scheduler.isUpToDate(chainID, "tip2".getBytes(), pubKey));
+        Assert.assertFalse(scheduler.isDue(chainID));
+
+        long start = System.currentTimeMillis();
+        while (!scheduler.isDue(chainID) && System.currentTimeMillis() - start < 3000) {
+            scheduler.awaitDue(3000);
+        }
+
+        Assert.assertTrue(scheduler.isDue(chainID));
+        Set<ByteArrayWrapper> chains = scheduler.pollDueChains();
+        Assert.assertTrue(chains.contains(chainID));
+        Assert.assertTrue(scheduler.pollDueChains().isEmpty());
+
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testReschedule() {
+        MiningScheduler scheduler = new MiningScheduler();
+        long now = System.currentTimeMillis() / 1000;
+
+        scheduler.schedule(chainID, "tip1".getBytes(), pubKey, now - 1);
+        Assert.assertTrue(scheduler.isDue(chainID));
+
+        // 新的最佳区块，重新计时
+        scheduler.schedule(chainID, "tip2".getBytes(), pubKey, now + 100);
+        Assert.assertFalse(scheduler.isDue(chainID));
+
+        scheduler.schedule(chainID, "tip3".getBytes(), pubKey, MiningScheduler.NEVER);
+        Assert.assertFalse(scheduler.isDue(chainID));
+
+        scheduler.unschedule(chainID);
+        Assert.assertFalse(scheduler.isUpToDate(chainID, "tip3".getBytes(), pubKey));
+
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testScheduleAfterShutdown() {
+        MiningScheduler scheduler = new MiningScheduler();
+        long now = System.currentTimeMillis() / 1000;
+
+        scheduler.schedule(chainID, "tip1".getBytes(), pubKey, now + 100);
+        scheduler.shutdown();
+
+        // 停止后主循环可能还会调用，不抛出RejectedExecutionException
+        scheduler.schedule(chainID, "tip2".getBytes(), pubKey, now + 100);
+        Assert.assertFalse(scheduler.isDue(chainID));
+        Assert.assertTrue(scheduler.pollDueChains().isEmpty());
+    }
+}
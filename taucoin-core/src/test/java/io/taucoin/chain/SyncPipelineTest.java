@@ -0,0 +1,97 @@
+package io.taucoin.chain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+public class SyncPipelineTest {
+
+    private static byte[] hash(int number) {
+        byte[] hash = new byte[20];
+        hash[0] = (byte) (number >> 8);
+        hash[1] = (byte) number;
+        return hash;
+    }
+
+    // 区块number的vertical item，从number-1开始往前count个哈希
+    private static List<byte[]> hashList(int number, int count) {
+        List<byte[]> list = new ArrayList<>();
+        for (int i = number - 1; i >= 0 && list.size() < count; i--) {
+            list.add(hash(i));
+        }
+        return list;
+    }
+
+    @Test
+    public void testWindowAndFrontierFirst() {
+        SyncPipeline pipeline = new SyncPipeline(4, 100);
+        pipeline.restart(hashList(100, 10));
+
+        Assert.assertEquals(new ByteArrayWrapper(hash(99)), pipeline.getHead());
+        Assert.assertEquals(new ByteArrayWrapper(hash(90)), pipeline.getFrontier());
+
+        List<ByteArrayWrapper> requests = pipeline.nextRequests(0, h -> false);
+        Assert.assertEquals(4, requests.size());
+        Assert.assertEquals(new ByteArrayWrapper(hash(90)), requests.get(0));
+        Assert.assertEquals(new ByteArrayWrapper(hash(99)), requests.get(1));
+        Assert.assertEquals(4, pipeline.getInFlightDepth());
+
+        // 窗口已满
+        Assert.assertTrue(pipeline.nextRequests(1, h -> false).isEmpty());
+
+        // 失败的请求马上重新请求
+        pipeline.onFailed(new ByteArrayWrapper(hash(99)));
+        requests = pipeline.nextRequests(2, h -> false);
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(new ByteArrayWrapper(hash(99)), requests.get(0));
+
+        // 超时的请求重新请求
+        requests = pipeline.nextRequests(SyncPipeline.REQUEST_TIMEOUT + 2, h -> false);
+        Assert.assertEquals(4, requests.size());
+    }
+
+    @Test
+    public void testExtendOnlyFromFrontier() {
+        SyncPipeline pipeline = new SyncPipeline(4, 30);
+        pipeline.restart(hashList(100, 10));
+
+        Assert.assertFalse(pipeline.extend(new ByteArrayWrapper(hash(95)), hashList(95, 10)));
+        Assert.assertTrue(pipeline.extend(new ByteArrayWrapper(hash(90)), hashList(90, 47)));
+
+        // 受已知区块数量上限限制
+        Assert.assertEquals(30, pipeline.getPendingSize());
+        Assert.assertEquals(new ByteArrayWrapper(hash(70)), pipeline.getFrontier());
+    }
+
+    @Test
+    public void testSyncInOrder() {
+        SyncPipeline pipeline = new SyncPipeline(8, 50);
+        pipeline.restart(hashList(40, 47));
+
+        Set<ByteArrayWrapper> downloaded = new HashSet<>();
+        long now = 0;
+        int next = 39;
+        while (!pipeline.isEmpty()) {
+            now += 100;
+            downloaded.addAll(pipeline.nextRequests(now, downloaded::contains));
+
+            ByteArrayWrapper head = pipeline.getHead();
+            Assert.assertEquals(new ByteArrayWrapper(hash(next)), head);
+            if (downloaded.contains(head)) {
+                pipeline.onSynced(head, now);
+                next--;
+            }
+        }
+
+        Assert.assertEquals(-1, next);
+        Assert.assertEquals(40, pipeline.getSyncedBlocks());
+        Assert.assertTrue(pipeline.getBlocksPerSecond() > 0);
+        Assert.assertEquals(0, pipeline.getInFlightDepth());
+    }
+}
@@ -0,0 +1,178 @@
+package io.taucoin.communication;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import io.taucoin.core.DataIdentifier;
+import io.taucoin.core.MutableDataWrapper;
+import io.taucoin.listener.CompositeMsgListener;
+import io.taucoin.repository.AppRepository;
+import io.taucoin.types.Message;
+import io.taucoin.types.MutableDataType;
+import io.taucoin.util.ByteArrayWrapper;
+
+public class CommunicationTest {
+
+    private static AppRepository newRepository(Set<byte[]> friends) {
+        return (AppRepository) Proxy.newProxyInstance(AppRepository.class.getClassLoader(),
+                new Class<?>[] {AppRepository.class},
+                (proxy, method, args) -> "getAllFriends".equals(method.getName()) ? friends : null);
+    }
+
+    private static Communication newCommunication(int shardNumber) {
+        return newCommunication(shardNumber, null);
+    }
+
+    private static Communication newCommunication(int shardNumber, Set<byte[]> friends) {
+        return new Communication(new byte[8], new CompositeMsgListener(), newRepository(friends), shardNumber);
+    }
+
+    private static ByteArrayWrapper makePeer(Random random) {
+        byte[] pubKey = new byte[32];
+        random.nextBytes(pubKey);
+        return new ByteArrayWrapper(pubKey);
+    }
+
+    private static List<Message> makeMessages(byte[] sender, int from, int to) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add(Message.createTextMessage(BigInteger.valueOf(i), sender, new byte[32],
+                    null, BigInteger.valueOf(i), ("message " + i).getBytes()));
+        }
+        return messages;
+    }
+
+    @Test
+    public void testRepeatedMessagesFiltered() {
+        Communication communication = newCommunication(1);
+        Random random = new Random(1);
+        ByteArrayWrapper friend = makePeer(random);
+        ByteArrayWrapper other = makePeer(random);
+
+        List<Message> messages = makeMessages(friend.getData(), 0, 8);
+        Assert.assertEquals(8, communication.filterDeliveredMessages(friend, messages).size());
+
+        // 再次读到同一个消息列表，不再通知
+        Assert.assertTrue(communication.filterDeliveredMessages(friend, messages).isEmpty());
+
+        // 部分重叠的消息列表只通知新消息
+        List<Message> newer = makeMessages(friend.getData(), 4, 12);
+        Assert.assertEquals(4, communication.filterDeliveredMessages(friend, newer).size());
+
+        // 每个朋友独立记录
+        Assert.assertEquals(8, communication.filterDeliveredMessages(other, messages).size());
+    }
+
+    @Test
+    public void testShardAssignment() {
+        int shardNumber = 4;
+        int peers = 4000;
+        Communication communication = newCommunication(shardNumber);
+        Random random = new Random(2);
+
+        int[] counts = new int[shardNumber];
+        for (int i = 0; i < peers; i++) {
+            ByteArrayWrapper peer = makePeer(random);
+            int index = communication.getShardIndex(peer);
+            Assert.assertTrue(index >= 0 && index < shardNumber);
+            // 同一个公钥总是落在同一个分片
+            Assert.assertEquals(index, communication.getShardIndex(new ByteArrayWrapper(peer.getData().clone())));
+            counts[index]++;
+        }
+
+        for (int count: counts) {
+            Assert.assertTrue(count > peers / shardNumber / 2);
+        }
+    }
+
+    @Test
+    public void testFriendListDiff() {
+        Random random = new Random(3);
+        ByteArrayWrapper kept = makePeer(random);
+        ByteArrayWrapper removed = makePeer(random);
+        ByteArrayWrapper added = makePeer(random);
+
+        Set<byte[]> friends = new HashSet<>();
+        friends.add(kept.getData());
+        friends.add(removed.getData());
+        Communication communication = newCommunication(2, friends);
+
+        communication.checkFriends();
+        Assert.assertEquals(2, communication.getFriends().size());
+        Assert.assertTrue(communication.getFriends().contains(removed));
+
+        List<Message> messages = makeMessages(removed.getData(), 0, 4);
+        Assert.assertEquals(4, communication.filterDeliveredMessages(removed, messages).size());
+        communication.markVisited(removed, 1000);
+
+        friends.remove(removed.getData());
+        friends.add(added.getData());
+        communication.checkFriends();
+
+        Assert.assertEquals(2, communication.getFriends().size());
+        Assert.assertTrue(communication.getFriends().contains(kept));
+        Assert.assertTrue(communication.getFriends().contains(added));
+        Assert.assertFalse(communication.getFriends().contains(removed));
+
+        // 删除的朋友相关缓存一并清除
+        Assert.assertEquals(4, communication.filterDeliveredMessages(removed, messages).size());
+        Assert.assertEquals(0, communication.getVisitDelay(removed, 1000));
+    }
+
+    @Test
+    public void testVisitDelayPerFriend() {
+        Communication communication = newCommunication(1);
+        Random random = new Random(4);
+        ByteArrayWrapper visited = makePeer(random);
+        ByteArrayWrapper other = makePeer(random);
+
+        Assert.assertEquals(0, communication.getVisitDelay(visited, 1000));
+
+        communication.markVisited(visited, 1000);
+        long delay = communication.getVisitDelay(visited, 1000);
+        Assert.assertTrue(delay > 0);
+        Assert.assertEquals(delay - 300, communication.getVisitDelay(visited, 1300));
+        Assert.assertEquals(0, communication.getVisitDelay(visited, 1000 + delay));
+
+        // 其它朋友不受影响
+        Assert.assertEquals(0, communication.getVisitDelay(other, 1000));
+
+        // 长度不对的公钥被忽略，不会抛出异常
+        ByteArrayWrapper invalid = new ByteArrayWrapper(new byte[31]);
+        communication.markVisited(invalid, 1000);
+        Assert.assertEquals(0, communication.getVisitDelay(invalid, 1000));
+    }
+
+    @Test
+    public void testRemovedFriendTasksDropped() {
+        Random random = new Random(5);
+        ByteArrayWrapper removed = makePeer(random);
+
+        Set<byte[]> friends = new HashSet<>();
+        friends.add(removed.getData());
+        Communication communication = newCommunication(1, friends);
+        communication.checkFriends();
+
+        byte[] item = new MutableDataWrapper(BigInteger.valueOf(1000), MutableDataType.MESSAGE_LIST,
+                new byte[0]).getEncoded();
+        communication.onDHTItemGot(item, new DataIdentifier(removed), true);
+        Assert.assertEquals(1, communication.getQueuedTasks(removed));
+
+        // 删除朋友时丢弃排队的数据
+        friends.remove(removed.getData());
+        communication.checkFriends();
+        Assert.assertEquals(0, communication.getQueuedTasks(removed));
+
+        // 删除之后才到达的数据不再排队
+        communication.onDHTItemGot(item, new DataIdentifier(removed), true);
+        Assert.assertEquals(0, communication.getQueuedTasks(removed));
+    }
+}
@@ -0,0 +1,341 @@
+package io.taucoin.communication;
+
+import com.frostwire.jlibtorrent.Pair;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.taucoin.core.Utils;
+import io.taucoin.db.MemoryDatabase;
+import io.taucoin.db.MessageDBImpl;
+import io.taucoin.dht2.DHT;
+import io.taucoin.listener.CompositeMsgListener;
+import io.taucoin.types.GossipElement;
+import io.taucoin.types.GroupChatGossip;
+import io.taucoin.types.Message;
+import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.HashUtil;
+
+/**
+ * 用内存DHT驱动多个GroupChat模拟群聊gossip扩散：每轮每个成员处理一次群，
+ * 本轮的DHT请求在轮末返回，统计一条消息送达所有成员需要的轮数和DHT操作数
+ */
+public class GroupChatSimulationTest {
+    private static final Logger logger = LoggerFactory.getLogger("group_chat_simulation");
+
+    private static final int[] GROUP_SIZES = {10, 50, 100, 200};
+
+    private static final byte[] groupID = "group#300#1".getBytes();
+
+    // 模拟时不限速
+    private static final double UNLIMITED = 1000000;
+
+    /**
+     * 内存DHT，请求的结果在deliver时回调
+     */
+    private static class MemoryDHT implements GroupChat.GroupDHT {
+        private final Map<ByteArrayWrapper, byte[]> immutableItems = new HashMap<>();
+
+        private final Map<ByteArrayWrapper, byte[]> mutableItems = new HashMap<>();
+
+        private List<Runnable> callbacks = new ArrayList<>();
+
+        // 按消息哈希统计的获取次数
+        final Map<ByteArrayWrapper, AtomicInteger> immutableGets = new HashMap<>();
+
+        // 按公钥统计的gossip发布次数
+        final Map<ByteArrayWrapper, AtomicInteger> mutablePuts = new HashMap<>();
+
+        // gossip读取次数
+        final AtomicInteger mutableGets = new AtomicInteger(0);
+
+        private static ByteArrayWrapper mutableKey(byte[] publicKey, byte[] salt) {
+            byte[] key = new byte[publicKey.length + salt.length];
+            System.arraycopy(publicKey, 0, key, 0, publicKey.length);
+            System.arraycopy(salt, 0, key, publicKey.length, salt.length);
+            return new ByteArrayWrapper(key);
+        }
+
+        private static int count(Map<ByteArrayWrapper, AtomicInteger> counters, byte[] key) {
+            AtomicInteger counter = counters.get(new ByteArrayWrapper(key));
+            return null == counter ? 0 : counter.get();
+        }
+
+        @Override
+        public boolean putImmutable(byte[] data) {
+            this.immutableItems.put(new ByteArrayWrapper(HashUtil.bencodeHash(data)), data);
+            return true;
+        }
+
+        @Override
+        public boolean putMutable(byte[] publicKey, byte[] privateKey, byte[] data, byte[] salt) {
+            this.mutableItems.put(mutableKey(publicKey, salt), data);
+            this.mutablePuts.computeIfAbsent(new ByteArrayWrapper(publicKey), k -> new AtomicInteger())
+                    .incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public boolean getImmutable(byte[] hash, DHT.GetImmutableItemCallback cb, Object cbData) {
+            ByteArrayWrapper key = new ByteArrayWrapper(hash);
+            this.immutableGets.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            this.callbacks.add(() -> cb.onDHTItemGot(this.immutableItems.get(key), cbData));
+            return true;
+        }
+
+        @Override
+        public boolean getMutable(byte[] publicKey, byte[] salt, DHT.GetMutableItemCallback cb, Object cbData) {
+            ByteArrayWrapper key = mutableKey(publicKey, salt);
+            this.mutableGets.incrementAndGet();
+            this.callbacks.add(() -> cb.onDHTItemGot(this.mutableItems.get(key), cbData, true));
+            return true;
+        }
+
+        /**
+         * 返回本轮所有请求的结果
+         */
+        void deliver() {
+            List<Runnable> list = this.callbacks;
+            this.callbacks = new ArrayList<>();
+            for (Runnable callback: list) {
+                callback.run();
+            }
+        }
+    }
+
+    private static Pair<byte[], byte[]> makeKeyPair(Random random) {
+        byte[] pubKey = new byte[32];
+        random.nextBytes(pubKey);
+        byte[] priKey = new byte[64];
+        random.nextBytes(priKey);
+        return new Pair<>(pubKey, priKey);
+    }
+
+    private static GroupChat newGroupChat(MemoryDHT dht, Pair<byte[], byte[]> keyPair, double opsPerSecond) {
+        return new GroupChat(new MessageDBImpl(new MemoryDatabase()), new CompositeMsgListener(),
+                dht, () -> keyPair, opsPerSecond);
+    }
+
+    /**
+     * 在成员的gossip频道里放一批消息摘要
+     */
+    private static void putGossip(MemoryDHT dht, Pair<byte[], byte[]> keyPair, List<byte[]> msgRoots,
+                                  long timestamp) {
+        List<GossipElement> elements = new ArrayList<>();
+        for (byte[] msgRoot: msgRoots) {
+            elements.add(new GossipElement(keyPair.first, msgRoot, BigInteger.valueOf(timestamp)));
+        }
+        GroupChatGossip gossip = new GroupChatGossip(null, null, elements);
+        dht.putMutable(keyPair.first, keyPair.second, gossip.getEncoded(), GroupChat.makeGossipSalt(groupID));
+    }
+
+    private static List<byte[]> randomRoots(Random random, int count) {
+        List<byte[]> roots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] root = new byte[20];
+            random.nextBytes(root);
+            roots.add(root);
+        }
+        return roots;
+    }
+
+    private static void visit(MemoryDHT dht, GroupChat groupChat) {
+        groupChat.visitGroups();
+        dht.deliver();
+    }
+
+    @After
+    public void resetClock() {
+        Utils.mockTime = null;
+    }
+
+    @Test
+    public void simulateDelivery() throws Exception {
+        Random random = new Random(2020);
+
+        for (int size: GROUP_SIZES) {
+            MemoryDHT dht = new MemoryDHT();
+            List<Pair<byte[], byte[]>> keyPairs = new ArrayList<>(size);
+            List<byte[]> pubKeys = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Pair<byte[], byte[]> keyPair = makeKeyPair(random);
+                keyPairs.add(keyPair);
+                pubKeys.add(keyPair.first);
+            }
+
+            List<GroupChat> members = new ArrayList<>(size);
+            for (Pair<byte[], byte[]> keyPair: keyPairs) {
+                GroupChat groupChat = newGroupChat(dht, keyPair, UNLIMITED);
+                groupChat.followGroup(groupID, pubKeys);
+                members.add(groupChat);
+            }
+
+            // 第0个成员发出消息
+            Message message = Message.createTextMessage(BigInteger.valueOf(Utils.currentTimeSeconds()),
+                    pubKeys.get(0), groupID, null, BigInteger.ONE, "hello".getBytes());
+            Assert.assertTrue(members.get(0).publishMessage(groupID, message));
+
+            int rounds = 0;
+            int received = 1;
+            while (received < size && rounds < 100) {
+                rounds++;
+                for (GroupChat groupChat: members) {
+                    groupChat.visitGroups();
+                }
+                dht.deliver();
+
+                received = 1;
+                for (GroupChat groupChat: members.subList(1, size)) {
+                    received += groupChat.getDeliveredCounter();
+                }
+            }
+
+            long dhtOps = 0;
+            for (GroupChat groupChat: members) {
+                dhtOps += groupChat.getDHTOpsCounter();
+            }
+            logger.info("Group size:{}, rounds:{}, dht ops:{}, dht ops per member:{}",
+                    size, rounds, dhtOps, dhtOps / (double) size);
+
+            Assert.assertEquals(size, received);
+            for (GroupChat groupChat: members) {
+                Assert.assertEquals(0, groupChat.getPendingMessageCount(groupID));
+            }
+        }
+    }
+
+    @Test
+    public void testRetryWithBackoff() throws Exception {
+        Utils.setMockClock();
+        Random random = new Random(3);
+        MemoryDHT dht = new MemoryDHT();
+        Pair<byte[], byte[]> self = makeKeyPair(random);
+        Pair<byte[], byte[]> peer = makeKeyPair(random);
+
+        // 消息摘要在gossip里，但消息体不存在
+        byte[] msgRoot = randomRoots(random, 1).get(0);
+        putGossip(dht, peer, Collections.singletonList(msgRoot), Utils.currentTimeSeconds());
+
+        GroupChat groupChat = newGroupChat(dht, self, UNLIMITED);
+        groupChat.followGroup(groupID, Collections.singletonList(peer.first));
+        visit(dht, groupChat);
+        Assert.assertEquals(1, groupChat.getPendingMessageCount(groupID));
+
+        long wait = GroupChat.MESSAGE_RETRY_TIME;
+        for (int attempt = 1; attempt <= GroupChat.MAX_MESSAGE_ATTEMPTS; attempt++) {
+            visit(dht, groupChat);
+            Assert.assertEquals(attempt, MemoryDHT.count(dht.immutableGets, msgRoot));
+
+            // 退避时间内不再获取
+            Utils.rollMockClockMillis(wait - 1);
+            visit(dht, groupChat);
+            Assert.assertEquals(attempt, MemoryDHT.count(dht.immutableGets, msgRoot));
+            Utils.rollMockClockMillis(1);
+            wait *= 2;
+        }
+
+        // 超过尝试次数后放弃，再次读到同一个gossip也不会重新获取
+        Assert.assertEquals(0, groupChat.getPendingMessageCount(groupID));
+        Utils.rollMockClock(60);
+        visit(dht, groupChat);
+        Assert.assertEquals(GroupChat.MAX_MESSAGE_ATTEMPTS, MemoryDHT.count(dht.immutableGets, msgRoot));
+    }
+
+    @Test
+    public void testDropWhenGossipExpires() throws Exception {
+        Utils.setMockClock();
+        Random random = new Random(4);
+        MemoryDHT dht = new MemoryDHT();
+        Pair<byte[], byte[]> self = makeKeyPair(random);
+        Pair<byte[], byte[]> peer = makeKeyPair(random);
+
+        // gossip元素3秒后过期
+        byte[] msgRoot = randomRoots(random, 1).get(0);
+        putGossip(dht, peer, Collections.singletonList(msgRoot),
+                Utils.currentTimeSeconds() - GroupChat.GOSSIP_EXPIRE_TIME + 3);
+
+        GroupChat groupChat = newGroupChat(dht, self, UNLIMITED);
+        groupChat.followGroup(groupID, Collections.singletonList(peer.first));
+        visit(dht, groupChat);
+        visit(dht, groupChat);
+        Assert.assertEquals(1, MemoryDHT.count(dht.immutableGets, msgRoot));
+        Assert.assertEquals(1, groupChat.getPendingMessageCount(groupID));
+
+        Utils.rollMockClock(10);
+        visit(dht, groupChat);
+        Assert.assertEquals(1, MemoryDHT.count(dht.immutableGets, msgRoot));
+        Assert.assertEquals(0, groupChat.getPendingMessageCount(groupID));
+    }
+
+    @Test
+    public void testFetchesDoNotStarveGossip() throws Exception {
+        Random random = new Random(5);
+        MemoryDHT dht = new MemoryDHT();
+        Pair<byte[], byte[]> self = makeKeyPair(random);
+        Pair<byte[], byte[]> peer = makeKeyPair(random);
+
+        // 大量待获取的消息
+        List<byte[]> msgRoots = randomRoots(random, 12);
+        putGossip(dht, peer, msgRoots, Utils.currentTimeSeconds());
+
+        GroupChat groupChat = newGroupChat(dht, self, 20);
+        groupChat.followGroup(groupID, Collections.singletonList(peer.first));
+        for (int i = 0; i < 10 && 0 == groupChat.getPendingMessageCount(groupID); i++) {
+            Thread.sleep(60);
+            visit(dht, groupChat);
+        }
+        Assert.assertEquals(msgRoots.size(), groupChat.getPendingMessageCount(groupID));
+        int gossipReads = dht.mutableGets.get();
+
+        // 每次处理之间大约有一个配额
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(60);
+            visit(dht, groupChat);
+        }
+
+        int fetches = 0;
+        for (byte[] msgRoot: msgRoots) {
+            fetches += MemoryDHT.count(dht.immutableGets, msgRoot);
+        }
+        logger.info("fetches:{}, gossip reads:{}, gossip publishes:{}", fetches,
+                dht.mutableGets.get() - gossipReads, MemoryDHT.count(dht.mutablePuts, self.first));
+
+        Assert.assertTrue(fetches > 0);
+        Assert.assertTrue(fetches < msgRoots.size());
+        Assert.assertTrue(dht.mutableGets.get() - gossipReads >= 2);
+        Assert.assertEquals(1, MemoryDHT.count(dht.mutablePuts, self.first));
+    }
+
+    @Test
+    public void testNearestPeersFirst() {
+        Random random = new Random(1);
+        List<ByteArrayWrapper> members = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            members.add(new ByteArrayWrapper(makeKeyPair(random).first));
+        }
+        byte[] self = members.get(0).getData();
+
+        List<ByteArrayWrapper> peers = GossipFanout.selectRelayPeers(self, members, 4, random);
+        Assert.assertEquals(4, peers.size());
+
+        // 前两个是距离最近的成员
+        for (ByteArrayWrapper member: members) {
+            if (member.equals(members.get(0)) || peers.contains(member)) {
+                continue;
+            }
+            Assert.assertTrue(GossipFanout.compareDistance(self, peers.get(1).getData(), member.getData()) <= 0);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.taucoin.communication;
+
+import com.frostwire.jlibtorrent.Ed25519;
+import com.frostwire.jlibtorrent.Pair;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.account.AccountManager;
+import io.taucoin.types.Message;
+import io.taucoin.util.CryptoUtil;
+
+public class MessageCryptoTest {
+    private static final Logger logger = LoggerFactory.getLogger("message_crypto_test");
+
+    private static final int MESSAGE_NUMBER = 20000;
+    private static final int CONTENT_SIZE = 256;
+
+    private static List<Message> makeMessages(byte[] sender, byte[] receiver, int number) {
+        Random random = new Random(number);
+        List<Message> messages = new ArrayList<>(number);
+        for (int i = 0; i < number; i++) {
+            byte[] content = new byte[CONTENT_SIZE];
+            random.nextBytes(content);
+            messages.add(Message.createTextMessage(BigInteger.valueOf(i), sender, receiver,
+                    null, BigInteger.valueOf(i), content));
+        }
+
+        return messages;
+    }
+
+    @Test
+    public void testContextMatchesCryptoUtil() throws Exception {
+        Pair<byte[], byte[]> me = Ed25519.createKeypair(Ed25519.createSeed());
+        Pair<byte[], byte[]> friend = Ed25519.createKeypair(Ed25519.createSeed());
+        AccountManager.getInstance().updateKey(me);
+
+        FriendCryptoContext context = FriendCryptoManager.getInstance().getContext(friend.first);
+        byte[] key = CryptoUtil.keyExchange(friend.first, me.second);
+        Assert.assertArrayEquals(key, context.getKey());
+
+        // 同一朋友只做一次密钥交换
+        long counter = FriendCryptoManager.getInstance().getKeyExchangeCounter();
+        FriendCryptoManager.getInstance().getContext(friend.first);
+        Assert.assertEquals(counter, FriendCryptoManager.getInstance().getKeyExchangeCounter());
+
+        List<Message> messages = makeMessages(me.first, friend.first, 100);
+        for (Message message: messages) {
+            message.encrypt(context);
+            Assert.assertArrayEquals(CryptoUtil.encrypt(message.getRawContent(), key), message.getEncryptedContent());
+        }
+
+        List<Message> received = new ArrayList<>();
+        for (Message message: messages) {
+            received.add(new Message(message.getEncoded()));
+        }
+        context.decryptMessages(received);
+        for (int i = 0; i < messages.size(); i++) {
+            Assert.assertArrayEquals(messages.get(i).getRawContent(), received.get(i).getRawContent());
+        }
+
+        // 密钥变化之后需要重新交换
+        AccountManager.getInstance().updateKey(Ed25519.createKeypair(Ed25519.createSeed()));
+        FriendCryptoManager.getInstance().getContext(friend.first);
+        Assert.assertEquals(counter + 1, FriendCryptoManager.getInstance().getKeyExchangeCounter());
+    }
+
+    @Test
+    public void testExplicitKeyPair() throws Exception {
+        Pair<byte[], byte[]> me = Ed25519.createKeypair(Ed25519.createSeed());
+        Pair<byte[], byte[]> other = Ed25519.createKeypair(Ed25519.createSeed());
+        Pair<byte[], byte[]> friend = Ed25519.createKeypair(Ed25519.createSeed());
+        Pair<byte[], byte[]> another = Ed25519.createKeypair(Ed25519.createSeed());
+        FriendCryptoManager manager = FriendCryptoManager.getInstance();
+
+        FriendCryptoContext context = manager.getContext(friend.first, me);
+        Assert.assertArrayEquals(CryptoUtil.keyExchange(friend.first, me.second), context.getKey());
+        Assert.assertSame(context, manager.getContext(friend.first, me));
+        FriendCryptoContext anotherContext = manager.getContext(another.first, me);
+
+        // 换了本地密钥对，不能用缓存的上下文
+        context = manager.getContext(friend.first, other);
+        Assert.assertArrayEquals(CryptoUtil.keyExchange(friend.first, other.second), context.getKey());
+        Assert.assertArrayEquals(other.first, context.getLocalPubKey());
+
+        // 不影响其他朋友的上下文
+        Assert.assertSame(anotherContext, manager.getContext(another.first, me));
+
+        // 删除朋友后重新交换
+        long counter = manager.getKeyExchangeCounter();
+        manager.removeContext(friend.first);
+        manager.getContext(friend.first, other);
+        Assert.assertEquals(counter + 1, manager.getKeyExchangeCounter());
+    }
+
+    @Test
+    public void benchmarkMessageCrypto() throws Exception {
+        Pair<byte[], byte[]> me = Ed25519.createKeypair(Ed25519.createSeed());
+        Pair<byte[], byte[]> friend = Ed25519.createKeypair(Ed25519.createSeed());
+        AccountManager.getInstance().updateKey(me);
+
+        // 原有方式：每条消息一次密钥交换和Cipher初始化
+        List<Message> messages = makeMessages(me.first, friend.first, MESSAGE_NUMBER);
+        long startTime = System.nanoTime();
+        for (Message message: messages) {
+            message.encrypt(CryptoUtil.keyExchange(friend.first, me.second));
+        }
+        long oldEncryptTime = System.nanoTime() - startTime;
+
+        // 上下文方式
+        messages = makeMessages(me.first, friend.first, MESSAGE_NUMBER);
+        startTime = System.nanoTime();
+        FriendCryptoContext context = FriendCryptoManager.getInstance().getContext(friend.first);
+        context.encryptMessages(messages);
+        long encryptTime = System.nanoTime() - startTime;
+
+        List<Message> received = new ArrayList<>();
+        for (Message message: messages) {
+            received.add(new Message(message.getEncoded()));
+        }
+        startTime = System.nanoTime();
+        context.decryptMessages(received);
+        long decryptTime = System.nanoTime() - startTime;
+
+        logger.info("Encrypt per message key exchange: {} msg/s", MESSAGE_NUMBER * 1000000000L / Math.max(1, oldEncryptTime));
+        logger.info("Encrypt with context: {} msg/s", MESSAGE_NUMBER * 1000000000L / Math.max(1, encryptTime));
+        logger.info("Decrypt with context: {} msg/s", MESSAGE_NUMBER * 1000000000L / Math.max(1, decryptTime));
+    }
+}
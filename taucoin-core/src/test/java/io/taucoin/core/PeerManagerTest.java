@@ -0,0 +1,38 @@
+package io.taucoin.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.util.ByteArrayWrapper;
+
+public class PeerManagerTest {
+
+    @Test
+    public void testInvalidPeerKeyIgnored() {
+        byte[] good = new byte[ChainParam.PubkeyLength];
+        good[0] = 1;
+        byte[] bad = new byte[ChainParam.PubkeyLength + 1];
+
+        Set<ByteArrayWrapper> allPeers = new HashSet<>();
+        allPeers.add(new ByteArrayWrapper(good));
+        allPeers.add(new ByteArrayWrapper(bad));
+        List<ByteArrayWrapper> priorityPeers = new ArrayList<>(allPeers);
+
+        PeerManager peerManager = new PeerManager("chain".getBytes());
+        Assert.assertTrue(peerManager.init(allPeers, priorityPeers));
+
+        // 网络传来的错误长度公钥不抛异常，也不会记录
+        peerManager.updateVisitTime(bad);
+        peerManager.updateVisitTime(new byte[3]);
+        Assert.assertEquals(0, peerManager.getPeerVisitTime(bad));
+
+        peerManager.updateVisitTime(good);
+        Assert.assertTrue(peerManager.getPeerVisitTime(good) > 0);
+    }
+}
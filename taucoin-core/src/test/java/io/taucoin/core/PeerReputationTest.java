@@ -0,0 +1,152 @@
+package io.taucoin.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+public class PeerReputationTest {
+    private static final Logger logger = LoggerFactory.getLogger("test");
+
+    private static final byte[] ITEM = "tip".getBytes();
+
+    private static List<ByteArrayWrapper> makePeers(int size, Random random) {
+        List<ByteArrayWrapper> peers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte[] pubKey = new byte[32];
+            random.nextBytes(pubKey);
+            peers.add(new ByteArrayWrapper(pubKey));
+        }
+
+        return peers;
+    }
+
+    @Test
+    public void testSuccessRateAndDecay() {
+        PeerReputation reputation = new PeerReputation(4);
+        List<ByteArrayWrapper> peers = makePeers(2, new Random(1));
+        ByteArrayWrapper good = peers.get(0);
+        ByteArrayWrapper bad = peers.get(1);
+
+        for (int i = 0; i < 20; i++) {
+            reputation.onRequest(good, ITEM, i * 1000);
+            reputation.onResult(good, ITEM, true, i * 1000 + 100);
+            reputation.onRequest(bad, ITEM, i * 1000);
+            reputation.onResult(bad, ITEM, false, i * 1000 + 100);
+        }
+
+        Assert.assertTrue(reputation.getSuccessRate(good, 20000) > 0.9);
+        Assert.assertTrue(reputation.getSuccessRate(bad, 20000) < 0.1);
+        Assert.assertTrue(reputation.getScore(good, 20000) > reputation.getScore(bad, 20000));
+
+        // 很久没有请求，回到先验值
+        long later = 20000 + 20 * PeerReputation.DECAY_TIME;
+        Assert.assertEquals(0.5, reputation.getSuccessRate(good, later), 0.01);
+        Assert.assertEquals(0.5, reputation.getSuccessRate(bad, later), 0.01);
+    }
+
+    @Test
+    public void testBoundedTopPeers() {
+        PeerReputation reputation = new PeerReputation(8);
+        List<ByteArrayWrapper> peers = makePeers(1000, new Random(2));
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < peers.size(); i++) {
+                // 只有前10个节点能取到数据
+                reputation.onResult(peers.get(i), ITEM, i < 10, round * 1000);
+            }
+        }
+
+        Assert.assertEquals(8, reputation.getTopPeerNumber());
+        Assert.assertTrue(reputation.getSuccessRate(peers.get(0), 5000) > 0.5);
+        Assert.assertTrue(reputation.getSuccessRate(peers.get(500), 5000) < 0.5);
+    }
+
+    @Test
+    public void testConcurrentRequestsToSamePeer() {
+        PeerReputation reputation = new PeerReputation(4);
+        List<ByteArrayWrapper> peers = makePeers(2, new Random(3));
+        ByteArrayWrapper slow = peers.get(0);
+        ByteArrayWrapper fast = peers.get(1);
+        byte[] other = "demand".getBytes();
+
+        // 对同一节点的第二个请求不覆盖第一个请求的时间
+        reputation.onRequest(slow, ITEM, 0);
+        reputation.onRequest(slow, other, 5000);
+        reputation.onResult(slow, ITEM, true, 5100);
+
+        reputation.onRequest(fast, ITEM, 5000);
+        reputation.onResult(fast, ITEM, true, 5100);
+
+        Assert.assertTrue(reputation.getScore(slow, 5100) < reputation.getScore(fast, 5100));
+    }
+
+    @Test
+    public void testTailSketchesAgeTogether() {
+        PeerReputation reputation = new PeerReputation(1);
+        List<ByteArrayWrapper> peers = makePeers(2, new Random(4));
+        ByteArrayWrapper top = peers.get(0);
+        ByteArrayWrapper tail = peers.get(1);
+        for (int i = 0; i < 30; i++) {
+            reputation.onResult(top, ITEM, true, 0);
+        }
+
+        // 一半请求成功，多次减半后成功率仍接近一半
+        for (int i = 0; i < 2000; i++) {
+            reputation.onResult(tail, ITEM, i % 2 == 0, 0);
+            if (i % 100 == 99) {
+                Assert.assertEquals(0.5, reputation.getSuccessRate(tail, 0), 0.1);
+            }
+        }
+        Assert.assertEquals(1, reputation.getTopPeerNumber());
+    }
+
+    @Test
+    public void simulateWeightedSelection() {
+        Random random = new Random(2020);
+        List<ByteArrayWrapper> peers = makePeers(100, random);
+
+        // 30%的节点在线
+        double[] successRates = new double[peers.size()];
+        for (int i = 0; i < successRates.length; i++) {
+            successRates[i] = i % 10 < 3 ? 0.9 : 0.05;
+        }
+
+        PeerReputation reputation = new PeerReputation();
+        int uniformFailures = 0;
+        int weightedFailures = 0;
+        int requests = 20000;
+        for (int i = 0; i < requests; i++) {
+            long now = i * 100L;
+
+            int uniform = random.nextInt(peers.size());
+            if (random.nextDouble() >= successRates[uniform]) {
+                uniformFailures++;
+            }
+
+            // 每次从8个候选节点中选一个
+            List<ByteArrayWrapper> candidates = new ArrayList<>();
+            for (int j = 0; j < 8; j++) {
+                candidates.add(peers.get(random.nextInt(peers.size())));
+            }
+            ByteArrayWrapper peer = reputation.choose(candidates, random, now);
+            boolean success = random.nextDouble() < successRates[peers.indexOf(peer)];
+            if (!success) {
+                weightedFailures++;
+            }
+            reputation.onRequest(peer, ITEM, now);
+            reputation.onResult(peer, ITEM, success, now + 50);
+        }
+
+        logger.info("Uniform failure rate:{}, weighted failure rate:{}",
+                uniformFailures / (double) requests, weightedFailures / (double) requests);
+
+        Assert.assertTrue(weightedFailures < uniformFailures);
+    }
+}
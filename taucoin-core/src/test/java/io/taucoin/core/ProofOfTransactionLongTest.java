@@ -0,0 +1,192 @@
+package io.taucoin.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+
+/**
+ * 验证long版本的POT计算与BigInteger版本逐位一致
+ */
+public class ProofOfTransactionLongTest {
+    private static final byte[] chainID = "TAUcoin#300#3938383036366633393364383365393338373434".getBytes();
+
+    private static final int ROUNDS = 200000;
+
+    // 历史测试数据
+    private final byte[] testGenerationSignature = Hex.decode("442c29a4d18f192164006030640fb54c8b9ffd4f5750d2f6dca192dc653c52ad");
+    private final BigInteger testHit = new BigInteger("762657575297429274", 10);
+    private final BigInteger testPower = BigInteger.valueOf(117);
+    private final BigInteger testBaseTarget = new BigInteger("21D0369D036978",16);
+
+    private static Block makeBlock(long number, long timeStamp, BigInteger baseTarget) {
+        return new Block(1, timeStamp, number, new byte[ChainParam.HashLength], null,
+                new byte[ChainParam.HashLength], baseTarget, BigInteger.ZERO, new byte[ChainParam.HashLength],
+                BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, new byte[ChainParam.PubkeyLength]);
+    }
+
+    private static BigInteger randomUnsignedLong(Random random) {
+        // 覆盖不同数量级
+        int bits = 1 + random.nextInt(64);
+        return new BigInteger(bits, random);
+    }
+
+    @Test
+    public void testHistoricalData() {
+        ProofOfTransaction pot = new ProofOfTransaction(chainID);
+
+        Assert.assertEquals(testHit.longValue(), pot.calculateRandomHitValue(testGenerationSignature));
+        Assert.assertEquals(pot.calculateRandomHit(testGenerationSignature).longValue(),
+                pot.calculateRandomHitValue(testGenerationSignature));
+
+        Assert.assertEquals(pot.calculateMiningTimeInterval(testHit, testBaseTarget, testPower),
+                pot.calculateMiningTimeInterval(testHit.longValue(), testBaseTarget.longValue(), testPower.longValue()));
+
+        for (long time = 0; time < ChainParam.DEFAULT_MAX_BLOCK_TIME * 2; time++) {
+            Assert.assertEquals(pot.verifyHit(testHit, testBaseTarget, testPower, time),
+                    pot.verifyHit(testGenerationSignature, testBaseTarget, testPower, time));
+        }
+    }
+
+    @Test
+    public void testRandomHit() {
+        ProofOfTransaction pot = new ProofOfTransaction(chainID);
+        Random random = new Random(33);
+        byte[] genSig = new byte[ChainParam.HashLength];
+
+        for (int i = 0; i < ROUNDS; i++) {
+            random.nextBytes(genSig);
+            // 让前几个字节更多地取到极端值
+            if (i % 4 == 0) {
+                int zeros = random.nextInt(8);
+                for (int j = 0; j < zeros; j++) {
+                    genSig[j] = (i % 8 == 0) ? (byte) 0 : (byte) 0xff;
+                }
+            }
+
+            BigInteger expected = pot.calculateRandomHit(genSig);
+            long actual = pot.calculateRandomHitValue(genSig);
+            if (ProofOfTransaction.NOT_REPRESENTABLE == actual) {
+                Assert.assertTrue(expected.bitLength() >= 63);
+            } else {
+                Assert.assertEquals(expected, BigInteger.valueOf(actual));
+            }
+        }
+
+        byte[] ones = new byte[ChainParam.HashLength];
+        java.util.Arrays.fill(ones, (byte) 0xff);
+        Assert.assertEquals(pot.calculateRandomHit(ones), BigInteger.valueOf(pot.calculateRandomHitValue(ones)));
+    }
+
+    @Test
+    public void testRandomBaseTarget() {
+        Random random = new Random(34);
+        int[] blockTimes = {60, 300, ChainParam.DEFAULT_BLOCK_TIME};
+
+        for (int blockTime: blockTimes) {
+            ProofOfTransaction pot = new ProofOfTransaction(chainID, blockTime);
+
+            for (int i = 0; i < ROUNDS / 4; i++) {
+                BigInteger previousBaseTarget = randomUnsignedLong(random);
+                long timeStamp = 1600000000L + random.nextInt(1000000);
+                long interval = random.nextInt(blockTime * 6);
+
+                Block previous = makeBlock(4 + random.nextInt(1000), timeStamp, previousBaseTarget);
+                Block ancestor3 = makeBlock(1, timeStamp - interval, BigInteger.ONE);
+
+                BigInteger expected = pot.calculateRequiredBaseTargetByBigInteger(previous, ancestor3);
+                try {
+                    long actual = pot.calculateRequiredBaseTargetValue(previous, ancestor3);
+                    Assert.assertEquals(expected, new BigInteger(Long.toUnsignedString(actual)));
+                } catch (ArithmeticException e) {
+                    Assert.assertTrue(expected.bitLength() > 64);
+                }
+
+                Assert.assertEquals(expected, pot.calculateRequiredBaseTarget(previous, ancestor3));
+            }
+
+            Block genesis = makeBlock(3, 1600000000L, BigInteger.ONE);
+            Assert.assertEquals(pot.calculateRequiredBaseTargetByBigInteger(genesis, null),
+                    pot.calculateRequiredBaseTarget(genesis, null));
+        }
+    }
+
+    @Test
+    public void testMaxBaseTarget() {
+        ProofOfTransaction pot = new ProofOfTransaction(chainID);
+        long timeStamp = 1600000000L;
+
+        // 0xffffffffffffffff是合法的base target，long版本必须与BigInteger版本一致
+        for (long interval = 0; interval < ChainParam.DEFAULT_BLOCK_TIME * 6; interval += 3) {
+            Block previous = makeBlock(100, timeStamp, ChainParam.MaxBaseTarget);
+            Block ancestor3 = makeBlock(97, timeStamp - interval, BigInteger.ONE);
+
+            BigInteger expected = pot.calculateRequiredBaseTargetByBigInteger(previous, ancestor3);
+            if (expected.bitLength() <= 64) {
+                Assert.assertEquals(expected, new BigInteger(Long.toUnsignedString(
+                        pot.calculateRequiredBaseTargetValue(previous, ancestor3))));
+            }
+            Assert.assertEquals(expected, pot.calculateRequiredBaseTarget(previous, ancestor3));
+        }
+
+        // 平均出块时间正好等于目标时，base target保持为最大值
+        Block previous = makeBlock(100, timeStamp, ChainParam.MaxBaseTarget);
+        Block ancestor3 = makeBlock(97, timeStamp - ChainParam.DEFAULT_BLOCK_TIME * 3L, BigInteger.ONE);
+        Assert.assertEquals(-1, pot.calculateRequiredBaseTargetValue(previous, ancestor3));
+        Assert.assertEquals(ChainParam.MaxBaseTarget, pot.calculateRequiredBaseTarget(previous, ancestor3));
+
+        Random random = new Random(38);
+        byte[] genSig = new byte[ChainParam.HashLength];
+        for (int i = 0; i < 1000; i++) {
+            random.nextBytes(genSig);
+            BigInteger hit = pot.calculateRandomHit(genSig);
+            long time = random.nextInt(ChainParam.DEFAULT_MAX_BLOCK_TIME * 2);
+
+            Assert.assertEquals(pot.calculateMiningTimeInterval(hit, ChainParam.MaxBaseTarget, testPower),
+                    pot.calculateMiningTimeInterval(genSig, ChainParam.MaxBaseTarget, testPower));
+            Assert.assertEquals(pot.verifyHit(hit, ChainParam.MaxBaseTarget, testPower, time),
+                    pot.verifyHit(genSig, ChainParam.MaxBaseTarget, testPower, time));
+        }
+    }
+
+    @Test
+    public void testRandomIntervalAndVerify() {
+        ProofOfTransaction pot = new ProofOfTransaction(chainID);
+        Random random = new Random(35);
+        byte[] genSig = new byte[ChainParam.HashLength];
+
+        for (int i = 0; i < ROUNDS; i++) {
+            random.nextBytes(genSig);
+            BigInteger baseTarget = randomUnsignedLong(random).add(BigInteger.ONE);
+            BigInteger power = BigInteger.valueOf(1 + random.nextInt(1 << (1 + random.nextInt(30))));
+            long time = random.nextInt(ChainParam.DEFAULT_MAX_BLOCK_TIME * 2);
+
+            BigInteger hit = pot.calculateRandomHit(genSig);
+
+            Assert.assertEquals(pot.calculateMiningTimeInterval(hit, baseTarget, power),
+                    pot.calculateMiningTimeInterval(genSig, baseTarget, power));
+
+            Assert.assertEquals(pot.verifyHit(hit, baseTarget, power, time),
+                    pot.verifyHit(genSig, baseTarget, power, time));
+        }
+    }
+
+    @Test
+    public void testMultiplyHighUnsigned() {
+        Random random = new Random(36);
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+        for (int i = 0; i < ROUNDS; i++) {
+            long x = random.nextLong();
+            long y = random.nextLong();
+
+            BigInteger product = new BigInteger(Long.toUnsignedString(x)).multiply(new BigInteger(Long.toUnsignedString(y)));
+            Assert.assertEquals(product.shiftRight(64).and(mask).longValue(), ProofOfTransaction.multiplyHighUnsigned(x, y));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.taucoin.core;
+
+import com.frostwire.jlibtorrent.Ed25519;
+import com.frostwire.jlibtorrent.Pair;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import io.taucoin.types.Transaction;
+import io.taucoin.types.WiringCoinsTx;
+
+public class SignatureCacheTest {
+    private static final byte[] chainID = "test#300#1".getBytes();
+
+    private static final byte[] seed;
+    private static final byte[] sender;
+
+    static {
+        seed = Ed25519.createSeed();
+        Pair<byte[], byte[]> keys = Ed25519.createKeypair(seed);
+        sender = keys.first;
+    }
+
+    private static Transaction makeTx(long nonce) {
+        WiringCoinsTx tx = new WiringCoinsTx(1, chainID, 1597998963, BigInteger.TEN, sender,
+                BigInteger.valueOf(nonce), new byte[32], BigInteger.ONE, "memo".getBytes());
+        tx.signTransactionWithSeed(seed);
+        return tx;
+    }
+
+    @Test
+    public void testVerifyOnce() {
+        SignatureCache cache = new SignatureCache(SignatureCache.DEFAULT_GENERATION_SIZE);
+        Transaction tx = makeTx(1);
+
+        // 入池、处理区块、切换分支重放
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(cache.verify(tx));
+        }
+        // 解码出的同一交易
+        Assert.assertTrue(cache.verify(new WiringCoinsTx(tx.getEncoded())));
+
+        Assert.assertEquals(1, cache.getVerifiedCounter());
+        Assert.assertEquals(3, cache.getSkippedCounter());
+    }
+
+    @Test
+    public void testBadSignatureNotCached() {
+        SignatureCache cache = new SignatureCache(SignatureCache.DEFAULT_GENERATION_SIZE);
+        Transaction tx = makeTx(1);
+        byte[] encoded = tx.getEncoded();
+
+        WiringCoinsTx forged = new WiringCoinsTx(1, chainID, 1597998963, BigInteger.TEN, sender,
+                BigInteger.ONE, new byte[32], BigInteger.valueOf(1000000), "memo".getBytes(), tx.getSignature());
+
+        Assert.assertFalse(cache.verify(forged));
+        Assert.assertFalse(cache.verify(forged));
+        Assert.assertEquals(2, cache.getVerifiedCounter());
+        Assert.assertEquals(0, cache.size());
+
+        Assert.assertTrue(cache.verify(new WiringCoinsTx(encoded)));
+    }
+
+    @Test
+    public void testBounded() {
+        SignatureCache cache = new SignatureCache(4);
+        Transaction[] txs = new Transaction[12];
+        for (int i = 0; i < txs.length; i++) {
+            txs[i] = makeTx(i);
+            Assert.assertTrue(cache.verify(txs[i]));
+        }
+
+        Assert.assertTrue(cache.size() <= 8);
+
+        // 最近验证的仍在缓存中，最早的已被淘汰
+        long verified = cache.getVerifiedCounter();
+        Assert.assertTrue(cache.verify(txs[11]));
+        Assert.assertEquals(verified, cache.getVerifiedCounter());
+        Assert.assertTrue(cache.verify(txs[0]));
+        Assert.assertEquals(verified + 1, cache.getVerifiedCounter());
+    }
+}
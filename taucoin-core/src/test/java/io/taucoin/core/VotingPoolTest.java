@@ -25,6 +25,66 @@ public class VotingPoolTest {
         Assert.assertEquals(votingPool.getBestVote(), vote);
     }
 
+    @Test
+    public void testDecayAcrossRounds() {
+        long halfLife = 1000;
+        VotingPool votingPool = new VotingPool("chain1".getBytes(), halfLife, 16);
+
+        // 第一轮：vote1得3票
+        for (int i = 0; i < 3; i++) {
+            votingPool.putIntoVotingPool("vote1".getBytes(), 100, 0);
+        }
+        Assert.assertEquals(new Vote("vote1".getBytes(), 100, 3), votingPool.getBestVote(0));
+
+        // 两个半衰期后剩0.75票
+        Assert.assertEquals(1, votingPool.getBestVote(2 * halfLife).getCount());
+
+        // 第二轮：vote2得1票，超过衰减后的vote1
+        votingPool.putIntoVotingPool("vote2".getBytes(), 110, 2 * halfLife);
+        Assert.assertArrayEquals("vote2".getBytes(), votingPool.getBestVote(2 * halfLife).getBlockHash());
+
+        // 长时间没有选票，选票过期
+        Assert.assertNull(votingPool.getBestVote(100 * halfLife));
+
+        // 很久以后的选票正常唱票
+        votingPool.putIntoVotingPool("vote3".getBytes(), 120, 1000 * halfLife);
+        votingPool.putIntoVotingPool("vote3".getBytes(), 120, 1000 * halfLife);
+        Assert.assertEquals(new Vote("vote3".getBytes(), 120, 2), votingPool.getBestVote(1000 * halfLife));
+    }
+
+    @Test
+    public void testBoundedCandidates() {
+        VotingPool votingPool = new VotingPool("chain1".getBytes(), 1000, 4);
+        votingPool.putIntoVotingPool("best".getBytes(), 1, 0);
+        votingPool.putIntoVotingPool("best".getBytes(), 1, 0);
+
+        for (int i = 0; i < 100; i++) {
+            votingPool.putIntoVotingPool(("vote" + i).getBytes(), i, 0);
+        }
+
+        Assert.assertEquals(4, votingPool.size());
+        Assert.assertArrayEquals("best".getBytes(), votingPool.getBestVote(0).getBlockHash());
+    }
+
+    @Test
+    public void testBoundedCandidatesWithTies() {
+        VotingPool votingPool = new VotingPool("chain1".getBytes(), 1000, 4);
+
+        // 票数和高度都相同，最佳选票也是票数最少的候选之一
+        for (int i = 0; i < 100; i++) {
+            votingPool.putIntoVotingPool(("vote" + i).getBytes(), 1, 0);
+        }
+
+        Assert.assertEquals(4, votingPool.size());
+        Assert.assertArrayEquals("vote0".getBytes(), votingPool.getBestVote(0).getBlockHash());
+
+        VotingPool single = new VotingPool("chain1".getBytes(), 1000, 1);
+        single.putIntoVotingPool("vote1".getBytes(), 1, 0);
+        single.putIntoVotingPool("vote2".getBytes(), 2, 0);
+        Assert.assertEquals(1, single.size());
+        Assert.assertArrayEquals("vote2".getBytes(), single.getBestVote(0).getBlockHash());
+    }
+
 //    public VotingPool makeVotingPool() {
 //        VotingPool votingPool = new VotingPool("chain1".gtByte());
 //        for (int i = 4; i > 0; i--) {
@@ -0,0 +1,184 @@
+package io.taucoin.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.taucoin.util.ByteArrayWrapper;
+
+public class WeightedCacheTest {
+
+    private static ByteArrayWrapper key(int i) {
+        byte[] key = new byte[20];
+        key[0] = (byte) (i >>> 24);
+        key[1] = (byte) (i >>> 16);
+        key[2] = (byte) (i >>> 8);
+        key[3] = (byte) i;
+        return new ByteArrayWrapper(key);
+    }
+
+    @Test
+    public void testByteBudget() {
+        WeightedCache cache = new WeightedCache(10 * 1024);
+        WeightedCache.Region<byte[]> region = cache.newRegion(value -> value.length);
+
+        for (int i = 0; i < 100; i++) {
+            region.put(key(i), new byte[1024]);
+            Assert.assertTrue(cache.getWeight() <= cache.getBudget());
+        }
+        Assert.assertEquals(10, region.size());
+
+        // 大小不同的数据按字节计量
+        region.put(key(1000), new byte[5 * 1024]);
+        Assert.assertTrue(cache.getWeight() <= cache.getBudget());
+        Assert.assertTrue(region.size() <= 6);
+
+        // 超过预算的数据不缓存
+        region.put(key(2000), new byte[20 * 1024]);
+        Assert.assertFalse(region.containsKey(key(2000)));
+    }
+
+    @Test
+    public void testSharedBudgetAndClear() {
+        WeightedCache cache = new WeightedCache(10 * 1024);
+        WeightedCache.Region<byte[]> first = cache.newRegion(value -> value.length);
+        WeightedCache.Region<byte[]> second = cache.newRegion(value -> value.length);
+
+        for (int i = 0; i < 8; i++) {
+            first.put(key(i), new byte[1024]);
+            second.put(key(i), new byte[1024]);
+        }
+        Assert.assertTrue(cache.getWeight() <= cache.getBudget());
+        Assert.assertEquals(cache.getWeight(), first.getWeight() + second.getWeight());
+
+        // 相同key在不同分区互不影响
+        first.remove(key(7));
+        Assert.assertNull(first.get(key(7)));
+
+        first.clear();
+        Assert.assertTrue(first.isEmpty());
+        Assert.assertEquals(cache.getWeight(), second.getWeight());
+    }
+
+    @Test
+    public void testScanResistance() {
+        WeightedCache cache = new WeightedCache(100 * 100);
+        WeightedCache.Region<byte[]> region = cache.newRegion(value -> value.length);
+
+        // 经常访问的热数据
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                if (null == region.get(key(i))) {
+                    region.put(key(i), new byte[100]);
+                }
+            }
+        }
+
+        // 一次性扫描大量数据
+        for (int i = 1000; i < 3000; i++) {
+            region.put(key(i), new byte[100]);
+        }
+
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (region.containsKey(key(i))) {
+                hot++;
+            }
+        }
+        Assert.assertTrue(hot >= 45);
+        Assert.assertTrue(cache.getHitRate() > 0.7);
+        Assert.assertTrue(region.getHitRate() > 0.7);
+    }
+
+    @Test
+    public void testStagingRegionAlwaysAdmits() {
+        WeightedCache cache = new WeightedCache(10 * 1024);
+        WeightedCache.Region<byte[]> hot = cache.newRegion(value -> value.length);
+        WeightedCache.Region<byte[]> staging = cache.newStagingRegion(value -> value.length, 4);
+
+        // 热数据占满共享预算
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++) {
+                hot.put(key(i), new byte[1024]);
+                hot.get(key(i));
+            }
+        }
+        int hotSize = hot.size();
+
+        // 只访问一次的同步数据也被接纳，不挤掉热数据
+        for (int i = 0; i < 4; i++) {
+            staging.put(key(100 + i), new byte[1024]);
+        }
+        for (int i = 0; i < 4; i++) {
+            Assert.assertNotNull(staging.get(key(100 + i)));
+        }
+        Assert.assertEquals(hotSize, hot.size());
+        Assert.assertEquals(4 * 1024, cache.getStagingWeight());
+        Assert.assertTrue(cache.getWeight() <= cache.getBudget());
+
+        // 超出容量淘汰本分区最久未用的数据
+        staging.get(key(100));
+        staging.put(key(200), new byte[1024]);
+        Assert.assertEquals(4, staging.size());
+        Assert.assertTrue(staging.containsKey(key(100)));
+        Assert.assertFalse(staging.containsKey(key(101)));
+        Assert.assertEquals(4 * 1024, cache.getStagingWeight());
+
+        staging.clear();
+        Assert.assertEquals(0, cache.getStagingWeight());
+        Assert.assertEquals(hotSize, hot.size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        WeightedCache cache = new WeightedCache(64 * 1024);
+        List<WeightedCache.Region<byte[]>> regions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            regions.add(cache.newRegion(value -> value.length));
+        }
+
+        int threadNumber = 8;
+        int operations = 20000;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadNumber; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < operations; i++) {
+                        WeightedCache.Region<byte[]> region = regions.get(random.nextInt(regions.size()));
+                        ByteArrayWrapper key = key(random.nextInt(512));
+                        if (null == region.get(key)) {
+                            region.put(key, new byte[64 + random.nextInt(512)]);
+                        } else if (random.nextInt(16) == 0) {
+                            region.remove(key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }));
+        }
+        for (Thread thread: threads) {
+            thread.start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+
+        Assert.assertNull(error.get());
+        Assert.assertEquals((long) threadNumber * operations, cache.getHitCounter() + cache.getMissCounter());
+        Assert.assertTrue(cache.getWeight() <= cache.getBudget());
+
+        // 并发修改之后各分区的字节数仍与共享预算一致
+        long weight = 0;
+        for (WeightedCache.Region<byte[]> region: regions) {
+            weight += region.getWeight();
+        }
+        Assert.assertEquals(cache.getWeight(), weight);
+    }
+}
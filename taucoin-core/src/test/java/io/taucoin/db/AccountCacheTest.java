@@ -0,0 +1,246 @@
+package io.taucoin.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import io.taucoin.core.AccountState;
+import io.taucoin.util.ByteArrayWrapper;
+
+public class AccountCacheTest {
+    private static final Logger logger = LoggerFactory.getLogger("test");
+
+    private static final byte[] chainID = "test#300#1".getBytes();
+
+    private static final int ACCOUNT_NUMBER = 50;
+
+    private static final int BLOCK_NUMBER = 500;
+
+    /**
+     * 取出读取次数并清零计数
+     */
+    private static long takeReads(CountingDatabase db) {
+        long reads = db.getReads();
+        db.resetCounters();
+        return reads;
+    }
+
+    private static byte[][] makeAccounts(StateDB stateDB) throws DBException {
+        Random random = new Random(1);
+        byte[][] pubKeys = new byte[ACCOUNT_NUMBER][32];
+        for (byte[] pubKey: pubKeys) {
+            random.nextBytes(pubKey);
+            stateDB.updateAccount(chainID, pubKey, new AccountState(BigInteger.valueOf(1000000), BigInteger.ZERO));
+        }
+        return pubKeys;
+    }
+
+    /**
+     * 模拟区块处理：读取出块者、发送者、接收者，修改后提交
+     */
+    private static void importBlocks(StateDB stateDB, byte[][] pubKeys) throws DBException {
+        Random random = new Random(2);
+        for (int i = 0; i < BLOCK_NUMBER; i++) {
+            byte[] miner = pubKeys[random.nextInt(pubKeys.length)];
+            byte[] sender = pubKeys[random.nextInt(pubKeys.length)];
+            byte[] receiver = pubKeys[random.nextInt(pubKeys.length)];
+
+            StateDB track = stateDB.startTracking(chainID);
+
+            AccountState senderState = track.getAccount(chainID, sender);
+            senderState.subBalance(BigInteger.valueOf(11));
+            senderState.increaseNonce();
+            track.updateAccount(chainID, sender, senderState);
+
+            AccountState minerState = track.getAccount(chainID, miner);
+            minerState.addBalance(BigInteger.ONE);
+            track.updateAccount(chainID, miner, minerState);
+
+            AccountState receiverState = track.getAccount(chainID, receiver);
+            receiverState.addBalance(BigInteger.TEN);
+            track.updateAccount(chainID, receiver, receiverState);
+
+            track.setBestBlockHash(chainID, new byte[20]);
+            track.commit();
+        }
+    }
+
+    /**
+     * 模拟交易入池：读取发送者的nonce和余额
+     */
+    private static void poolTxs(StateDB stateDB, byte[][] pubKeys) throws DBException {
+        Random random = new Random(3);
+        for (int i = 0; i < BLOCK_NUMBER; i++) {
+            byte[] sender = pubKeys[random.nextInt(pubKeys.length)];
+            stateDB.getNonce(chainID, sender);
+            stateDB.getAccount(chainID, sender);
+        }
+    }
+
+    private static BigInteger totalBalance(StateDB stateDB, byte[][] pubKeys) throws DBException {
+        BigInteger total = BigInteger.ZERO;
+        for (byte[] pubKey: pubKeys) {
+            total = total.add(stateDB.getAccount(chainID, pubKey).getBalance());
+        }
+        return total;
+    }
+
+    @Test
+    public void testReadsPerBlockAndTx() throws DBException {
+        CountingDatabase uncachedDB = new CountingDatabase(new MemoryDatabase());
+        StateDBImpl uncached = new StateDBImpl(uncachedDB, new AccountCache(0));
+        byte[][] pubKeys = makeAccounts(uncached);
+
+        CountingDatabase cachedDB = new CountingDatabase(new MemoryDatabase());
+        StateDBImpl cached = new StateDBImpl(cachedDB, new AccountCache());
+        makeAccounts(cached);
+
+        importBlocks(uncached, pubKeys);
+        importBlocks(cached, pubKeys);
+        long uncachedBlockReads = takeReads(uncachedDB);
+        long cachedBlockReads = takeReads(cachedDB);
+
+        poolTxs(uncached, pubKeys);
+        poolTxs(cached, pubKeys);
+        long uncachedTxReads = takeReads(uncachedDB);
+        long cachedTxReads = takeReads(cachedDB);
+
+        logger.info("DB reads per block: {} -> {}, per pooled tx: {} -> {}, hit rate: {}",
+                (double) uncachedBlockReads / BLOCK_NUMBER, (double) cachedBlockReads / BLOCK_NUMBER,
+                (double) uncachedTxReads / BLOCK_NUMBER, (double) cachedTxReads / BLOCK_NUMBER,
+                cached.getAccountCache().getHitRate());
+
+        // 同一区块里重复的账户由track缓存
+        Assert.assertTrue(uncachedBlockReads > 2 * BLOCK_NUMBER);
+        Assert.assertEquals(2 * BLOCK_NUMBER, uncachedTxReads);
+        // 所有账户写入时已缓存
+        Assert.assertEquals(0, cachedBlockReads);
+        Assert.assertEquals(0, cachedTxReads);
+
+        // 缓存与数据库结果一致
+        Assert.assertEquals(totalBalance(uncached, pubKeys), totalBalance(cached, pubKeys));
+        StateDBImpl reopened = new StateDBImpl(cachedDB);
+        Assert.assertEquals(totalBalance(cached, pubKeys), totalBalance(reopened, pubKeys));
+    }
+
+    @Test
+    public void testPrefetchRange() throws DBException {
+        CountingDatabase db = new CountingDatabase(new MemoryDatabase());
+        byte[][] pubKeys = makeAccounts(new StateDBImpl(db));
+
+        // 重新打开，缓存为空
+        StateDBImpl stateDB = new StateDBImpl(db);
+        db.resetCounters();
+
+        Set<ByteArrayWrapper> range = new HashSet<>();
+        for (byte[] pubKey: pubKeys) {
+            range.add(new ByteArrayWrapper(pubKey));
+        }
+        // 不存在的账户也一并缓存
+        range.add(new ByteArrayWrapper(new byte[32]));
+
+        StateDB track = stateDB.startTracking(chainID);
+        track.prefetchAccounts(chainID, range);
+        Assert.assertEquals(1, db.getMultiGets());
+
+        Assert.assertNull(track.getAccount(chainID, new byte[32]));
+        track.rollback();
+
+        importBlocks(stateDB, pubKeys);
+        Assert.assertEquals(0, db.getReads());
+
+        // 已缓存的账户不再预读
+        stateDB.prefetchAccounts(chainID, range);
+        Assert.assertEquals(1, db.getMultiGets());
+        Assert.assertEquals(BigInteger.valueOf(1000000L * ACCOUNT_NUMBER), totalBalance(stateDB, pubKeys));
+    }
+
+    @Test
+    public void testReturnedStateIsCopy() throws DBException {
+        StateDBImpl stateDB = new StateDBImpl(new CountingDatabase(new MemoryDatabase()));
+        byte[] pubKey = new byte[32];
+        stateDB.updateAccount(chainID, pubKey, new AccountState(BigInteger.TEN, BigInteger.ONE));
+
+        // 修改取到的账户后回滚，不影响缓存
+        StateDB track = stateDB.startTracking(chainID);
+        AccountState state = track.getAccount(chainID, pubKey);
+        state.addBalance(BigInteger.TEN);
+        track.updateAccount(chainID, pubKey, state);
+        track.rollback();
+
+        Assert.assertEquals(BigInteger.TEN, stateDB.getAccount(chainID, pubKey).getBalance());
+        Assert.assertEquals(BigInteger.ONE, stateDB.getNonce(chainID, pubKey));
+    }
+
+    @Test
+    public void testAbsentAccount() throws DBException {
+        CountingDatabase db = new CountingDatabase(new MemoryDatabase());
+        StateDBImpl stateDB = new StateDBImpl(db);
+        byte[] pubKey = new byte[32];
+
+        Assert.assertNull(stateDB.getAccount(chainID, pubKey));
+        Assert.assertEquals(BigInteger.ZERO, stateDB.getNonce(chainID, pubKey));
+        Assert.assertEquals(1, db.getReads());
+
+        stateDB.updateAccount(chainID, pubKey, new AccountState(BigInteger.TEN, BigInteger.ONE));
+        Assert.assertEquals(BigInteger.TEN, stateDB.getAccount(chainID, pubKey).getBalance());
+        Assert.assertEquals(1, db.getReads());
+    }
+
+    @Test
+    public void testClearAllState() throws DBException {
+        StateDBImpl stateDB = new StateDBImpl(new CountingDatabase(new MemoryDatabase()));
+        byte[] pubKey = new byte[32];
+        stateDB.updateAccount(chainID, pubKey, new AccountState(BigInteger.TEN, BigInteger.ONE));
+        Assert.assertEquals(1, stateDB.getAccountCache().size(chainID));
+
+        stateDB.clearAllState(chainID);
+        Assert.assertEquals(0, stateDB.getAccountCache().size(chainID));
+        Assert.assertNull(stateDB.getAccount(chainID, pubKey));
+    }
+
+    @Test
+    public void testReadDuringClearAllState() throws Exception {
+        MemoryDatabase db = new MemoryDatabase();
+        StateDBImpl stateDB = new StateDBImpl(db);
+        byte[] pubKey = new byte[32];
+        stateDB.updateAccount(chainID, pubKey, new AccountState(BigInteger.TEN, BigInteger.ONE));
+
+        // 删除进行中开始的读取等待删除完成，不会把删除前的账户放回缓存
+        AtomicReference<AccountState> read = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                read.set(stateDB.getAccount(chainID, pubKey));
+            } catch (DBException e) {
+                logger.error(e.getMessage(), e);
+            }
+        });
+        stateDB.getAccountCache().invalidate(chainID, () -> {
+            reader.start();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            db.removeWithKeyPrefix(PrefixKey.accountPrefix(chainID));
+        });
+        reader.join();
+
+        Assert.assertNull(read.get());
+        Assert.assertNull(stateDB.getAccount(chainID, pubKey));
+    }
+
+    @Test
+    public void testCapacity() throws DBException {
+        StateDBImpl stateDB = new StateDBImpl(new CountingDatabase(new MemoryDatabase()), new AccountCache(10));
+        byte[][] pubKeys = makeAccounts(stateDB);
+
+        Assert.assertEquals(10, stateDB.getAccountCache().size(chainID));
+        Assert.assertEquals(BigInteger.valueOf(1000000L * ACCOUNT_NUMBER), totalBalance(stateDB, pubKeys));
+    }
+}
@@ -0,0 +1,201 @@
+package io.taucoin.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.VerticalItem;
+
+public class BlockIndexTest {
+    private static final byte[] chainID = "test#300#1".getBytes();
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static BlockContainer makeBlockContainer(Random random, long number, byte[] previousHash) {
+        VerticalItem verticalItem = VerticalItem.with(previousHash);
+        Block block = new Block(1, number, number, verticalItem.getHash(), null,
+                new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.valueOf(number + 1),
+                new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO,
+                BigInteger.ZERO, new byte[ChainParam.SignatureLength], bytes(random, ChainParam.PubkeyLength));
+        return new BlockContainer(block, verticalItem);
+    }
+
+    private static List<BlockContainer> makeChain(Random random, long from, int count, byte[] previousHash) {
+        List<BlockContainer> list = new ArrayList<>();
+        for (long i = from; i < from + count; i++) {
+            BlockContainer blockContainer = makeBlockContainer(random, i, previousHash);
+            list.add(blockContainer);
+            previousHash = blockContainer.getBlock().getBlockHash();
+        }
+        return list;
+    }
+
+    private static byte[] hashOf(BlockContainer blockContainer) {
+        return blockContainer.getBlock().getBlockHash();
+    }
+
+    @Test
+    public void testReBranch() throws DBException {
+        Random random = new Random(1);
+        BlockDB blockDB = new BlockDB(new MemoryDatabase());
+
+        List<BlockContainer> mainChain = makeChain(random, 0, 5, bytes(random, ChainParam.HashLength));
+        for (BlockContainer blockContainer: mainChain) {
+            blockDB.saveBlockContainer(chainID, blockContainer, true);
+        }
+        List<BlockContainer> forkChain = makeChain(random, 3, 3, hashOf(mainChain.get(2)));
+        for (BlockContainer blockContainer: forkChain) {
+            blockDB.saveBlockContainer(chainID, blockContainer, false);
+        }
+
+        Assert.assertFalse(blockDB.isMainChainBlock(chainID, hashOf(forkChain.get(0))));
+        Assert.assertTrue(blockDB.isBlockOnChain(chainID, hashOf(forkChain.get(0))));
+        Assert.assertArrayEquals(hashOf(mainChain.get(3)), blockDB.getMainChainBlockHashByNumber(chainID, 3));
+        Assert.assertNull(blockDB.getMainChainBlockHashByNumber(chainID, 5));
+
+        // 切换到更长的分叉链
+        List<BlockContainer> undo = new ArrayList<>();
+        List<BlockContainer> connect = new ArrayList<>();
+        Assert.assertTrue(blockDB.getForkBlockContainersInfo(chainID, forkChain.get(2), mainChain.get(4), undo, connect));
+        Assert.assertEquals(2, undo.size());
+        Assert.assertEquals(3, connect.size());
+        blockDB.reBranchBlocksWithContainers(chainID, undo, connect);
+
+        for (int i = 3; i <= 5; i++) {
+            byte[] hash = hashOf(forkChain.get(i - 3));
+            Assert.assertArrayEquals(hash, blockDB.getMainChainBlockHashByNumber(chainID, i));
+            Assert.assertTrue(blockDB.isMainChainBlock(chainID, hash));
+            Assert.assertTrue(blockDB.getBlockInfoByHash(chainID, hash).isMainChain());
+        }
+        Assert.assertFalse(blockDB.isMainChainBlock(chainID, hashOf(mainChain.get(3))));
+        Assert.assertTrue(blockDB.isBlockOnChain(chainID, hashOf(mainChain.get(3))));
+        Assert.assertArrayEquals(hashOf(mainChain.get(2)), blockDB.getMainChainBlockHashByNumber(chainID, 2));
+
+        // 切换回较短的链，高度5不再有主链区块
+        blockDB.reBranchBlocksWithContainers(chainID, connect, undo);
+        Assert.assertArrayEquals(hashOf(mainChain.get(4)), blockDB.getMainChainBlockHashByNumber(chainID, 4));
+        Assert.assertNull(blockDB.getMainChainBlockHashByNumber(chainID, 5));
+        Assert.assertNull(blockDB.getMainChainBlockByNumber(chainID, 5));
+        Assert.assertFalse(blockDB.isMainChainBlock(chainID, hashOf(forkChain.get(2))));
+
+        // 清除区块信息
+        blockDB.removeChainBlockInfo(chainID);
+        Assert.assertNull(blockDB.getMainChainBlockHashByNumber(chainID, 0));
+        Assert.assertFalse(blockDB.isBlockOnChain(chainID, hashOf(mainChain.get(0))));
+        Assert.assertNotNull(blockDB.getBlockByHash(chainID, hashOf(mainChain.get(0))));
+    }
+
+    @Test
+    public void testDeleteForkBlocks() throws DBException {
+        Random random = new Random(2);
+        BlockDB blockDB = new BlockDB(new MemoryDatabase());
+
+        List<BlockContainer> mainChain = makeChain(random, 0, ChainParam.WARNING_RANGE + 2,
+                bytes(random, ChainParam.HashLength));
+        BlockContainer fork = makeBlockContainer(random, 1, bytes(random, ChainParam.HashLength));
+
+        blockDB.saveBlockContainer(chainID, mainChain.get(0), true);
+        blockDB.saveBlockContainer(chainID, mainChain.get(1), true);
+        blockDB.saveBlockContainer(chainID, fork, false);
+        for (BlockContainer blockContainer: mainChain.subList(2, ChainParam.WARNING_RANGE + 1)) {
+            blockDB.saveBlockContainer(chainID, blockContainer, true);
+        }
+        Assert.assertTrue(blockDB.isBlockOnChain(chainID, hashOf(fork)));
+
+        // 保存高度WARNING_RANGE + 1的主链区块，删除高度1的分叉区块
+        blockDB.saveBlockContainer(chainID, mainChain.get(ChainParam.WARNING_RANGE + 1), true);
+        Assert.assertFalse(blockDB.isBlockOnChain(chainID, hashOf(fork)));
+        Assert.assertNull(blockDB.getBlockByHash(chainID, hashOf(fork)));
+        Assert.assertNull(blockDB.getVerticalItemByHash(chainID, fork.getVerticalItem().getHash()));
+        Assert.assertTrue(blockDB.isMainChainBlock(chainID, hashOf(mainChain.get(1))));
+        Assert.assertNotNull(blockDB.getMainChainBlockContainerByNumber(chainID, 1));
+    }
+
+    @Test
+    public void testConvertBlockInfos() throws Exception {
+        Random random = new Random(3);
+        MemoryDatabase db = new MemoryDatabase();
+
+        List<BlockContainer> mainChain = makeChain(random, 0, 3, bytes(random, ChainParam.HashLength));
+        BlockContainer fork = makeBlockContainer(random, 2, hashOf(mainChain.get(1)));
+
+        // 旧版本的数据：每个高度一个BlockInfos
+        for (BlockContainer blockContainer: mainChain) {
+            Block block = blockContainer.getBlock();
+            db.put(PrefixKey.blockKey(chainID, block.getBlockHash()), block.getEncoded());
+            BlockInfos blockInfos = new BlockInfos();
+            blockInfos.putBlock(block, true);
+            if (block.getBlockNum() == fork.getBlock().getBlockNum()) {
+                db.put(PrefixKey.blockKey(chainID, hashOf(fork)), fork.getBlock().getEncoded());
+                blockInfos.putBlock(fork.getBlock(), false);
+            }
+            db.put(PrefixKey.blockInfoKey(chainID, block.getBlockNum()), blockInfos.getEncoded());
+        }
+
+        BlockDB blockDB = new BlockDB(db);
+        for (BlockContainer blockContainer: mainChain) {
+            Assert.assertArrayEquals(hashOf(blockContainer),
+                    blockDB.getMainChainBlockHashByNumber(chainID, blockContainer.getBlock().getBlockNum()));
+            Assert.assertTrue(blockDB.isMainChainBlock(chainID, hashOf(blockContainer)));
+        }
+        Assert.assertFalse(blockDB.isMainChainBlock(chainID, hashOf(fork)));
+        Assert.assertTrue(blockDB.isBlockOnChain(chainID, hashOf(fork)));
+        Assert.assertTrue(db.retrieveKeysWithPrefix(PrefixKey.blockInfoPrefix(chainID)).isEmpty());
+
+        // 转换后的索引在重启后直接使用
+        blockDB = new BlockDB(db);
+        Assert.assertTrue(Arrays.equals(hashOf(mainChain.get(2)), blockDB.getMainChainBlockHashByNumber(chainID, 2)));
+    }
+
+    @Test
+    public void testConvertBlockInfosInBatches() throws Exception {
+        Random random = new Random(4);
+        int[] batches = {0};
+        MemoryDatabase db = new MemoryDatabase() {
+            @Override
+            public void updateBatch(Map<byte[], byte[]> writes, Set<byte[]> delKeys) {
+                batches[0]++;
+                super.updateBatch(writes, delKeys);
+            }
+        };
+
+        int number = BlockDB.MIGRATION_BATCH_SIZE * 2 + 10;
+        List<BlockContainer> mainChain = makeChain(random, 0, number, bytes(random, ChainParam.HashLength));
+        for (BlockContainer blockContainer: mainChain) {
+            Block block = blockContainer.getBlock();
+            db.put(PrefixKey.blockKey(chainID, block.getBlockHash()), block.getEncoded());
+            BlockInfos blockInfos = new BlockInfos();
+            blockInfos.putBlock(block, true);
+            db.put(PrefixKey.blockInfoKey(chainID, block.getBlockNum()), blockInfos.getEncoded());
+        }
+
+        // 启动时转换，每批单独提交
+        BlockDB blockDB = new BlockDB(db);
+        blockDB.migrateBlockInfos(chainID);
+        Assert.assertEquals(3, batches[0]);
+        Assert.assertTrue(db.retrieveKeysWithPrefix(PrefixKey.blockInfoPrefix(chainID)).isEmpty());
+
+        for (BlockContainer blockContainer: mainChain) {
+            Assert.assertArrayEquals(hashOf(blockContainer),
+                    blockDB.getMainChainBlockHashByNumber(chainID, blockContainer.getBlock().getBlockNum()));
+        }
+
+        // 已转换的链不再转换
+        blockDB.migrateBlockInfos(chainID);
+        Assert.assertEquals(3, batches[0]);
+    }
+}
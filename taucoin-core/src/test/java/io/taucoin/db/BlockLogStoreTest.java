@@ -0,0 +1,222 @@
+package io.taucoin.db;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.VerticalItem;
+
+public class BlockLogStoreTest {
+    private static final byte[] chainID = "test#300#1".getBytes();
+
+    private static final int ARCHIVED_NUMBER = 100;
+
+    private static final int BLOCK_NUMBER = ChainParam.WARNING_RANGE + ARCHIVED_NUMBER;
+
+    private static final int READ_NUMBER = 2000;
+
+    // 小段，让日志跨多个段
+    private static final int SEGMENT_SIZE = 64 << 10;
+
+    private File dir;
+
+    private String path;
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static List<BlockContainer> makeBlockContainers(int count) {
+        Random random = new Random(1);
+        List<BlockContainer> list = new ArrayList<>();
+        byte[] previousHash = bytes(random, ChainParam.HashLength);
+        for (int i = 0; i < count; i++) {
+            VerticalItem verticalItem = VerticalItem.with(previousHash);
+            Block block = new Block(1, i, i, verticalItem.getHash(), null,
+                    new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.valueOf(i + 1),
+                    new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO,
+                    BigInteger.ZERO, new byte[ChainParam.SignatureLength], bytes(random, ChainParam.PubkeyLength));
+            list.add(new BlockContainer(block, verticalItem));
+            previousHash = block.getBlockHash();
+        }
+        return list;
+    }
+
+    private static void assertMainChain(BlockStore store, List<BlockContainer> blockContainers) throws DBException {
+        for (BlockContainer blockContainer: blockContainers) {
+            Block block = blockContainer.getBlock();
+            Assert.assertArrayEquals(block.getBlockHash(),
+                    store.getMainChainBlockByNumber(chainID, block.getBlockNum()).getBlockHash());
+            Assert.assertArrayEquals(block.getBlockHash(),
+                    store.getMainChainBlockHashByNumber(chainID, block.getBlockNum()));
+            Assert.assertTrue(store.isMainChainBlock(chainID, block.getBlockHash()));
+            Assert.assertArrayEquals(blockContainer.getVerticalItem().getHash(),
+                    store.getVerticalItemByHash(chainID, blockContainer.getVerticalItem().getHash()).getHash());
+            Assert.assertArrayEquals(blockContainer.getVerticalItem().getHash(),
+                    store.getBlockContainerByHash(chainID, block.getBlockHash()).getVerticalItem().getHash());
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("blocklog").toFile();
+        this.path = new File(this.dir, "block").getPath();
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (null != files) {
+            for (File f: files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        delete(this.dir);
+    }
+
+    @Test
+    public void testArchiveAndReopen() throws DBException {
+        MemoryDatabase db = new MemoryDatabase();
+        BlockDB kv = new BlockDB(db);
+        List<BlockContainer> blockContainers = makeBlockContainers(BLOCK_NUMBER + 1);
+
+        BlockLogStore store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        for (BlockContainer blockContainer: blockContainers.subList(0, BLOCK_NUMBER)) {
+            store.saveBlockContainer(chainID, blockContainer, true);
+        }
+
+        // 超出WARNING_RANGE的主链区块已移出KV数据库
+        for (int i = 0; i < BLOCK_NUMBER; i++) {
+            Block block = blockContainers.get(i).getBlock();
+            if (i < ARCHIVED_NUMBER) {
+                Assert.assertNull(kv.getBlockByHash(chainID, block.getBlockHash()));
+                Assert.assertNull(kv.getMainChainBlockHashByNumber(chainID, i));
+            } else {
+                Assert.assertNotNull(kv.getBlockByHash(chainID, block.getBlockHash()));
+            }
+        }
+        assertMainChain(store, blockContainers.subList(0, BLOCK_NUMBER));
+        Assert.assertEquals(BLOCK_NUMBER, store.getChainAllBlocks(chainID).size());
+        store.close();
+
+        // 重启后重建索引
+        store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        assertMainChain(store, blockContainers.subList(0, BLOCK_NUMBER));
+
+        store.saveBlockContainer(chainID, blockContainers.get(BLOCK_NUMBER), true);
+        Assert.assertNull(kv.getBlockByHash(chainID, blockContainers.get(ARCHIVED_NUMBER).getBlock().getBlockHash()));
+        assertMainChain(store, blockContainers);
+        store.close();
+    }
+
+    @Test
+    public void testSyncOldBlocks() throws DBException {
+        MemoryDatabase db = new MemoryDatabase();
+        BlockDB kv = new BlockDB(db);
+        List<BlockContainer> blockContainers = makeBlockContainers(BLOCK_NUMBER);
+
+        BlockLogStore store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        // 同步从最高区块往回进行
+        for (int i = BLOCK_NUMBER - 1; i >= 0; i--) {
+            store.saveBlockContainer(chainID, blockContainers.get(i), true);
+        }
+
+        byte[] hash = blockContainers.get(0).getBlock().getBlockHash();
+        Assert.assertNull(kv.getBlockByHash(chainID, hash));
+        assertMainChain(store, blockContainers);
+
+        // 清除区块信息后，日志中的区块不再在链上，但仍然可以读取
+        store.removeChainBlockInfo(chainID);
+        Assert.assertFalse(store.isMainChainBlock(chainID, hash));
+        Assert.assertFalse(store.isBlockOnChain(chainID, hash));
+        Assert.assertNull(store.getMainChainBlockByNumber(chainID, 0));
+        Assert.assertNotNull(store.getBlockByHash(chainID, hash));
+
+        store.removeChainInfo(chainID);
+        Assert.assertNull(store.getBlockByHash(chainID, hash));
+        store.close();
+    }
+
+    @Test
+    public void testResetSurvivesReopen() throws DBException {
+        MemoryDatabase db = new MemoryDatabase();
+        List<BlockContainer> blockContainers = makeBlockContainers(BLOCK_NUMBER + 1);
+
+        BlockLogStore store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        for (BlockContainer blockContainer: blockContainers.subList(0, BLOCK_NUMBER)) {
+            store.saveBlockContainer(chainID, blockContainer, true);
+        }
+        store.removeChainBlockInfo(chainID);
+        store.close();
+
+        // 重启后日志中清除前的区块不再是主链区块
+        store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        byte[] hash = blockContainers.get(0).getBlock().getBlockHash();
+        Assert.assertNull(store.getMainChainBlockByNumber(chainID, 0));
+        Assert.assertFalse(store.isMainChainBlock(chainID, hash));
+        Assert.assertNotNull(store.getBlockByHash(chainID, hash));
+
+        // 重新同步后，清除之后追加的区块在重启后仍是主链区块
+        List<BlockContainer> resynced = makeBlockContainers(BLOCK_NUMBER + 1);
+        for (BlockContainer blockContainer: resynced) {
+            store.saveBlockContainer(chainID, blockContainer, true);
+        }
+        store.close();
+
+        store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        assertMainChain(store, resynced);
+        store.close();
+    }
+
+    @Test
+    public void testArchivedReadsSkipKeyValueDatabase() throws DBException {
+        List<BlockContainer> blockContainers = makeBlockContainers(BLOCK_NUMBER);
+
+        CountingDatabase db = new CountingDatabase(new MemoryDatabase());
+        BlockLogStore store = new BlockLogStore(db, SEGMENT_SIZE);
+        store.open(this.path);
+        for (BlockContainer blockContainer: blockContainers) {
+            store.saveBlockContainer(chainID, blockContainer, true);
+        }
+
+        // 不可变范围的主链区块只从区块日志读取，不访问KV数据库
+        db.resetCounters();
+        Random random = new Random(3);
+        for (int i = 0; i < READ_NUMBER; i++) {
+            BlockContainer blockContainer = blockContainers.get(random.nextInt(ARCHIVED_NUMBER));
+            Block block = blockContainer.getBlock();
+            Assert.assertArrayEquals(block.getBlockHash(),
+                    store.getMainChainBlockByNumber(chainID, block.getBlockNum()).getBlockHash());
+            Assert.assertArrayEquals(block.getBlockHash(),
+                    store.getBlockByHash(chainID, block.getBlockHash()).getBlockHash());
+        }
+        Assert.assertEquals(0, db.getReads());
+        Assert.assertEquals(0, db.getMultiGets());
+
+        store.close();
+    }
+}
@@ -0,0 +1,212 @@
+package io.taucoin.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import io.taucoin.param.ChainParam;
+import io.taucoin.types.Block;
+import io.taucoin.types.BlockContainer;
+import io.taucoin.types.HorizontalItem;
+import io.taucoin.types.VerticalItem;
+import io.taucoin.util.ByteArrayWrapper;
+import io.taucoin.util.ByteUtil;
+
+public class BlockPrunerTest {
+    private static final Logger logger = LoggerFactory.getLogger("test");
+
+    private static final byte[] chainID = "test#300#1".getBytes();
+
+    private static final int BLOCK_NUMBER = ChainParam.WARNING_RANGE + 200;
+
+    // 每个高度的分叉区块数
+    private static final int FORKS_PER_HEIGHT = 2;
+
+    // 有分叉区块的高度范围
+    private static final int FORK_FROM = 10;
+    private static final int FORK_TO = BLOCK_NUMBER - 100;
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static BlockContainer makeBlockContainer(Random random, long number, byte[] previousHash) {
+        VerticalItem verticalItem = VerticalItem.with(previousHash);
+        HorizontalItem horizontalItem = HorizontalItem.with(bytes(random, ChainParam.HashLength));
+        Block block = new Block(1, number, number, verticalItem.getHash(), horizontalItem.getHash(),
+                new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.valueOf(number + 1),
+                new byte[ChainParam.HashLength], BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO,
+                BigInteger.ZERO, new byte[ChainParam.SignatureLength], bytes(random, ChainParam.PubkeyLength));
+        return new BlockContainer(block, verticalItem, horizontalItem, null);
+    }
+
+    @Test
+    public void testPruneForksAndHistory() throws Exception {
+        Random random = new Random(1);
+        BlockDB blockDB = new BlockDB(new MemoryDatabase());
+
+        // 先同步分叉区块，再同步主链，模拟没有在WARNING_RANGE处删除过的旧分叉
+        List<BlockContainer> mainChain = new ArrayList<>();
+        byte[] previousHash = bytes(random, ChainParam.HashLength);
+        for (int i = 0; i < BLOCK_NUMBER; i++) {
+            BlockContainer blockContainer = makeBlockContainer(random, i, previousHash);
+            mainChain.add(blockContainer);
+            previousHash = blockContainer.getBlock().getBlockHash();
+        }
+
+        List<BlockContainer> forks = new ArrayList<>();
+        for (int i = FORK_FROM; i < FORK_TO; i++) {
+            for (int j = 0; j < FORKS_PER_HEIGHT; j++) {
+                // 与主链区块同一个父区块，共用vertical item
+                BlockContainer fork = makeBlockContainer(random, i, mainChain.get(i - 1).getBlock().getBlockHash());
+                blockDB.saveBlockContainer(chainID, fork, false);
+                forks.add(fork);
+            }
+        }
+        for (int i = BLOCK_NUMBER - 1; i >= 0; i--) {
+            blockDB.saveBlockContainer(chainID, mainChain.get(i), true);
+        }
+
+        // 保存主链时已删除了WARNING_RANGE之外的一部分分叉区块
+        long tipNumber = BLOCK_NUMBER - 1;
+        long immutableNumber = tipNumber - ChainParam.MUTABLE_RANGE;
+        int expectedForks = 0;
+        for (BlockContainer fork: forks) {
+            if (fork.getBlock().getBlockNum() < immutableNumber
+                    && blockDB.isBlockOnChain(chainID, fork.getBlock().getBlockHash())) {
+                expectedForks++;
+            }
+        }
+        Assert.assertTrue(expectedForks > 0);
+
+        BlockPruner pruner = new BlockPruner(blockDB,
+                () -> Collections.singletonMap(new ByteArrayWrapper(chainID), tipNumber));
+        pruner.setRate(Integer.MAX_VALUE);
+        pruner.setHistoryDepth(ChainParam.WARNING_RANGE);
+
+        int passes = 0;
+        while (pruner.pruneOnce()) {
+            passes++;
+        }
+
+        for (BlockContainer fork: forks) {
+            long number = fork.getBlock().getBlockNum();
+            byte[] hash = fork.getBlock().getBlockHash();
+            if (number < immutableNumber) {
+                Assert.assertNull(blockDB.getBlockByHash(chainID, hash));
+                Assert.assertFalse(blockDB.isBlockOnChain(chainID, hash));
+                Assert.assertNull(blockDB.getHorizontalItemByHash(chainID, fork.getHorizontalItem().getHash()));
+            } else {
+                Assert.assertTrue(blockDB.isBlockOnChain(chainID, hash));
+            }
+        }
+        Assert.assertEquals(expectedForks, pruner.getPrunedForkBlocks());
+
+        // 保留创世区块和最近WARNING_RANGE的主链区块，共用的vertical item没有被删除
+        long historyNumber = tipNumber - ChainParam.WARNING_RANGE;
+        Assert.assertNotNull(blockDB.getMainChainBlockByNumber(chainID, 0));
+        for (long i = 1; i < historyNumber; i++) {
+            Assert.assertNull(blockDB.getMainChainBlockHashByNumber(chainID, i));
+            Assert.assertNull(blockDB.getBlockByHash(chainID, mainChain.get((int) i).getBlock().getBlockHash()));
+        }
+        for (long i = historyNumber; i <= tipNumber; i++) {
+            BlockContainer blockContainer = mainChain.get((int) i);
+            Assert.assertNotNull(blockDB.getMainChainBlockByNumber(chainID, i));
+            Assert.assertNotNull(blockDB.getVerticalItemByHash(chainID, blockContainer.getVerticalItem().getHash()));
+            Assert.assertNotNull(blockDB.getHorizontalItemByHash(chainID, blockContainer.getHorizontalItem().getHash()));
+        }
+        Assert.assertEquals(historyNumber - 1, pruner.getPrunedHistoryBlocks());
+        Assert.assertTrue(pruner.getReclaimedBytes() > 0);
+
+        // 没有更多可裁剪的
+        Assert.assertFalse(pruner.pruneOnce());
+
+        logger.info("Pruned {} fork blocks and {} history blocks in {} passes, {} bytes reclaimed, {} blocks/s",
+                pruner.getPrunedForkBlocks(), pruner.getPrunedHistoryBlocks(), passes,
+                pruner.getReclaimedBytes(), (long) pruner.getThroughput());
+    }
+
+    @Test
+    public void testPruneCursors() throws Exception {
+        Random random = new Random(3);
+        MemoryDatabase db = new MemoryDatabase();
+        BlockDB blockDB = new BlockDB(db);
+
+        int number = 40;
+        int missing = 10;
+        List<BlockContainer> mainChain = new ArrayList<>();
+        byte[] previousHash = bytes(random, ChainParam.HashLength);
+        for (int i = 0; i < number; i++) {
+            BlockContainer blockContainer = makeBlockContainer(random, i, previousHash);
+            mainChain.add(blockContainer);
+            previousHash = blockContainer.getBlock().getBlockHash();
+            if (i != missing) {
+                blockDB.saveBlockContainer(chainID, blockContainer, true);
+            }
+            blockDB.saveBlockContainer(chainID, makeBlockContainer(random, i, previousHash), false);
+        }
+
+        // 分叉游标按高度推进并持久化，一个高度的分叉不会被拆开
+        PruneResult forks = blockDB.pruneForkBlocks(chainID, 20, 5);
+        Assert.assertEquals(5, forks.getBlocks());
+        Assert.assertEquals(5, ByteUtil.byteArrayToLong(db.get(PrefixKey.forkPrunedNumberKey(chainID))));
+
+        forks = new BlockDB(db).pruneForkBlocks(chainID, 20, 32);
+        Assert.assertEquals(15, forks.getBlocks());
+        Assert.assertEquals(20, ByteUtil.byteArrayToLong(db.get(PrefixKey.forkPrunedNumberKey(chainID))));
+        Assert.assertSame(PruneResult.EMPTY, blockDB.pruneForkBlocks(chainID, 20, 32));
+        Assert.assertNotNull(blockDB.getBlockByHash(chainID, mainChain.get(20).getBlock().getBlockHash()));
+
+        // 主链游标停在第一个缺失的高度
+        PruneResult history = blockDB.pruneMainChainBlocks(chainID, 30, 32);
+        Assert.assertEquals(missing - 1, history.getBlocks());
+        Assert.assertEquals(missing, ByteUtil.byteArrayToLong(db.get(PrefixKey.prunedNumberKey(chainID))));
+        Assert.assertSame(PruneResult.EMPTY, blockDB.pruneMainChainBlocks(chainID, 30, 32));
+
+        // 缺失的高度同步之后继续裁剪
+        blockDB.saveBlockContainer(chainID, mainChain.get(missing), true);
+        history = blockDB.pruneMainChainBlocks(chainID, 30, 32);
+        Assert.assertEquals(30 - missing, history.getBlocks());
+        Assert.assertNull(blockDB.getMainChainBlockHashByNumber(chainID, missing));
+        Assert.assertNotNull(blockDB.getMainChainBlockHashByNumber(chainID, 30));
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        Random random = new Random(2);
+        BlockDB blockDB = new BlockDB(new MemoryDatabase());
+
+        byte[] previousHash = bytes(random, ChainParam.HashLength);
+        long tipNumber = ChainParam.MUTABLE_RANGE + BlockPruner.BATCH_SIZE * 2;
+        for (long i = 0; i <= tipNumber; i++) {
+            BlockContainer blockContainer = makeBlockContainer(random, i, previousHash);
+            blockDB.saveBlockContainer(chainID, blockContainer, true);
+            if (i < BlockPruner.BATCH_SIZE * 2) {
+                blockDB.saveBlockContainer(chainID, makeBlockContainer(random, i, previousHash), false);
+            }
+            previousHash = blockContainer.getBlock().getBlockHash();
+        }
+
+        BlockPruner pruner = new BlockPruner(blockDB,
+                () -> Collections.singletonMap(new ByteArrayWrapper(chainID), tipNumber));
+        int rate = BlockPruner.BATCH_SIZE * 10;
+        pruner.setRate(rate);
+
+        long start = System.currentTimeMillis();
+        while (pruner.pruneOnce()) {
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(BlockPruner.BATCH_SIZE * 2, pruner.getPrunedForkBlocks());
+        Assert.assertTrue(elapsed >= BlockPruner.BATCH_SIZE * 2 * 1000L / rate);
+    }
+}
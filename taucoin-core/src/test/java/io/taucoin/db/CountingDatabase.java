@@ -0,0 +1,135 @@
+package io.taucoin.db;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 统计读写的数据库包装：点查询次数、批量查询次数，以及写入的逻辑字节数(key + value)，
+ * 用于测试缓存效果和基准测试中计算写放大。
+ */
+public class CountingDatabase implements KeyValueDataBase {
+
+    private final KeyValueDataBase db;
+
+    private final AtomicLong reads = new AtomicLong(0);
+
+    private final AtomicLong multiGets = new AtomicLong(0);
+
+    private final AtomicLong logicalBytes = new AtomicLong(0);
+
+    private final AtomicLong prefixDeletes = new AtomicLong(0);
+
+    public CountingDatabase(KeyValueDataBase db) {
+        this.db = db;
+    }
+
+    /**
+     * @return 点查询次数
+     */
+    public long getReads() {
+        return this.reads.get();
+    }
+
+    /**
+     * @return 批量查询次数
+     */
+    public long getMultiGets() {
+        return this.multiGets.get();
+    }
+
+    /**
+     * @return 写入的key和value的总字节数，删除只计key，按前缀删除不计入
+     */
+    public long getLogicalBytes() {
+        return this.logicalBytes.get();
+    }
+
+    /**
+     * @return 按前缀删除的次数，这些删除不计入逻辑字节数
+     */
+    public long getPrefixDeletes() {
+        return this.prefixDeletes.get();
+    }
+
+    /**
+     * 清零所有计数，例如在准备数据之后
+     */
+    public void resetCounters() {
+        this.reads.set(0);
+        this.multiGets.set(0);
+        this.logicalBytes.set(0);
+        this.prefixDeletes.set(0);
+    }
+
+    @Override
+    public void open(String path) throws Exception {
+        this.db.open(path);
+    }
+
+    @Override
+    public void close() {
+        this.db.close();
+    }
+
+    @Override
+    public byte[] get(byte[] key) throws Exception {
+        this.reads.incrementAndGet();
+        return this.db.get(key);
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) throws Exception {
+        this.multiGets.incrementAndGet();
+        return this.db.multiGet(keys);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) throws Exception {
+        this.logicalBytes.addAndGet(key.length + value.length);
+        this.db.put(key, value);
+    }
+
+    @Override
+    public void delete(byte[] key) throws Exception {
+        this.logicalBytes.addAndGet(key.length);
+        this.db.delete(key);
+    }
+
+    @Override
+    public void updateBatch(Map<byte[], byte[]> rows) throws Exception {
+        this.logicalBytes.addAndGet(size(rows));
+        this.db.updateBatch(rows);
+    }
+
+    @Override
+    public void updateBatch(Map<byte[], byte[]> writes, Set<byte[]> delKeys) throws Exception {
+        long bytes = size(writes);
+        for (byte[] key: delKeys) {
+            bytes += key.length;
+        }
+        this.logicalBytes.addAndGet(bytes);
+        this.db.updateBatch(writes, delKeys);
+    }
+
+    @Override
+    public Set<byte[]> retrieveKeysWithPrefix(byte[] prefix) throws Exception {
+        return this.db.retrieveKeysWithPrefix(prefix);
+    }
+
+    @Override
+    public void removeWithKeyPrefix(byte[] prefix) throws Exception {
+        // 按前缀删除时事先不知道删除了多少key，只计次数
+        this.prefixDeletes.incrementAndGet();
+        this.db.removeWithKeyPrefix(prefix);
+    }
+
+    private static long size(Map<byte[], byte[]> rows) {
+        long bytes = 0;
+        for (Map.Entry<byte[], byte[]> entry: rows.entrySet()) {
+            bytes += entry.getKey().length + entry.getValue().length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,109 @@
+package io.taucoin.db;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.LockSupport;
+
+import io.taucoin.util.FastByteComparisons;
+
+/**
+ * 测试用的内存数据库，可以让每次点查询等待固定延迟，模拟磁盘；
+ * 需要统计读写次数时用CountingDatabase包装。
+ */
+public class MemoryDatabase implements KeyValueDataBase {
+
+    private final NavigableMap<byte[], byte[]> rows =
+            new ConcurrentSkipListMap<>((a, b) -> FastByteComparisons.compareTo(a, 0, a.length, b, 0, b.length));
+
+    // 每次点查询的延迟，0表示没有延迟
+    private volatile long readDelayNanos = 0;
+
+    /**
+     * @param readDelayNanos 每次点查询的延迟，0表示没有延迟
+     */
+    public void setReadDelay(long readDelayNanos) {
+        this.readDelayNanos = readDelayNanos;
+    }
+
+    @Override
+    public void open(String path) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        long delay = this.readDelayNanos;
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+        return this.rows.get(key);
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key: keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        this.rows.put(key, value);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        this.rows.remove(key);
+    }
+
+    @Override
+    public void updateBatch(Map<byte[], byte[]> rows) {
+        this.rows.putAll(rows);
+    }
+
+    @Override
+    public void updateBatch(Map<byte[], byte[]> writes, Set<byte[]> delKeys) {
+        this.rows.putAll(writes);
+        for (byte[] key: delKeys) {
+            this.rows.remove(key);
+        }
+    }
+
+    /**
+     * 以prefix开头的所有key：上界为去掉末尾的0xFF之后最后一个字节加一，全是0xFF则没有上界
+     */
+    private NavigableMap<byte[], byte[]> prefixRange(byte[] prefix) {
+        int last = prefix.length - 1;
+        while (last >= 0 && (byte) 0xFF == prefix[last]) {
+            last--;
+        }
+        if (last < 0) {
+            return this.rows.tailMap(prefix, true);
+        }
+
+        byte[] end = new byte[last + 1];
+        System.arraycopy(prefix, 0, end, 0, last + 1);
+        end[last]++;
+        return this.rows.subMap(prefix, true, end, false);
+    }
+
+    @Override
+    public Set<byte[]> retrieveKeysWithPrefix(byte[] prefix) {
+        return new HashSet<>(prefixRange(prefix).keySet());
+    }
+
+    @Override
+    public void removeWithKeyPrefix(byte[] prefix) {
+        prefixRange(prefix).clear();
+    }
+}
@@ -0,0 +1,81 @@
+package io.taucoin.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class HashLongMapTest {
+    private static byte[] key(Random random, int length) {
+        byte[] key = new byte[length];
+        random.nextBytes(key);
+        return key;
+    }
+
+    private static void checkAgainstHashMap(HashLongMap map, int keyLength) {
+        Random random = new Random(keyLength);
+        Map<ByteArrayWrapper, Long> expected = new HashMap<>();
+
+        for (int i = 0; i < 20000; i++) {
+            // 小范围的key，制造大量覆盖和删除
+            byte[] key = key(new Random(random.nextInt(5000)), keyLength);
+            int op = random.nextInt(3);
+            if (op < 2) {
+                long value = random.nextLong();
+                Assert.assertEquals(!expected.containsKey(new ByteArrayWrapper(key)), map.put(key, value));
+                expected.put(new ByteArrayWrapper(key), value);
+            } else {
+                Assert.assertEquals(null != expected.remove(new ByteArrayWrapper(key)), map.remove(key));
+            }
+        }
+
+        Assert.assertEquals(expected.size(), map.size());
+        for (Map.Entry<ByteArrayWrapper, Long> entry: expected.entrySet()) {
+            Assert.assertTrue(map.containsKey(entry.getKey().getData()));
+            Assert.assertEquals((long) entry.getValue(), map.get(entry.getKey().getData(), -1));
+        }
+
+        int[] visited = {0};
+        map.forEach((key, value) -> {
+            Assert.assertEquals(expected.get(new ByteArrayWrapper(key)), Long.valueOf(value));
+            visited[0]++;
+        });
+        Assert.assertEquals(expected.size(), visited[0]);
+    }
+
+    @Test
+    public void testHashKeys() {
+        checkAgainstHashMap(new HashLongMap(20), 20);
+    }
+
+    @Test
+    public void testOffHeapPublicKeys() {
+        HashLongMap map = new HashLongMap(32, 0, true);
+        Assert.assertTrue(map.isOffHeap());
+        checkAgainstHashMap(map, 32);
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertEquals(7, map.get(new byte[32], 7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongKeyLength() {
+        new HashLongMap(20).put(new byte[32], 1);
+    }
+
+    @Test
+    public void testLookupWithWrongKeyLength() {
+        HashLongMap map = new HashLongMap(32);
+        map.put(new byte[32], 1);
+
+        // 网络传来的key长度不对时，查询和删除当作不存在
+        Assert.assertFalse(map.containsKey(new byte[20]));
+        Assert.assertFalse(map.containsKey(null));
+        Assert.assertEquals(-1, map.get(new byte[33], -1));
+        Assert.assertFalse(map.remove(new byte[31]));
+        Assert.assertEquals(1, map.size());
+    }
+}
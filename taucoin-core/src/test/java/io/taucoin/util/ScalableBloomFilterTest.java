@@ -0,0 +1,66 @@
+package io.taucoin.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ScalableBloomFilterTest {
+
+    private static byte[] key(Random random) {
+        byte[] key = new byte[20];
+        random.nextBytes(key);
+        return key;
+    }
+
+    @Test
+    public void testGrowthAndFalsePositiveRate() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        Random random = new Random(1);
+        byte[][] keys = new byte[10000][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(random);
+            filter.add(keys[i]);
+        }
+
+        // 不能漏判
+        for (byte[] key: keys) {
+            Assert.assertTrue(filter.mightContain(key));
+        }
+
+        int falsePositives = 0;
+        int checks = 100000;
+        for (int i = 0; i < checks; i++) {
+            if (filter.mightContain(key(random))) {
+                falsePositives++;
+            }
+        }
+
+        // 总误判率不超过初始误判率的两倍
+        Assert.assertTrue((double) falsePositives / checks < 0.02);
+        Assert.assertTrue(filter.getExpectedFalsePositiveRate() < 0.02);
+        // 误判的元素不计数
+        Assert.assertTrue(filter.size() > 9700);
+    }
+
+    @Test
+    public void testEncode() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        Random random = new Random(2);
+        byte[][] keys = new byte[500][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(random);
+            filter.add(keys[i]);
+        }
+
+        ScalableBloomFilter decoded = ScalableBloomFilter.fromEncoded(filter.getEncoded());
+        Assert.assertNotNull(decoded);
+        Assert.assertEquals(filter.size(), decoded.size());
+        Assert.assertEquals(filter.getMemoryBytes(), decoded.getMemoryBytes());
+        for (byte[] key: keys) {
+            Assert.assertTrue(decoded.mightContain(key));
+        }
+
+        Assert.assertNull(ScalableBloomFilter.fromEncoded(new byte[] {1, 2, 3}));
+    }
+}
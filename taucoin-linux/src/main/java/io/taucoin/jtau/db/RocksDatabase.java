@@ -14,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.util.List;
 import java.util.Map;
 import java.util.HashSet;
 import java.util.Set;
@@ -34,6 +35,9 @@ public class RocksDatabase implements KeyValueDataBase {
     // sync write option
     private final WriteOptions syncWriteOptions;
 
+    // open options, null for rocksdb defaults
+    private final Options options;
+
     static {
         RocksDB.loadLibrary();
     }
@@ -42,7 +46,17 @@ public class RocksDatabase implements KeyValueDataBase {
      * RocksDatabase constructor.
      */
     public RocksDatabase() {
+        this(null);
+    }
+
+    /**
+     * RocksDatabase constructor with open options, the caller keeps ownership of options.
+     *
+     * @param options rocksdb options used to open database, null for defaults
+     */
+    public RocksDatabase(Options options) {
         this.db = null;
+        this.options = options;
         this.notOpenException = new RocksDBException("Rocksdb hasn't been opened.");
 
         this.syncWriteOptions = new WriteOptions();
@@ -58,7 +72,7 @@ public class RocksDatabase implements KeyValueDataBase {
     public void open(String path) throws Exception {
 
         try {
-            this.db = RocksDB.open(path);
+            this.db = null == this.options ? RocksDB.open(path) : RocksDB.open(this.options, path);
         } catch (RocksDBException e) {
             e.printStackTrace();
             throw e;
@@ -90,6 +104,21 @@ public class RocksDatabase implements KeyValueDataBase {
         return db.get(key);
     }
 
+    /**
+     * Retrieves values by keys from the database in one call.
+     *
+     * @param keys
+     * @return values in the same order as keys, null if not found
+     * @throws Exception
+     */
+    public List<byte[]> multiGet(List<byte[]> keys) throws Exception {
+        if (db == null) {
+            throw notOpenException;
+        }
+
+        return db.multiGetAsList(keys);
+    }
+
     /**
      * Store the key and value into the database.
      *
@@ -0,0 +1,79 @@
+package io.taucoin.jtau.rpc;
+
+import com.thetransactioncompany.jsonrpc2.JSONRPC2Request;
+import com.thetransactioncompany.jsonrpc2.JSONRPC2Response;
+import com.thetransactioncompany.jsonrpc2.server.MessageContext;
+
+import io.taucoin.controller.TauController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static io.taucoin.dht2.DHT.*;
+
+/**
+ * Method handler which waits on the dht without blocking a thread.
+ *
+ * The response is built when the dht item arrives, so RpcMethodExecutor
+ * can keep many lookups in flight with a few worker threads.
+ * If the dht doesn't answer in time, the item is regarded as not found.
+ */
+public abstract class AsyncJsonRpcServerMethod extends JsonRpcServerMethod {
+
+    /**
+     * AsyncJsonRpcServerMethod constrctor.
+     *
+     * @param tauController TauController
+     */
+    public AsyncJsonRpcServerMethod(TauController tauController) {
+        super(tauController);
+    }
+
+    /**
+     * Blocking version for callers which don't support futures.
+     */
+    @Override
+    protected final JSONRPC2Response worker(JSONRPC2Request req, MessageContext ctx) {
+        return asyncWorker(req, ctx).join();
+    }
+
+    @Override
+    protected abstract CompletableFuture<JSONRPC2Response> asyncWorker(JSONRPC2Request req,
+            MessageContext ctx);
+
+    protected CompletableFuture<byte[]> dhtGetAsync(GetImmutableItemSpec spec) {
+        return nullOnTimeout(tauController.getDHTEngine().requestAsync(spec));
+    }
+
+    protected CompletableFuture<byte[]> dhtGetAsync(GetMutableItemSpec spec) {
+        return nullOnTimeout(tauController.getDHTEngine().requestAsync(spec));
+    }
+
+    /**
+     * Make the response from the result of the source future.
+     * Cancelling the returned future cancels the source too.
+     *
+     * @param source source future
+     * @param fn response maker
+     * @return future of the response
+     */
+    protected static <T> CompletableFuture<JSONRPC2Response> respond(CompletableFuture<T> source,
+            Function<? super T, JSONRPC2Response> fn) {
+        return cancelWith(source.thenApply(fn), source);
+    }
+
+    private static CompletableFuture<byte[]> nullOnTimeout(CompletableFuture<byte[]> source) {
+        return cancelWith(source.handle((item, t) -> t == null ? item : null), source);
+    }
+
+    private static <T> CompletableFuture<T> cancelWith(CompletableFuture<T> future,
+            CompletableFuture<?> source) {
+        future.whenComplete((r, t) -> {
+            if (future.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+
+        return future;
+    }
+}
@@ -9,6 +9,7 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import com.thetransactioncompany.jsonrpc2.server.*;
 import org.slf4j.Logger;
@@ -25,12 +26,25 @@ public final class JsonRpcServer {
 
     private static final Logger logger = LoggerFactory.getLogger("rpc");
 
+    // max size of an aggregated http request body.
+    private static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+
+    // concurrency limit of the methods waiting on the dht.
+    private static final int DHT_METHOD_CONCURRENCY = 8;
+
+    // concurrency limit of the methods waiting on the dht without a thread,
+    // that is the number of lookups in flight.
+    private static final int ASYNC_METHOD_CONCURRENCY = 1024;
+
     // TauController through which all blockchain components can be accessed.
     private TauController tauController;
 
     // method dispatcher.
     private Dispatcher dispatcher;
 
+    // executor running methods off the event loop.
+    private RpcMethodExecutor executor;
+
     // netty evnent loop group.
     EventLoopGroup bossGroup;
     EventLoopGroup workerGroup;
@@ -47,48 +61,67 @@ public final class JsonRpcServer {
         this.tauController = controller;
 
         this.dispatcher = new Dispatcher();
+        this.executor = new RpcMethodExecutor(this.dispatcher);
 
         // register all rpc methods.
         // methods about dht
-        this.dispatcher.register(new dht_getSessionInfos(this.tauController));
-        this.dispatcher.register(new dht_getImmutableItem(this.tauController));
-        this.dispatcher.register(new dht_getMutableItem(this.tauController));
-        this.dispatcher.register(new dht_getTipItemFromPeer(this.tauController));
-        this.dispatcher.register(new dht_putBlockHashDemand(this.tauController));
-        this.dispatcher.register(new dht_getGossipItemFromPeer(this.tauController));
-        this.dispatcher.register(new dht_getMutableChatMessage(this.tauController));
+        register(new dht_getSessionInfos(this.tauController));
+        register(new dht_getImmutableItem(this.tauController));
+        register(new dht_getMutableItem(this.tauController));
+        register(new dht_getTipItemFromPeer(this.tauController));
+        register(new dht_putBlockHashDemand(this.tauController));
+        register(new dht_getGossipItemFromPeer(this.tauController));
+        register(new dht_getMutableChatMessage(this.tauController));
 
 		// methods about chain
-        this.dispatcher.register(new chain_generateNewSeed(this.tauController));
+        register(new chain_generateNewSeed(this.tauController));
 
-        this.dispatcher.register(new chain_getAllFollowedChainID(this.tauController));
-        this.dispatcher.register(new chain_getBestBlock(this.tauController));
-        this.dispatcher.register(new chain_getBlockByHash(this.tauController));
-        this.dispatcher.register(new chain_getBlockByNumber(this.tauController));
-        this.dispatcher.register(new chain_getHorizontalItemByHash(this.tauController));
-        this.dispatcher.register(new chain_getVerticalItemByHash(this.tauController));
+        register(new chain_getAllFollowedChainID(this.tauController));
+        register(new chain_getBestBlock(this.tauController));
+        register(new chain_getBlockByHash(this.tauController));
+        register(new chain_getBlockByNumber(this.tauController));
+        register(new chain_getHorizontalItemByHash(this.tauController));
+        register(new chain_getVerticalItemByHash(this.tauController));
 
-        this.dispatcher.register(new chain_getTransactionByHash(this.tauController));
-        this.dispatcher.register(new chain_getTransactionsInPool(this.tauController));
+        register(new chain_getTransactionByHash(this.tauController));
+        register(new chain_getTransactionsInPool(this.tauController));
 
-        this.dispatcher.register(new chain_getAccountState(this.tauController));
-        this.dispatcher.register(new chain_updateKey(this.tauController));
+        register(new chain_getAccountState(this.tauController));
+        register(new chain_updateKey(this.tauController));
 
-        this.dispatcher.register(new chain_followChain(this.tauController));
-        this.dispatcher.register(new chain_unfollowChain(this.tauController));
+        register(new chain_followChain(this.tauController));
+        register(new chain_unfollowChain(this.tauController));
 
-        this.dispatcher.register(new chain_sendTransaction(this.tauController));
-        this.dispatcher.register(new chain_sendRawBlock(this.tauController));
+        register(new chain_sendTransaction(this.tauController));
+        register(new chain_sendRawBlock(this.tauController));
 
-        this.dispatcher.register(new chain_createNewCommunity(this.tauController));
+        register(new chain_createNewCommunity(this.tauController));
 
-        this.dispatcher.register(new chain_startMining(this.tauController));
-        this.dispatcher.register(new chain_stopMining(this.tauController));
+        register(new chain_startMining(this.tauController));
+        register(new chain_stopMining(this.tauController));
 
         // test
-        this.dispatcher.register(new dht_putGenesisHashInTipBlockChannel(this.tauController));
-        this.dispatcher.register(new dht_getTauDemandFromPeer(this.tauController));
-        this.dispatcher.register(new test_getDemandSalt(this.tauController));
+        register(new dht_putGenesisHashInTipBlockChannel(this.tauController));
+        register(new dht_getTauDemandFromPeer(this.tauController));
+        register(new test_getDemandSalt(this.tauController));
+    }
+
+    /**
+     * Register method handler, methods blocking on the dht get a lower
+     * concurrency limit, while async methods may keep many lookups in flight.
+     *
+     * @param handler method handler
+     */
+    private void register(RequestHandler handler) {
+        this.dispatcher.register(handler);
+
+        for (String method : handler.handledRequests()) {
+            if (handler instanceof AsyncJsonRpcServerMethod) {
+                this.executor.setMethodConcurrency(method, ASYNC_METHOD_CONCURRENCY);
+            } else if (method.startsWith("dht_")) {
+                this.executor.setMethodConcurrency(method, DHT_METHOD_CONCURRENCY);
+            }
+        }
     }
 
     /**
@@ -116,6 +149,7 @@ public final class JsonRpcServer {
         } finally {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
+            executor.shutdown();
         }
     }
 
@@ -127,6 +161,7 @@ public final class JsonRpcServer {
             bossGroup.shutdownGracefully();
             workerGroup.shutdownGracefully();
         }
+        executor.shutdown();
     }
 
     class JsonRpcServerInitializer extends ChannelInitializer<SocketChannel> {
@@ -134,7 +169,8 @@ public final class JsonRpcServer {
         public void initChannel(SocketChannel ch) {
             ChannelPipeline p = ch.pipeline();
             p.addLast(new HttpServerCodec());
-            p.addLast(new JsonRpcServerHandler(dispatcher));
+            p.addLast(new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+            p.addLast(new JsonRpcServerHandler(executor));
         }
     }
 }
@@ -1,32 +1,41 @@
 package io.taucoin.jtau.rpc;
 
+import com.thetransactioncompany.jsonrpc2.JSONRPC2Error;
+import com.thetransactioncompany.jsonrpc2.JSONRPC2ParseException;
 import com.thetransactioncompany.jsonrpc2.JSONRPC2Request;
 import com.thetransactioncompany.jsonrpc2.JSONRPC2Response;
-import com.thetransactioncompany.jsonrpc2.server.Dispatcher;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
-import io.netty.handler.codec.http.HttpObject;
-import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
-import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
-import io.netty.handler.codec.http.multipart.HttpPostStandardRequestDecoder;
 import io.netty.util.CharsetUtil;
 
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONValue;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
 import static io.netty.handler.codec.http.HttpHeaders.Names.ACCESS_CONTROL_ALLOW_HEADERS;
 import static io.netty.handler.codec.http.HttpHeaders.Names.ACCESS_CONTROL_ALLOW_ORIGIN;
 import static io.netty.handler.codec.http.HttpHeaders.Names.ACCESS_CONTROL_REQUEST_METHOD;
@@ -36,94 +45,122 @@ import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
 import static io.netty.handler.codec.http.HttpHeaders.Names.VARY;
 
 /**
- * JsonRpcServerHandler reads http request and dispatches the request to the
- * responding method handler.
+ * JsonRpcServerHandler reads the aggregated http request and dispatches the
+ * request to the responding method handler.
+ *
+ * The request body is parsed and the methods are run on RpcMethodExecutor,
+ * never on the netty event loop. Requests of a batch run in parallel and the
+ * response is written when all of them complete. Requests still in flight
+ * are cancelled when the client disconnects.
  */
-public class JsonRpcServerHandler extends SimpleChannelInboundHandler<HttpObject> {
+public class JsonRpcServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 
-    private HttpRequest request;
-    private final StringBuilder responseContent = new StringBuilder();
-    private HttpPostStandardRequestDecoder decoder;
-    private String postData;
-    private boolean isOptions = false;
+    private static final Logger logger = LoggerFactory.getLogger("rpc");
 
-    // method dispatcher
-    private Dispatcher dispatcher;
+    // method executor
+    private final RpcMethodExecutor executor;
+
+    // Requests of this channel which aren't responded yet.
+    private final Set<CompletableFuture<JSONRPC2Response>> inflight = ConcurrentHashMap.newKeySet();
 
     /**
      * JsonRpcServerHandler constructor.
      *
-     * @param dispatcher method dispatcher
+     * @param executor method executor
      */
-    public JsonRpcServerHandler(Dispatcher dispatcher) {
+    public JsonRpcServerHandler(RpcMethodExecutor executor) {
         super();
-        this.dispatcher = dispatcher;
+        this.executor = executor;
     }
 
     @Override
-    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        if (decoder != null) {
-            decoder.destroy();
+    public void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+        boolean close = isClose(request);
+
+        if (request.getMethod().equals(HttpMethod.OPTIONS)) {
+            writeOptionsResponse(ctx, close);
+            return;
+        }
+
+        if (!request.getUri().equals("/") || !request.getMethod().equals(HttpMethod.POST)) {
+            writeResponse(ctx, "Hi, how are you?!!", close);
+            return;
+        }
+
+        // The aggregated body is released by SimpleChannelInboundHandler
+        // when this method returns, so keep it for the worker thread.
+        ByteBuf content = request.content().retain();
+        try {
+            executor.execute(() -> process(ctx, content, close));
+        } catch (RejectedExecutionException e) {
+            content.release();
+            logger.warn("rpc executor is full, drop request");
+            writeResponse(ctx, new JSONRPC2Response(RpcMethodExecutor.SERVER_BUSY, null).toString(), close);
         }
     }
 
-    @Override
-    public void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
-        if (msg instanceof HttpRequest) {
-            HttpRequest req = this.request = (HttpRequest) msg;
-            if (request.getMethod().equals(HttpMethod.OPTIONS)) {
-                isOptions = true;
-            } else if (!req.getUri().equals("/") || !request.getMethod().equals(HttpMethod.POST)) {
-                responseContent.append("Hi, how are you?!!");
-                return;
-            } else {
-                decoder = new HttpPostStandardRequestDecoder(new DefaultHttpDataFactory(false), req);
-                postData = "";
-            }
+    /**
+     * Parse the request body and dispatch single or batch requests.
+     */
+    private void process(ChannelHandlerContext ctx, ByteBuf content, boolean close) {
+        Object json;
+        try (Reader reader = new InputStreamReader(new ByteBufInputStream(content, true), CharsetUtil.UTF_8)) {
+            json = JSONValue.parse(reader);
+        } catch (Exception e) {
+            logger.warn("parse request error: {}", e.getMessage());
+            json = null;
+        }
+
+        if (json == null) {
+            writeResponse(ctx, new JSONRPC2Response(JSONRPC2Error.PARSE_ERROR, null).toString(), close);
+            return;
         }
 
-        if (decoder != null) {
-            if (msg instanceof HttpContent) {
-                HttpContent chunk = (HttpContent) msg;
-                decoder.offer(chunk);
-                postData += chunk.content().toString(0, chunk.content().capacity(), CharsetUtil.UTF_8);
+        if (json instanceof JSONArray) {
+            JSONArray array = (JSONArray) json;
+            List<CompletableFuture<JSONRPC2Response>> futures = new ArrayList<>(array.size());
+            for (Object item : array) {
+                futures.add(dispatch(item));
+            }
 
-                if (chunk instanceof LastHttpContent) {
-                    Object tmpA = JSONValue.parse(postData);
-                    if (tmpA instanceof JSONArray) {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .thenRun(() -> {
                         JSONArray t = new JSONArray();
-                        for (int i = 0; i < ((JSONArray) tmpA).size(); i++) {
-                            JSONRPC2Request req = JSONRPC2Request.parse(((JSONArray) tmpA).get(i).toString());
-                            JSONRPC2Response resp = dispatcher.process(req, null);
-                            t.add(resp);
+                        for (CompletableFuture<JSONRPC2Response> f : futures) {
+                            t.add(f.join());
                         }
-                        responseContent.append(t);
-                    } else {
-                        JSONRPC2Request req = JSONRPC2Request.parse(postData);
-                        JSONRPC2Response resp = dispatcher.process(req, null);
-                        responseContent.append(resp);
-                    }
-                    writeResponse(ctx);
-                    request = null;
-                    decoder.destroy();
-                    decoder = null;
-                }
-            }
-        } else if (isOptions) {
-            writeOptionsResponse(ctx);
-            isOptions = false;
+                        writeResponse(ctx, t.toString(), close);
+                    });
         } else {
-            writeResponse(ctx);
+            dispatch(json).thenAccept(resp -> writeResponse(ctx, resp.toString(), close));
         }
     }
 
-    private void writeResponse(ChannelHandlerContext ctx) {
-        ByteBuf buf = Unpooled.copiedBuffer(responseContent.toString(), CharsetUtil.UTF_8);
-        responseContent.setLength(0);
+    private CompletableFuture<JSONRPC2Response> dispatch(Object json) {
+        JSONRPC2Request req;
+        try {
+            req = JSONRPC2Request.parse(json.toString());
+        } catch (JSONRPC2ParseException e) {
+            return CompletableFuture.completedFuture(
+                    new JSONRPC2Response(JSONRPC2Error.INVALID_REQUEST, null));
+        }
+
+        CompletableFuture<JSONRPC2Response> future = executor.submit(req);
+        inflight.add(future);
+        future.whenComplete((resp, t) -> inflight.remove(future));
+
+        return future;
+    }
 
-        boolean close = HttpHeaders.Values.CLOSE.equalsIgnoreCase(request.headers().get(CONNECTION))
+    private static boolean isClose(FullHttpRequest request) {
+        return HttpHeaders.Values.CLOSE.equalsIgnoreCase(request.headers().get(CONNECTION))
                 || request.getProtocolVersion().equals(HttpVersion.HTTP_1_0)
                 && !HttpHeaders.Values.KEEP_ALIVE.equalsIgnoreCase(request.headers().get(CONNECTION));
+    }
+
+    private void writeResponse(ChannelHandlerContext ctx, String content, boolean close) {
+        ByteBuf buf = Unpooled.copiedBuffer(content, CharsetUtil.UTF_8);
+
         FullHttpResponse response = new DefaultFullHttpResponse(
                 HttpVersion.HTTP_1_1, HttpResponseStatus.OK, buf);
         response.headers().set(CONTENT_TYPE, "text/plain; charset=UTF-8");
@@ -133,16 +170,14 @@ public class JsonRpcServerHandler extends SimpleChannelInboundHandler<HttpObject
             response.headers().set(CONTENT_LENGTH, buf.readableBytes());
         }
 
+        // writeAndFlush is thread safe, it's scheduled on the channel event loop.
         ChannelFuture future = ctx.writeAndFlush(response);
         if (close) {
             future.addListener(ChannelFutureListener.CLOSE);
         }
     }
 
-    private void writeOptionsResponse(ChannelHandlerContext ctx) {
-        boolean close = HttpHeaders.Values.CLOSE.equalsIgnoreCase(request.headers().get(CONNECTION))
-                || request.getProtocolVersion().equals(HttpVersion.HTTP_1_0)
-                && !HttpHeaders.Values.KEEP_ALIVE.equalsIgnoreCase(request.headers().get(CONNECTION));
+    private void writeOptionsResponse(ChannelHandlerContext ctx, boolean close) {
         FullHttpResponse response = new DefaultFullHttpResponse(
                 HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
         response.headers().set(CONTENT_TYPE, "text/plain; charset=UTF-8");
@@ -161,9 +196,19 @@ public class JsonRpcServerHandler extends SimpleChannelInboundHandler<HttpObject
         }
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (CompletableFuture<JSONRPC2Response> future : inflight) {
+            future.cancel(false);
+        }
+        inflight.clear();
+
+        super.channelInactive(ctx);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        cause.printStackTrace();
+        logger.error("rpc channel error", cause);
         ctx.close();
     }
 }
@@ -13,6 +13,7 @@ import io.taucoin.dht2.DHTReqResult;
 import io.taucoin.types.Transaction;
 
 import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
 
 import static io.taucoin.dht2.DHT.*;
 
@@ -63,8 +64,32 @@ public abstract class JsonRpcServerMethod implements RequestHandler {
         }
     }
 
+    /**
+     * Process the corresponding rpc reqeust asynchronously.
+     *
+     * Methods waiting on the dht override asyncWorker, see
+     * AsyncJsonRpcServerMethod, the others run worker in the calling thread.
+     *
+     * @param req json rpc request.
+     * @param ctx request context
+     * @return future completed with the response, cancelling it
+     *     abandons the pending dht requests of this method.
+     */
+    public CompletableFuture<JSONRPC2Response> processAsync(JSONRPC2Request req, MessageContext ctx) {
+        if (req.getMethod().equals(name)) {
+            return asyncWorker(req, ctx);
+        } else {
+            return CompletableFuture.completedFuture(
+                    new JSONRPC2Response(JSONRPC2Error.METHOD_NOT_FOUND, req.getID()));
+        }
+    }
+
     protected abstract JSONRPC2Response worker(JSONRPC2Request req, MessageContext ctx);
 
+    protected CompletableFuture<JSONRPC2Response> asyncWorker(JSONRPC2Request req, MessageContext ctx) {
+        return CompletableFuture.completedFuture(worker(req, ctx));
+    }
+
     protected String clearJSString(String data) {
         if (data.substring(0, 2).equals("0x"))
             return data.substring(2);
@@ -0,0 +1,210 @@
+package io.taucoin.jtau.rpc;
+
+import com.thetransactioncompany.jsonrpc2.JSONRPC2Error;
+import com.thetransactioncompany.jsonrpc2.JSONRPC2Request;
+import com.thetransactioncompany.jsonrpc2.JSONRPC2Response;
+import com.thetransactioncompany.jsonrpc2.server.Dispatcher;
+import com.thetransactioncompany.jsonrpc2.server.RequestHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RpcMethodExecutor runs rpc methods off the netty event loop on a bounded
+ * thread pool. Each method has its own concurrency limit, so a burst of slow
+ * requests (e.g. dht lookups) can't occupy every worker thread.
+ *
+ * Methods extending AsyncJsonRpcServerMethod only start their dht lookups on
+ * the worker thread, the concurrency permit is held until the response future
+ * completes, so their limit counts the lookups in flight, not the threads.
+ */
+public class RpcMethodExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger("rpc");
+
+    // Default worker threads.
+    public static final int DEFAULT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    // Default capacity of the waiting queue.
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    // Default concurrency limit of one method.
+    public static final int DEFAULT_METHOD_CONCURRENCY = 16;
+
+    // Error returned when the server or the method is overloaded.
+    public static final JSONRPC2Error SERVER_BUSY = new JSONRPC2Error(-32000, "Server busy");
+
+    // method dispatcher.
+    private final Dispatcher dispatcher;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int defaultMethodConcurrency;
+
+    // Concurrency limit per method name.
+    private final Map<String, Semaphore> methodLimits = new ConcurrentHashMap<>();
+
+    /**
+     * RpcMethodExecutor constructor.
+     *
+     * @param dispatcher method dispatcher
+     */
+    public RpcMethodExecutor(Dispatcher dispatcher) {
+        this(dispatcher, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, DEFAULT_METHOD_CONCURRENCY);
+    }
+
+    /**
+     * RpcMethodExecutor constructor.
+     *
+     * @param dispatcher method dispatcher
+     * @param threads worker threads
+     * @param queueCapacity capacity of the waiting queue
+     * @param defaultMethodConcurrency default concurrency limit of one method
+     */
+    public RpcMethodExecutor(Dispatcher dispatcher, int threads, int queueCapacity,
+            int defaultMethodConcurrency) {
+        this.dispatcher = dispatcher;
+        this.defaultMethodConcurrency = defaultMethodConcurrency;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new WorkerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Set the concurrency limit of one method.
+     *
+     * @param method method name
+     * @param limit max concurrent requests of this method
+     */
+    public void setMethodConcurrency(String method, int limit) {
+        methodLimits.put(method, new Semaphore(limit));
+    }
+
+    private Semaphore getMethodLimit(String method) {
+        return methodLimits.computeIfAbsent(method,
+                k -> new Semaphore(defaultMethodConcurrency));
+    }
+
+    /**
+     * Process the request asynchronously.
+     *
+     * @param req json rpc request
+     * @return future completed with the response
+     */
+    public CompletableFuture<JSONRPC2Response> submit(JSONRPC2Request req) {
+        CompletableFuture<JSONRPC2Response> future = new CompletableFuture<>();
+
+        Semaphore limit = getMethodLimit(req.getMethod());
+        if (!limit.tryAcquire()) {
+            logger.warn("too many concurrent requests for {}", req.getMethod());
+            future.complete(new JSONRPC2Response(SERVER_BUSY, req.getID()));
+            return future;
+        }
+
+        RequestHandler handler = dispatcher.getRequestHandler(req.getMethod());
+
+        try {
+            if (handler instanceof AsyncJsonRpcServerMethod) {
+                executor.execute(() -> processAsync((AsyncJsonRpcServerMethod) handler,
+                        req, future, limit));
+            } else {
+                executor.execute(() -> {
+                    try {
+                        future.complete(dispatcher.process(req, null));
+                    } catch (Throwable t) {
+                        logger.error("process " + req.getMethod() + " error", t);
+                        future.complete(new JSONRPC2Response(JSONRPC2Error.INTERNAL_ERROR, req.getID()));
+                    } finally {
+                        limit.release();
+                    }
+                });
+            }
+        } catch (RejectedExecutionException e) {
+            limit.release();
+            logger.warn("rpc executor is full, drop {}", req.getMethod());
+            future.complete(new JSONRPC2Response(SERVER_BUSY, req.getID()));
+        }
+
+        return future;
+    }
+
+    private void processAsync(AsyncJsonRpcServerMethod handler, JSONRPC2Request req,
+            CompletableFuture<JSONRPC2Response> future, Semaphore limit) {
+
+        // The client has gone before the method started.
+        if (future.isDone()) {
+            limit.release();
+            return;
+        }
+
+        CompletableFuture<JSONRPC2Response> pending;
+        try {
+            pending = handler.processAsync(req, null);
+        } catch (Throwable t) {
+            logger.error("process " + req.getMethod() + " error", t);
+            pending = new CompletableFuture<>();
+            pending.completeExceptionally(t);
+        }
+
+        final CompletableFuture<JSONRPC2Response> inner = pending;
+        inner.whenComplete((resp, t) -> {
+            limit.release();
+
+            if (t != null) {
+                if (!inner.isCancelled()) {
+                    logger.error("process " + req.getMethod() + " error", t);
+                }
+                future.complete(new JSONRPC2Response(JSONRPC2Error.INTERNAL_ERROR, req.getID()));
+            } else {
+                future.complete(resp);
+            }
+        });
+
+        // Abandon the dht lookups if the response isn't wanted any more.
+        future.whenComplete((resp, t) -> {
+            if (future.isCancelled()) {
+                inner.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Run a task on the worker pool, such as parsing a request body.
+     *
+     * @param task task
+     * @throws RejectedExecutionException if the pool is full
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Stop all worker threads.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger index = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "rpc-worker-" + index.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package io.taucoin.jtau.rpc.method;
 
 import io.taucoin.controller.TauController;
-import io.taucoin.jtau.rpc.JsonRpcServerMethod;
+import io.taucoin.jtau.rpc.AsyncJsonRpcServerMethod;
 import io.taucoin.param.ChainParam;
 import io.taucoin.types.Block;
 import io.taucoin.types.HorizontalItem;
@@ -22,10 +22,11 @@ import org.spongycastle.util.encoders.Hex;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 import static io.taucoin.dht2.DHT.*;
 
-public class dht_getImmutableItem extends JsonRpcServerMethod {
+public class dht_getImmutableItem extends AsyncJsonRpcServerMethod {
 
     private static final Logger logger = LoggerFactory.getLogger("rpc");
 
@@ -34,49 +35,51 @@ public class dht_getImmutableItem extends JsonRpcServerMethod {
     }
 
     @Override
-    protected JSONRPC2Response worker(JSONRPC2Request req, MessageContext ctx) {
+    protected CompletableFuture<JSONRPC2Response> asyncWorker(JSONRPC2Request req, MessageContext ctx) {
 
         List<Object> params = req.getPositionalParams();
         if (params.size() != 2) {
-            return new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID());
+            return CompletableFuture.completedFuture(
+                    new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID()));
         } else {
 			// get sha1 hash
             byte[] hash = Hex.decode((String)(params.get(0)));
             String type = (String)(params.get(1));
 
 			// get immutable item
-            byte[] item = dhtGet(new GetImmutableItemSpec(hash, 20));
+            return respond(dhtGetAsync(new GetImmutableItemSpec(hash, 20)), item -> {
 
-            // make response
-            String result = "";
+                // make response
+                String result = "";
 
-            if (item == null) {
-                result= "Get immutable item, nothing !";
-            } else {
-                try {
-                    if ("block".equals(type)) {
-                        Block block = new Block(item);
-                        result = block.toString();
-                    } else if ("tx".equals(type)){
-                        Transaction tx = TransactionFactory.parseTransaction(item);
-                        result = tx.toString();
-                    } else if ("horizontal".equals(type)){
-                        HorizontalItem horizontalItem = new HorizontalItem(item);
-                        result = horizontalItem.toString();
-                    } else if ("vertical".equals(type)){
-                        VerticalItem verticalItem = new VerticalItem(item);
-                        result = verticalItem.toString();
-                    } else if("RawData".equals(type)) {
-                        result = Hex.toHexString(item);
+                if (item == null) {
+                    result= "Get immutable item, nothing !";
+                } else {
+                    try {
+                        if ("block".equals(type)) {
+                            Block block = new Block(item);
+                            result = block.toString();
+                        } else if ("tx".equals(type)){
+                            Transaction tx = TransactionFactory.parseTransaction(item);
+                            result = tx.toString();
+                        } else if ("horizontal".equals(type)){
+                            HorizontalItem horizontalItem = new HorizontalItem(item);
+                            result = horizontalItem.toString();
+                        } else if ("vertical".equals(type)){
+                            VerticalItem verticalItem = new VerticalItem(item);
+                            result = verticalItem.toString();
+                        } else if("RawData".equals(type)) {
+                            result = Hex.toHexString(item);
+                        }
+                    } catch (Exception e) {
+                        result = e.toString();
+                        e.printStackTrace();
                     }
-                } catch (Exception e) {
-                    result = e.toString();
-                    e.printStackTrace();
                 }
-            }
 
-            JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
-            return response;
+                JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
+                return response;
+            });
         }
     }
 }
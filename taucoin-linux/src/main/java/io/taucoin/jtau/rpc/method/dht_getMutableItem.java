@@ -1,7 +1,7 @@
 package io.taucoin.jtau.rpc.method;
 
 import io.taucoin.controller.TauController;
-import io.taucoin.jtau.rpc.JsonRpcServerMethod;
+import io.taucoin.jtau.rpc.AsyncJsonRpcServerMethod;
 import io.taucoin.types.HashList;
 
 import com.thetransactioncompany.jsonrpc2.JSONRPC2Error;
@@ -13,10 +13,11 @@ import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static io.taucoin.dht2.DHT.*;
 
-public class dht_getMutableItem extends JsonRpcServerMethod {
+public class dht_getMutableItem extends AsyncJsonRpcServerMethod {
 
     private static final Logger logger = LoggerFactory.getLogger("rpc");
 
@@ -25,11 +26,12 @@ public class dht_getMutableItem extends JsonRpcServerMethod {
     }
 
     @Override
-    protected JSONRPC2Response worker(JSONRPC2Request req, MessageContext ctx) {
+    protected CompletableFuture<JSONRPC2Response> asyncWorker(JSONRPC2Request req, MessageContext ctx) {
 
         List<Object> params = req.getPositionalParams();
         if (params.size() != 2) {
-            return new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID());
+            return CompletableFuture.completedFuture(
+                    new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID()));
         } else {
 			// get pubkey
             byte[] pubkey = Hex.decode((String)(params.get(0)));
@@ -37,29 +39,30 @@ public class dht_getMutableItem extends JsonRpcServerMethod {
             byte[] salt = ((String)(params.get(1))).getBytes();
 
 			// get immutable item
-            byte[] item = dhtGet(new GetMutableItemSpec(pubkey, salt, 20));
+            return respond(dhtGetAsync(new GetMutableItemSpec(pubkey, salt, 20)), item -> {
 
-			// make response
-			String result = "";
+    			// make response
+    			String result = "";
 
-            if (item == null) {
-                result= "Get mutable item, nothing !";
-            } else {
-                try {
-                    byte[] hash = new HashList(item).getFirstHash();
-                    if (null != hash) {
-                        result = "Hash: " + Hex.toHexString(hash);
-                    } else {
-                        result = "empty";
+                if (item == null) {
+                    result= "Get mutable item, nothing !";
+                } else {
+                    try {
+                        byte[] hash = new HashList(item).getFirstHash();
+                        if (null != hash) {
+                            result = "Hash: " + Hex.toHexString(hash);
+                        } else {
+                            result = "empty";
+                        }
+                    } catch (Exception e) {
+                        result = e.toString();
+                        e.printStackTrace();
                     }
-                } catch (Exception e) {
-                    result = e.toString();
-                    e.printStackTrace();
                 }
-            }
 
-            JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
-            return response;
+                JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
+                return response;
+            });
         }
     }
 }
@@ -9,26 +9,28 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import io.taucoin.chain.Salt;
 import io.taucoin.controller.TauController;
-import io.taucoin.jtau.rpc.JsonRpcServerMethod;
+import io.taucoin.jtau.rpc.AsyncJsonRpcServerMethod;
 import io.taucoin.dht2.DHT;
 import io.taucoin.types.DemandItem;
 import io.taucoin.types.HashList;
 
-public class dht_getTauDemandFromPeer extends JsonRpcServerMethod {
+public class dht_getTauDemandFromPeer extends AsyncJsonRpcServerMethod {
 
     public dht_getTauDemandFromPeer(TauController tauController) {
         super(tauController);
     }
 
     @Override
-    protected JSONRPC2Response worker(JSONRPC2Request req, MessageContext ctx) {
+    protected CompletableFuture<JSONRPC2Response> asyncWorker(JSONRPC2Request req, MessageContext ctx) {
 
         List<Object> params = req.getPositionalParams();
         if (params.size() != 1) {
-            return new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID());
+            return CompletableFuture.completedFuture(
+                    new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID()));
         } else {
             // get pubkey
             byte[] pubkey = Hex.decode((String)(params.get(0)));
@@ -36,46 +38,47 @@ public class dht_getTauDemandFromPeer extends JsonRpcServerMethod {
             byte[] salt = Salt.makeDemandSalt("TAUcoin#c84b1332519aa8020e48438eb3caa9b482798c9d".getBytes());
 
             // get immutable item
-            byte[] item = dhtGet(new DHT.GetMutableItemSpec(pubkey, salt, 20));
-
-            // make response
-            ArrayList<String> result = new ArrayList<>();
-
-            if (item == null) {
-                result.add("Get mutable item, nothing !");
-            } else {
-                try {
-                    DemandItem demandItem = new DemandItem(item);
-                    if (demandItem.validate()) {
-                        byte[] blockHash = demandItem.getBlockHash();
-                        if (null != blockHash) {
-                            result.add("Block Hash: " + Hex.toHexString(blockHash));
+            return respond(dhtGetAsync(new DHT.GetMutableItemSpec(pubkey, salt, 20)), item -> {
+
+                // make response
+                ArrayList<String> result = new ArrayList<>();
+
+                if (item == null) {
+                    result.add("Get mutable item, nothing !");
+                } else {
+                    try {
+                        DemandItem demandItem = new DemandItem(item);
+                        if (demandItem.validate()) {
+                            byte[] blockHash = demandItem.getBlockHash();
+                            if (null != blockHash) {
+                                result.add("Block Hash: " + Hex.toHexString(blockHash));
+                            }
+
+                            byte[] txHash = demandItem.getTxHash();
+                            if (null != txHash) {
+                                result.add("Tx Hash: " + Hex.toHexString(txHash));
+                            }
+
+                            byte[] horizontalHash = demandItem.getHorizontalHash();
+                            if (null != horizontalHash) {
+                                result.add("Horizontal Hash: " + Hex.toHexString(horizontalHash));
+                            }
+
+                            byte[] verticalHash = demandItem.getVerticalHash();
+                            if (null != verticalHash) {
+                                result.add("Vertical Hash: " + Hex.toHexString(verticalHash));
+                            }
                         }
 
-                        byte[] txHash = demandItem.getTxHash();
-                        if (null != txHash) {
-                            result.add("Tx Hash: " + Hex.toHexString(txHash));
-                        }
-
-                        byte[] horizontalHash = demandItem.getHorizontalHash();
-                        if (null != horizontalHash) {
-                            result.add("Horizontal Hash: " + Hex.toHexString(horizontalHash));
-                        }
-
-                        byte[] verticalHash = demandItem.getVerticalHash();
-                        if (null != verticalHash) {
-                            result.add("Vertical Hash: " + Hex.toHexString(verticalHash));
-                        }
+                    } catch (Exception e) {
+                        result.add(e.toString());
+                        e.printStackTrace();
                     }
-
-                } catch (Exception e) {
-                    result.add(e.toString());
-                    e.printStackTrace();
                 }
-            }
 
-            JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
-            return response;
+                JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
+                return response;
+            });
         }
     }
 }
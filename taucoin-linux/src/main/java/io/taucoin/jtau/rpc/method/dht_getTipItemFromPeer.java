@@ -11,15 +11,16 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import io.taucoin.chain.Salt;
 import io.taucoin.controller.TauController;
-import io.taucoin.jtau.rpc.JsonRpcServerMethod;
+import io.taucoin.jtau.rpc.AsyncJsonRpcServerMethod;
 import io.taucoin.dht2.DHT;
 import io.taucoin.types.HashList;
 import io.taucoin.types.TipItem;
 
-public class dht_getTipItemFromPeer extends JsonRpcServerMethod {
+public class dht_getTipItemFromPeer extends AsyncJsonRpcServerMethod {
 
     private static final Logger logger = LoggerFactory.getLogger("rpc");
 
@@ -28,11 +29,12 @@ public class dht_getTipItemFromPeer extends JsonRpcServerMethod {
     }
 
     @Override
-    protected JSONRPC2Response worker(JSONRPC2Request req, MessageContext ctx) {
+    protected CompletableFuture<JSONRPC2Response> asyncWorker(JSONRPC2Request req, MessageContext ctx) {
 
         List<Object> params = req.getPositionalParams();
         if (params.size() != 1) {
-            return new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID());
+            return CompletableFuture.completedFuture(
+                    new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID()));
         } else {
             // get pubkey
             byte[] pubkey = Hex.decode((String)(params.get(0)));
@@ -40,35 +42,36 @@ public class dht_getTipItemFromPeer extends JsonRpcServerMethod {
             byte[] salt = Salt.makeTipSalt("TAUcoin#c84b1332519aa8020e48438eb3caa9b482798c9d".getBytes());
 
             // get immutable item
-            byte[] item = dhtGet(new DHT.GetMutableItemSpec(pubkey, salt, 20));
+            return respond(dhtGetAsync(new DHT.GetMutableItemSpec(pubkey, salt, 20)), item -> {
 
-            // make response
-            ArrayList<String> result = new ArrayList<>();
+                // make response
+                ArrayList<String> result = new ArrayList<>();
 
-            if (item == null) {
-                result.add("Get mutable item, nothing !");
-            } else {
-                try {
-                    TipItem tipItem = new TipItem(item);
-                    if (tipItem.validate()) {
-                        byte[] blockHash = tipItem.getBlockHash();
-                        if (null != blockHash) {
-                            result.add("Block Hash: " + Hex.toHexString(blockHash));
-                        }
+                if (item == null) {
+                    result.add("Get mutable item, nothing !");
+                } else {
+                    try {
+                        TipItem tipItem = new TipItem(item);
+                        if (tipItem.validate()) {
+                            byte[] blockHash = tipItem.getBlockHash();
+                            if (null != blockHash) {
+                                result.add("Block Hash: " + Hex.toHexString(blockHash));
+                            }
 
-                        byte[] txHash = tipItem.getTxHash();
-                        if (null != txHash) {
-                            result.add("Tx Hash: " + Hex.toHexString(txHash));
+                            byte[] txHash = tipItem.getTxHash();
+                            if (null != txHash) {
+                                result.add("Tx Hash: " + Hex.toHexString(txHash));
+                            }
                         }
+                    } catch (Exception e) {
+                        result.add(e.toString());
+                        e.printStackTrace();
                     }
-                } catch (Exception e) {
-                    result.add(e.toString());
-                    e.printStackTrace();
                 }
-            }
 
-            JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
-            return response;
+                JSONRPC2Response response = new JSONRPC2Response(result, req.getID());
+                return response;
+            });
         }
     }
 }